@@ -17,6 +17,7 @@
 package org.orekit.rugged.adjustment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -74,6 +75,11 @@ public class GroundOptimizationProblemBuilder extends OptimizationProblemBuilder
     /** Target and weight (the solution of the optimization problem).*/
     private HashMap<String, double[] > targetAndWeight;
 
+    /** Lines found at previous evaluation, used as guesses for next one (one per measurement).
+     * @since 3.1
+     */
+    private double[] lineGuesses;
+
 
     /** Build a new instance of the optimization problem.
      * @param sensors list of sensors to refine
@@ -138,6 +144,10 @@ public class GroundOptimizationProblemBuilder extends OptimizationProblemBuilder
         this.targetAndWeight = new HashMap<String, double[]>();
         this.targetAndWeight.put(TARGET, target);
         this.targetAndWeight.put(WEIGHT, weight);
+
+        // no guesses are available before first evaluation
+        this.lineGuesses = new double[n];
+        Arrays.fill(this.lineGuesses, Double.NaN);
     }
 
     /** {@inheritDoc} */
@@ -162,9 +172,13 @@ public class GroundOptimizationProblemBuilder extends OptimizationProblemBuilder
             for (final SensorToGroundMapping reference : this.sensorToGroundMappings) {
                 for (final Map.Entry<SensorPixel, GeodeticPoint> mapping : reference.getMapping()) {
                     final GeodeticPoint gp = mapping.getValue();
-                    final Gradient[] ilResult = this.rugged.inverseLocationDerivatives(reference.getSensorName(), gp, minLine, maxLine, this.getGenerator());
+                    // parameters changes between evaluations are small, so the line found
+                    // for this measurement at previous evaluation is a close guess
+                    final Gradient[] ilResult = this.rugged.inverseLocationDerivatives(reference.getSensorName(), gp, minLine, maxLine,
+                                                                                      this.getGenerator(), lineGuesses[l / 2]);
 
                     if (ilResult == null) {
+                        lineGuesses[l / 2] = Double.NaN;
                         value.setEntry(l, minLine - 100.0); // arbitrary
                         // line far
                         // away
@@ -174,6 +188,7 @@ public class GroundOptimizationProblemBuilder extends OptimizationProblemBuilder
                         // extract the value
                         value.setEntry(l, ilResult[0].getValue());
                         value.setEntry(l + 1, ilResult[1].getValue());
+                        lineGuesses[l / 2] = ilResult[0].getValue();
 
                         // extract the Jacobian
                         final int[] orders = new int[this.getNbParams()];
@@ -19,6 +19,10 @@ package org.orekit.rugged.api;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.hipparchus.analysis.differentiation.Derivative;
 import org.hipparchus.analysis.differentiation.DerivativeStructure;
@@ -37,6 +41,7 @@ import org.orekit.rugged.linesensor.LineSensor;
 import org.orekit.rugged.linesensor.SensorMeanPlaneCrossing;
 import org.orekit.rugged.linesensor.SensorPixel;
 import org.orekit.rugged.linesensor.SensorPixelCrossing;
+import org.orekit.rugged.refraction.AtmosphericCorrectionGrid;
 import org.orekit.rugged.refraction.AtmosphericRefraction;
 import org.orekit.rugged.utils.DerivativeGenerator;
 import org.orekit.rugged.utils.ExtendedEllipsoid;
@@ -318,6 +323,21 @@ public class Rugged {
      * @return ground position of intersection point between specified los and ground
      */
     public GeodeticPoint directLocation(final AbsoluteDate date, final Vector3D sensorPosition, final Vector3D los) {
+        return directLocation(date, sensorPosition, los,
+                              atmosphericRefraction != null && atmosphericRefraction.mustBeComputed());
+    }
+
+    /** Direct location of a single line-of-sight.
+     * @param date date of the location
+     * @param sensorPosition sensor position in spacecraft frame. For simplicity, due to the size of sensor,
+     * we consider each pixel to be at sensor position
+     * @param los normalized line-of-sight in spacecraft frame
+     * @param refraction if true, atmospheric refraction correction is applied
+     * @return ground position of intersection point between specified los and ground
+     * @since 3.1
+     */
+    private NormalizedGeodeticPoint directLocation(final AbsoluteDate date, final Vector3D sensorPosition,
+                                                   final Vector3D los, final boolean refraction) {
 
         DumpManager.dumpDirectLocation(date, sensorPosition, los, lightTimeCorrection, aberrationOfLightCorrection,
                                        atmosphericRefraction != null);
@@ -365,7 +385,7 @@ public class Rugged {
         NormalizedGeodeticPoint result = gp;
 
         // compute the ground location with atmospheric correction if asked for
-        if (atmosphericRefraction != null && atmosphericRefraction.mustBeComputed()) {
+        if (refraction) {
 
             // apply atmospheric refraction correction
             final Vector3D pBody = inertToBody.transformPosition(pInert);
@@ -533,7 +553,7 @@ public class Rugged {
             return findSensorPixelWithoutAtmosphere(point, sensor, planeCrossing);
         } else {
             // Compute inverse location WITH atmospheric refraction
-            return findSensorPixelWithAtmosphere(point, sensor, minLine, maxLine);
+            return findSensorPixelWithAtmosphere(point, sensor, planeCrossing, minLine, maxLine);
         }
     }
 
@@ -662,53 +682,96 @@ public class Rugged {
         return result;
     }
 
+    /** Get the atmospheric refraction correction grid for a sensor and a range of lines.
+     * <p>
+     * The grid is computed only once for each context, and then cached by the
+     * {@link #getRefractionCorrection() atmospheric refraction model}. It is computed
+     * in parallel if a {@link AtmosphericRefraction#setGridComputationPool(java.util.concurrent.ForkJoinPool)
+     * pool} has been set up in the model. This method can be used to compute the grid in advance,
+     * in order to {@link AtmosphericCorrectionGrid#store(java.io.OutputStream) store} it, or to
+     * check a grid {@link AtmosphericRefraction#addCorrectionGrid(AtmosphericCorrectionGrid) added}
+     * from storage is used.
+     * </p>
+     * @param sensorName name of the line sensor
+     * @param minLine minimum line number where the inverse location will be performed
+     * @param maxLine maximum line number where the inverse location will be performed
+     * @return correction grid, or null if there is no atmospheric refraction model
+     * @since 3.1
+     */
+    public AtmosphericCorrectionGrid getAtmosphericCorrectionGrid(final String sensorName,
+                                                                  final int minLine, final int maxLine) {
+
+        if (atmosphericRefraction == null) {
+            return null;
+        }
+
+        AtmosphericCorrectionGrid grid = atmosphericRefraction.getCorrectionGrid(sensorName, minLine, maxLine);
+        if (grid == null) { // lazy evaluation
+
+            // the grid configuration is shared by the refraction model,
+            // so only one grid is computed at a time for a given model
+            synchronized (atmosphericRefraction) {
+
+                grid = atmosphericRefraction.getCorrectionGrid(sensorName, minLine, maxLine);
+                if (grid == null) {
+
+                    // Definition of a regular grid (at sensor level)
+                    final LineSensor sensor = getLineSensor(sensorName);
+                    atmosphericRefraction.configureCorrectionGrid(sensor, minLine, maxLine);
+
+                    // Get the grid nodes
+                    final int nbPixelGrid = atmosphericRefraction.getComputationParameters().getNbPixelGrid();
+                    final int nbLineGrid = atmosphericRefraction.getComputationParameters().getNbLineGrid();
+                    final double[] pixelGrid = atmosphericRefraction.getComputationParameters().getUgrid();
+                    final double[] lineGrid = atmosphericRefraction.getComputationParameters().getVgrid();
+                    final ForkJoinPool pool = atmosphericRefraction.getGridComputationPool();
+
+                    // Computation, for the sensor grid, of the direct location WITH atmospheric refraction
+                    // (full computation)
+                    final GeodeticPoint[][] geodeticGridWithAtmosphere =
+                                    computeDirectLocOnGridWithAtmosphere(pixelGrid, lineGrid, sensor, pool);
+                    // pixelGrid and lineGrid are the nodes where the direct loc is computed WITH atmosphere
+
+                    // Computation of the inverse location WITHOUT atmospheric refraction for the grid nodes
+                    final SensorPixel[][] sensorPixelGridInverseWithout =
+                                    computeInverseLocOnGridWithoutAtmosphere(geodeticGridWithAtmosphere,
+                                                                             nbPixelGrid, nbLineGrid, sensor,
+                                                                             getPlaneCrossing(sensorName, minLine, maxLine),
+                                                                             minLine, maxLine, pool);
+
+                    // Compute the grid correction functions (for pixel and line)
+                    grid = atmosphericRefraction.computeCorrectionGrid(sensorPixelGridInverseWithout);
+
+                }
+            }
+        }
+
+        return grid;
+
+    }
+
     /**
      * Find the sensor pixel WITH atmospheric refraction correction.
      * @param point geodetic point to localize
      * @param sensor the line sensor
+     * @param planeCrossing the sensor mean plane crossing
      * @param minLine minimum line number where the search will be performed
      * @param maxLine maximum line number where the search will be performed
      * @return the sensor pixel crossing or null if cannot be found
      * @since 2.1
      */
-    private SensorPixel findSensorPixelWithAtmosphere(final GeodeticPoint point,
-                                                      final LineSensor sensor, final int minLine, final int maxLine) {
+    private SensorPixel findSensorPixelWithAtmosphere(final GeodeticPoint point, final LineSensor sensor,
+                                                      final SensorMeanPlaneCrossing planeCrossing,
+                                                      final int minLine, final int maxLine) {
 
         // TBN: there is no direct way to compute the inverse location.
         // The method is based on an interpolation grid associated with the fixed point method
 
-        final String sensorName = sensor.getName();
-
         // Compute a correction grid (at sensor level)
         // ===========================================
-        // Need to be computed only once for a given sensor (with the same minLine and maxLine)
-        if (atmosphericRefraction.getBifPixel() == null || atmosphericRefraction.getBifLine() == null || // lazy evaluation
-            !atmosphericRefraction.isSameContext(sensorName, minLine, maxLine)) { // Must be recomputed if the context changed
-
-            // Definition of a regular grid (at sensor level)
-            atmosphericRefraction.configureCorrectionGrid(sensor, minLine, maxLine);
-
-            // Get the grid nodes
-            final int nbPixelGrid = atmosphericRefraction.getComputationParameters().getNbPixelGrid();
-            final int nbLineGrid = atmosphericRefraction.getComputationParameters().getNbLineGrid();
-            final double[] pixelGrid = atmosphericRefraction.getComputationParameters().getUgrid();
-            final double[] lineGrid = atmosphericRefraction.getComputationParameters().getVgrid();
-
-            // Computation, for the sensor grid, of the direct location WITH atmospheric refraction
-            // (full computation)
-            atmosphericRefraction.reactivateComputation();
-            final GeodeticPoint[][] geodeticGridWithAtmosphere = computeDirectLocOnGridWithAtmosphere(pixelGrid, lineGrid, sensor);
-            // pixelGrid and lineGrid are the nodes where the direct loc is computed WITH atmosphere
-
-            // Computation of the inverse location WITHOUT atmospheric refraction for the grid nodes
-            atmosphericRefraction.deactivateComputation();
-            final SensorPixel[][] sensorPixelGridInverseWithout = computeInverseLocOnGridWithoutAtmosphere(geodeticGridWithAtmosphere,
-                                                            nbPixelGrid, nbLineGrid, sensor, minLine, maxLine);
-            atmosphericRefraction.reactivateComputation();
-
-            // Compute the grid correction functions (for pixel and line)
-            atmosphericRefraction.computeGridCorrectionFunctions(sensorPixelGridInverseWithout);
-        }
+        // Need to be computed only once for a given sensor (with the same minLine and maxLine),
+        // grids for several contexts are cached by the refraction model
+        final AtmosphericCorrectionGrid grid = getAtmosphericCorrectionGrid(sensor.getName(), minLine, maxLine);
 
         // Fixed point method
         // ==================
@@ -718,9 +781,7 @@ public class Rugged {
         final Boolean wasSuspended = DumpManager.suspend();
 
         // compute the sensor pixel on the desired ground point WITHOUT atmosphere
-        atmosphericRefraction.deactivateComputation();
-        final SensorPixel sp0 = inverseLocation(sensorName, point, minLine, maxLine);
-        atmosphericRefraction.reactivateComputation();
+        final SensorPixel sp0 = findSensorPixelWithoutAtmosphere(point, sensor, planeCrossing);
         // Reactivate the dump
         DumpManager.resume(wasSuspended);
 
@@ -742,8 +803,8 @@ public class Rugged {
         // ------------------------------------------------------------
         // compute the first (pixel, line) value:
         // initial sensor pixel value + correction due to atmosphere at this same sensor pixel
-        double corrPixelPrevious =  pixel0 + atmosphericRefraction.getBifPixel().value(pixel0, line0);
-        double corrLinePrevious = line0 + atmosphericRefraction.getBifLine().value(pixel0, line0);
+        double corrPixelPrevious =  pixel0 + grid.getBifPixel().value(pixel0, line0);
+        double corrLinePrevious = line0 + grid.getBifLine().value(pixel0, line0);
 
         double deltaCorrPixel = Double.POSITIVE_INFINITY;
         double deltaCorrLine = Double.POSITIVE_INFINITY;
@@ -751,8 +812,8 @@ public class Rugged {
         while (deltaCorrPixel > PIXEL_CV_THRESHOLD && deltaCorrLine > LINE_CV_THRESHOLD) {
             // Compute the current (pixel, line) value =
             // initial sensor pixel value + correction due to atmosphere on the previous sensor pixel
-            final double corrPixelCurrent = pixel0 + atmosphericRefraction.getBifPixel().value(corrPixelPrevious, corrLinePrevious);
-            final double corrLineCurrent = line0 + atmosphericRefraction.getBifLine().value(corrPixelPrevious, corrLinePrevious);
+            final double corrPixelCurrent = pixel0 + grid.getBifPixel().value(corrPixelPrevious, corrLinePrevious);
+            final double corrLineCurrent = line0 + grid.getBifLine().value(corrPixelPrevious, corrLinePrevious);
 
             // Compute the delta in pixel and line to check the convergence
             deltaCorrPixel = FastMath.abs(corrPixelCurrent - corrPixelPrevious);
@@ -777,22 +838,32 @@ public class Rugged {
      * @param nbPixelGrid size of the pixel grid
      * @param nbLineGrid size of the line grid
      * @param sensor the line sensor
+     * @param planeCrossing the sensor mean plane crossing
      * @param minLine minimum line number where the search will be performed
      * @param maxLine maximum line number where the search will be performed
+     * @param pool pool for parallel computation (if null, the computation
+     * is performed sequentially in the calling thread)
      * @return the sensor pixel grid computed without atmosphere
      * @since 2.1
      */
     private SensorPixel[][] computeInverseLocOnGridWithoutAtmosphere(final GeodeticPoint[][] groundGridWithAtmosphere,
                                                                      final int nbPixelGrid, final int nbLineGrid,
-                                                                     final LineSensor sensor, final int minLine, final int maxLine) {
+                                                                     final LineSensor sensor,
+                                                                     final SensorMeanPlaneCrossing planeCrossing,
+                                                                     final int minLine, final int maxLine,
+                                                                     final ForkJoinPool pool) {
 
         // Deactivate the dump because no need to keep intermediate computations of inverse loc (can be regenerate)
         final Boolean wasSuspended = DumpManager.suspend();
 
         final SensorPixel[][] sensorPixelGrid = new SensorPixel[nbPixelGrid][nbLineGrid];
-        final String sensorName = sensor.getName();
 
-        for (int uIndex = 0; uIndex < nbPixelGrid; uIndex++) {
+        forEachIndex(nbPixelGrid, pool, uIndex -> {
+
+            // the mean plane crossing finder caches its results, so each
+            // column of the grid uses its own finder when computing in parallel
+            final SensorMeanPlaneCrossing finder = (pool == null) ? planeCrossing : copy(planeCrossing);
+
             for (int vIndex = 0; vIndex < nbLineGrid; vIndex++) {
 
                 // Check if the geodetic point exists
@@ -803,7 +874,9 @@ public class Rugged {
 
                     try {
                         // Compute the inverse location for the current node
-                        sensorPixelGrid[uIndex][vIndex] = inverseLocation(sensorName, currentLat, currentLon, minLine, maxLine);
+                        final GeodeticPoint node = new GeodeticPoint(currentLat, currentLon,
+                                                                     algorithm.getElevation(currentLat, currentLon));
+                        sensorPixelGrid[uIndex][vIndex] = findSensorPixelWithoutAtmosphere(node, sensor, finder);
 
                     } catch (RuggedException re) { // This should never happen
                         // In order for the dump to end nicely
@@ -834,7 +907,7 @@ public class Rugged {
 
                 } // groundGrid[uIndex][vIndex] != null
             } // end loop vIndex
-        } // end loop uIndex
+        }); // end loop uIndex
 
         // Reactivate the dump
         DumpManager.resume(wasSuspended);
@@ -860,11 +933,13 @@ public class Rugged {
      * @param pixelGrid the pixel grid
      * @param lineGrid the line grid
      * @param sensor the line sensor
+     * @param pool pool for parallel computation (if null, the computation
+     * is performed sequentially in the calling thread)
      * @return the ground grid computed with atmosphere
      * @since 2.1
      */
     private GeodeticPoint[][] computeDirectLocOnGridWithAtmosphere(final double[] pixelGrid, final double[] lineGrid,
-                                                                   final LineSensor sensor) {
+                                                                   final LineSensor sensor, final ForkJoinPool pool) {
 
         // Deactivate the dump because no need to keep intermediate computations of direct loc (can be regenerate)
         final Boolean wasSuspended = DumpManager.suspend();
@@ -874,7 +949,7 @@ public class Rugged {
         final GeodeticPoint[][] groundGridWithAtmosphere = new GeodeticPoint[nbPixelGrid][nbLineGrid];
         final Vector3D sensorPosition = sensor.getPosition();
 
-        for (int uIndex = 0; uIndex < nbPixelGrid; uIndex++) {
+        forEachIndex(nbPixelGrid, pool, uIndex -> {
             final double pixelNumber = pixelGrid[uIndex];
             for (int vIndex = 0; vIndex < nbLineGrid; vIndex++) {
                 final double lineNumber = lineGrid[vIndex];
@@ -882,7 +957,7 @@ public class Rugged {
                 final Vector3D los = sensor.getLOS(date, pixelNumber);
                 try {
                     // Compute the direct location for the current node
-                    groundGridWithAtmosphere[uIndex][vIndex] = directLocation(date, sensorPosition, los);
+                    groundGridWithAtmosphere[uIndex][vIndex] = directLocation(date, sensorPosition, los, true);
 
                 } catch (RuggedException re) { // This should never happen
                     // In order for the dump to end nicely
@@ -890,7 +965,7 @@ public class Rugged {
                     throw new RuggedInternalError(re);
                 }
             } // end loop vIndex
-        } // end loop uIndex
+        }); // end loop uIndex
 
         // Reactivate the dump
         DumpManager.resume(wasSuspended);
@@ -899,6 +974,40 @@ public class Rugged {
         return groundGridWithAtmosphere;
     }
 
+    /** Apply a task to all indices in a range.
+     * @param n number of indices (the range is from 0 to n-1)
+     * @param pool pool for parallel computation (if null, the computation
+     * is performed sequentially in the calling thread)
+     * @param task task to apply to each index
+     * @since 3.1
+     */
+    private static void forEachIndex(final int n, final ForkJoinPool pool, final IntConsumer task) {
+        if (pool == null) {
+            for (int i = 0; i < n; ++i) {
+                task.accept(i);
+            }
+        } else {
+            pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, n).parallel().forEach(task)));
+        }
+    }
+
+    /** Create an independent copy of a mean plane crossing finder.
+     * <p>
+     * The copy shares the mean plane normal and starts with the cached results
+     * of the original finder, but its cache evolves independently.
+     * </p>
+     * @param planeCrossing mean plane crossing finder to copy
+     * @return independent copy
+     * @since 3.1
+     */
+    private SensorMeanPlaneCrossing copy(final SensorMeanPlaneCrossing planeCrossing) {
+        return new SensorMeanPlaneCrossing(planeCrossing.getSensor(), planeCrossing.getScToBody(),
+                                           planeCrossing.getMinLine(), planeCrossing.getMaxLine(),
+                                           lightTimeCorrection, aberrationOfLightCorrection,
+                                           planeCrossing.getMaxEval(), planeCrossing.getAccuracy(),
+                                           planeCrossing.getMeanPlaneNormal(), planeCrossing.getCachedResults());
+    }
+
     /** Compute distances between two line sensors.
      * @param sensorA line sensor A
      * @param dateA current date for sensor A
@@ -916,14 +1025,10 @@ public class Rugged {
 
         // Compute the approximate transform between spacecraft and observed body
         // from Rugged instance A
-        final Transform scToInertA = scToBodyA.getScToInertial(dateA);
-        final Transform inertToBodyA = scToBodyA.getInertialToBody(dateA);
-        final Transform transformScToBodyA = new Transform(dateA, scToInertA, inertToBodyA);
+        final Transform transformScToBodyA = scToBodyA.getScToBody(dateA);
 
         // from (current) Rugged instance B
-        final Transform scToInertB = scToBody.getScToInertial(dateB);
-        final Transform inertToBodyB = scToBody.getInertialToBody(dateB);
-        final Transform transformScToBodyB = new Transform(dateB, scToInertB, inertToBodyB);
+        final Transform transformScToBodyB = scToBody.getScToBody(dateB);
 
         // Get sensors LOS into local frame
         final Vector3D vALocal = sensorA.getLOS(dateA, pixelA);
@@ -990,14 +1095,10 @@ public class Rugged {
 
         // Compute the approximate transforms between spacecraft and observed body
         // from Rugged instance A
-        final Transform scToInertA = scToBodyA.getScToInertial(dateA);
-        final Transform inertToBodyA = scToBodyA.getInertialToBody(dateA);
-        final Transform transformScToBodyA = new Transform(dateA, scToInertA, inertToBodyA);
+        final Transform transformScToBodyA = scToBodyA.getScToBody(dateA);
 
         // from (current) Rugged instance B
-        final Transform scToInertB = scToBody.getScToInertial(dateB);
-        final Transform inertToBodyB = scToBody.getInertialToBody(dateB);
-        final Transform transformScToBodyB = new Transform(dateB, scToInertB, inertToBodyB);
+        final Transform transformScToBodyB = scToBody.getScToBody(dateB);
 
         // Get sensors LOS into local frame
         final FieldVector3D<T> vALocal = sensorA.getLOSDerivatives(dateA, pixelA, generator);
@@ -1113,6 +1214,35 @@ public class Rugged {
                                                                     final int minLine,
                                                                     final int maxLine,
                                                                     final DerivativeGenerator<T> generator) {
+        return inverseLocationDerivatives(sensorName, point, minLine, maxLine, generator, Double.NaN);
+    }
+
+    /** Inverse location of a point with derivatives, starting from a close guess of the line.
+     * <p>
+     * This method is intended for points that are located several times with only
+     * slight changes of the sensor model in between, as for example ground control
+     * points during refining. The line found at previous call is then a good
+     * guess for the next one and saves most of the mean plane crossing search.
+     * </p>
+     * @param <T> derivative type
+     * @param sensorName name of the line sensor
+     * @param point point to localize
+     * @param minLine minimum line number
+     * @param maxLine maximum line number
+     * @param generator generator to use for building {@link Derivative} instances
+     * @param lineGuess close guess for the line (may be NaN if no guess is available)
+     * @return sensor pixel seeing point with derivatives, or null if point cannot be seen between the
+     * prescribed line numbers
+     * @see #inverseLocationDerivatives(String, GeodeticPoint, int, int, DerivativeGenerator)
+     * @see SensorMeanPlaneCrossing#find(Vector3D, double)
+     * @since 3.1
+     */
+    public <T extends Derivative<T>> T[] inverseLocationDerivatives(final String sensorName,
+                                                                    final GeodeticPoint point,
+                                                                    final int minLine,
+                                                                    final int maxLine,
+                                                                    final DerivativeGenerator<T> generator,
+                                                                    final double lineGuess) {
 
         final LineSensor sensor = getLineSensor(sensorName);
 
@@ -1120,7 +1250,7 @@ public class Rugged {
 
         // find approximately the sensor line at which ground point crosses sensor mean plane
         final Vector3D   target = ellipsoid.transform(point);
-        final SensorMeanPlaneCrossing.CrossingResult crossingResult = planeCrossing.find(target);
+        final SensorMeanPlaneCrossing.CrossingResult crossingResult = planeCrossing.find(target, lineGuess);
         if (crossingResult == null) {
             // target is out of search interval
             return null;
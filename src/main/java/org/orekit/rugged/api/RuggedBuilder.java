@@ -16,18 +16,24 @@
  */
 package org.orekit.rugged.api;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Rotation;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
 import org.orekit.bodies.OneAxisEllipsoid;
 import org.orekit.frames.Frame;
 import org.orekit.frames.FramesFactory;
@@ -43,7 +49,10 @@ import org.orekit.rugged.intersection.duvenhage.DuvenhageAlgorithm;
 import org.orekit.rugged.linesensor.LineSensor;
 import org.orekit.rugged.raster.TileUpdater;
 import org.orekit.rugged.refraction.AtmosphericRefraction;
+import org.orekit.rugged.utils.AppendableSpacecraftToObservedBody;
+import org.orekit.rugged.utils.BodyRotationCache;
 import org.orekit.rugged.utils.ExtendedEllipsoid;
+import org.orekit.rugged.utils.MemoizedSpacecraftToObservedBody;
 import org.orekit.rugged.utils.SpacecraftToObservedBody;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.AngularDerivativesFilter;
@@ -163,6 +172,21 @@ public class RuggedBuilder {
     /** Rugged name. */
     private String name;
 
+    /** Settings for the computation mode of the transforms interpolator.
+     * @since 3.1
+     */
+    private final TransformsSettings transformsSettings;
+
+    /** Number of neighboring samples used for transforms interpolation.
+     * @since 3.1
+     */
+    private int transformsInterpolationNumber;
+
+    /** Number of dates memoized per thread for transforms (0 for no memoization).
+     * @since 3.1
+     */
+    private int transformsMemoSize;
+
     /** Create a non-configured builder.
      * <p>
      * The builder <em>must</em> be configured before calling the
@@ -171,11 +195,13 @@ public class RuggedBuilder {
      * </p>
      */
     public RuggedBuilder() {
-        sensors                     = new ArrayList<>();
-        constantElevation           = Double.NaN;
-        lightTimeCorrection         = true;
-        aberrationOfLightCorrection = true;
-        name                        = "Rugged";
+        sensors                       = new ArrayList<>();
+        constantElevation             = Double.NaN;
+        lightTimeCorrection           = true;
+        aberrationOfLightCorrection   = true;
+        name                          = "Rugged";
+        transformsInterpolationNumber = 1;
+        transformsSettings            = new TransformsSettings();
     }
 
     /** Set the reference ellipsoid.
@@ -393,6 +419,244 @@ public class RuggedBuilder {
         return overshootTolerance;
     }
 
+    /** Set the pool for parallel computation of the transforms interpolator.
+     * <p>
+     * Setting up the transforms interpolator for long time spans with small steps
+     * can be long, as it involves computing observed body frame to inertial frame
+     * transforms at each step. Providing a pool (for example {@link ForkJoinPool#commonPool()})
+     * allows to compute these transforms in parallel chunks. The inertial and observed
+     * body frames must be thread-safe, which is the case for all frames provided by
+     * Orekit. By default, no pool is set and computation is sequential.
+     * </p>
+     * <p>
+     * The pool is not used when the interpolator is loaded using
+     * {@link #setTrajectoryAndTimeSpan(InputStream)}. It cannot be used together with
+     * {@link #setLazyTransforms(int, int) lazy computation} or {@link
+     * #setAdaptiveTransforms(double, double, double) adaptive sampling}, {@link #build()}
+     * fails if these settings are combined.
+     * </p>
+     * @param newTransformsPool pool for parallel computation of the transforms interpolator
+     * (null for sequential computation)
+     * @return the builder instance
+     * @see #getTransformsPool()
+     * @since 3.1
+     */
+    public RuggedBuilder setTransformsPool(final ForkJoinPool newTransformsPool) {
+        transformsSettings.pool = newTransformsPool;
+        return this;
+    }
+
+    /** Get the pool for parallel computation of the transforms interpolator.
+     * @return pool for parallel computation of the transforms interpolator
+     * (null for sequential computation)
+     * @see #setTransformsPool(ForkJoinPool)
+     * @since 3.1
+     */
+    public ForkJoinPool getTransformsPool() {
+        return transformsSettings.pool;
+    }
+
+    /** Set the shared cache for observed body rotation transforms.
+     * <p>
+     * Transforms from observed body frame to inertial frame do not depend on the spacecraft.
+     * When several builders share the same cache and use the same inertial frame, ellipsoid
+     * body frame and {@link #setTimeSpan(AbsoluteDate, AbsoluteDate, double, double) time span},
+     * these transforms are computed only once, which is useful for constellations or for
+     * several instruments on the same spacecraft. The cache can be used only for transforms
+     * interpolators computed eagerly on evenly spaced samples, i.e. neither {@link
+     * #setLazyTransforms(int, int) lazily} nor with {@link #setAdaptiveTransforms(double,
+     * double, double) adaptive sampling}, {@link #build()} fails if these settings are combined.
+     * </p>
+     * @param newBodyRotationCache shared cache for observed body rotation transforms
+     * (null for no sharing, which is the default)
+     * @return the builder instance
+     * @see #getBodyRotationCache()
+     * @since 3.1
+     */
+    public RuggedBuilder setBodyRotationCache(final BodyRotationCache newBodyRotationCache) {
+        transformsSettings.cache = newBodyRotationCache;
+        return this;
+    }
+
+    /** Get the shared cache for observed body rotation transforms.
+     * @return shared cache for observed body rotation transforms (null for no sharing)
+     * @see #setBodyRotationCache(BodyRotationCache)
+     * @since 3.1
+     */
+    public BodyRotationCache getBodyRotationCache() {
+        return transformsSettings.cache;
+    }
+
+    /** Set up lazy computation of the transforms interpolator.
+     * <p>
+     * By default, all transforms of the interpolator are computed when it is created,
+     * so the creation time and memory are proportional to the time span divided by the
+     * step. When only a few dates of a long time span are really used, for example
+     * when refining with a few ground control points measured on a long acquisition,
+     * it is possible to compute transforms by segments of {@code segmentSize} samples
+     * on first access instead, keeping at most {@code maxSegments} segments in a least
+     * recently used cache. Results are the same as in eager mode. Lazy computation
+     * cannot be used together with a {@link #setTransformsPool(ForkJoinPool) pool}, a
+     * {@link #setBodyRotationCache(BodyRotationCache) shared body rotation cache} or
+     * {@link #setAdaptiveTransforms(double, double, double) adaptive sampling}, {@link
+     * #build()} fails if these settings are combined.
+     * </p>
+     * @param segmentSize number of samples in each segment (if not strictly positive,
+     * the interpolator is computed eagerly, which is the default)
+     * @param maxSegments maximum number of segments kept in the cache
+     * @return the builder instance
+     * @see #getLazySegmentSize()
+     * @see #getLazyMaxSegments()
+     * @since 3.1
+     */
+    public RuggedBuilder setLazyTransforms(final int segmentSize, final int maxSegments) {
+        transformsSettings.segmentSize = segmentSize;
+        transformsSettings.maxSegments = maxSegments;
+        return this;
+    }
+
+    /** Get the number of samples in each lazily computed segment of the transforms interpolator.
+     * @return number of samples in each segment (0 or negative if the interpolator is computed eagerly)
+     * @see #setLazyTransforms(int, int)
+     * @since 3.1
+     */
+    public int getLazySegmentSize() {
+        return transformsSettings.segmentSize;
+    }
+
+    /** Get the maximum number of lazily computed segments kept in the transforms interpolator.
+     * @return maximum number of segments kept in the cache
+     * @see #setLazyTransforms(int, int)
+     * @since 3.1
+     */
+    public int getLazyMaxSegments() {
+        return transformsSettings.maxSegments;
+    }
+
+    /** Set the number of neighboring samples used for transforms interpolation.
+     * <p>
+     * By default, transforms at any date are computed by shifting the closest
+     * sample of the transforms interpolator. Using several neighboring samples
+     * instead allows Hermite interpolation between them, and allows a time step
+     * about 2.5 times larger than the default at the same accuracy with two
+     * samples, up to about 10 times larger with six samples, see
+     * {@link SpacecraftToObservedBody#withInterpolationNumber(int)} for accuracy
+     * figures. This setting also applies to interpolators loaded using
+     * {@link #setTrajectoryAndTimeSpan(InputStream)}, as it is not stored with them,
+     * and to interpolators set using {@link #setTrajectoryAndTimeSpan(SpacecraftToObservedBody)},
+     * {@link AppendableSpacecraftToObservedBody appendable interpolators} still following
+     * the appends.
+     * </p>
+     * @param number number of neighboring samples to use for interpolation
+     * (if lower than 2, the closest sample is shifted, which is the default)
+     * @return the builder instance
+     * @see #getTransformsInterpolationNumber()
+     * @since 3.1
+     */
+    public RuggedBuilder setTransformsInterpolationNumber(final int number) {
+        this.transformsInterpolationNumber = FastMath.max(1, number);
+        return this;
+    }
+
+    /** Get the number of neighboring samples used for transforms interpolation.
+     * @return number of neighboring samples used for transforms interpolation
+     * @see #setTransformsInterpolationNumber(int)
+     * @since 3.1
+     */
+    public int getTransformsInterpolationNumber() {
+        return transformsInterpolationNumber;
+    }
+
+    /** Set the number of dates for which transforms are memoized in each thread.
+     * <p>
+     * Direct location, inverse location and LOS distance computations request
+     * the transforms at the same line dates many times. With memoization, the
+     * transforms at the last few dates used in each thread are kept, so repeated
+     * requests are served without interpolation, see {@link MemoizedSpacecraftToObservedBody}.
+     * A few dates are sufficient: inverse location for example alternates between
+     * at most a handful of lines per sensor as it converges. The hit rate can be
+     * monitored by casting {@link Rugged#getScToBody()} to {@link MemoizedSpacecraftToObservedBody}.
+     * </p>
+     * @param size number of dates memoized per thread (0 for no memoization, which is the default)
+     * @return the builder instance
+     * @see #getTransformsMemoSize()
+     * @since 3.1
+     */
+    public RuggedBuilder setTransformsMemoSize(final int size) {
+        this.transformsMemoSize = FastMath.max(0, size);
+        return this;
+    }
+
+    /** Get the number of dates for which transforms are memoized in each thread.
+     * @return number of dates memoized per thread (0 for no memoization)
+     * @see #setTransformsMemoSize(int)
+     * @since 3.1
+     */
+    public int getTransformsMemoSize() {
+        return transformsMemoSize;
+    }
+
+    /** Set up adaptive sampling of the transforms interpolator.
+     * <p>
+     * By default, the transforms interpolator samples are evenly spaced, using the
+     * step set by {@link #setTimeSpan(AbsoluteDate, AbsoluteDate, double, double)},
+     * which must therefore be small enough for the most agile parts of the acquisition.
+     * With adaptive sampling, this step is only the maximum step: samples are inserted,
+     * down to the minimum step, only where shifting the samples would exceed the tolerances,
+     * so quiet parts of the acquisition need fewer samples. Adaptive sampling is computed
+     * sequentially, it cannot be used together with a {@link #setTransformsPool(ForkJoinPool)
+     * pool}, a {@link #setBodyRotationCache(BodyRotationCache) shared body rotation cache} or
+     * {@link #setLazyTransforms(int, int) lazy computation}, {@link #build()} fails if these
+     * settings are combined. See {@link
+     * SpacecraftToObservedBody#SpacecraftToObservedBody(Frame, Frame, AbsoluteDate, AbsoluteDate,
+     * double, double, double, double, double, List, int, CartesianDerivativesFilter, List, int,
+     * AngularDerivativesFilter) the adaptive constructor} for details.
+     * </p>
+     * @param minStep minimum step between samples (if not strictly positive,
+     * samples are evenly spaced, which is the default)
+     * @param positionTolerance tolerance on translations (m)
+     * @param angleTolerance tolerance on rotations (rad)
+     * @return the builder instance
+     * @see #getAdaptiveMinStep()
+     * @see #getAdaptivePositionTolerance()
+     * @see #getAdaptiveAngleTolerance()
+     * @since 3.1
+     */
+    public RuggedBuilder setAdaptiveTransforms(final double minStep,
+                                               final double positionTolerance, final double angleTolerance) {
+        transformsSettings.minStep           = minStep;
+        transformsSettings.positionTolerance = positionTolerance;
+        transformsSettings.angleTolerance    = angleTolerance;
+        return this;
+    }
+
+    /** Get the minimum step for adaptive sampling of the transforms interpolator.
+     * @return minimum step between samples (0 or negative for evenly spaced samples)
+     * @see #setAdaptiveTransforms(double, double, double)
+     * @since 3.1
+     */
+    public double getAdaptiveMinStep() {
+        return transformsSettings.minStep;
+    }
+
+    /** Get the tolerance on translations for adaptive sampling of the transforms interpolator.
+     * @return tolerance on translations (m)
+     * @see #setAdaptiveTransforms(double, double, double)
+     * @since 3.1
+     */
+    public double getAdaptivePositionTolerance() {
+        return transformsSettings.positionTolerance;
+    }
+
+    /** Get the tolerance on rotations for adaptive sampling of the transforms interpolator.
+     * @return tolerance on rotations (rad)
+     * @see #setAdaptiveTransforms(double, double, double)
+     * @since 3.1
+     */
+    public double getAdaptiveAngleTolerance() {
+        return transformsSettings.angleTolerance;
+    }
+
     /** Set the spacecraft trajectory.
      * <p>
      * This method set only the trajectory and not the time span, therefore it
@@ -581,24 +845,7 @@ public class RuggedBuilder {
     public RuggedBuilder setTrajectoryAndTimeSpan(final InputStream storageStream) {
 
         try {
-            this.inertial           = null;
-            this.pvSample           = null;
-            this.pvNeighborsSize    = -1;
-            this.pvDerivatives      = null;
-            this.aSample            = null;
-            this.aNeighborsSize     = -1;
-            this.aDerivatives       = null;
-            this.pvaPropagator      = null;
-            this.iStep              = Double.NaN;
-            this.iN                 = -1;
-            this.scToBody           = (SpacecraftToObservedBody) new ObjectInputStream(storageStream).readObject();
-            this.minDate            = scToBody.getMinDate();
-            this.maxDate            = scToBody.getMaxDate();
-            this.tStep              = scToBody.getTStep();
-            this.overshootTolerance = scToBody.getOvershootTolerance();
-            checkFramesConsistency();
-            return this;
-
+            return setInterpolator((SpacecraftToObservedBody) new ObjectInputStream(storageStream).readObject());
         } catch (ClassNotFoundException cnfe) {
             throw new RuggedException(cnfe, RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
         } catch (ClassCastException cce) {
@@ -608,6 +855,85 @@ public class RuggedBuilder {
         }
     }
 
+    /** Set both the spacecraft trajectory and the time span from a binary interpolator dump.
+     * <p>
+     * This method is similar to {@link #setTrajectoryAndTimeSpan(InputStream)}, but reads
+     * data in the binary format written by {@link #storeBinaryInterpolator(OutputStream)}.
+     * The transforms sample is not copied, it is read from the buffer when used, so the
+     * buffer content must not be changed as long as the built {@link Rugged} instance is used.
+     * </p>
+     * @param storage buffer containing a {@link #storeBinaryInterpolator(OutputStream)
+     * stored binary interpolator}, starting at its current position
+     * @return the builder instance
+     * @see #setTrajectoryAndTimeSpan(File)
+     * @see #storeBinaryInterpolator(OutputStream)
+     * @since 3.1
+     */
+    public RuggedBuilder setTrajectoryAndTimeSpan(final ByteBuffer storage) {
+        return setInterpolator(SpacecraftToObservedBody.readBinary(storage));
+    }
+
+    /** Set both the spacecraft trajectory and the time span from a binary interpolator dump file.
+     * <p>
+     * The file is memory-mapped, so only the header is read at once and the transforms sample
+     * is loaded lazily from the file as it is used. This is the fastest way to reuse
+     * an interpolator built in another run.
+     * </p>
+     * @param storageFile file containing a {@link #storeBinaryInterpolator(OutputStream)
+     * stored binary interpolator}
+     * @return the builder instance
+     * @see #setTrajectoryAndTimeSpan(ByteBuffer)
+     * @see #storeBinaryInterpolator(OutputStream)
+     * @since 3.1
+     */
+    public RuggedBuilder setTrajectoryAndTimeSpan(final File storageFile) {
+        try (FileChannel channel = FileChannel.open(storageFile.toPath(), StandardOpenOption.READ)) {
+            return setTrajectoryAndTimeSpan(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException ioe) {
+            throw new RuggedException(ioe, RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+        }
+    }
+
+    /** Set both the spacecraft trajectory and the time span from an already built interpolator.
+     * <p>
+     * The interpolator is used as is by the built {@link Rugged} instance. This allows
+     * for example to use an {@link AppendableSpacecraftToObservedBody appendable interpolator}
+     * for live processing, the {@link Rugged} instance following the time span extensions
+     * without being rebuilt.
+     * </p>
+     * @param interpolator transforms interpolator
+     * @return the builder instance
+     * @see AppendableSpacecraftToObservedBody
+     * @since 3.1
+     */
+    public RuggedBuilder setTrajectoryAndTimeSpan(final SpacecraftToObservedBody interpolator) {
+        return setInterpolator(interpolator);
+    }
+
+    /** Set the transforms interpolator, resetting the individual trajectory and time span settings.
+     * @param interpolator transforms interpolator
+     * @return the builder instance
+     */
+    private RuggedBuilder setInterpolator(final SpacecraftToObservedBody interpolator) {
+        this.inertial           = null;
+        this.pvSample           = null;
+        this.pvNeighborsSize    = -1;
+        this.pvDerivatives      = null;
+        this.aSample            = null;
+        this.aNeighborsSize     = -1;
+        this.aDerivatives       = null;
+        this.pvaPropagator      = null;
+        this.iStep              = Double.NaN;
+        this.iN                 = -1;
+        this.scToBody           = interpolator;
+        this.minDate            = scToBody.getMinDate();
+        this.maxDate            = scToBody.getMaxDate();
+        this.tStep              = scToBody.getTStep();
+        this.overshootTolerance = scToBody.getOvershootTolerance();
+        checkFramesConsistency();
+        return this;
+    }
+
     /** Store frames transform interpolator.
      * <p>
      * This method allows to reuse the interpolator built in one instance, to build
@@ -637,6 +963,34 @@ public class RuggedBuilder {
         }
     }
 
+    /** Store frames transform interpolator in binary format.
+     * <p>
+     * This method is similar to {@link #storeInterpolator(OutputStream)}, but uses a compact
+     * versioned binary format (a small header followed by packed doubles) instead of Java
+     * serialization. Data stored this way is reloaded using either {@link
+     * #setTrajectoryAndTimeSpan(File)}, which memory-maps the file and loads data lazily,
+     * or {@link #setTrajectoryAndTimeSpan(ByteBuffer)}. Only inertial and body frames
+     * managed by {@link org.orekit.frames.FramesFactory FramesFactory} can be stored.
+     * </p>
+     * <p>
+     * This method must be called <em>after</em> both the ellipsoid and trajectory have been set.
+     * </p>
+     * @param storageStream stream where to store the interpolator
+     * (caller opened it and remains responsible for closing it)
+     * @see #storeInterpolator(OutputStream)
+     * @see #setTrajectoryAndTimeSpan(File)
+     * @see #setTrajectoryAndTimeSpan(ByteBuffer)
+     * @since 3.1
+     */
+    public void storeBinaryInterpolator(final OutputStream storageStream) {
+        try {
+            createInterpolatorIfNeeded();
+            scToBody.writeBinary(storageStream);
+        } catch (IOException ioe) {
+            throw new RuggedException(ioe, LocalizedCoreFormats.SIMPLE_MESSAGE, ioe.getMessage());
+        }
+    }
+
     /** Check frames consistency.
      */
     private void checkFramesConsistency() {
@@ -658,52 +1012,23 @@ public class RuggedBuilder {
 
         if (scToBody == null) {
             if (pvSample != null) {
-                scToBody = createInterpolator(inertial, ellipsoid.getBodyFrame(),
-                                              minDate, maxDate, tStep, overshootTolerance,
-                                              pvSample, pvNeighborsSize, pvDerivatives,
-                                              aSample, aNeighborsSize, aDerivatives);
+                transformsSettings.checkConsistency();
+                scToBody = transformsSettings.createInterpolator(inertial, ellipsoid.getBodyFrame(),
+                                                                 minDate, maxDate, tStep, overshootTolerance,
+                                                                 pvSample, pvNeighborsSize, pvDerivatives,
+                                                                 aSample, aNeighborsSize, aDerivatives);
             } else if (pvaPropagator != null) {
+                transformsSettings.checkConsistency();
                 scToBody = createInterpolator(inertial, ellipsoid.getBodyFrame(),
                                               minDate, maxDate, tStep, overshootTolerance,
-                                              iStep, iN, pvDerivatives, aDerivatives, pvaPropagator);
+                                              iStep, iN, pvDerivatives, aDerivatives, pvaPropagator,
+                                              transformsSettings);
             } else {
                 throw new RuggedException(RuggedMessages.UNINITIALIZED_CONTEXT, "RuggedBuilder.setTrajectory()");
             }
         }
     }
 
-    /** Create a transform interpolator from positions and quaternions lists.
-     * @param inertialFrame inertial frame
-     * @param bodyFrame observed body frame
-     * @param minDate start of search time span
-     * @param maxDate end of search time span
-     * @param tStep step to use for inertial frame to body frame transforms cache computations
-     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
-     * @param positionsVelocities satellite position and velocity
-     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
-     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
-     * @param quaternions satellite quaternions
-     * @param aInterpolationNumber number of points to use for attitude interpolation
-     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
-     * @return transforms interpolator
-     */
-    private static SpacecraftToObservedBody createInterpolator(final Frame inertialFrame, final Frame bodyFrame,
-                                                               final AbsoluteDate minDate, final AbsoluteDate maxDate,
-                                                               final double tStep, final double overshootTolerance,
-                                                               final List<TimeStampedPVCoordinates> positionsVelocities,
-                                                               final int pvInterpolationNumber,
-                                                               final CartesianDerivativesFilter pvFilter,
-                                                               final List<TimeStampedAngularCoordinates> quaternions,
-                                                               final int aInterpolationNumber,
-                                                               final AngularDerivativesFilter aFilter) {
-
-        return new SpacecraftToObservedBody(inertialFrame, bodyFrame,
-                                            minDate, maxDate, tStep, overshootTolerance,
-                                            positionsVelocities, pvInterpolationNumber,
-                                            pvFilter, quaternions, aInterpolationNumber,
-                                            aFilter);
-    }
-
     /** Create a transform interpolator from a propagator.
      * @param inertialFrame inertial frame
      * @param bodyFrame observed body frame
@@ -716,6 +1041,7 @@ public class RuggedBuilder {
      * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
      * @param aFilter filter for derivatives from the sample to use in attitude interpolation
      * @param propagator global propagator
+     * @param settings settings for the computation mode of the transforms interpolator
      * @return transforms interpolator
      */
     private static SpacecraftToObservedBody createInterpolator(final Frame inertialFrame, final Frame bodyFrame,
@@ -724,7 +1050,8 @@ public class RuggedBuilder {
                                                                final double interpolationStep, final int interpolationNumber,
                                                                final CartesianDerivativesFilter pvFilter,
                                                                final AngularDerivativesFilter aFilter,
-                                                               final Propagator propagator) {
+                                                               final Propagator propagator,
+                                                               final TransformsSettings settings) {
 
         // extract position/attitude samples from propagator
         final List<TimeStampedPVCoordinates> positionsVelocities =
@@ -742,7 +1069,7 @@ public class RuggedBuilder {
         propagator.propagate(minDate.shiftedBy(-interpolationStep), maxDate.shiftedBy(interpolationStep));
 
         // orbit/attitude to body converter
-        return createInterpolator(inertialFrame, bodyFrame,
+        return settings.createInterpolator(inertialFrame, bodyFrame,
                 minDate, maxDate, tStep, overshootTolerance,
                 positionsVelocities, interpolationNumber,
                 pvFilter, quaternions, interpolationNumber,
@@ -980,7 +1307,135 @@ public class RuggedBuilder {
             }
         }
         createInterpolatorIfNeeded();
+        final SpacecraftToObservedBody interpolated =
+                        transformsInterpolationNumber > 1 ?
+                        scToBody.withInterpolationNumber(transformsInterpolationNumber) :
+                        scToBody;
+        final SpacecraftToObservedBody interpolator =
+                        transformsMemoSize > 0 ?
+                        new MemoizedSpacecraftToObservedBody(interpolated, transformsMemoSize) :
+                        interpolated;
         return new Rugged(createAlgorithm(algorithmID, tileUpdater, maxCachedTiles, constantElevation), ellipsoid,
-                          lightTimeCorrection, aberrationOfLightCorrection, atmosphericRefraction, scToBody, sensors, name);
+                          lightTimeCorrection, aberrationOfLightCorrection, atmosphericRefraction, interpolator, sensors, name);
+    }
+
+    /** Settings for the computation mode of the transforms interpolator.
+     * <p>
+     * The interpolator is computed either eagerly on evenly spaced samples (possibly
+     * in parallel and with a shared body rotation cache), or lazily by segments, or
+     * with adaptive sampling. These modes are mutually exclusive.
+     * </p>
+     * @since 3.1
+     */
+    private static class TransformsSettings {
+
+        /** Name of the setter for lazy computation. */
+        private static final String LAZY = "RuggedBuilder.setLazyTransforms()";
+
+        /** Name of the setter for adaptive sampling. */
+        private static final String ADAPTIVE = "RuggedBuilder.setAdaptiveTransforms()";
+
+        /** Pool for parallel computation (null for sequential computation). */
+        private ForkJoinPool pool;
+
+        /** Shared cache for observed body rotation transforms (null for no sharing). */
+        private BodyRotationCache cache;
+
+        /** Number of samples in each lazily computed segment (0 for eager computation). */
+        private int segmentSize;
+
+        /** Maximum number of lazily computed segments kept in the cache. */
+        private int maxSegments;
+
+        /** Minimum step for adaptive sampling (0 for evenly spaced samples). */
+        private double minStep;
+
+        /** Tolerance on translations for adaptive sampling (m). */
+        private double positionTolerance;
+
+        /** Tolerance on rotations for adaptive sampling (rad). */
+        private double angleTolerance;
+
+        /** Check if lazy computation is requested.
+         * @return true if lazy computation is requested
+         */
+        boolean isLazy() {
+            return segmentSize > 0;
+        }
+
+        /** Check if adaptive sampling is requested.
+         * @return true if adaptive sampling is requested
+         */
+        boolean isAdaptive() {
+            return minStep > 0;
+        }
+
+        /** Check that settings for incompatible modes have not been combined.
+         */
+        void checkConsistency() {
+            if (isAdaptive() && isLazy()) {
+                throw new RuggedException(RuggedMessages.INCOMPATIBLE_TRANSFORMS_SETTINGS,
+                                          ADAPTIVE, LAZY);
+            }
+            if (isAdaptive() || isLazy()) {
+                final String mode = isAdaptive() ? ADAPTIVE : LAZY;
+                if (pool != null) {
+                    throw new RuggedException(RuggedMessages.INCOMPATIBLE_TRANSFORMS_SETTINGS,
+                                              mode, "RuggedBuilder.setTransformsPool()");
+                }
+                if (cache != null) {
+                    throw new RuggedException(RuggedMessages.INCOMPATIBLE_TRANSFORMS_SETTINGS,
+                                              mode, "RuggedBuilder.setBodyRotationCache()");
+                }
+            }
+        }
+
+        /** Create a transform interpolator from positions and quaternions lists.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param minDate start of search time span
+         * @param maxDate end of search time span
+         * @param tStep step to use for inertial frame to body frame transforms cache computations
+         * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+         * @param positionsVelocities satellite position and velocity
+         * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+         * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+         * @param quaternions satellite quaternions
+         * @param aInterpolationNumber number of points to use for attitude interpolation
+         * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+         * @return transforms interpolator
+         */
+        SpacecraftToObservedBody createInterpolator(final Frame inertialFrame, final Frame bodyFrame,
+                                                    final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                                                    final double tStep, final double overshootTolerance,
+                                                    final List<TimeStampedPVCoordinates> positionsVelocities,
+                                                    final int pvInterpolationNumber,
+                                                    final CartesianDerivativesFilter pvFilter,
+                                                    final List<TimeStampedAngularCoordinates> quaternions,
+                                                    final int aInterpolationNumber,
+                                                    final AngularDerivativesFilter aFilter) {
+            if (isAdaptive()) {
+                return new SpacecraftToObservedBody(inertialFrame, bodyFrame,
+                                                    minDate, maxDate, tStep, minStep,
+                                                    positionTolerance, angleTolerance, overshootTolerance,
+                                                    positionsVelocities, pvInterpolationNumber,
+                                                    pvFilter, quaternions, aInterpolationNumber,
+                                                    aFilter);
+            } else if (isLazy()) {
+                return new SpacecraftToObservedBody(inertialFrame, bodyFrame,
+                                                    minDate, maxDate, tStep, overshootTolerance,
+                                                    positionsVelocities, pvInterpolationNumber,
+                                                    pvFilter, quaternions, aInterpolationNumber,
+                                                    aFilter, segmentSize, maxSegments);
+            } else {
+                return new SpacecraftToObservedBody(inertialFrame, bodyFrame,
+                                                    minDate, maxDate, tStep, overshootTolerance,
+                                                    positionsVelocities, pvInterpolationNumber,
+                                                    pvFilter, quaternions, aInterpolationNumber,
+                                                    aFilter, pool, cache);
+            }
+        }
+
     }
+
 }
@@ -86,7 +86,13 @@ public enum RuggedMessages implements Localizable {
     INVALID_STEP("step {0} is not valid : {1}"),
     INVALID_RANGE_FOR_LINES("range between min line {0} and max line {1} is invalid {2}"),
     SENSOR_PIXEL_NOT_FOUND_IN_RANGE_LINES("impossible to find sensor pixel in given range lines (with atmospheric refraction) between lines {0} and {1}"),
-    SENSOR_PIXEL_NOT_FOUND_IN_PIXELS_LINE("impossible to find sensor pixel: pixel {0} outside interval [ {1} , {2} [ (with atmospheric refraction margin = {3})");
+    SENSOR_PIXEL_NOT_FOUND_IN_PIXELS_LINE("impossible to find sensor pixel: pixel {0} outside interval [ {1} , {2} [ (with atmospheric refraction margin = {3})"),
+    UNSUPPORTED_INTERPOLATOR_DUMP_VERSION("unsupported interpolator dump format version {0}, expected version {1}"),
+    UNSUPPORTED_INTERPOLATOR_DUMP_FRAME("frame {0} is not a predefined frame, it cannot be stored in a binary interpolator dump"),
+    NOT_CORRECTION_GRID_DUMP_DATA("data is not an atmospheric correction grid dump"),
+    INCOMPATIBLE_CORRECTION_GRID("correction grid computed with pixel step {0}, line step {1} and refraction model {2} cannot be used with pixel step {3}, line step {4} and refraction model {5}"),
+    INCOMPATIBLE_TRANSFORMS_SETTINGS("transforms interpolator setting {0} cannot be used together with {1}"),
+    INVALID_TABULATION_TIME_SPAN("invalid tabulation time span: end {1} is not after start {0}");
 
 
     // CHECKSTYLE: resume JavadocVariable check
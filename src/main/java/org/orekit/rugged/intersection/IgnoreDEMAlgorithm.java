@@ -49,6 +49,34 @@ public class IgnoreDEMAlgorithm implements IntersectionAlgorithm {
         return ellipsoid.pointOnGround(position, los, 0.0);
     }
 
+    /** Compute intersections of several lines with the ellipsoid.
+     * <p>
+     * This method is a batch version of {@link #intersection(ExtendedEllipsoid, Vector3D, Vector3D)},
+     * with lines and results stored as structures of arrays of primitive doubles.
+     * Lines that do not reach ground have their results set to {@code Double.NaN}.
+     * </p>
+     * @param ellipsoid reference ellipsoid
+     * @param px abscissae of pixels positions in ellipsoid frame
+     * @param py ordinates of pixels positions in ellipsoid frame
+     * @param pz heights of pixels positions in ellipsoid frame
+     * @param lx abscissae of pixels lines-of-sight in ellipsoid frame
+     * @param ly ordinates of pixels lines-of-sight in ellipsoid frame
+     * @param lz heights of pixels lines-of-sight in ellipsoid frame
+     * @param latitude placeholder for intersections latitudes, must have the same length as px
+     * @param longitude placeholder for intersections longitudes, must have the same length as px
+     * @param altitude placeholder for intersections altitudes, must have the same length as px
+     * @see ExtendedEllipsoid#pointsAtAltitude(double[], double[], double[], double[], double[], double[],
+     * double, double[], double[], double[])
+     * @since 3.1
+     */
+    public void intersection(final ExtendedEllipsoid ellipsoid,
+                             final double[] px, final double[] py, final double[] pz,
+                             final double[] lx, final double[] ly, final double[] lz,
+                             final double[] latitude, final double[] longitude, final double[] altitude) {
+        DumpManager.dumpAlgorithm(this.algorithmId);
+        ellipsoid.pointsAtAltitude(px, py, pz, lx, ly, lz, 0.0, latitude, longitude, altitude);
+    }
+
     /** {@inheritDoc} */
     @Override
     public NormalizedGeodeticPoint refineIntersection(final ExtendedEllipsoid ellipsoid,
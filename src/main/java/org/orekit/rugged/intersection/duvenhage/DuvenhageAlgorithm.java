@@ -16,9 +16,11 @@
  */
 package org.orekit.rugged.intersection.duvenhage;
 
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
 import org.orekit.bodies.GeodeticPoint;
+import org.orekit.errors.OrekitException;
 import org.orekit.rugged.api.AlgorithmId;
 import org.orekit.rugged.errors.DumpManager;
 import org.orekit.rugged.errors.RuggedException;
@@ -86,8 +88,99 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
 
         DumpManager.dumpAlgorithm(this.algorithmId);
 
+        final RuggedMessages[] failure = new RuggedMessages[1];
+        final NormalizedGeodeticPoint intersection = findIntersection(ellipsoid, position, los, failure, 0);
+        if (intersection == null) {
+            throw new RuggedException(failure[0]);
+        }
+        return intersection;
+
+    }
+
+    /** Compute intersections of several lines with Digital Elevation Model.
+     * <p>
+     * This method is a batch version of {@link #intersection(ExtendedEllipsoid, Vector3D, Vector3D)},
+     * with lines and results stored as structures of arrays of primitive doubles. Ordinary
+     * failures (lines of sight missing ground or entering Digital Elevation Model behind
+     * spacecraft) do not trigger exceptions, they are reported per pixel in the {@code failures}
+     * array, and the corresponding results are set to {@code Double.NaN}. Successful pixels
+     * have a null failure code.
+     * </p>
+     * <p>
+     * As for the single line version, the results are only close guesses that should
+     * be refined using {@link #refineIntersection(ExtendedEllipsoid, Vector3D, Vector3D,
+     * NormalizedGeodeticPoint) refineIntersection}.
+     * </p>
+     * @param ellipsoid reference ellipsoid
+     * @param px abscissae of pixels positions in ellipsoid frame
+     * @param py ordinates of pixels positions in ellipsoid frame
+     * @param pz heights of pixels positions in ellipsoid frame
+     * @param lx abscissae of pixels lines-of-sight in ellipsoid frame
+     * @param ly ordinates of pixels lines-of-sight in ellipsoid frame
+     * @param lz heights of pixels lines-of-sight in ellipsoid frame
+     * @param latitude placeholder for intersections latitudes, must have the same length as px
+     * @param longitude placeholder for intersections longitudes, must have the same length as px
+     * @param altitude placeholder for intersections altitudes, must have the same length as px
+     * @param failures placeholder for failure codes (null for successful pixels),
+     * must have the same length as px
+     * @since 3.1
+     */
+    public void intersection(final ExtendedEllipsoid ellipsoid,
+                             final double[] px, final double[] py, final double[] pz,
+                             final double[] lx, final double[] ly, final double[] lz,
+                             final double[] latitude, final double[] longitude, final double[] altitude,
+                             final RuggedMessages[] failures) {
+
+        DumpManager.dumpAlgorithm(this.algorithmId);
+
+        final int n = px.length;
+        for (final int length : new int[] {
+            py.length, pz.length, lx.length, ly.length, lz.length,
+            latitude.length, longitude.length, altitude.length, failures.length
+        }) {
+            if (length != n) {
+                throw new OrekitException(LocalizedCoreFormats.DIMENSIONS_MISMATCH, length, n);
+            }
+        }
+
+        for (int i = 0; i < n; ++i) {
+            final NormalizedGeodeticPoint gp = findIntersection(ellipsoid,
+                                                                new Vector3D(px[i], py[i], pz[i]),
+                                                                new Vector3D(lx[i], ly[i], lz[i]),
+                                                                failures, i);
+            if (gp == null) {
+                latitude[i]  = Double.NaN;
+                longitude[i] = Double.NaN;
+                altitude[i]  = Double.NaN;
+            } else {
+                failures[i]  = null;
+                latitude[i]  = gp.getLatitude();
+                longitude[i] = gp.getLongitude();
+                altitude[i]  = gp.getAltitude();
+            }
+        }
+
+    }
+
+    /** Compute intersection of line with Digital Elevation Model, without exceptions for ordinary failures.
+     * @param ellipsoid reference ellipsoid
+     * @param position pixel position in ellipsoid frame
+     * @param los pixel line-of-sight in ellipsoid frame
+     * @param failures placeholder for failure codes
+     * @param index index at which failure code should be stored in case of failure
+     * @return point at which the line first enters ground, or null if an ordinary failure occurred
+     * @since 3.1
+     */
+    private NormalizedGeodeticPoint findIntersection(final ExtendedEllipsoid ellipsoid,
+                                                     final Vector3D position, final Vector3D los,
+                                                     final RuggedMessages[] failures, final int index) {
+
         // compute intersection with ellipsoid
-        final NormalizedGeodeticPoint gp0 = ellipsoid.pointOnGround(position, los, 0.0);
+        final NormalizedGeodeticPoint gp0 = ellipsoid.pointOnGroundOrNull(position, los, 0.0);
+        if (gp0 == null) {
+            failures[index] = RuggedMessages.LINE_OF_SIGHT_DOES_NOT_REACH_GROUND;
+            return null;
+        }
 
         // locate the entry tile along the line-of-sight
         MinMaxTreeTile tile = cache.getTile(gp0.getLatitude(), gp0.getLongitude());
@@ -102,24 +195,16 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
                 // the entry point is behind spacecraft!
 
                 // let's see if at least we are above DEM
-                try {
-                    final NormalizedGeodeticPoint positionGP =
-                                    ellipsoid.transform(position, ellipsoid.getBodyFrame(), null, tile.getMinimumLongitude());
-                    final double elevationAtPosition = tile.interpolateElevation(positionGP.getLatitude(), positionGP.getLongitude());
-                    if (positionGP.getAltitude() >= elevationAtPosition) {
-                        // we can use the current position as the entry point
-                        current = positionGP;
-                    } else {
-                        current = null;
-                    }
-                } catch (RuggedException re) {
-                    if (re.getSpecifier() == RuggedMessages.OUT_OF_TILE_ANGLES) {
-                        current = null;
-                    }
-                }
-
-                if (current == null) {
-                    throw new RuggedException(RuggedMessages.DEM_ENTRY_POINT_IS_BEHIND_SPACECRAFT);
+                // (elevation is NaN if position is out of tile, and then the test fails)
+                final NormalizedGeodeticPoint positionGP =
+                                ellipsoid.transform(position, ellipsoid.getBodyFrame(), null, tile.getMinimumLongitude());
+                final double elevationAtPosition = tile.interpolateElevationOrNaN(positionGP.getLatitude(), positionGP.getLongitude());
+                if (positionGP.getAltitude() >= elevationAtPosition) {
+                    // we can use the current position as the entry point
+                    current = positionGP;
+                } else {
+                    failures[index] = RuggedMessages.DEM_ENTRY_POINT_IS_BEHIND_SPACECRAFT;
+                    return null;
                 }
 
             } else {
@@ -165,11 +250,12 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
                 // no intersection on this tile, we can proceed to next part of the line-of-sight
 
                 // select next tile after current point
-                final Vector3D forward = new Vector3D(1.0, ellipsoid.transform(exit.getPoint()), STEP, los);
+                // (the line-of-sight is not necessarily normalized)
+                final Vector3D forward = new Vector3D(1.0, ellipsoid.transform(exit.getPoint()), STEP / los.getNorm(), los);
                 current = ellipsoid.transform(forward, ellipsoid.getBodyFrame(), null, tile.getMinimumLongitude());
                 tile = cache.getTile(current.getLatitude(), current.getLongitude());
 
-                if (tile.interpolateElevation(current.getLatitude(), current.getLongitude()) >= current.getAltitude()) {
+                if (tile.interpolateElevationOrNaN(current.getLatitude(), current.getLongitude()) >= current.getAltitude()) {
                     // extremely rare case! The line-of-sight traversed the Digital Elevation Model
                     // during the very short forward step we used to move to next tile
                     // we consider this point to be OK
@@ -254,13 +340,13 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
                     final Vector3D cellExit = new Vector3D(1, selectClosest(latitudeCrossing(ellipsoid, projectedP,  los, cellBoundaryLatitude,  projectedP),
                                                                             longitudeCrossing(ellipsoid, projectedP, los, cellBoundaryLongitude, projectedP),
                                                                             projectedP),
-                                                           STEP, los);
+                                                           STEP / los.getNorm(), los);
                     final GeodeticPoint egp = ellipsoid.transform(cellExit, ellipsoid.getBodyFrame(), null);
                     final NormalizedGeodeticPoint cellExitGP = new NormalizedGeodeticPoint(egp.getLatitude(),
                                                                                            egp.getLongitude(),
                                                                                            egp.getAltitude(),
                                                                                            currentGuess.getLongitude());
-                    if (tile.interpolateElevation(cellExitGP.getLatitude(), cellExitGP.getLongitude()) >= cellExitGP.getAltitude()) {
+                    if (tile.interpolateElevationOrNaN(cellExitGP.getLatitude(), cellExitGP.getLongitude()) >= cellExitGP.getAltitude()) {
                         // extremely rare case! The line-of-sight traversed the Digital Elevation Model
                         // during the very short forward step we used to move to next cell
                         // we consider this point to be OK
@@ -360,14 +446,12 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
 
                     NormalizedGeodeticPoint crossingGP = null;
                     if (!flatBody) {
-                        try {
-                            // full computation of crossing point
-                            final Vector3D crossingP = ellipsoid.pointAtLongitude(position, los, longitude);
+                        // full computation of crossing point
+                        // (in some very rare cases of numerical noise, we miss the crossing point)
+                        final Vector3D crossingP = ellipsoid.pointAtLongitudeOrNull(position, los, longitude);
+                        if (crossingP != null) {
                             crossingGP = ellipsoid.transform(crossingP, ellipsoid.getBodyFrame(), null,
                                                              tile.getMinimumLongitude());
-                        } catch (RuggedException re) {
-                            // in some very rare cases of numerical noise, we miss the crossing point
-                            crossingGP = null;
                         }
                     }
                     if (crossingGP == null) {
@@ -429,15 +513,13 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
                     NormalizedGeodeticPoint crossingGP = null;
                     if (!flatBody) {
                         // full computation of crossing point
-                        try {
-                            final Vector3D crossingP = ellipsoid.pointAtLatitude(position, los,
-                                                                                 tile.getLatitudeAtIndex(crossingLat),
-                                                                                 ellipsoid.transform(entry));
+                        // (in some very rare cases of numerical noise, we miss the crossing point)
+                        final Vector3D crossingP = ellipsoid.pointAtLatitudeOrNull(position, los,
+                                                                                   tile.getLatitudeAtIndex(crossingLat),
+                                                                                   ellipsoid.transform(entry));
+                        if (crossingP != null) {
                             crossingGP = ellipsoid.transform(crossingP, ellipsoid.getBodyFrame(), null,
                                                              tile.getMinimumLongitude());
-                        } catch (RuggedException re) {
-                            // in some very rare cases of numerical noise, we miss the crossing point
-                            crossingGP = null;
                         }
                     }
                     if (crossingGP == null) {
@@ -674,11 +756,8 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
     private Vector3D latitudeCrossing(final ExtendedEllipsoid ellipsoid,
                                       final Vector3D position, final Vector3D los,
                                       final double latitude, final Vector3D closeReference) {
-        try {
-            return ellipsoid.pointAtLatitude(position, los, latitude, closeReference);
-        } catch (RuggedException re) {
-            return closeReference;
-        }
+        final Vector3D crossing = ellipsoid.pointAtLatitudeOrNull(position, los, latitude, closeReference);
+        return crossing == null ? closeReference : crossing;
     }
 
     /** Get point at some latitude along a pixel line of sight.
@@ -693,11 +772,8 @@ public class DuvenhageAlgorithm implements IntersectionAlgorithm {
     private Vector3D longitudeCrossing(final ExtendedEllipsoid ellipsoid,
                                        final Vector3D position, final Vector3D los,
                                        final double longitude, final Vector3D closeReference) {
-        try {
-            return ellipsoid.pointAtLongitude(position, los, longitude);
-        } catch (RuggedException re) {
-            return closeReference;
-        }
+        final Vector3D crossing = ellipsoid.pointAtLongitudeOrNull(position, los, longitude);
+        return crossing == null ? closeReference : crossing;
     }
 
     /** Point at tile boundary. */
@@ -20,6 +20,7 @@ import org.orekit.time.AbsoluteDate;
 
 /** Interface representing line datation model.
  * @see LinearLineDatation
+ * @see TabulatedLineDatation
  * @author Luc Maisonobe
  */
 public interface LineDatation {
@@ -111,6 +111,27 @@ public class LineSensor {
         return interpolatedLos;
     }
 
+    /** Get the pixel normalized line-of-sight at some date and fractional pixel index.
+     * <p>
+     * Contrary to {@link #getLOS(AbsoluteDate, double)}, the line-of-sight is normalized,
+     * and it is evaluated by {@link TimeDependentLOS#getLOS(double, AbsoluteDate)}, which
+     * may use a sub-pixel model of the lines-of-sight. When dump is active, the two
+     * surrounding pixels are evaluated and dumped separately, so replay remains possible.
+     * </p>
+     * @param date current date
+     * @param i fractional pixel index
+     * @return pixel normalized line-of-sight
+     * @since 3.1
+     */
+    public Vector3D getSubPixelLOS(final AbsoluteDate date, final double i) {
+        if (DumpManager.isActive()) {
+            final int iInf = FastMath.max(0, FastMath.min(getNbPixels() - 2, (int) FastMath.floor(i)));
+            final int iSup = iInf + 1;
+            return new Vector3D(iSup - i, getLOS(date, iInf), i - iInf, getLOS(date, iSup)).normalize();
+        }
+        return los.getLOS(i, date);
+    }
+
     /** Get the pixel normalized line-of-sight at some date,
      * and their derivatives with respect to estimated parameters.
      * @param <T> derivative type
@@ -369,6 +369,62 @@ public class SensorMeanPlaneCrossing {
             }
         }
 
+        return search(target, crossingLine, bodyToInert, scToInert);
+
+    }
+
+    /** Find mean plane crossing, starting from a close guess of the crossing line.
+     * <p>
+     * This method is intended for targets that are searched for several times
+     * with only slight geometry changes in between, as for example the ground
+     * control points between two iterations of a refining process. The line found
+     * for such a target at previous call is a much better start point than the one
+     * guessed from other targets, and the search generally converges in one or
+     * two evaluations.
+     * </p>
+     * <p>
+     * The guess is used only if it is within the search interval. If the search
+     * started from the guess fails, a regular {@link #find(Vector3D) find} is
+     * attempted, so a bad guess costs some evaluations but does not change the result.
+     * </p>
+     * @param target target ground point
+     * @param lineGuess close guess for the crossing line (may be NaN if no guess is available)
+     * @return line number and target direction at mean plane crossing,
+     * or null if search interval does not bracket a solution
+     * @since 3.1
+     */
+    public CrossingResult find(final Vector3D target, final double lineGuess) {
+
+        if (lineGuess >= minLine && lineGuess <= maxLine) {
+            final AbsoluteDate   date   = sensor.getDate(lineGuess);
+            final CrossingResult result = search(target, lineGuess,
+                                                 scToBody.getBodyToInertial(date),
+                                                 scToBody.getScToInertial(date));
+            if (result != null) {
+                return result;
+            }
+        }
+
+        // no guess, or the guess was misleading
+        return find(target);
+
+    }
+
+    /** Find mean plane crossing from a specified start line.
+     * @param target target ground point
+     * @param startLine start line for the search
+     * @param startBodyToInert transform from observed body to inertial frame, for start line
+     * @param startScToInert transform from inertial frame to spacecraft frame, for start line
+     * @return line number and target direction at mean plane crossing,
+     * or null if search interval does not bracket a solution
+     */
+    private CrossingResult search(final Vector3D target, final double startLine,
+                                  final Transform startBodyToInert, final Transform startScToInert) {
+
+        double crossingLine     = startLine;
+        Transform bodyToInert   = startBodyToInert;
+        Transform scToInert     = startScToInert;
+
         final PVCoordinates targetPV = new PVCoordinates(target, Vector3D.ZERO);
 
         // we don't use an Hipparchus solver here because we are more
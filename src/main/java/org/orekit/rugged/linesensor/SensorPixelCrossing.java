@@ -103,15 +103,8 @@ public class SensorPixelCrossing {
      * @return interpolated direction for specified index
      */
     private Vector3D getLOS(final AbsoluteDate date, final double x) {
-
-        // find surrounding pixels
-        final int iInf = FastMath.max(0, FastMath.min(sensor.getNbPixels() - 2, (int) FastMath.floor(x)));
-        final int iSup = iInf + 1;
-
-        // interpolate
-        return new Vector3D(iSup - x, sensor.getLOS(date, iInf),
-                            x - iInf, sensor.getLOS(date, iSup)).normalize();
-
+        // the lines-of-sight model may provide a direct sub-pixel evaluation
+        return sensor.getSubPixelLOS(date, x);
     }
 
 }
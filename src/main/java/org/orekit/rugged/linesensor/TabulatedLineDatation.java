@@ -0,0 +1,127 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.linesensor;
+
+import org.hipparchus.exception.LocalizedCoreFormats;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.time.AbsoluteDate;
+
+/** Tabulated model for {@link LineDatation line datation}.
+ * <p>
+ * This model is built from (line, date) pairs, typically extracted from telemetry,
+ * and interpolates linearly between them. It therefore handles line-time jumps and
+ * drifts of the line rate. Dates are stored as primitive offsets with respect to the
+ * first date, and both {@link #getDate(double)} and {@link #getLine(AbsoluteDate)}
+ * use a binary search in the table, so they are O(log n). The {@link #getRate(double)
+ * rate} is the slope of the interpolation interval, so it is consistent with the two
+ * other methods. Lines and dates outside of the table are extrapolated using the first
+ * or last interval.
+ * </p>
+ * <p>
+ * Instances of this class are guaranteed to be immutable.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class TabulatedLineDatation implements LineDatation {
+
+    /** Reference date (date of the first tabulated line). */
+    private final AbsoluteDate referenceDate;
+
+    /** Tabulated line numbers. */
+    private final double[] lines;
+
+    /** Tabulated dates offsets with respect to reference date (s). */
+    private final double[] offsets;
+
+    /** Rate of lines scanning in each interval (lines / seconds). */
+    private final double[] rates;
+
+    /** Simple constructor.
+     * @param lines line numbers (must be strictly increasing)
+     * @param dates dates at which lines are acquired (must be strictly increasing)
+     */
+    public TabulatedLineDatation(final double[] lines, final AbsoluteDate[] dates) {
+
+        if (lines.length != dates.length) {
+            throw new RuggedException(LocalizedCoreFormats.DIMENSIONS_MISMATCH, lines.length, dates.length);
+        }
+        if (lines.length < 2) {
+            throw new RuggedException(LocalizedCoreFormats.INSUFFICIENT_DIMENSION, lines.length, 2);
+        }
+
+        this.referenceDate = dates[0];
+        this.lines         = lines.clone();
+        this.offsets       = new double[dates.length];
+        this.rates         = new double[dates.length - 1];
+        for (int i = 1; i < dates.length; ++i) {
+            offsets[i] = dates[i].durationFrom(referenceDate);
+            if (this.lines[i] <= this.lines[i - 1]) {
+                throw new RuggedException(LocalizedCoreFormats.NOT_STRICTLY_INCREASING_SEQUENCE,
+                                          this.lines[i], this.lines[i - 1], i, i - 1);
+            }
+            if (offsets[i] <= offsets[i - 1]) {
+                throw new RuggedException(LocalizedCoreFormats.NOT_STRICTLY_INCREASING_SEQUENCE,
+                                          dates[i], dates[i - 1], i, i - 1);
+            }
+            rates[i - 1] = (this.lines[i] - this.lines[i - 1]) / (offsets[i] - offsets[i - 1]);
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AbsoluteDate getDate(final double lineNumber) {
+        final int k = findInterval(lines, lineNumber);
+        return referenceDate.shiftedBy(offsets[k] + (lineNumber - lines[k]) / rates[k]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getLine(final AbsoluteDate date) {
+        final double dt = date.durationFrom(referenceDate);
+        final int    k  = findInterval(offsets, dt);
+        return lines[k] + rates[k] * (dt - offsets[k]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getRate(final double lineNumber) {
+        return rates[findInterval(lines, lineNumber)];
+    }
+
+    /** Find the interpolation interval containing a value.
+     * @param table strictly increasing table
+     * @param x value to locate
+     * @return index k of the interval [table[k], table[k+1]] containing x,
+     * the first or last interval being used for values outside of the table
+     */
+    private static int findInterval(final double[] table, final double x) {
+        int low  = 0;
+        int high = table.length - 2;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (table[mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+}
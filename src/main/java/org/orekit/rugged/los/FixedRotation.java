@@ -26,6 +26,7 @@ import org.hipparchus.geometry.euclidean.threed.RotationConvention;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
 import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.ParameterDriver;
 import org.orekit.utils.ParameterObserver;
 
@@ -33,7 +34,7 @@ import org.orekit.utils.ParameterObserver;
  * @author Luc Maisonobe
  * @see LOSBuilder
  */
-public class FixedRotation implements TimeIndependentLOSTransform {
+public class FixedRotation implements TimeIndependentLOSTransform, LinearLOSTransform {
 
     /** Parameters scaling factor.
      * <p>
@@ -47,7 +48,7 @@ public class FixedRotation implements TimeIndependentLOSTransform {
     private final Vector3D axis;
 
     /** Underlying rotation. */
-    private Rotation rotation;
+    private volatile Rotation rotation;
 
     /** Underlying rotation with derivatives. */
     private FieldRotation<?> rDS;
@@ -88,11 +89,32 @@ public class FixedRotation implements TimeIndependentLOSTransform {
     /** {@inheritDoc} */
     @Override
     public Vector3D transformLOS(final int i, final Vector3D los) {
-        if (rotation == null) {
+        return getRotation().applyTo(los);
+    }
+
+    /** {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public double[][] getMatrix(final AbsoluteDate date) {
+        return getRotation().getMatrix();
+    }
+
+    /** Get the underlying rotation, evaluating it lazily if needed.
+     * <p>
+     * The field is read only once, so a concurrent reset by a parameter
+     * change cannot be observed between the check and the use.
+     * </p>
+     * @return underlying rotation
+     */
+    private Rotation getRotation() {
+        Rotation r = rotation;
+        if (r == null) {
             // lazy evaluation of the rotation
-            rotation = new Rotation(axis, angleDriver.getValue(), RotationConvention.VECTOR_OPERATOR);
+            r        = new Rotation(axis, angleDriver.getValue(), RotationConvention.VECTOR_OPERATOR);
+            rotation = r;
         }
-        return rotation.applyTo(los);
+        return r;
     }
 
     /** {@inheritDoc} */
@@ -23,6 +23,7 @@ import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
 import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.ParameterDriver;
 import org.orekit.utils.ParameterObserver;
 
@@ -32,7 +33,7 @@ import org.orekit.utils.ParameterObserver;
  * @see LOSBuilder
  * @since 2.0
  */
-public class FixedZHomothety implements TimeIndependentLOSTransform {
+public class FixedZHomothety implements TimeIndependentLOSTransform, LinearLOSTransform {
 
     /** Parameters scaling factor.
      * <p>
@@ -43,7 +44,7 @@ public class FixedZHomothety implements TimeIndependentLOSTransform {
     private final double SCALE = FastMath.scalb(1.0, 0);
 
     /** Homothety factor. */
-    private double factor;
+    private volatile double factor;
 
     /** Underlying homothety with derivatives. */
     private Derivative<?> factorDS;
@@ -82,12 +83,34 @@ public class FixedZHomothety implements TimeIndependentLOSTransform {
     /** {@inheritDoc} */
     @Override
     public Vector3D transformLOS(final int i, final Vector3D los) {
+        return new Vector3D(los.getX(), los.getY(), getFactor() * los.getZ());
+    }
+
+    /** {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public double[][] getMatrix(final AbsoluteDate date) {
+        return new double[][] {
+            {1.0, 0.0, 0.0}, {0.0, 1.0, 0.0}, {0.0, 0.0, getFactor()}
+        };
+    }
 
-        if (factor == 0.0) {
+    /** Get the homothety factor, evaluating it lazily if needed.
+     * <p>
+     * The field is read only once, so a concurrent reset by a parameter
+     * change cannot be observed between the check and the use.
+     * </p>
+     * @return homothety factor
+     */
+    private double getFactor() {
+        double f = factor;
+        if (f == 0.0) {
             // lazy evaluation of the homothety
-            factor = factorDriver.getValue();
+            f      = factorDriver.getValue();
+            factor = f;
         }
-        return new Vector3D(los.getX(), los.getY(), factor * los.getZ());
+        return f;
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,222 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.los;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+import org.orekit.utils.ParameterObserver;
+
+/** Time-dependent lines-of-sight where all transforms are fused into one matrix per date.
+ * <p>
+ * When all the transforms of a chain are {@link LinearLOSTransform linear maps} (rotations
+ * and homotheties), their composition is also a linear map. Instead of applying each
+ * transform in turn for each pixel, which involves building rotations again and again,
+ * this class builds the product matrix once per date, and applies it to the raw
+ * directions of all pixels. Instances are created by {@link LOSBuilder#build()} when
+ * the chain can be fused, custom transforms falling back to the general path.
+ * </p>
+ * <p>
+ * The matrix for the last date used is kept, so calling {@link #getLOS(int, AbsoluteDate)}
+ * for all pixels of a line computes it only once. The {@link #getLOS(AbsoluteDate, double[])}
+ * method computes all pixels of a line at once in a tight loop. The matrix is reset when
+ * parameters drivers change. Derivatives with respect to the parameters are computed by
+ * applying the transforms in turn, as in the general path.
+ * </p>
+ * @author Luc Maisonobe
+ * @see LOSBuilder
+ * @since 3.1
+ */
+public class FusedLOS implements TimeDependentLOS {
+
+    /** General lines-of-sight, used for derivatives and drivers. */
+    private final TimeDependentLOS general;
+
+    /** Raw directions, packed as x, y, z for each pixel. */
+    private final double[] raw;
+
+    /** Transforms to fuse, in application order. */
+    private final LinearLOSTransform[] transforms;
+
+    /** Fused matrix at last date used (null if it must be recomputed). */
+    private volatile FusedMatrix last;
+
+    /** Simple constructor.
+     * @param general general lines-of-sight applying transforms in turn, used for derivatives and drivers
+     * @param raw raw directions, packed as x, y, z for each pixel
+     * @param transforms transforms to fuse, in application order
+     */
+    FusedLOS(final TimeDependentLOS general, final double[] raw, final List<LinearLOSTransform> transforms) {
+
+        this.general    = general;
+        this.raw        = raw;
+        this.transforms = transforms.toArray(new LinearLOSTransform[transforms.size()]);
+        this.last       = null;
+
+        // we will reset the fused matrix when parameters are changed
+        final ParameterObserver resettingObserver = new ParameterObserver() {
+            /** {@inheritDoc} */
+            @Override
+            public void valueChanged(final double previousValue, final ParameterDriver driver) {
+                last = null;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public void referenceDateChanged(final AbsoluteDate previousReferenceDate, final ParameterDriver driver) {
+                last = null;
+            }
+        };
+        getParametersDrivers().forEach(driver -> {
+            driver.addObserver(resettingObserver);
+        });
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getNbPixels() {
+        return raw.length / 3;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Vector3D getLOS(final int index, final AbsoluteDate date) {
+        return apply(getMatrix(date), index);
+    }
+
+    /** {@inheritDoc}
+     * <p>
+     * The fused matrix is evaluated only once for both surrounding pixels.
+     * </p>
+     */
+    @Override
+    public Vector3D getLOS(final double index, final AbsoluteDate date) {
+        final double[] m    = getMatrix(date);
+        final int      iInf = FastMath.max(0, FastMath.min(getNbPixels() - 2, (int) FastMath.floor(index)));
+        final int      iSup = iInf + 1;
+        return new Vector3D(iSup - index, apply(m, iInf), index - iInf, apply(m, iSup)).normalize();
+    }
+
+    /** Get the lines-of-sight of all pixels at once.
+     * @param date date
+     * @param directions placeholder for the normalized lines-of-sight, packed as x, y, z
+     * for each pixel (must contain at least 3 times the number of pixels elements)
+     */
+    public void getLOS(final AbsoluteDate date, final double[] directions) {
+        final double[] m = getMatrix(date);
+        for (int k = 0; k < raw.length; k += 3) {
+            final double x  = raw[k];
+            final double y  = raw[k + 1];
+            final double z  = raw[k + 2];
+            final double tx = m[0] * x + m[1] * y + m[2] * z;
+            final double ty = m[3] * x + m[4] * y + m[5] * z;
+            final double tz = m[6] * x + m[7] * y + m[8] * z;
+            final double n  = FastMath.sqrt(tx * tx + ty * ty + tz * tz);
+            directions[k]     = tx / n;
+            directions[k + 1] = ty / n;
+            directions[k + 2] = tz / n;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Derivative<T>> FieldVector3D<T> getLOSDerivatives(final int index, final AbsoluteDate date,
+                                                                        final DerivativeGenerator<T> generator) {
+        return general.getLOSDerivatives(index, date, generator);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<ParameterDriver> getParametersDrivers() {
+        return general.getParametersDrivers();
+    }
+
+    /** Get the fused matrix at a date.
+     * @param date date
+     * @return fused matrix, in row major order
+     */
+    private double[] getMatrix(final AbsoluteDate date) {
+
+        final FusedMatrix cached = last;
+        if (cached != null && cached.date.equals(date)) {
+            return cached.matrix;
+        }
+
+        // compose all transforms, the first one being applied first
+        double[] fused = new double[] {
+            1.0, 0.0, 0.0, 0.0, 1.0, 0.0, 0.0, 0.0, 1.0
+        };
+        for (final LinearLOSTransform transform : transforms) {
+            final double[][] m       = transform.getMatrix(date);
+            final double[]   product = new double[9];
+            for (int i = 0; i < 3; ++i) {
+                for (int j = 0; j < 3; ++j) {
+                    product[3 * i + j] = m[i][0] * fused[j] + m[i][1] * fused[3 + j] + m[i][2] * fused[6 + j];
+                }
+            }
+            fused = product;
+        }
+
+        last = new FusedMatrix(date, fused);
+        return fused;
+
+    }
+
+    /** Apply a fused matrix to a raw direction.
+     * @param m fused matrix, in row major order
+     * @param index pixel index
+     * @return normalized transformed direction
+     */
+    private Vector3D apply(final double[] m, final int index) {
+        final int    k = 3 * index;
+        final double x = raw[k];
+        final double y = raw[k + 1];
+        final double z = raw[k + 2];
+        return new Vector3D(m[0] * x + m[1] * y + m[2] * z,
+                            m[3] * x + m[4] * y + m[5] * z,
+                            m[6] * x + m[7] * y + m[8] * z).normalize();
+    }
+
+    /** Fused matrix at one date. */
+    private static class FusedMatrix {
+
+        /** Date of the matrix. */
+        private final AbsoluteDate date;
+
+        /** Fused matrix, in row major order. */
+        private final double[] matrix;
+
+        /** Simple constructor.
+         * @param date date of the matrix
+         * @param matrix fused matrix, in row major order
+         */
+        FusedMatrix(final AbsoluteDate date, final double[] matrix) {
+            this.date   = date;
+            this.matrix = matrix;
+        }
+
+    }
+
+}
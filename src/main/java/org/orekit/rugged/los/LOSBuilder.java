@@ -17,8 +17,10 @@
 package org.orekit.rugged.los;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.hipparchus.analysis.differentiation.Derivative;
@@ -42,6 +44,11 @@ import org.orekit.utils.ParameterObserver;
  * path due to mirrors and the alignments of sensors frames with respect
  * to a spacecraft.
  * </p>
+ * <p>
+ * If all transforms are {@link LinearLOSTransform linear maps}, as rotations and
+ * homotheties provided by this package, time-dependent transforms are fused into
+ * a single matrix per date (see {@link FusedLOS}).
+ * </p>
  * @see TimeDependentLOS
  * @see <a href="https://en.wikipedia.org/wiki/Builder_pattern">Builder pattern (wikipedia)</a>
  * @see <a href="https://en.wikipedia.org/wiki/Fluent_interface">Fluent interface (wikipedia)</a>
@@ -49,22 +56,80 @@ import org.orekit.utils.ParameterObserver;
  */
 public class LOSBuilder {
 
-    /** Raw fixed line-of-sights. */
+    /** Raw fixed line-of-sights (null if raw lines-of-sight are packed). */
     private final List<Vector3D> rawLOS;
 
+    /** Packed raw fixed line-of-sights (null if raw lines-of-sight are a list).
+     * @since 3.1
+     */
+    private final double[] packedRawLOS;
+
     /** Transforms to be applied. */
     private final List<LOSTransform> transforms;
 
     /** Flag for time-independent only transforms. */
     private boolean timeIndependent;
 
+    /** Transforms to be applied, if they are all linear maps.
+     * @since 3.1
+     */
+    private final List<LinearLOSTransform> linearTransforms;
+
+    /** Flag for linear maps only transforms.
+     * @since 3.1
+     */
+    private boolean linear;
+
+    /** Start of the tabulated time span (null if lines-of-sight are not tabulated).
+     * @since 3.1
+     */
+    private AbsoluteDate tabulationMinDate;
+
+    /** End of the tabulated time span.
+     * @since 3.1
+     */
+    private AbsoluteDate tabulationMaxDate;
+
+    /** Angular tolerance for tabulated lines-of-sight interpolation.
+     * @since 3.1
+     */
+    private double tabulationTolerance;
+
+    /** Flag for eager parallel computation of time-independent lines-of-sight.
+     * @since 3.1
+     */
+    private boolean parallelPrecomputation;
+
     /** Create builder.
      * @param rawLOS raw fixed lines-of-sight
      */
     public LOSBuilder(final List<Vector3D> rawLOS) {
-        this.rawLOS          = rawLOS;
-        this.transforms      = new ArrayList<>();
-        this.timeIndependent = true;
+        this.rawLOS           = rawLOS;
+        this.packedRawLOS     = null;
+        this.transforms       = new ArrayList<>();
+        this.timeIndependent  = true;
+        this.linearTransforms = new ArrayList<>();
+        this.linear           = true;
+        this.parallelPrecomputation = false;
+    }
+
+    /** Create builder from packed raw lines-of-sight.
+     * <p>
+     * For sensors with many pixels, this avoids creating one {@link Vector3D}
+     * instance per pixel. The built lines-of-sight store the raw directions
+     * in packed form too.
+     * </p>
+     * @param packedRawLOS raw fixed lines-of-sight, packed as x, y, z for each pixel
+     * @since 3.1
+     */
+    public LOSBuilder(final double[] packedRawLOS) {
+        this.rawLOS           = null;
+        this.packedRawLOS     = packedRawLOS;
+        this.transforms       = new ArrayList<>();
+        this.timeIndependent  = true;
+        this.linearTransforms = new ArrayList<>();
+        this.linear           = true;
+        this.parallelPrecomputation = false;
     }
 
     /** Add a transform to be applied after the already registered transforms.
@@ -73,6 +138,7 @@ public class LOSBuilder {
      */
     public LOSBuilder addTransform(final TimeIndependentLOSTransform transform) {
         transforms.add(new TransformAdapter(transform));
+        addLinear(transform);
         return this;
     }
 
@@ -83,6 +149,62 @@ public class LOSBuilder {
     public LOSBuilder addTransform(final LOSTransform transform) {
         transforms.add(transform);
         timeIndependent = false;
+        addLinear(transform);
+        return this;
+    }
+
+    /** Register a transform for fusion, if it is a linear map.
+     * @param transform transform to register
+     */
+    private void addLinear(final Object transform) {
+        if (transform instanceof LinearLOSTransform) {
+            linearTransforms.add((LinearLOSTransform) transform);
+        } else {
+            // at least one custom transform, the chain cannot be fused
+            linear = false;
+        }
+    }
+
+    /** Set up tabulation of time-dependent lines-of-sight.
+     * <p>
+     * If at least one time-dependent transform is added, the built lines-of-sight are
+     * tabulated on a regular time grid covering the specified time span, and interpolated
+     * between grid dates, see {@link TabulatedLOS}. The time span is typically the span of
+     * the sensor lines that will be processed. Tabulation is ignored for time-independent
+     * lines-of-sight, which are already computed only once. The table size is bounded
+     * (see {@link TabulatedLOS#MAX_TABULATED_DIRECTIONS}); if the tolerance cannot be met
+     * within this bound, lines-of-sight are not tabulated at all.
+     * </p>
+     * @param minDate start of the tabulated time span
+     * @param maxDate end of the tabulated time span (must be strictly after {@code minDate},
+     * otherwise {@link #build()} fails)
+     * @param tolerance angular tolerance for interpolation (rad)
+     * @return the builder instance
+     * @since 3.1
+     */
+    public LOSBuilder setTabulation(final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                                    final double tolerance) {
+        this.tabulationMinDate   = minDate;
+        this.tabulationMaxDate   = maxDate;
+        this.tabulationTolerance = tolerance;
+        return this;
+    }
+
+    /** Set up eager parallel computation of time-independent lines-of-sight.
+     * <p>
+     * Time-independent lines-of-sight are computed once per pixel and recomputed
+     * only when parameters change. By default, each pixel is computed lazily, on
+     * first use. If parallel precomputation is set, the directions of all pixels
+     * are computed in parallel as soon as the lines-of-sight are built, and again
+     * on first use after each parameters change.
+     * This setting is ignored for time-dependent lines-of-sight.
+     * </p>
+     * @param parallel if true, time-independent lines-of-sight are computed eagerly, in parallel
+     * @return the builder instance
+     * @since 3.1
+     */
+    public LOSBuilder setParallelPrecomputation(final boolean parallel) {
+        this.parallelPrecomputation = parallel;
         return this;
     }
 
@@ -91,16 +213,47 @@ public class LOSBuilder {
      */
     public TimeDependentLOS build() {
 
+        // copy the raw lines-of-sight, to ensure immutability of the built object,
+        // in case the raw LOS are changed by caller
+        final double[] raw = packRaw();
+
         if (timeIndependent) {
             // fast implementation for time-independent lines-of-sight
-            return new FixedLOS(rawLOS, transforms);
+            return new FixedLOS(raw, transforms, parallelPrecomputation);
+        }
+
+        // regular implementation, for time-dependent lines-of-sight
+        final TimeDependentLOS general = new TransformsSequenceLOS(raw, transforms);
+
+        // fused implementation, if all transforms are linear maps
+        final TimeDependentLOS los = linear ? new FusedLOS(general, raw, linearTransforms) : general;
+
+        if (tabulationMinDate != null) {
+            // tabulated implementation
+            return new TabulatedLOS(los, tabulationMinDate, tabulationMaxDate, tabulationTolerance);
         } else {
-            // regular implementation, for time-dependent lines-of-sight
-            return new TransformsSequenceLOS(rawLOS, transforms);
+            return los;
         }
 
     }
 
+    /** Pack the raw lines-of-sight.
+     * @return packed copy of the raw lines-of-sight
+     */
+    private double[] packRaw() {
+        if (rawLOS == null) {
+            return packedRawLOS.clone();
+        }
+        final double[] packed = new double[3 * rawLOS.size()];
+        for (int i = 0; i < rawLOS.size(); ++i) {
+            final Vector3D l = rawLOS.get(i);
+            packed[3 * i]     = l.getX();
+            packed[3 * i + 1] = l.getY();
+            packed[3 * i + 2] = l.getZ();
+        }
+        return packed;
+    }
+
     /** Adapter from time-independent transform to time-dependent transform. */
     private static class TransformAdapter implements LOSTransform {
 
@@ -138,39 +291,35 @@ public class LOSBuilder {
     /** Implement time-independent LOS by recomputing directions by applying all transforms each time. */
     private static class TransformsSequenceLOS implements TimeDependentLOS {
 
-        /** Raw direction. */
-        private final Vector3D[] raw;
+        /** Raw directions, packed as x, y, z for each pixel. */
+        private final double[] raw;
 
         /** Transforms to be applied. */
         private final List<LOSTransform> transforms;
 
         /** Simple constructor.
-         * @param raw raw directions
+         * @param raw raw directions, packed as x, y, z for each pixel
          * @param transforms transforms to apply
          */
-        TransformsSequenceLOS(final List<Vector3D> raw, final List<LOSTransform> transforms) {
+        TransformsSequenceLOS(final double[] raw, final List<LOSTransform> transforms) {
 
-            // copy the lists, to ensure immutability of the built object,
-            // in case addTransform is called again after build
-            // or the raw LOS list is changed by caller
-            this.raw = new Vector3D[raw.size()];
-            for (int i = 0; i < raw.size(); ++i) {
-                this.raw[i] = raw.get(i);
-            }
+            this.raw = raw;
 
+            // copy the list, to ensure immutability of the built object,
+            // in case addTransform is called again after build
             this.transforms = new ArrayList<>(transforms);
 
         }
 
         /** {@inheritDoc} */
         public int getNbPixels() {
-            return raw.length;
+            return raw.length / 3;
         }
 
         /** {@inheritDoc} */
         @Override
         public Vector3D getLOS(final int index, final AbsoluteDate date) {
-            Vector3D los = raw[index];
+            Vector3D los = new Vector3D(raw[3 * index], raw[3 * index + 1], raw[3 * index + 2]);
             for (final LOSTransform transform : transforms) {
                 los = transform.transformLOS(index, los, date);
             }
@@ -183,9 +332,9 @@ public class LOSBuilder {
                                                                             final DerivativeGenerator<T> generator) {
 
             // the raw line of sights are considered to be constant
-            FieldVector3D<T> los = new FieldVector3D<>(generator.constant(raw[index].getX()),
-                                                       generator.constant(raw[index].getY()),
-                                                       generator.constant(raw[index].getZ()));
+            FieldVector3D<T> los = new FieldVector3D<>(generator.constant(raw[3 * index]),
+                                                       generator.constant(raw[3 * index + 1]),
+                                                       generator.constant(raw[3 * index + 2]));
 
             // apply the transforms, which depend on parameters and hence may introduce non-zero derivatives
             for (final LOSTransform transform : transforms) {
@@ -207,42 +356,140 @@ public class LOSBuilder {
 
     }
 
-    /** Implement time-independent LOS by computing directions only when parameters are changed. */
+    /** Implement time-independent LOS by computing directions only when parameters are changed.
+     * <p>
+     * Directions are computed lazily, pixel by pixel, and stored in a snapshot tagged with
+     * the parameters epoch they were computed for. Each parameter change increments the
+     * epoch and discards the snapshot, so a direction computed from stale parameters is
+     * never stored in the snapshot of a newer epoch. Computation of all pixels at once
+     * happens only if parallel precomputation has been requested.
+     * </p>
+     */
     private static class FixedLOS extends TransformsSequenceLOS {
 
-        /** transformed direction for los. */
-        private final Vector3D[] transformed;
+        /** Parameters epoch, incremented at each parameter change. */
+        private final AtomicLong epoch;
+
+        /** Flag for eager parallel computation of directions. */
+        private final boolean parallel;
+
+        /** Current snapshot (null if a new one must be created). */
+        private volatile Snapshot snapshot;
+
+        /** Cache for derivatives. */
+        private final LOSDerivativesCache derivativesCache;
 
         /** Simple constructor.
-         * @param raw raw directions
+         * @param raw raw directions, packed as x, y, z for each pixel
          * @param transforms transforms to apply (must be time-independent!)
+         * @param parallel if true, directions are computed eagerly, in parallel
          */
-        FixedLOS(final List<Vector3D> raw, final List<LOSTransform> transforms) {
+        FixedLOS(final double[] raw, final List<LOSTransform> transforms, final boolean parallel) {
 
             super(raw, transforms);
-            transformed = new Vector3D[raw.size()];
+            this.epoch            = new AtomicLong();
+            this.parallel         = parallel;
+            this.snapshot         = null;
+            this.derivativesCache = new LOSDerivativesCache(getNbPixels(), getParametersDrivers());
 
-            // we will reset the transforms to null when parameters are changed
+            // we will publish a new epoch when parameters are changed
             final ParameterObserver resettingObserver = new ParameterObserver() {
                 /** {@inheritDoc} */
                 @Override
                 public void valueChanged(final double previousValue, final ParameterDriver driver) {
-                    Arrays.fill(transformed, null);
+                    synchronized (FixedLOS.this) {
+                        epoch.incrementAndGet();
+                        snapshot = null;
+                    }
                 }
             };
             getParametersDrivers().forEach(driver -> {
                 driver.addObserver(resettingObserver);
             });
+
+            if (parallel) {
+                // eager precomputation
+                getSnapshot();
+            }
+
         }
 
         /** {@inheritDoc} */
         @Override
         public Vector3D getLOS(final int index, final AbsoluteDate date) {
-            if (transformed[index] == null) {
-                // recompute the transformed los direction only if needed
-                transformed[index] = super.getLOS(index, date);
+            final Snapshot current = getSnapshot();
+            final Vector3D cached  = current.transformed.get(index);
+            return cached != null ? cached : computeLOS(current, index);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public <T extends Derivative<T>> FieldVector3D<T> getLOSDerivatives(final int index, final AbsoluteDate date,
+                                                                            final DerivativeGenerator<T> generator) {
+            return derivativesCache.get(index, generator, () -> super.getLOSDerivatives(index, date, generator));
+        }
+
+        /** Get the snapshot for current parameters epoch, creating it if needed.
+         * @return current snapshot
+         */
+        private Snapshot getSnapshot() {
+
+            final Snapshot current = snapshot;
+            if (current != null) {
+                return current;
+            }
+
+            final Snapshot created;
+            synchronized (this) {
+                if (snapshot != null) {
+                    // another thread has already created the snapshot
+                    return snapshot;
+                }
+                created  = new Snapshot(epoch.get(), getNbPixels());
+                snapshot = created;
+            }
+
+            if (parallel) {
+                // eager computation of all directions
+                IntStream.range(0, getNbPixels()).parallel().forEach(i -> computeLOS(created, i));
             }
-            return transformed[index];
+
+            return created;
+
+        }
+
+        /** Compute one direction and store it in a snapshot.
+         * @param target snapshot in which direction should be stored
+         * @param index los pixel index
+         * @return transformed direction
+         */
+        private Vector3D computeLOS(final Snapshot target, final int index) {
+            final Vector3D computed = super.getLOS(index, null);
+            if (epoch.get() == target.epoch) {
+                // no parameter changed since the snapshot was created, the direction is up to date
+                target.transformed.compareAndSet(index, null, computed);
+            }
+            return computed;
+        }
+
+    }
+
+    /** Directions lazily computed for one parameters epoch. */
+    private static class Snapshot {
+
+        /** Parameters epoch. */
+        private final long epoch;
+
+        /** Transformed directions (null elements are not computed yet). */
+        private final AtomicReferenceArray<Vector3D> transformed;
+
+        /** Simple constructor.
+         * @param epoch parameters epoch
+         * @param nbPixels number of pixels
+         */
+        Snapshot(final long epoch, final int nbPixels) {
+            this.epoch       = epoch;
+            this.transformed = new AtomicReferenceArray<>(nbPixels);
         }
 
     }
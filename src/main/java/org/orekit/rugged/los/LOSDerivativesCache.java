@@ -0,0 +1,141 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.los;
+
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+import org.orekit.utils.ParameterObserver;
+
+/** Cache for time-independent lines-of-sight derivatives.
+ * <p>
+ * During adjustment, the same lines-of-sight derivatives are requested again and again
+ * for the many measurements sharing a pixel, until the optimizer changes the parameters.
+ * This cache stores the derivatives per pixel for the current parameters epoch and the
+ * current {@link DerivativeGenerator generator}. Any change in the parameters values or
+ * selection starts a new epoch, and using another generator starts a new generation too.
+ * </p>
+ * <p>
+ * Only time-independent lines-of-sight can use this cache. Time-dependent derivatives
+ * are requested at the date of each measurement, which is almost never the same for
+ * two measurements, so caching them would not save any computation.
+ * </p>
+ * <p>
+ * This class is thread-safe: entries are immutable and concurrent computations of the
+ * same entry produce equal values. A thread that started a computation before a parameter
+ * change may still store its result in the discarded generation it holds, but discarded
+ * generations are not reachable from the cache anymore, so such stale entries are never
+ * returned to other callers.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+class LOSDerivativesCache {
+
+    /** Number of pixels. */
+    private final int nbPixels;
+
+    /** Current generation (null if it must be recreated). */
+    private volatile Generation generation;
+
+    /** Simple constructor.
+     * @param nbPixels number of pixels
+     * @param drivers drivers for lines-of-sight parameters
+     */
+    LOSDerivativesCache(final int nbPixels, final Stream<ParameterDriver> drivers) {
+
+        this.nbPixels   = nbPixels;
+        this.generation = null;
+
+        // we will start a new epoch when parameters are changed
+        final ParameterObserver resettingObserver = new ParameterObserver() {
+            /** {@inheritDoc} */
+            @Override
+            public void valueChanged(final double previousValue, final ParameterDriver driver) {
+                generation = null;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public void referenceDateChanged(final AbsoluteDate previousReferenceDate, final ParameterDriver driver) {
+                generation = null;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public void selectionChanged(final boolean previousSelection, final ParameterDriver driver) {
+                generation = null;
+            }
+        };
+        drivers.forEach(driver -> {
+            driver.addObserver(resettingObserver);
+        });
+
+    }
+
+    /** Get lines-of-sight derivatives, computing them if needed.
+     * @param <T> derivative type
+     * @param index los pixel index
+     * @param generator generator to use for building {@link Derivative} instances
+     * @param computer computer for the derivatives, used if they are not cached
+     * @return line of sight, and its first partial derivatives with respect to the parameters
+     */
+    @SuppressWarnings("unchecked")
+    <T extends Derivative<T>> FieldVector3D<T> get(final int index, final DerivativeGenerator<T> generator,
+                                                   final Supplier<FieldVector3D<T>> computer) {
+
+        Generation g = generation;
+        if (g == null || g.generator != generator) {
+            g = new Generation(generator, nbPixels);
+            generation = g;
+        }
+
+        FieldVector3D<T> los = (FieldVector3D<T>) g.fixed[index];
+        if (los == null) {
+            los = computer.get();
+            g.fixed[index] = los;
+        }
+        return los;
+
+    }
+
+    /** Cached derivatives for one parameters epoch and one generator. */
+    private static class Generation {
+
+        /** Generator used for building derivatives. */
+        private final DerivativeGenerator<?> generator;
+
+        /** Derivatives of lines-of-sight, per pixel. */
+        private final FieldVector3D<?>[] fixed;
+
+        /** Simple constructor.
+         * @param generator generator used for building derivatives
+         * @param nbPixels number of pixels
+         */
+        Generation(final DerivativeGenerator<?> generator, final int nbPixels) {
+            this.generator = generator;
+            this.fixed     = new FieldVector3D<?>[nbPixels];
+        }
+
+    }
+
+}
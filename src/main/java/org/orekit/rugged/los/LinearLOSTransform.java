@@ -0,0 +1,43 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.los;
+
+import org.orekit.time.AbsoluteDate;
+
+/** Interface for lines-of-sight transforms that are linear maps independent of the pixel.
+ * <p>
+ * Rotations and homotheties are such transforms. When all transforms added to a
+ * {@link LOSBuilder} implement this interface, they are fused into a single matrix
+ * per date, see {@link FusedLOS}. This interface is intended to be implemented by
+ * classes that also implement either {@link LOSTransform} or {@link
+ * TimeIndependentLOSTransform}, the matrix being consistent with their
+ * {@code transformLOS} methods.
+ * </p>
+ * @author Luc Maisonobe
+ * @see LOSBuilder
+ * @since 3.1
+ */
+public interface LinearLOSTransform {
+
+    /** Get the matrix of the transform.
+     * @param date date of the transform (ignored by time-independent transforms)
+     * @return matrix of the transform, such that the transformed line-of-sight is the
+     * product of the matrix by the line-of-sight
+     */
+    double[][] getMatrix(AbsoluteDate date);
+
+}
@@ -0,0 +1,343 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.los;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+import org.orekit.utils.ParameterObserver;
+
+/** Lines-of-sight defined by polynomial look angles, for sensors made of several detectors.
+ * <p>
+ * Instead of storing one direction per pixel, each detector is described by two
+ * polynomials giving the look angles ψ<sub>x</sub> and ψ<sub>y</sub> as functions
+ * of the pixel index within the detector (0 for the first pixel of the detector).
+ * The line-of-sight of a pixel is the normalized vector (tan ψ<sub>x</sub>,
+ * tan ψ<sub>y</sub>, 1). The detectors are concatenated, so the pixels of the
+ * second detector follow the pixels of the first detector, and so on.
+ * </p>
+ * <p>
+ * The polynomials coefficients are managed by {@link ParameterDriver parameters drivers},
+ * so they can be calibrated. Lines-of-sight at fractional pixel indices are evaluated
+ * directly from the polynomials, as long as both surrounding pixels belong to the same
+ * detector.
+ * </p>
+ * <p>
+ * The coefficients are read from the drivers once and tagged with the parameters epoch
+ * they were read for, the epoch being incremented at each parameter change. Coefficients
+ * read while a parameter was changed are used by the reading call but never cached.
+ * </p>
+ * <p>
+ * These lines-of-sight do not depend on date, they are intended to be used directly
+ * in a {@link org.orekit.rugged.linesensor.LineSensor line sensor}.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class PolynomialLookAnglesLOS implements TimeDependentLOS {
+
+    /** Parameters scaling factor.
+     * <p>
+     * We use a power of 2 to avoid numeric noise introduction
+     * in the multiplications/divisions sequences.
+     * </p>
+     */
+    private final double SCALE = FastMath.scalb(1.0, -20);
+
+    /** Index of the first pixel of each detector, plus total number of pixels at the end. */
+    private final int[] firstPixels;
+
+    /** Drivers for ψ<sub>x</sub> polynomials coefficients, for each detector. */
+    private final ParameterDriver[][] xDrivers;
+
+    /** Drivers for ψ<sub>y</sub> polynomials coefficients, for each detector. */
+    private final ParameterDriver[][] yDrivers;
+
+    /** Parameters epoch, incremented at each parameter change. */
+    private final AtomicLong epoch;
+
+    /** Current coefficients (null if they must be read again from drivers). */
+    private volatile Coefficients coefficients;
+
+    /** Cache for derivatives. */
+    private final LOSDerivativesCache derivativesCache;
+
+    /** Simple constructor.
+     * <p>
+     * The parameters are the polynomials coefficients, with the constant term at index 0.
+     * They are named {@code name[d].x[k]} and {@code name[d].y[k]}, where d is the detector
+     * index and k the coefficient index.
+     * </p>
+     * @param name name of the lines-of-sight (used for estimated parameters identification)
+     * @param nbPixels number of pixels of each detector
+     * @param xCoeffs ψ<sub>x</sub> polynomials coefficients for each detector,
+     * with the constant term at index 0
+     * @param yCoeffs ψ<sub>y</sub> polynomials coefficients for each detector,
+     * with the constant term at index 0
+     */
+    public PolynomialLookAnglesLOS(final String name, final int[] nbPixels,
+                                   final double[][] xCoeffs, final double[][] yCoeffs) {
+
+        this.firstPixels = new int[nbPixels.length + 1];
+        this.xDrivers    = new ParameterDriver[nbPixels.length][];
+        this.yDrivers    = new ParameterDriver[nbPixels.length][];
+        this.epoch        = new AtomicLong();
+        this.coefficients = null;
+
+        // we will publish a new epoch when parameters are changed
+        final ParameterObserver resettingObserver = new ParameterObserver() {
+            /** {@inheritDoc} */
+            @Override
+            public void valueChanged(final double previousValue, final ParameterDriver driver) {
+                synchronized (PolynomialLookAnglesLOS.this) {
+                    epoch.incrementAndGet();
+                    coefficients = null;
+                }
+            }
+        };
+
+        for (int d = 0; d < nbPixels.length; ++d) {
+            firstPixels[d + 1] = firstPixels[d] + nbPixels[d];
+            xDrivers[d] = createDrivers(name + "[" + d + "].x", xCoeffs[d], resettingObserver);
+            yDrivers[d] = createDrivers(name + "[" + d + "].y", yCoeffs[d], resettingObserver);
+        }
+
+        this.derivativesCache = new LOSDerivativesCache(getNbPixels(), getParametersDrivers());
+
+    }
+
+    /** Create drivers for one polynomial.
+     * @param prefix prefix of the drivers names
+     * @param coeffs polynomial coefficients
+     * @param observer observer to add to the drivers
+     * @return drivers for the polynomial coefficients
+     */
+    private ParameterDriver[] createDrivers(final String prefix, final double[] coeffs,
+                                            final ParameterObserver observer) {
+        final ParameterDriver[] drivers = new ParameterDriver[coeffs.length];
+        for (int k = 0; k < coeffs.length; ++k) {
+            drivers[k] = new ParameterDriver(prefix + "[" + k + "]", coeffs[k], SCALE,
+                                             Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            drivers[k].addObserver(observer);
+        }
+        return drivers;
+    }
+
+    /** Get the number of detectors.
+     * @return number of detectors
+     */
+    public int getNbDetectors() {
+        return xDrivers.length;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getNbPixels() {
+        return firstPixels[firstPixels.length - 1];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Vector3D getLOS(final int index, final AbsoluteDate date) {
+        final int d = getDetector(index);
+        return evaluate(getCoefficients(), d, index - firstPixels[d]);
+    }
+
+    /** {@inheritDoc}
+     * <p>
+     * The polynomials are evaluated directly at the fractional index, except
+     * at detectors boundaries where the two surrounding pixels are interpolated.
+     * </p>
+     */
+    @Override
+    public Vector3D getLOS(final double index, final AbsoluteDate date) {
+        final int iInf = FastMath.max(0, FastMath.min(getNbPixels() - 2, (int) FastMath.floor(index)));
+        final int d    = getDetector(iInf);
+        if (iInf + 1 < firstPixels[d + 1]) {
+            // both surrounding pixels belong to the same detector
+            return evaluate(getCoefficients(), d, index - firstPixels[d]);
+        } else {
+            return TimeDependentLOS.super.getLOS(index, date);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Derivative<T>> FieldVector3D<T> getLOSDerivatives(final int index, final AbsoluteDate date,
+                                                                        final DerivativeGenerator<T> generator) {
+        return derivativesCache.get(index, generator, () -> computeLOSDerivatives(index, generator));
+    }
+
+    /** Compute the line of sight and its partial derivatives.
+     * @param <T> derivative type
+     * @param index los pixel index
+     * @param generator generator to use for building {@link Derivative} instances
+     * @return line of sight, and its first partial derivatives with respect to the parameters
+     */
+    private <T extends Derivative<T>> FieldVector3D<T> computeLOSDerivatives(final int index,
+                                                                             final DerivativeGenerator<T> generator) {
+        final int    d = getDetector(index);
+        final double p = index - firstPixels[d];
+        final T      tanX = evaluate(xDrivers[d], p, generator).tan();
+        final T      tanY = evaluate(yDrivers[d], p, generator).tan();
+        return new FieldVector3D<>(tanX, tanY, generator.constant(1.0)).normalize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<ParameterDriver> getParametersDrivers() {
+        Stream<ParameterDriver> drivers = Stream.<ParameterDriver>empty();
+        for (int d = 0; d < xDrivers.length; ++d) {
+            drivers = Stream.concat(drivers, Stream.concat(Stream.of(xDrivers[d]), Stream.of(yDrivers[d])));
+        }
+        return drivers;
+    }
+
+    /** Get the detector containing a pixel.
+     * @param index pixel index
+     * @return index of the detector containing the pixel
+     */
+    private int getDetector(final int index) {
+        // binary search for the last detector starting at or before the pixel
+        int low  = 0;
+        int high = xDrivers.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (firstPixels[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /** Get the current coefficients, reading them from drivers if needed.
+     * @return current coefficients
+     */
+    private Coefficients getCoefficients() {
+
+        final Coefficients current = coefficients;
+        if (current != null) {
+            return current;
+        }
+
+        // read the coefficients for the current parameters
+        final long         readingEpoch = epoch.get();
+        final Coefficients read         = new Coefficients(readingEpoch, xDrivers, yDrivers);
+
+        synchronized (this) {
+            // publish the coefficients only if no parameter changed during reading
+            if (epoch.get() == readingEpoch &&
+                (coefficients == null || coefficients.epoch < readingEpoch)) {
+                coefficients = read;
+            }
+        }
+
+        return read;
+
+    }
+
+    /** Evaluate the line-of-sight in a detector.
+     * @param c coefficients to use
+     * @param d detector index
+     * @param p pixel index within the detector
+     * @return normalized line-of-sight
+     */
+    private static Vector3D evaluate(final Coefficients c, final int d, final double p) {
+        return new Vector3D(FastMath.tan(evaluate(c.x[d], p)),
+                            FastMath.tan(evaluate(c.y[d], p)),
+                            1.0).normalize();
+    }
+
+    /** Evaluate a polynomial.
+     * @param coeffs polynomial coefficients, with the constant term at index 0
+     * @param p pixel index within the detector
+     * @return value of the polynomial
+     */
+    private static double evaluate(final double[] coeffs, final double p) {
+        double value = 0;
+        for (int k = coeffs.length - 1; k >= 0; --k) {
+            value = value * p + coeffs[k];
+        }
+        return value;
+    }
+
+    /** Evaluate a polynomial with derivatives.
+     * @param <T> derivative type
+     * @param drivers polynomial coefficients drivers, with the constant term at index 0
+     * @param p pixel index within the detector
+     * @param generator generator to use for building {@link Derivative} instances
+     * @return value of the polynomial, with its partial derivatives
+     */
+    private static <T extends Derivative<T>> T evaluate(final ParameterDriver[] drivers, final double p,
+                                                        final DerivativeGenerator<T> generator) {
+        T value = generator.getField().getZero();
+        for (int k = drivers.length - 1; k >= 0; --k) {
+            value = value.multiply(p).add(generator.variable(drivers[k]));
+        }
+        return value;
+    }
+
+    /** Polynomials coefficients read from drivers for one parameters epoch. */
+    private static class Coefficients {
+
+        /** Parameters epoch. */
+        private final long epoch;
+
+        /** ψ<sub>x</sub> polynomials coefficients, for each detector. */
+        private final double[][] x;
+
+        /** ψ<sub>y</sub> polynomials coefficients, for each detector. */
+        private final double[][] y;
+
+        /** Simple constructor.
+         * @param epoch parameters epoch
+         * @param xDrivers drivers for ψ<sub>x</sub> polynomials coefficients, for each detector
+         * @param yDrivers drivers for ψ<sub>y</sub> polynomials coefficients, for each detector
+         */
+        Coefficients(final long epoch, final ParameterDriver[][] xDrivers, final ParameterDriver[][] yDrivers) {
+            this.epoch = epoch;
+            x = read(xDrivers);
+            y = read(yDrivers);
+        }
+
+        /** Read coefficients from drivers.
+         * @param drivers drivers for polynomials coefficients, for each detector
+         * @return polynomials coefficients, for each detector
+         */
+        private static double[][] read(final ParameterDriver[][] drivers) {
+            final double[][] coeffs = new double[drivers.length][];
+            for (int d = 0; d < drivers.length; ++d) {
+                coeffs[d] = new double[drivers[d].length];
+                for (int k = 0; k < coeffs[d].length; ++k) {
+                    coeffs[d][k] = drivers[d][k].getValue();
+                }
+            }
+            return coeffs;
+        }
+
+    }
+
+}
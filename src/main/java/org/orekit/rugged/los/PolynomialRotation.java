@@ -37,7 +37,7 @@ import org.orekit.utils.ParameterObserver;
  * @author Luc Maisonobe
  * @see LOSBuilder
  */
-public class PolynomialRotation implements LOSTransform {
+public class PolynomialRotation implements LOSTransform, LinearLOSTransform {
 
     /** Parameters scaling factor.
      * <p>
@@ -131,6 +131,22 @@ public class PolynomialRotation implements LOSTransform {
     /** {@inheritDoc} */
     @Override
     public Vector3D transformLOS(final int i, final Vector3D los, final AbsoluteDate date) {
+        return getRotation(date).applyTo(los);
+    }
+
+    /** {@inheritDoc}
+     * @since 3.1
+     */
+    @Override
+    public double[][] getMatrix(final AbsoluteDate date) {
+        return getRotation(date).getMatrix();
+    }
+
+    /** Get the rotation at a date.
+     * @param date date of the rotation
+     * @return rotation at date
+     */
+    private Rotation getRotation(final AbsoluteDate date) {
         if (angle == null) {
             // lazy evaluation of the rotation
             final double[] coefficients = new double[coefficientsDrivers.length];
@@ -141,7 +157,7 @@ public class PolynomialRotation implements LOSTransform {
         }
         return new Rotation(axis,
                             angle.value(date.durationFrom(referenceDate)),
-                            RotationConvention.VECTOR_OPERATOR).applyTo(los);
+                            RotationConvention.VECTOR_OPERATOR);
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,336 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.los;
+
+import java.util.stream.Stream;
+
+import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+import org.orekit.utils.ParameterObserver;
+
+/** Time-dependent lines-of-sight tabulated on a regular time grid.
+ * <p>
+ * Applying a sequence of {@link LOSTransform time-dependent transforms} for each pixel
+ * and each date may cost more than the ground intersection itself for sensors with tens
+ * of thousands of pixels. This class evaluates the underlying lines-of-sight for all pixels
+ * at the dates of a regular time grid only, and interpolates linearly between the two grid
+ * dates surrounding the requested date (the interpolated direction being normalized).
+ * </p>
+ * <p>
+ * The grid step is selected automatically: the number of grid intervals is doubled until the
+ * angular error at intervals midpoints, checked on a subset of the pixels, is below the
+ * specified tolerance. Dates outside of the tabulated time span are delegated to the
+ * underlying lines-of-sight.
+ * </p>
+ * <p>
+ * The table size is bounded: the number of grid intervals cannot exceed {@link #MAX_INTERVALS}
+ * and the number of tabulated directions (i.e. number of grid dates times number of pixels)
+ * cannot exceed {@link #MAX_TABULATED_DIRECTIONS}, which corresponds to 48MiB of memory. If the
+ * tolerance cannot be met within these limits, no table is built at all and all lines-of-sight
+ * are delegated to the underlying lines-of-sight ({@link #getIntervals()} then returns 0).
+ * </p>
+ * <p>
+ * The table is computed on first use, and invalidated each time one of the {@link
+ * #getParametersDrivers() parameters drivers} changes, using {@link ParameterObserver}.
+ * It is then recomputed on next use. Derivatives with respect to the parameters are
+ * always delegated to the underlying lines-of-sight, as they are used only for calibration.
+ * </p>
+ * <p>
+ * This class is thread-safe as long as the parameters are not changed while lines-of-sight
+ * are computed.
+ * </p>
+ * @see LOSBuilder#setTabulation(AbsoluteDate, AbsoluteDate, double)
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class TabulatedLOS implements TimeDependentLOS {
+
+    /** Maximum number of grid intervals. */
+    public static final int MAX_INTERVALS = 1 << 12;
+
+    /** Maximum number of tabulated directions (number of grid dates times number of pixels). */
+    public static final int MAX_TABULATED_DIRECTIONS = 1 << 21;
+
+    /** Number of pixels checked for grid step selection. */
+    private static final int CHECKED_PIXELS = 16;
+
+    /** Underlying lines-of-sight. */
+    private final TimeDependentLOS underlying;
+
+    /** Start of the tabulated time span. */
+    private final AbsoluteDate minDate;
+
+    /** End of the tabulated time span. */
+    private final AbsoluteDate maxDate;
+
+    /** Angular tolerance for interpolation (rad). */
+    private final double tolerance;
+
+    /** Current table (null if it must be recomputed). */
+    private volatile Table table;
+
+    /** Simple constructor.
+     * @param underlying underlying lines-of-sight
+     * @param minDate start of the tabulated time span
+     * @param maxDate end of the tabulated time span (must be strictly after {@code minDate})
+     * @param tolerance angular tolerance for interpolation (rad)
+     */
+    public TabulatedLOS(final TimeDependentLOS underlying,
+                        final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                        final double tolerance) {
+
+        if (maxDate.compareTo(minDate) <= 0) {
+            throw new RuggedException(RuggedMessages.INVALID_TABULATION_TIME_SPAN, minDate, maxDate);
+        }
+
+        this.underlying = underlying;
+        this.minDate    = minDate;
+        this.maxDate    = maxDate;
+        this.tolerance  = tolerance;
+        this.table      = null;
+
+        // we will reset the table when parameters are changed
+        final ParameterObserver resettingObserver = new ParameterObserver() {
+            /** {@inheritDoc} */
+            @Override
+            public void valueChanged(final double previousValue, final ParameterDriver driver) {
+                table = null;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public void referenceDateChanged(final AbsoluteDate previousReferenceDate, final ParameterDriver driver) {
+                table = null;
+            }
+        };
+        getParametersDrivers().forEach(driver -> {
+            driver.addObserver(resettingObserver);
+        });
+
+    }
+
+    /** Get the underlying lines-of-sight.
+     * @return underlying lines-of-sight
+     */
+    public TimeDependentLOS getUnderlying() {
+        return underlying;
+    }
+
+    /** Get the number of grid intervals.
+     * <p>
+     * Calling this method computes the table if needed.
+     * </p>
+     * @return number of grid intervals, or 0 if the tolerance could not be met
+     * within table size limits and all lines-of-sight are delegated to the
+     * underlying lines-of-sight
+     */
+    public int getIntervals() {
+        return getTable().intervals;
+    }
+
+    /** Get the maximum angular error observed at grid intervals midpoints.
+     * <p>
+     * Calling this method computes the table if needed.
+     * </p>
+     * @return maximum angular error observed at grid intervals midpoints (rad),
+     * or 0 if all lines-of-sight are delegated to the underlying lines-of-sight
+     */
+    public double getMaxError() {
+        return getTable().maxError;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getNbPixels() {
+        return underlying.getNbPixels();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Vector3D getLOS(final int index, final AbsoluteDate date) {
+
+        final Table  t  = getTable();
+        final double dt = date.durationFrom(minDate);
+        if (t.data == null || dt < 0 || dt > t.span) {
+            // no table or outside of tabulated time span
+            return underlying.getLOS(index, date);
+        }
+
+        // interpolate between the surrounding grid dates
+        final double x     = dt / t.step;
+        final int    k     = FastMath.min(t.intervals - 1, (int) FastMath.floor(x));
+        final double alpha = x - k;
+        final int    i0    = 3 * (k * t.nbPixels + index);
+        final int    i1    = i0 + 3 * t.nbPixels;
+        return new Vector3D((1 - alpha) * t.data[i0]     + alpha * t.data[i1],
+                            (1 - alpha) * t.data[i0 + 1] + alpha * t.data[i1 + 1],
+                            (1 - alpha) * t.data[i0 + 2] + alpha * t.data[i1 + 2]).normalize();
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public <T extends Derivative<T>> FieldVector3D<T> getLOSDerivatives(final int index, final AbsoluteDate date,
+                                                                        final DerivativeGenerator<T> generator) {
+        return underlying.getLOSDerivatives(index, date, generator);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<ParameterDriver> getParametersDrivers() {
+        return underlying.getParametersDrivers();
+    }
+
+    /** Get the current table, computing it if needed.
+     * @return current table
+     */
+    private Table getTable() {
+        final Table t = table;
+        return t != null ? t : computeTable();
+    }
+
+    /** Compute the table.
+     * @return computed table
+     */
+    private synchronized Table computeTable() {
+
+        if (table != null) {
+            // another thread has already computed the table
+            return table;
+        }
+
+        final int    nbPixels = underlying.getNbPixels();
+        final double span     = maxDate.durationFrom(minDate);
+
+        // select the pixels used for checking interpolation error
+        final int   nbChecked = FastMath.min(nbPixels, CHECKED_PIXELS);
+        final int[] checked   = new int[nbChecked];
+        for (int j = 0; j < nbChecked; ++j) {
+            checked[j] = nbChecked == 1 ? 0 : (int) FastMath.rint(j * (nbPixels - 1.0) / (nbChecked - 1));
+        }
+
+        // the table holds intervals + 1 grid dates for each pixel
+        final int maxIntervals = FastMath.min(MAX_INTERVALS, MAX_TABULATED_DIRECTIONS / nbPixels - 1);
+        if (maxIntervals < 1) {
+            // even a single interval would be too large
+            table = new Table(nbPixels, span, 0, span, null, 0.0);
+            return table;
+        }
+
+        // double the number of intervals until the midpoints errors are small enough
+        int    intervals = 1;
+        double maxError  = checkIntervals(checked, span, intervals);
+        while (maxError > tolerance && 2 * intervals <= maxIntervals) {
+            intervals *= 2;
+            maxError   = checkIntervals(checked, span, intervals);
+        }
+        if (maxError > tolerance) {
+            // the tolerance cannot be met within table size limits
+            table = new Table(nbPixels, span, 0, span, null, 0.0);
+            return table;
+        }
+
+        // tabulate all pixels
+        final double   step = span / intervals;
+        final double[] data = new double[3 * (intervals + 1) * nbPixels];
+        for (int k = 0; k <= intervals; ++k) {
+            final AbsoluteDate date = minDate.shiftedBy(k * step);
+            for (int i = 0; i < nbPixels; ++i) {
+                final Vector3D los = underlying.getLOS(i, date);
+                final int      l   = 3 * (k * nbPixels + i);
+                data[l]     = los.getX();
+                data[l + 1] = los.getY();
+                data[l + 2] = los.getZ();
+            }
+        }
+
+        table = new Table(nbPixels, span, intervals, step, data, maxError);
+        return table;
+
+    }
+
+    /** Check the interpolation error for a number of grid intervals.
+     * @param checked indices of the checked pixels
+     * @param span tabulated time span
+     * @param intervals number of grid intervals
+     * @return maximum angular error at intervals midpoints for checked pixels
+     */
+    private double checkIntervals(final int[] checked, final double span, final int intervals) {
+        final double step     = span / intervals;
+        double       maxError = 0;
+        for (final int i : checked) {
+            Vector3D previous = underlying.getLOS(i, minDate);
+            for (int k = 1; k <= intervals; ++k) {
+                final Vector3D current  = underlying.getLOS(i, minDate.shiftedBy(k * step));
+                final Vector3D exact    = underlying.getLOS(i, minDate.shiftedBy((k - 0.5) * step));
+                final Vector3D midpoint = new Vector3D(0.5, previous, 0.5, current);
+                maxError = FastMath.max(maxError, Vector3D.angle(exact, midpoint));
+                previous = current;
+            }
+        }
+        return maxError;
+    }
+
+    /** Tabulated lines-of-sight. */
+    private static class Table {
+
+        /** Number of pixels. */
+        private final int nbPixels;
+
+        /** Tabulated time span. */
+        private final double span;
+
+        /** Number of grid intervals. */
+        private final int intervals;
+
+        /** Grid step. */
+        private final double step;
+
+        /** Tabulated directions, for each grid date and each pixel (null if not tabulated). */
+        private final double[] data;
+
+        /** Maximum angular error observed at intervals midpoints. */
+        private final double maxError;
+
+        /** Simple constructor.
+         * @param nbPixels number of pixels
+         * @param span tabulated time span
+         * @param intervals number of grid intervals
+         * @param step grid step
+         * @param data tabulated directions, for each grid date and each pixel (null if not tabulated)
+         * @param maxError maximum angular error observed at intervals midpoints
+         */
+        Table(final int nbPixels, final double span, final int intervals, final double step,
+              final double[] data, final double maxError) {
+            this.nbPixels  = nbPixels;
+            this.span      = span;
+            this.intervals = intervals;
+            this.step      = step;
+            this.data      = data;
+            this.maxError  = maxError;
+        }
+
+    }
+
+}
@@ -21,6 +21,7 @@ import java.util.stream.Stream;
 import org.hipparchus.analysis.differentiation.Derivative;
 import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
 import org.orekit.rugged.utils.DerivativeGenerator;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.ParameterDriver;
@@ -43,6 +44,23 @@ public interface TimeDependentLOS {
      */
     Vector3D getLOS(int index, AbsoluteDate date);
 
+    /** Get the normalized line of sight for a given date at a fractional pixel index.
+     * <p>
+     * The default implementation interpolates linearly between the two surrounding
+     * pixels and normalizes the result. Implementations based on analytical models
+     * or packed tables may override it with a more direct evaluation.
+     * </p>
+     * @param index fractional los pixel index
+     * @param date date
+     * @return normalized line of sight
+     * @since 3.1
+     */
+    default Vector3D getLOS(final double index, final AbsoluteDate date) {
+        final int iInf = FastMath.max(0, FastMath.min(getNbPixels() - 2, (int) FastMath.floor(index)));
+        final int iSup = iInf + 1;
+        return new Vector3D(iSup - index, getLOS(iInf, date), index - iInf, getLOS(iSup, date)).normalize();
+    }
+
     /** Get the line of sight and its partial derivatives for a given date.
      * <p>
      * This method is used for LOS calibration purposes. It allows to compute
@@ -0,0 +1,331 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.raster;
+
+import org.hipparchus.util.FastMath;
+import org.hipparchus.util.MathUtils;
+import org.orekit.errors.OrekitException;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+
+/** {@link TileUpdater Tile updater} assembling adjacent source tiles into larger super-tiles.
+ * <p>
+ * Small Digital Elevation Model tiles (for example 1°×1° tiles) force intersection
+ * algorithms to hop from tile to tile very often, especially for oblique lines of sight.
+ * This updater wraps a user-provided source updater and fills each requested tile with
+ * a mosaic of {@code latitudeTiles × longitudeTiles} source tiles, centered on the
+ * source tile that covers the requested point. As the filled tile is created by the
+ * regular {@link TileFactory tile factory}, it gets a single min/max tree for the
+ * whole mosaic when used with {@link org.orekit.rugged.intersection.duvenhage.DuvenhageAlgorithm
+ * Duvenhage algorithm}. Super-tiles are built lazily, when the intersection algorithms
+ * request a tile for a point that is not covered by the already cached super-tiles.
+ * </p>
+ * <p>
+ * Source tiles must be regular: they must all share the same steps and sizes, and they
+ * must overlap their neighbors by one cell as required by {@link TileUpdater}. Mosaics are
+ * clipped at poles and never span more than 2π in longitude. If some source tile in the
+ * neighborhood is not available (i.e. the source updater fails to provide it, which
+ * occurs at the edges of Digital Elevation Model coverage) or is not consistent with the
+ * central one, the super-tile is reduced to the largest rectangular sub-mosaic around
+ * the central source tile that contains only available and consistent tiles. In the
+ * worst case, it falls back to the central source tile alone. Only failures to provide
+ * the central source tile itself are propagated to the caller.
+ * </p>
+ * <p>
+ * Recently used source tiles are kept in a small internal cache, so neighboring super-tiles
+ * share them without calling the source updater again. Beware that the memory used by a
+ * super-tile grows as the product of the number of source tiles in each direction.
+ * </p>
+ * <p>
+ * Beware, this updater is <em>not</em> thread-safe!
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class MosaicTileUpdater implements TileUpdater {
+
+    /** Tolerance on source tiles alignment (fraction of one cell). */
+    private static final double TOLERANCE = 1.0 / 8.0;
+
+    /** Updater for source tiles. */
+    private final TileUpdater sourceUpdater;
+
+    /** Factory for source tiles. */
+    private final TileFactory<SimpleTile> sourceFactory;
+
+    /** Number of source tiles along latitude in one super-tile. */
+    private final int latitudeTiles;
+
+    /** Number of source tiles along longitude in one super-tile. */
+    private final int longitudeTiles;
+
+    /** Cache for source tiles, most recently used first. */
+    private final SimpleTile[] sourceTiles;
+
+    /** Simple constructor.
+     * <p>
+     * The internal cache for source tiles holds twice the number of source
+     * tiles in one super-tile.
+     * </p>
+     * @param sourceUpdater updater for source tiles
+     * @param latitudeTiles number of source tiles along latitude in one super-tile
+     * (should be odd so super-tiles are centered)
+     * @param longitudeTiles number of source tiles along longitude in one super-tile
+     * (should be odd so super-tiles are centered)
+     */
+    public MosaicTileUpdater(final TileUpdater sourceUpdater,
+                             final int latitudeTiles, final int longitudeTiles) {
+        this.sourceUpdater  = sourceUpdater;
+        this.sourceFactory  = new SimpleTileFactory();
+        this.latitudeTiles  = FastMath.max(1, latitudeTiles);
+        this.longitudeTiles = FastMath.max(1, longitudeTiles);
+        this.sourceTiles    = new SimpleTile[2 * this.latitudeTiles * this.longitudeTiles];
+    }
+
+    /** Get the number of source tiles along latitude in one super-tile.
+     * @return number of source tiles along latitude in one super-tile
+     */
+    public int getLatitudeTiles() {
+        return latitudeTiles;
+    }
+
+    /** Get the number of source tiles along longitude in one super-tile.
+     * @return number of source tiles along longitude in one super-tile
+     */
+    public int getLongitudeTiles() {
+        return longitudeTiles;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateTile(final double latitude, final double longitude, final UpdatableTile tile) {
+
+        // source tile covering the requested point, which will be at the center of the mosaic
+        final SimpleTile center = getSourceTile(latitude, longitude);
+        final double latitudeStep  = center.getLatitudeStep();
+        final double longitudeStep = center.getLongitudeStep();
+        final int    rows          = center.getLatitudeRows();
+        final int    columns       = center.getLongitudeColumns();
+        final double latitudeSpan  = (rows    - 1) * latitudeStep;
+        final double longitudeSpan = (columns - 1) * longitudeStep;
+
+        // source tile longitudes may be normalized differently from the requested longitude
+        final double centerLongitude = 0.5 * (center.getMinimumLongitude() + center.getMaximumLongitude());
+        final double minLatitude     = center.getMinimumLatitude();
+        final double minLongitude    = center.getMinimumLongitude() +
+                                       MathUtils.normalizeAngle(centerLongitude, longitude) - centerLongitude;
+
+        // mosaic indices range, clipped at poles and to one turn in longitude
+        int iMin = -(latitudeTiles - 1) / 2;
+        int iMax = iMin + latitudeTiles - 1;
+        while (iMin < 0 && minLatitude + iMin * latitudeSpan < -0.5 * FastMath.PI - TOLERANCE * latitudeStep) {
+            ++iMin;
+        }
+        while (iMax > 0 && minLatitude + (iMax + 1) * latitudeSpan > 0.5 * FastMath.PI + TOLERANCE * latitudeStep) {
+            --iMax;
+        }
+        int jMin = -(longitudeTiles - 1) / 2;
+        int jMax = jMin + longitudeTiles - 1;
+        while (jMax > 0 && (jMax - jMin + 1) * longitudeSpan > MathUtils.TWO_PI + TOLERANCE * longitudeStep) {
+            if (-jMin > jMax) {
+                ++jMin;
+            } else {
+                --jMax;
+            }
+        }
+
+        // gather all available and consistent source tiles
+        final SimpleTile[][] mosaic = new SimpleTile[iMax - iMin + 1][jMax - jMin + 1];
+        for (int i = iMin; i <= iMax; ++i) {
+            final double expectedLatitude = minLatitude + i * latitudeSpan;
+            for (int j = jMin; j <= jMax; ++j) {
+                final double expectedLongitude = minLongitude + j * longitudeSpan;
+                final SimpleTile source = (i == 0 && j == 0) ?
+                                          center :
+                                          getNeighborTile(expectedLatitude  + 0.5 * latitudeSpan,
+                                                          expectedLongitude + 0.5 * longitudeSpan);
+                if (source != null && isAligned(source, center, expectedLatitude, expectedLongitude)) {
+                    mosaic[i - iMin][j - jMin] = source;
+                }
+            }
+        }
+
+        // select the largest complete sub-mosaic containing the central tile
+        // (at worst, this is the central source tile alone)
+        int bestArea = 1;
+        int iLow     = 0;
+        int iHigh    = 0;
+        int jLow     = 0;
+        int jHigh    = 0;
+        for (int i0 = iMin; i0 <= 0; ++i0) {
+            for (int i1 = 0; i1 <= iMax; ++i1) {
+                for (int j0 = jMin; j0 <= 0; ++j0) {
+                    for (int j1 = 0; j1 <= jMax; ++j1) {
+                        final int area = (i1 - i0 + 1) * (j1 - j0 + 1);
+                        if (area > bestArea && isComplete(mosaic, i0 - iMin, i1 - iMin, j0 - jMin, j1 - jMin)) {
+                            bestArea = area;
+                            iLow     = i0;
+                            iHigh    = i1;
+                            jLow     = j0;
+                            jHigh    = j1;
+                        }
+                    }
+                }
+            }
+        }
+        final int iOffset = iLow - iMin;
+        final int jOffset = jLow - jMin;
+        final int nI      = iHigh - iLow + 1;
+        final int nJ      = jHigh - jLow + 1;
+
+        // fill up the super-tile
+        tile.setGeometry(minLatitude  + iLow * latitudeSpan, minLongitude + jLow * longitudeSpan,
+                         latitudeStep, longitudeStep,
+                         nI * (rows - 1) + 1, nJ * (columns - 1) + 1);
+        for (int i = 0; i < nI; ++i) {
+            for (int j = 0; j < nJ; ++j) {
+                final SimpleTile source = mosaic[i + iOffset][j + jOffset];
+                // cells shared with a North or East neighbor are copied from the neighbor,
+                // consistently with source updaters selecting the northernmost/easternmost tile
+                final int kEnd = (i == nI - 1) ? rows    : rows    - 1;
+                final int lEnd = (j == nJ - 1) ? columns : columns - 1;
+                for (int k = 0; k < kEnd; ++k) {
+                    final int latitudeIndex = i * (rows - 1) + k;
+                    for (int l = 0; l < lEnd; ++l) {
+                        tile.setElevation(latitudeIndex, j * (columns - 1) + l,
+                                          source.getElevationAtIndices(k, l));
+                    }
+                }
+            }
+        }
+
+    }
+
+    /** Check if a rectangular part of a mosaic contains only available tiles.
+     * @param mosaic mosaic to check (with null entries for unavailable tiles)
+     * @param rowMin first row of the rectangular part (included)
+     * @param rowMax last row of the rectangular part (included)
+     * @param columnMin first column of the rectangular part (included)
+     * @param columnMax last column of the rectangular part (included)
+     * @return true if all tiles in the rectangular part are available
+     */
+    private boolean isComplete(final SimpleTile[][] mosaic,
+                               final int rowMin, final int rowMax,
+                               final int columnMin, final int columnMax) {
+        for (int i = rowMin; i <= rowMax; ++i) {
+            for (int j = columnMin; j <= columnMax; ++j) {
+                if (mosaic[i][j] == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Check if a source tile is aligned with the central tile of a mosaic.
+     * @param source source tile to check
+     * @param center central tile of the mosaic
+     * @param expectedLatitude expected minimum latitude of the source tile
+     * @param expectedLongitude expected minimum longitude of the source tile (modulo 2π)
+     * @return true if source tile is aligned
+     */
+    private boolean isAligned(final SimpleTile source, final SimpleTile center,
+                              final double expectedLatitude, final double expectedLongitude) {
+        final double latitudeStep  = center.getLatitudeStep();
+        final double longitudeStep = center.getLongitudeStep();
+        return source.getLatitudeRows()     == center.getLatitudeRows() &&
+               source.getLongitudeColumns() == center.getLongitudeColumns() &&
+               FastMath.abs(source.getLatitudeStep()  - latitudeStep)  <= 1.0e-10 * latitudeStep &&
+               FastMath.abs(source.getLongitudeStep() - longitudeStep) <= 1.0e-10 * longitudeStep &&
+               FastMath.abs(source.getMinimumLatitude() - expectedLatitude) <= TOLERANCE * latitudeStep &&
+               FastMath.abs(MathUtils.normalizeAngle(source.getMinimumLongitude() - expectedLongitude, 0.0)) <=
+               TOLERANCE * longitudeStep;
+    }
+
+    /** Get a neighbor source tile covering a ground point, if available.
+     * @param latitude ground point latitude
+     * @param longitude ground point longitude
+     * @return source tile covering the ground point, or null if the
+     * source updater fails to provide it
+     */
+    private SimpleTile getNeighborTile(final double latitude, final double longitude) {
+        try {
+            return getSourceTile(latitude, longitude);
+        } catch (RuggedException | OrekitException e) {
+            // the neighbor is not available, for example at the edge of Digital Elevation Model coverage
+            return null;
+        }
+    }
+
+    /** Get the source tile covering a ground point.
+     * @param latitude ground point latitude
+     * @param longitude ground point longitude
+     * @return source tile covering the ground point
+     */
+    private SimpleTile getSourceTile(final double latitude, final double longitude) {
+
+        for (int i = 0; i < sourceTiles.length; ++i) {
+            final SimpleTile tile = sourceTiles[i];
+            if (tile != null && covers(tile, latitude, longitude)) {
+                // we have found the tile in the cache
+
+                // put it on the front as it becomes the most recently used
+                while (i > 0) {
+                    sourceTiles[i] = sourceTiles[i - 1];
+                    --i;
+                }
+                sourceTiles[0] = tile;
+
+                return tile;
+
+            }
+        }
+
+        // create the tile and retrieve its data
+        final SimpleTile tile = sourceFactory.createTile();
+        sourceUpdater.updateTile(latitude, longitude, tile);
+        tile.tileUpdateCompleted();
+
+        if (!covers(tile, latitude, longitude)) {
+            // this should happen only if user set up an inconsistent TileUpdater
+            throw new RuggedException(RuggedMessages.TILE_WITHOUT_REQUIRED_NEIGHBORS_SELECTED,
+                                      FastMath.toDegrees(latitude),
+                                      FastMath.toDegrees(longitude));
+        }
+
+        // make some room in the cache, possibly evicting the least recently used one
+        for (int i = sourceTiles.length - 1; i > 0; --i) {
+            sourceTiles[i] = sourceTiles[i - 1];
+        }
+        sourceTiles[0] = tile;
+        return tile;
+
+    }
+
+    /** Check if a tile covers a ground point, regardless of longitude normalization.
+     * @param tile tile to check
+     * @param latitude ground point latitude
+     * @param longitude ground point longitude
+     * @return true if the tile has interpolation neighbors for the ground point
+     */
+    private boolean covers(final Tile tile, final double latitude, final double longitude) {
+        final double centerLongitude = 0.5 * (tile.getMinimumLongitude() + tile.getMaximumLongitude());
+        return tile.getLocation(latitude, MathUtils.normalizeAngle(longitude, centerLongitude)) ==
+               Tile.Location.HAS_INTERPOLATION_NEIGHBORS;
+    }
+
+}
@@ -268,8 +268,7 @@ public class SimpleTile implements Tile {
 
         final double doubleLatitudeIndex  = getDoubleLatitudeIndex(latitude);
         final double doubleLongitudeIndex = getDoubleLontitudeIndex(longitude);
-        if (doubleLatitudeIndex  < -TOLERANCE || doubleLatitudeIndex  >= (latitudeRows - 1 + TOLERANCE) ||
-            doubleLongitudeIndex < -TOLERANCE || doubleLongitudeIndex >= (longitudeColumns - 1 + TOLERANCE)) {
+        if (!isWithinTolerance(doubleLatitudeIndex, doubleLongitudeIndex)) {
             throw new RuggedException(RuggedMessages.OUT_OF_TILE_ANGLES,
                                       FastMath.toDegrees(latitude),
                                       FastMath.toDegrees(longitude),
@@ -279,6 +278,47 @@ public class SimpleTile implements Tile {
                                       FastMath.toDegrees(getMaximumLongitude()));
         }
 
+        return interpolateAtIndices(doubleLatitudeIndex, doubleLongitudeIndex);
+
+    }
+
+    /** {@inheritDoc}
+     * <p>
+     * This classes uses an arbitrary 1/8 cell tolerance for interpolating
+     * slightly out of tile points.
+     * </p>
+     * @since 3.1
+     */
+    @Override
+    public double interpolateElevationOrNaN(final double latitude, final double longitude) {
+
+        final double doubleLatitudeIndex  = getDoubleLatitudeIndex(latitude);
+        final double doubleLongitudeIndex = getDoubleLontitudeIndex(longitude);
+        return isWithinTolerance(doubleLatitudeIndex, doubleLongitudeIndex) ?
+               interpolateAtIndices(doubleLatitudeIndex, doubleLongitudeIndex) :
+               Double.NaN;
+
+    }
+
+    /** Check if a point is within tile, taking tolerance into account.
+     * @param doubleLatitudeIndex latitude index of the point (may be non-integer)
+     * @param doubleLongitudeIndex longitude index of the point (may be non-integer)
+     * @return true if the point is within tile
+     * @since 3.1
+     */
+    private boolean isWithinTolerance(final double doubleLatitudeIndex, final double doubleLongitudeIndex) {
+        return !(doubleLatitudeIndex  < -TOLERANCE || doubleLatitudeIndex  >= (latitudeRows - 1 + TOLERANCE) ||
+                 doubleLongitudeIndex < -TOLERANCE || doubleLongitudeIndex >= (longitudeColumns - 1 + TOLERANCE));
+    }
+
+    /** Interpolate elevation at non-integer indices.
+     * @param doubleLatitudeIndex latitude index of the point (may be non-integer)
+     * @param doubleLongitudeIndex longitude index of the point (may be non-integer)
+     * @return interpolated elevation (m)
+     * @since 3.1
+     */
+    private double interpolateAtIndices(final double doubleLatitudeIndex, final double doubleLongitudeIndex) {
+
         final int latitudeIndex  = FastMath.max(0,
                                                 FastMath.min(latitudeRows - 2,
                                                              (int) FastMath.floor(doubleLatitudeIndex)));
@@ -255,6 +255,31 @@ public interface Tile extends UpdatableTile {
      */
     double interpolateElevation(double latitude, double longitude);
 
+    /** Interpolate elevation, without triggering an exception for out of tile points.
+     * <p>
+     * This method is similar to {@link #interpolateElevation(double, double)}, with
+     * the same tolerance around the tile, but it returns {@code Double.NaN} for points
+     * too far from the tile instead of triggering an exception. It is intended to be
+     * used in computation loops where out of tile points are an ordinary condition.
+     * </p>
+     * <p>
+     * The default implementation checks the {@link #getLocation(double, double) location}
+     * of the point and delegates to {@link #interpolateElevation(double, double)} only for
+     * points that have interpolation neighbors, so it does not use the tolerance around
+     * the tile. Implementations are expected to override it with a check that takes the
+     * tolerance into account.
+     * </p>
+     * @param latitude ground point latitude
+     * @param longitude ground point longitude
+     * @return interpolated elevation (m), or {@code Double.NaN} if point is out of tile
+     * @since 3.1
+     */
+    default double interpolateElevationOrNaN(final double latitude, final double longitude) {
+        return getLocation(latitude, longitude) == Location.HAS_INTERPOLATION_NEIGHBORS ?
+               interpolateElevation(latitude, longitude) :
+               Double.NaN;
+    }
+
     /** Find the intersection of a line-of-sight and a Digital Elevation Model cell.
      * <p>
      * Beware that for continuity reasons, the point argument in {@code cellIntersection} is normalized
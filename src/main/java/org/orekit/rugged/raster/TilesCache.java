@@ -25,7 +25,11 @@ import org.orekit.rugged.errors.RuggedMessages;
 
 /** Cache for Digital Elevation Model {@link Tile tiles}.
  * <p>
- * Beware, this cache is <em>not</em> thread-safe!
+ * This cache is thread-safe: tiles are immutable once loaded and the cache
+ * content is published as an array that is never modified afterwards, so
+ * lookup does not need any lock. Only loading tiles and reordering the cache
+ * are serialized. Several threads may therefore share the same
+ * {@link org.orekit.rugged.intersection.IntersectionAlgorithm intersection algorithm}.
  * </p>
  * @param <T> Type of tiles.
  * @author Luc Maisonobe
@@ -38,8 +42,12 @@ public class TilesCache<T extends Tile> {
     /** Updater for retrieving tiles data. */
     private final TileUpdater updater;
 
-    /** Cache. */
-    private final T[] tiles;
+    /** Cache, from the most recently used tile to the least recently used one.
+     * <p>
+     * Published arrays are never modified, changes are made on copies.
+     * </p>
+     */
+    private volatile T[] tiles;
 
     /** Simple constructor.
      * @param factory factory for creating empty tiles
@@ -61,28 +69,61 @@ public class TilesCache<T extends Tile> {
      */
     public T getTile(final double latitude, final double longitude) {
 
-        for (int i = 0; i < tiles.length; ++i) {
-            final T tile = tiles[i];
+        // lock-free lookup in the currently published cache
+        final T[] current = tiles;
+        for (int i = 0; i < current.length; ++i) {
+            final T tile = current[i];
             if (tile != null && tile.getLocation(latitude, longitude) == Tile.Location.HAS_INTERPOLATION_NEIGHBORS) {
                 // we have found the tile in the cache
-
-                // put it on the front as it becomes the most recently used
-                while (i > 0) {
-                    tiles[i] = tiles[i - 1];
-                    --i;
+                if (i > 0) {
+                    // put it on the front as it becomes the most recently used
+                    promote(tile);
                 }
-                tiles[0] = tile;
-
                 return tile;
-
             }
         }
 
         // none of the tiles in the cache covers the specified points
+        return load(latitude, longitude);
+
+    }
 
-        // make some room in the cache, possibly evicting the least recently used one
-        for (int i = tiles.length - 1; i > 0; --i) {
-            tiles[i] = tiles[i - 1];
+    /** Put a cached tile on the front of the cache.
+     * @param tile tile to put on the front
+     */
+    private synchronized void promote(final T tile) {
+
+        final T[] current = tiles;
+        int i = 0;
+        while (i < current.length && current[i] != tile) {
+            ++i;
+        }
+        if (i == 0 || i == current.length) {
+            // the tile is already on the front, or it has been evicted by another thread
+            return;
+        }
+
+        final T[] updated = current.clone();
+        System.arraycopy(current, 0, updated, 1, i);
+        updated[0] = tile;
+        tiles = updated;
+
+    }
+
+    /** Load a tile covering a ground point.
+     * @param latitude ground point latitude
+     * @param longitude ground point longitude
+     * @return tile covering the ground point
+     */
+    private synchronized T load(final double latitude, final double longitude) {
+
+        // another thread may have loaded the tile while we were waiting for the lock
+        final T[] current = tiles;
+        for (final T tile : current) {
+            if (tile != null && tile.getLocation(latitude, longitude) == Tile.Location.HAS_INTERPOLATION_NEIGHBORS) {
+                promote(tile);
+                return tile;
+            }
         }
 
         // create the tile and retrieve its data
@@ -106,7 +147,12 @@ public class TilesCache<T extends Tile> {
                                       FastMath.toDegrees(longitude));
         }
 
-        tiles[0] = tile;
+        // publish a new cache, possibly evicting the least recently used tile
+        final T[] updated = current.clone();
+        System.arraycopy(current, 0, updated, 1, current.length - 1);
+        updated[0] = tile;
+        tiles = updated;
+
         return tile;
 
     }
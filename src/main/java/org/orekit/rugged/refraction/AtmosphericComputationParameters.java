@@ -132,6 +132,22 @@ public class AtmosphericComputationParameters {
         this.lineStep = gridLineStep;
     }
 
+    /** Get the grid pixel step.
+     * @return grid pixel step for the inverse location computation
+     * @since 3.1
+     */
+    public int getPixelStep() {
+        return pixelStep;
+    }
+
+    /** Get the grid line step.
+     * @return grid line step for the inverse location computation
+     * @since 3.1
+     */
+    public int getLineStep() {
+        return lineStep;
+    }
+
     /**
      * Set the margin for computation of inverse location with atmospheric refraction correction.
      * Overwrite the default value DEFAULT_INVLOC_MARGIN.
@@ -0,0 +1,193 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.refraction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import org.hipparchus.analysis.interpolation.BilinearInterpolatingFunction;
+import org.hipparchus.exception.LocalizedCoreFormats;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+
+/** Atmospheric refraction correction grid used by inverse location.
+ * <p>
+ * A grid is associated with one context: a sensor and a range of lines
+ * in which inverse location is searched. It holds the bilinear interpolating
+ * functions giving the pixel and line corrections due to refraction. It also
+ * holds the grid steps and the {@link AtmosphericRefraction#getModelConfiguration()
+ * refraction model configuration} it was computed with, so a stored grid cannot
+ * be used with a different configuration.
+ * </p>
+ * <p>
+ * As computing a grid is costly, grids can be {@link #store(OutputStream) stored}
+ * and {@link #load(InputStream) loaded} back later on, and then registered to the
+ * refraction model using {@link AtmosphericRefraction#addCorrectionGrid(AtmosphericCorrectionGrid)}.
+ * </p>
+ * <p>
+ * Instances of this class are guaranteed to be immutable.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class AtmosphericCorrectionGrid implements Serializable {
+
+    /** Serializable UID. */
+    private static final long serialVersionUID = 20221019L;
+
+    /** Sensor name. */
+    private final String sensorName;
+
+    /** Min line. */
+    private final int minLine;
+
+    /** Max line. */
+    private final int maxLine;
+
+    /** Pixel step. */
+    private final int pixelStep;
+
+    /** Line step. */
+    private final int lineStep;
+
+    /** Configuration of the refraction model. */
+    private final String modelConfiguration;
+
+    /** Bilinear interpolating function for pixel correction. */
+    private final BilinearInterpolatingFunction bifPixel;
+
+    /** Bilinear interpolating function for line correction. */
+    private final BilinearInterpolatingFunction bifLine;
+
+    /** Simple constructor.
+     * @param sensorName sensor name
+     * @param minLine min line defined for the inverse location
+     * @param maxLine max line defined for the inverse location
+     * @param pixelStep pixel step used for computing the grid
+     * @param lineStep line step used for computing the grid
+     * @param modelConfiguration configuration of the refraction model used for computing the grid
+     * @param bifPixel bilinear interpolating function for pixel correction
+     * @param bifLine bilinear interpolating function for line correction
+     */
+    public AtmosphericCorrectionGrid(final String sensorName, final int minLine, final int maxLine,
+                                     final int pixelStep, final int lineStep, final String modelConfiguration,
+                                     final BilinearInterpolatingFunction bifPixel,
+                                     final BilinearInterpolatingFunction bifLine) {
+        this.sensorName         = sensorName;
+        this.minLine            = minLine;
+        this.maxLine            = maxLine;
+        this.pixelStep          = pixelStep;
+        this.lineStep           = lineStep;
+        this.modelConfiguration = modelConfiguration;
+        this.bifPixel           = bifPixel;
+        this.bifLine            = bifLine;
+    }
+
+    /** Get the sensor name.
+     * @return sensor name
+     */
+    public String getSensorName() {
+        return sensorName;
+    }
+
+    /** Get the min line.
+     * @return min line defined for the inverse location
+     */
+    public int getMinLine() {
+        return minLine;
+    }
+
+    /** Get the max line.
+     * @return max line defined for the inverse location
+     */
+    public int getMaxLine() {
+        return maxLine;
+    }
+
+    /** Get the pixel step.
+     * @return pixel step used for computing the grid
+     */
+    public int getPixelStep() {
+        return pixelStep;
+    }
+
+    /** Get the line step.
+     * @return line step used for computing the grid
+     */
+    public int getLineStep() {
+        return lineStep;
+    }
+
+    /** Get the configuration of the refraction model.
+     * @return configuration of the refraction model used for computing the grid
+     * @see AtmosphericRefraction#getModelConfiguration()
+     */
+    public String getModelConfiguration() {
+        return modelConfiguration;
+    }
+
+    /** Get the bilinear interpolating function for pixel correction.
+     * @return bilinear interpolating function for pixel correction
+     */
+    public BilinearInterpolatingFunction getBifPixel() {
+        return bifPixel;
+    }
+
+    /** Get the bilinear interpolating function for line correction.
+     * @return bilinear interpolating function for line correction
+     */
+    public BilinearInterpolatingFunction getBifLine() {
+        return bifLine;
+    }
+
+    /** Store the grid.
+     * <p>
+     * The grid is stored using Java serialization.
+     * </p>
+     * @param storageStream stream where to store the grid
+     * @see #load(InputStream)
+     */
+    public void store(final OutputStream storageStream) {
+        try {
+            new ObjectOutputStream(storageStream).writeObject(this);
+        } catch (IOException ioe) {
+            throw new RuggedException(ioe, LocalizedCoreFormats.SIMPLE_MESSAGE, ioe.getMessage());
+        }
+    }
+
+    /** Load a grid.
+     * @param storageStream stream from where to read previous {@link #store(OutputStream) stored} grid
+     * @return loaded grid
+     * @see #store(OutputStream)
+     */
+    public static AtmosphericCorrectionGrid load(final InputStream storageStream) {
+        try {
+            return (AtmosphericCorrectionGrid) new ObjectInputStream(storageStream).readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new RuggedException(cnfe, RuggedMessages.NOT_CORRECTION_GRID_DUMP_DATA);
+        } catch (ClassCastException cce) {
+            throw new RuggedException(cce, RuggedMessages.NOT_CORRECTION_GRID_DUMP_DATA);
+        } catch (IOException ioe) {
+            throw new RuggedException(ioe, RuggedMessages.NOT_CORRECTION_GRID_DUMP_DATA);
+        }
+    }
+
+}
@@ -16,7 +16,16 @@
  */
 package org.orekit.rugged.refraction;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
 import org.hipparchus.analysis.interpolation.BilinearInterpolatingFunction;
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.orekit.rugged.errors.RuggedException;
 import org.orekit.rugged.errors.RuggedMessages;
@@ -33,6 +42,11 @@ import org.orekit.rugged.utils.NormalizedGeodeticPoint;
  */
 public abstract class AtmosphericRefraction {
 
+    /** Default maximum number of cached correction grids.
+     * @since 3.1
+     */
+    private static final int DEFAULT_MAX_CACHED_GRIDS = 8;
+
     /** Flag to tell if we must compute the correction.
      * By default: computation is set up.
      * @since 2.1
@@ -44,15 +58,25 @@ public abstract class AtmosphericRefraction {
      */
     private AtmosphericComputationParameters atmosphericParams;
 
-    /** Bilinear interpolating function for pixel (used by inverse location).
-     * @since 2.1
-    */
-    private BilinearInterpolatingFunction bifPixel;
+    /** Correction grids used by inverse location, from least recently used to most recently used.
+     * @since 3.1
+     */
+    private final Map<GridContext, AtmosphericCorrectionGrid> grids;
 
-    /** Bilinear interpolating function of line (used by inverse location).
-     * @since 2.1
-    */
-    private BilinearInterpolatingFunction bifLine;
+    /** Maximum number of cached correction grids.
+     * @since 3.1
+     */
+    private int maxCachedGrids;
+
+    /** Last computed correction grid (may be null).
+     * @since 3.1
+     */
+    private volatile AtmosphericCorrectionGrid lastGrid;
+
+    /** Pool for parallel computation of correction grids (may be null).
+     * @since 3.1
+     */
+    private ForkJoinPool gridPool;
 
     /**
      * Default constructor.
@@ -61,8 +85,10 @@ public abstract class AtmosphericRefraction {
         // Set up the atmospheric parameters ... with lazy evaluation of the grid (done only if necessary)
         this.atmosphericParams = new AtmosphericComputationParameters();
         this.mustBeComputed    = true;
-        this.bifPixel          = null;
-        this.bifLine           = null;
+        this.grids             = new LinkedHashMap<>(DEFAULT_MAX_CACHED_GRIDS, 0.75f, true);
+        this.maxCachedGrids    = DEFAULT_MAX_CACHED_GRIDS;
+        this.lastGrid          = null;
+        this.gridPool          = null;
     }
 
     /** Apply correction to the intersected point with an atmospheric refraction model.
@@ -141,6 +167,163 @@ public abstract class AtmosphericRefraction {
      */
     public void setGridSteps(final int pixelStep, final int lineStep) {
         atmosphericParams.setGridSteps(pixelStep, lineStep);
+        clearCorrectionGrids();
+    }
+
+    /** Set the maximum number of cached correction grids.
+     * <p>
+     * One correction grid is needed for each context (sensor, min line and max line)
+     * used in inverse location. When the cache is full, the least recently used grid
+     * is evicted. The default value is 8.
+     * </p>
+     * @param maxGrids maximum number of cached correction grids (must be strictly positive)
+     * @since 3.1
+     */
+    public void setMaxCachedGrids(final int maxGrids) {
+        if (maxGrids < 1) {
+            throw new RuggedException(LocalizedCoreFormats.NUMBER_TOO_SMALL, maxGrids, 1);
+        }
+        synchronized (grids) {
+            maxCachedGrids = maxGrids;
+            evict();
+        }
+    }
+
+    /** Set the pool for parallel computation of correction grids.
+     * <p>
+     * Computing a correction grid involves one direct location and one inverse location
+     * for each grid node, which may take several seconds. Providing a pool (for example
+     * {@link ForkJoinPool#commonPool()}) allows to compute the grid nodes in parallel.
+     * The intersection algorithm and this refraction model must then be thread-safe,
+     * which is the case for all algorithms but
+     * {@link org.orekit.rugged.api.AlgorithmId#BASIC_SLOW_EXHAUSTIVE_SCAN_FOR_TESTS_ONLY}
+     * and for all models provided by Rugged. By default, no pool is set and computation
+     * is sequential.
+     * </p>
+     * @param pool pool for parallel computation of correction grids
+     * (null for sequential computation)
+     * @see #getGridComputationPool()
+     * @since 3.1
+     */
+    public void setGridComputationPool(final ForkJoinPool pool) {
+        this.gridPool = pool;
+    }
+
+    /** Get the pool for parallel computation of correction grids.
+     * @return pool for parallel computation of correction grids
+     * (null for sequential computation)
+     * @see #setGridComputationPool(ForkJoinPool)
+     * @since 3.1
+     */
+    public ForkJoinPool getGridComputationPool() {
+        return gridPool;
+    }
+
+    /** Get the correction grid for a context.
+     * <p>
+     * This method is thread-safe.
+     * </p>
+     * @param sensorName sensor name
+     * @param minLine min line defined for the inverse location
+     * @param maxLine max line defined for the inverse location
+     * @return cached correction grid for this context, or null if it has not been computed yet
+     * @since 3.1
+     */
+    public AtmosphericCorrectionGrid getCorrectionGrid(final String sensorName, final int minLine, final int maxLine) {
+        synchronized (grids) {
+            return grids.get(new GridContext(sensorName, minLine, maxLine));
+        }
+    }
+
+    /** Clear all cached correction grids.
+     * @since 3.1
+     */
+    public void clearCorrectionGrids() {
+        synchronized (grids) {
+            grids.clear();
+        }
+        lastGrid = null;
+    }
+
+    /** Get the configuration of the refraction model.
+     * <p>
+     * The configuration is stored in the {@link AtmosphericCorrectionGrid correction grids},
+     * so grids computed with a different model cannot be {@link
+     * #addCorrectionGrid(AtmosphericCorrectionGrid) added}. The default implementation
+     * returns the model class name, models depending on settings (like refraction layers)
+     * should override it to include these settings.
+     * </p>
+     * @return configuration of the refraction model
+     * @since 3.1
+     */
+    public String getModelConfiguration() {
+        return getClass().getName();
+    }
+
+    /** Build the configuration of a layered refraction model.
+     * @param refractionLayers refraction layers (in any order)
+     * @param settings additional model specific settings
+     * @return configuration of the refraction model, including layers and settings
+     * @see #getModelConfiguration()
+     * @since 3.1
+     */
+    protected String layeredModelConfiguration(final List<ConstantRefractionLayer> refractionLayers,
+                                               final double... settings) {
+
+        // sort the layers from the highest to the lowest
+        final List<ConstantRefractionLayer> sorted = new ArrayList<>(refractionLayers);
+        Collections.sort(sorted, (l1, l2) -> Double.compare(l2.getLowestAltitude(), l1.getLowestAltitude()));
+
+        final StringBuilder builder = new StringBuilder(getClass().getName());
+        for (final ConstantRefractionLayer layer : sorted) {
+            builder.append(' ').append(layer.getLowestAltitude()).append(':').append(layer.getRefractiveIndex());
+        }
+        for (final double setting : settings) {
+            builder.append(' ').append(setting);
+        }
+        return builder.toString();
+
+    }
+
+    /** Add a correction grid to the cache.
+     * <p>
+     * This method allows to reuse a grid computed previously, for example one
+     * {@link AtmosphericCorrectionGrid#load(java.io.InputStream) loaded} from storage,
+     * without computing it again. It replaces any grid already cached for the same context.
+     * The grid must have been computed with the same {@link #setGridSteps(int, int) grid steps}
+     * and the same {@link #getModelConfiguration() model configuration} as this model.
+     * </p>
+     * @param grid correction grid to add
+     * @since 3.1
+     */
+    public void addCorrectionGrid(final AtmosphericCorrectionGrid grid) {
+        if (grid.getPixelStep() != atmosphericParams.getPixelStep() ||
+            grid.getLineStep()  != atmosphericParams.getLineStep()  ||
+            !getModelConfiguration().equals(grid.getModelConfiguration())) {
+            throw new RuggedException(RuggedMessages.INCOMPATIBLE_CORRECTION_GRID,
+                                      grid.getPixelStep(), grid.getLineStep(), grid.getModelConfiguration(),
+                                      atmosphericParams.getPixelStep(), atmosphericParams.getLineStep(),
+                                      getModelConfiguration());
+        }
+        synchronized (grids) {
+            grids.put(new GridContext(grid.getSensorName(), grid.getMinLine(), grid.getMaxLine()), grid);
+            evict();
+        }
+        lastGrid = grid;
+    }
+
+    /** Evict least recently used grids if cache is full.
+     * <p>
+     * This method must be called while holding the lock on the grids map.
+     * </p>
+     * @since 3.1
+     */
+    private void evict() {
+        final Iterator<AtmosphericCorrectionGrid> iterator = grids.values().iterator();
+        while (grids.size() > maxCachedGrids) {
+            iterator.next();
+            iterator.remove();
+        }
     }
 
     /**
@@ -162,8 +345,25 @@ public abstract class AtmosphericRefraction {
      * Need to be computed only once for a given sensor with the same minLine and maxLine.
      * @param sensorPixelGridInverseWithout inverse location grid WITHOUT atmospheric refraction
      * @since 2.1
+     * @see #computeCorrectionGrid(SensorPixel[][])
      */
     public void computeGridCorrectionFunctions(final SensorPixel[][] sensorPixelGridInverseWithout) {
+        computeCorrectionGrid(sensorPixelGridInverseWithout);
+    }
+
+    /** Compute the correction grid for the current context.
+     * The corrections are computed for pixels and lines, on a regular grid at sensor level.
+     * The corrections are based on the difference on grid nodes (where direct loc is known with atmosphere refraction)
+     * and the sensor pixel found by inverse loc without atmosphere refraction.
+     * The bilinear interpolating functions are then computed for pixel and for line.
+     * The grid is cached, so it needs to be computed only once for a given sensor with the same minLine and maxLine,
+     * as long as it is not evicted from the cache.
+     * @param sensorPixelGridInverseWithout inverse location grid WITHOUT atmospheric refraction
+     * @return correction grid
+     * @since 3.1
+     * @see #getCorrectionGrid(String, int, int)
+     */
+    public AtmosphericCorrectionGrid computeCorrectionGrid(final SensorPixel[][] sensorPixelGridInverseWithout) {
 
         final int nbPixelGrid = atmosphericParams.getNbPixelGrid();
         final int nbLineGrid = atmosphericParams.getNbLineGrid();
@@ -192,21 +392,82 @@ public abstract class AtmosphericRefraction {
             }
         }
         // Definition of the interpolating function for pixel and for line
-        this.bifPixel = new BilinearInterpolatingFunction(pixelGrid, lineGrid, gridDiffPixel);
-        this.bifLine = new BilinearInterpolatingFunction(pixelGrid, lineGrid, gridDiffLine);
+        final AtmosphericCorrectionGrid grid =
+                        new AtmosphericCorrectionGrid(atmosphericParams.getSensorName(),
+                                                      (int) atmosphericParams.getMinLineSensor(),
+                                                      (int) atmosphericParams.getMaxLineSensor(),
+                                                      atmosphericParams.getPixelStep(),
+                                                      atmosphericParams.getLineStep(),
+                                                      getModelConfiguration(),
+                                                      new BilinearInterpolatingFunction(pixelGrid, lineGrid, gridDiffPixel),
+                                                      new BilinearInterpolatingFunction(pixelGrid, lineGrid, gridDiffLine));
+        addCorrectionGrid(grid);
+        return grid;
     }
 
     /**
-     * @return the bilinear interpolating function for pixel correction
+     * @return the bilinear interpolating function for pixel correction of the last computed grid
+     * @see #getCorrectionGrid(String, int, int)
      */
     public BilinearInterpolatingFunction getBifPixel() {
-        return bifPixel;
+        final AtmosphericCorrectionGrid grid = lastGrid;
+        return grid == null ? null : grid.getBifPixel();
     }
 
     /**
-     * @return the bilinear interpolating function for line correction
+     * @return the bilinear interpolating function for line correction of the last computed grid
+     * @see #getCorrectionGrid(String, int, int)
      */
     public BilinearInterpolatingFunction getBifLine() {
-        return bifLine;
+        final AtmosphericCorrectionGrid grid = lastGrid;
+        return grid == null ? null : grid.getBifLine();
     }
+
+    /** Key for correction grids.
+     * @since 3.1
+     */
+    private static class GridContext {
+
+        /** Sensor name. */
+        private final String sensorName;
+
+        /** Min line. */
+        private final int minLine;
+
+        /** Max line. */
+        private final int maxLine;
+
+        /** Simple constructor.
+         * @param sensorName sensor name
+         * @param minLine min line defined for the inverse location
+         * @param maxLine max line defined for the inverse location
+         */
+        GridContext(final String sensorName, final int minLine, final int maxLine) {
+            this.sensorName = sensorName;
+            this.minLine    = minLine;
+            this.maxLine    = maxLine;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (other instanceof GridContext) {
+                final GridContext context = (GridContext) other;
+                return minLine == context.minLine && maxLine == context.maxLine &&
+                       sensorName.equals(context.sensorName);
+            }
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return (31 * minLine + maxLine) * 31 + sensorName.hashCode();
+        }
+
+    }
+
 }
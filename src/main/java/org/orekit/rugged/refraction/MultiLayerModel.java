@@ -59,22 +59,7 @@ public class MultiLayerModel extends AtmosphericRefraction {
 
         this.ellipsoid = ellipsoid;
 
-        this.refractionLayers = new ArrayList<>(15);
-        this.refractionLayers.add(new ConstantRefractionLayer(100000.00, 1.000000));
-        this.refractionLayers.add(new ConstantRefractionLayer( 50000.00, 1.000000));
-        this.refractionLayers.add(new ConstantRefractionLayer( 40000.00, 1.000001));
-        this.refractionLayers.add(new ConstantRefractionLayer( 30000.00, 1.000004));
-        this.refractionLayers.add(new ConstantRefractionLayer( 23000.00, 1.000012));
-        this.refractionLayers.add(new ConstantRefractionLayer( 18000.00, 1.000028));
-        this.refractionLayers.add(new ConstantRefractionLayer( 14000.00, 1.000052));
-        this.refractionLayers.add(new ConstantRefractionLayer( 11000.00, 1.000083));
-        this.refractionLayers.add(new ConstantRefractionLayer(  9000.00, 1.000106));
-        this.refractionLayers.add(new ConstantRefractionLayer(  7000.00, 1.000134));
-        this.refractionLayers.add(new ConstantRefractionLayer(  5000.00, 1.000167));
-        this.refractionLayers.add(new ConstantRefractionLayer(  3000.00, 1.000206));
-        this.refractionLayers.add(new ConstantRefractionLayer(  1000.00, 1.000252));
-        this.refractionLayers.add(new ConstantRefractionLayer(     0.00, 1.000278));
-        this.refractionLayers.add(new ConstantRefractionLayer( -1000.00, 1.000306));
+        this.refractionLayers = defaultLayers();
 
         // get the lowest altitude of the atmospheric model
         this.atmosphereLowestAltitude = refractionLayers.get(refractionLayers.size() - 1).getLowestAltitude();
@@ -100,6 +85,36 @@ public class MultiLayerModel extends AtmosphericRefraction {
         atmosphereLowestAltitude = this.refractionLayers.get(this.refractionLayers.size() - 1).getLowestAltitude();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String getModelConfiguration() {
+        return layeredModelConfiguration(refractionLayers);
+    }
+
+    /** Get the built-in set of layers.
+     * @return built-in layers, sorted from the highest to the lowest
+     * @since 3.1
+     */
+    static List<ConstantRefractionLayer> defaultLayers() {
+        final List<ConstantRefractionLayer> layers = new ArrayList<>(15);
+        layers.add(new ConstantRefractionLayer(100000.00, 1.000000));
+        layers.add(new ConstantRefractionLayer( 50000.00, 1.000000));
+        layers.add(new ConstantRefractionLayer( 40000.00, 1.000001));
+        layers.add(new ConstantRefractionLayer( 30000.00, 1.000004));
+        layers.add(new ConstantRefractionLayer( 23000.00, 1.000012));
+        layers.add(new ConstantRefractionLayer( 18000.00, 1.000028));
+        layers.add(new ConstantRefractionLayer( 14000.00, 1.000052));
+        layers.add(new ConstantRefractionLayer( 11000.00, 1.000083));
+        layers.add(new ConstantRefractionLayer(  9000.00, 1.000106));
+        layers.add(new ConstantRefractionLayer(  7000.00, 1.000134));
+        layers.add(new ConstantRefractionLayer(  5000.00, 1.000167));
+        layers.add(new ConstantRefractionLayer(  3000.00, 1.000206));
+        layers.add(new ConstantRefractionLayer(  1000.00, 1.000252));
+        layers.add(new ConstantRefractionLayer(     0.00, 1.000278));
+        layers.add(new ConstantRefractionLayer( -1000.00, 1.000306));
+        return layers;
+    }
+
     /** Compute the (position, LOS) of the intersection with the lowest atmospheric layer.
      * @param satPos satellite position, in body frame
      * @param satLos satellite line of sight, in body frame
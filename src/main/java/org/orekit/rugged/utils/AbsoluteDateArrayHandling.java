@@ -171,4 +171,41 @@ public class AbsoluteDateArrayHandling {
         return durationsFromDates;
     }
 
+    /** Get array with durations between instances dates and a single reference date.
+     * If instance dates = [date1, date2, ..., daten] then this function will return
+     * [date1 durationFrom reference, date2 durationFrom reference, ..., daten durationFrom reference].
+     * This is the bulk conversion from dates to primitive time offsets, see
+     * {@link #fromOffsets(AbsoluteDate, double[])} for the reverse conversion.
+     * @param reference reference date for the offsets
+     * @return a array of double representing durations between instance dates and reference date
+     * @since 3.1
+     */
+    public double[] durationFrom(final AbsoluteDate reference) {
+
+        final double[] offsets = new double[dates.length];
+        for (int i = 0; i < dates.length; ++i) {
+            offsets[i] = dates[i].durationFrom(reference);
+        }
+        return offsets;
+    }
+
+    /** Build dates from primitive time offsets with respect to a single reference date.
+     * If argument offsets = [dt1, dt2, ..., dtn] then this function will return
+     * [reference shiftedBy dt1, reference shiftedBy dt2, ..., reference shiftedBy dtn].
+     * This is the bulk conversion from primitive time offsets to dates, see
+     * {@link #durationFrom(AbsoluteDate)} for the reverse conversion.
+     * @param reference reference date for the offsets
+     * @param offsets time offsets in seconds with respect to reference date
+     * @return handler for the dates corresponding to the offsets
+     * @since 3.1
+     */
+    public static AbsoluteDateArrayHandling fromOffsets(final AbsoluteDate reference, final double[] offsets) {
+
+        final AbsoluteDate[] datesFromOffsets = new AbsoluteDate[offsets.length];
+        for (int i = 0; i < offsets.length; ++i) {
+            datesFromOffsets[i] = reference.shiftedBy(offsets[i]);
+        }
+        return new AbsoluteDateArrayHandling(datesFromOffsets);
+    }
+
 }
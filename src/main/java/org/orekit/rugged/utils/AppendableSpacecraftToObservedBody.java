@@ -0,0 +1,601 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hipparchus.util.FastMath;
+import org.orekit.frames.Frame;
+import org.orekit.frames.Transform;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeStamped;
+import org.orekit.utils.AngularDerivativesFilter;
+import org.orekit.utils.CartesianDerivativesFilter;
+import org.orekit.utils.TimeStampedAngularCoordinates;
+import org.orekit.utils.TimeStampedPVCoordinates;
+
+/** Transforms interpolator that can be extended as new ephemerides are received.
+ * <p>
+ * This class is intended for live processing, where position/velocity and attitude
+ * telemetry arrive by batches while the acquisition is still running. Each call to
+ * {@link #append(List, List)} extends the time span incrementally: only the samples
+ * at the end of the previous span, whose interpolation depended on the last previous
+ * ephemeris entries, and the new samples are computed, using only the ephemeris entries
+ * they depend on. All samples lie on the same regular time grid, anchored at the initial
+ * start date, so results are the same as with an interpolator built at once from the
+ * complete ephemerides.
+ * </p>
+ * <p>
+ * If a retention window is set, samples older than the window (counted back from the
+ * current end of the time span) are dropped at each append, as well as the ephemeris
+ * entries that are not needed anymore, so memory remains bounded for continuous ingest.
+ * Dates before the retained window are then considered out of range.
+ * </p>
+ * <p>
+ * As the instance itself is extended, a {@link org.orekit.rugged.api.Rugged Rugged} instance
+ * built with it by {@link org.orekit.rugged.api.RuggedBuilder#setTrajectoryAndTimeSpan(SpacecraftToObservedBody)}
+ * sees the new time span without being rebuilt. This also holds for the views returned by
+ * {@link #withInterpolationNumber(int)}, which follow the appends too.
+ * </p>
+ * <p>
+ * This class is thread-safe. Samples that will not be recomputed anymore are packed in
+ * growable buffers, each append publishing atomically a new immutable snapshot that
+ * shares these buffers and holds apart only the last samples, which will be recomputed
+ * by the next append. Appending therefore costs only the new samples, and concurrent
+ * readers are never blocked. A computation involving several calls to the interpolator
+ * (for example a direct location which needs both spacecraft to inertial and body to
+ * inertial transforms) may however see two different snapshots if an append occurs in
+ * between; they differ only at the end of the previous time span, where samples are
+ * recomputed with the new ephemeris entries.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class AppendableSpacecraftToObservedBody extends SpacecraftToObservedBody {
+
+    /** Serializable UID. */
+    private static final long serialVersionUID = 20221024L;
+
+    /** Initial capacity of the packed buffers, in number of samples. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Storage shared by all the views of the interpolator. */
+    private final transient Storage storage;
+
+    /** Last view with the instance interpolation mode, preceded by the snapshot it was built from. */
+    private transient volatile SpacecraftToObservedBody[] lastView;
+
+    /** Simple constructor.
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span, also start of the regular time grid
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and the end of
+     * the time span overshooting slightly the position, velocity and quaternions ephemerides
+     * @param retention retention window duration (s), counted back from the end of the
+     * time span (use {@code Double.POSITIVE_INFINITY} to never drop any sample)
+     * @param positionsVelocities initial satellite position and velocity (must cover {@code minDate} and extend beyond it)
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions initial satellite quaternions (must cover {@code minDate} and extend beyond it)
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     */
+    public AppendableSpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                              final AbsoluteDate minDate, final double tStep,
+                                              final double overshootTolerance, final double retention,
+                                              final List<TimeStampedPVCoordinates> positionsVelocities,
+                                              final int pvInterpolationNumber,
+                                              final CartesianDerivativesFilter pvFilter,
+                                              final List<TimeStampedAngularCoordinates> quaternions,
+                                              final int aInterpolationNumber,
+                                              final AngularDerivativesFilter aFilter) {
+        this(new Storage(inertialFrame, bodyFrame, minDate, tStep, overshootTolerance, retention,
+                         positionsVelocities, pvInterpolationNumber, pvFilter,
+                         quaternions, aInterpolationNumber, aFilter),
+             1);
+    }
+
+    /** Constructor for a view of a shared storage.
+     * @param storage shared storage
+     * @param interpolationNumber number of neighboring samples used for interpolation
+     */
+    private AppendableSpacecraftToObservedBody(final Storage storage, final int interpolationNumber) {
+        super(storage.getSnapshot(), interpolationNumber);
+        this.storage = storage;
+    }
+
+    /** Append new ephemerides batches.
+     * <p>
+     * Entries that are not strictly after the last entry already ingested are ignored,
+     * so overlapping batches can be appended safely. The end of the time span becomes the
+     * earliest of the last position/velocity and last attitude dates; if only one of the
+     * ephemerides is extended, the time span is extended when the other one catches up.
+     * </p>
+     * @param newPositionsVelocities new satellite position and velocity (may be empty)
+     * @param newQuaternions new satellite quaternions (may be empty)
+     * @return true if the time span has been extended
+     */
+    public boolean append(final List<TimeStampedPVCoordinates> newPositionsVelocities,
+                          final List<TimeStampedAngularCoordinates> newQuaternions) {
+        return storage.append(newPositionsVelocities, newQuaternions);
+    }
+
+    /** Get the retention window duration.
+     * @return retention window duration (s)
+     */
+    public double getRetention() {
+        return storage.retention;
+    }
+
+    /** Get a frozen view of the current state.
+     * <p>
+     * The returned instance is not affected by further calls to {@link #append(List, List)}.
+     * It uses the same interpolation mode as this instance.
+     * </p>
+     * @return frozen view of the current state
+     */
+    public SpacecraftToObservedBody getSnapshot() {
+
+        final SpacecraftToObservedBody snapshot = storage.getSnapshot();
+        if (getInterpolationNumber() <= 1) {
+            return snapshot;
+        }
+
+        final SpacecraftToObservedBody[] last = lastView;
+        if (last != null && last[0] == snapshot) {
+            return last[1];
+        }
+
+        final SpacecraftToObservedBody view = snapshot.withInterpolationNumber(getInterpolationNumber());
+        lastView = new SpacecraftToObservedBody[] {
+            snapshot, view
+        };
+        return view;
+
+    }
+
+    /** {@inheritDoc}
+     * <p>
+     * The returned instance shares its storage with this instance, so it follows
+     * the calls to {@link #append(List, List)} performed on any of them.
+     * </p>
+     */
+    @Override
+    public AppendableSpacecraftToObservedBody withInterpolationNumber(final int number) {
+        final int n = FastMath.max(1, number);
+        return n == getInterpolationNumber() ? this : new AppendableSpacecraftToObservedBody(storage, n);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeBinary(final OutputStream out) throws IOException {
+        storage.getSnapshot().writeBinary(out);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AbsoluteDate getMinDate() {
+        return storage.getSnapshot().getMinDate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AbsoluteDate getMaxDate() {
+        return storage.getSnapshot().getMaxDate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSamplesNumber() {
+        return storage.getSnapshot().getSamplesNumber();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getScToInertial(final AbsoluteDate date) {
+        return getSnapshot().getScToInertial(date);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getInertialToBody(final AbsoluteDate date) {
+        return getSnapshot().getInertialToBody(date);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getBodyToInertial(final AbsoluteDate date) {
+        return getSnapshot().getBodyToInertial(date);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transformPosition(final TransformId id, final AbsoluteDate date,
+                                  final double x, final double y, final double z,
+                                  final double[] result) {
+        getSnapshot().transformPosition(id, date, x, y, z, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transformVector(final TransformId id, final AbsoluteDate date,
+                                final double x, final double y, final double z,
+                                final double[] result) {
+        getSnapshot().transformVector(id, date, x, y, z, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isInRange(final AbsoluteDate date) {
+        return storage.getSnapshot().isInRange(date);
+    }
+
+    /** Replace the instance with a data transfer object for serialization.
+     * <p>
+     * Only the current snapshot is serialized, so the deserialized instance cannot be appended.
+     * </p>
+     * @return data transfer object that will be serialized
+     */
+    @Override
+    Object writeReplace() {
+        return storage.getSnapshot().writeReplace();
+    }
+
+    /** Storage for the growing transforms sample, shared by all views. */
+    private static class Storage {
+
+        /** Inertial frame. */
+        private final Frame inertialFrame;
+
+        /** Body frame. */
+        private final Frame bodyFrame;
+
+        /** Start of the regular time grid. */
+        private final AbsoluteDate origin;
+
+        /** Reference date for packed sample dates (exactly on a second). */
+        private final AbsoluteDate reference;
+
+        /** Step between samples. */
+        private final double tStep;
+
+        /** Tolerance in seconds allowed for dates overshooting slightly the ephemerides. */
+        private final double overshootTolerance;
+
+        /** Retention window duration (s). */
+        private final double retention;
+
+        /** Number of points to use for position/velocity interpolation. */
+        private final int pvInterpolationNumber;
+
+        /** Filter for derivatives from the sample to use in position/velocity interpolation. */
+        private final CartesianDerivativesFilter pvFilter;
+
+        /** Number of points to use for attitude interpolation. */
+        private final int aInterpolationNumber;
+
+        /** Filter for derivatives from the sample to use in attitude interpolation. */
+        private final AngularDerivativesFilter aFilter;
+
+        /** Retained position/velocity ephemeris. */
+        private final List<TimeStampedPVCoordinates> positionsVelocities;
+
+        /** Retained attitude ephemeris. */
+        private final List<TimeStampedAngularCoordinates> quaternions;
+
+        /** Packed sample dates, shared with the published snapshots. */
+        private double[] dates;
+
+        /** Packed stable transforms from observed body frame to inertial frame, shared with the published snapshots. */
+        private double[] bodyToInertial;
+
+        /** Packed stable transforms from spacecraft frame to inertial frame, shared with the published snapshots. */
+        private double[] scToInertial;
+
+        /** Index on the regular time grid of the first element of the packed buffers. */
+        private int base;
+
+        /** Index on the regular time grid of the first retained sample. */
+        private int first;
+
+        /** Index on the regular time grid of the first sample that will be recomputed by next append. */
+        private int stable;
+
+        /** Index on the regular time grid after the last sample. */
+        private int count;
+
+        /** Packed last transforms from observed body frame to inertial frame. */
+        private double[] tailBodyToInertial;
+
+        /** Packed last transforms from spacecraft frame to inertial frame. */
+        private double[] tailScToInertial;
+
+        /** Index on the regular time grid of the first element of the packed last transforms. */
+        private int tailBase;
+
+        /** Current snapshot. */
+        private volatile SpacecraftToObservedBody snapshot;
+
+        /** Simple constructor.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param minDate start of search time span, also start of the regular time grid
+         * @param tStep step between samples
+         * @param overshootTolerance tolerance in seconds allowed for overshooting the ephemerides
+         * @param retention retention window duration (s)
+         * @param positionsVelocities initial satellite position and velocity
+         * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+         * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+         * @param quaternions initial satellite quaternions
+         * @param aInterpolationNumber number of points to use for attitude interpolation
+         * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+         */
+        Storage(final Frame inertialFrame, final Frame bodyFrame,
+                final AbsoluteDate minDate, final double tStep,
+                final double overshootTolerance, final double retention,
+                final List<TimeStampedPVCoordinates> positionsVelocities,
+                final int pvInterpolationNumber,
+                final CartesianDerivativesFilter pvFilter,
+                final List<TimeStampedAngularCoordinates> quaternions,
+                final int aInterpolationNumber,
+                final AngularDerivativesFilter aFilter) {
+            this.inertialFrame         = inertialFrame;
+            this.bodyFrame             = bodyFrame;
+            this.origin                = minDate;
+            this.reference             = wholeSecond(minDate);
+            this.tStep                 = tStep;
+            this.overshootTolerance    = overshootTolerance;
+            this.retention             = retention;
+            this.pvInterpolationNumber = pvInterpolationNumber;
+            this.pvFilter              = pvFilter;
+            this.aInterpolationNumber  = aInterpolationNumber;
+            this.aFilter               = aFilter;
+            this.positionsVelocities   = new ArrayList<>(positionsVelocities);
+            this.quaternions           = new ArrayList<>(quaternions);
+            this.dates                 = new double[2 * INITIAL_CAPACITY];
+            this.bodyToInertial        = new double[SAMPLE_SIZE * INITIAL_CAPACITY];
+            this.scToInertial          = new double[SAMPLE_SIZE * INITIAL_CAPACITY];
+            this.base                  = 0;
+            this.first                 = 0;
+            this.stable                = 0;
+            this.count                 = 0;
+
+            // the initial ephemerides must cover minDate and extend beyond it
+            checkCoverage(minDate, minDate, overshootTolerance, positionsVelocities, quaternions);
+            final AbsoluteDate end = end();
+            if (end.compareTo(minDate) <= 0) {
+                final AbsoluteDate pvStart = positionsVelocities.get(0).getDate();
+                final AbsoluteDate qStart  = quaternions.get(0).getDate();
+                throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate.shiftedBy(tStep),
+                                          pvStart.compareTo(qStart) >= 0 ? pvStart : qStart, end);
+            }
+
+            extend(end);
+        }
+
+        /** Get the current snapshot.
+         * @return current snapshot
+         */
+        SpacecraftToObservedBody getSnapshot() {
+            return snapshot;
+        }
+
+        /** Append new ephemerides batches.
+         * @param newPositionsVelocities new satellite position and velocity (may be empty)
+         * @param newQuaternions new satellite quaternions (may be empty)
+         * @return true if the time span has been extended
+         */
+        synchronized boolean append(final List<TimeStampedPVCoordinates> newPositionsVelocities,
+                                    final List<TimeStampedAngularCoordinates> newQuaternions) {
+
+            merge(positionsVelocities, newPositionsVelocities);
+            merge(quaternions, newQuaternions);
+
+            final AbsoluteDate end = end();
+            if (end.compareTo(snapshot.getMaxDate()) <= 0) {
+                // the common span of both ephemerides has not been extended
+                return false;
+            }
+
+            // drop the samples out of the retention window, keeping at least one sample
+            final int          last   = (int) FastMath.ceil(end.durationFrom(origin) / tStep) - 1;
+            final AbsoluteDate cutOff = end.shiftedBy(-retention);
+            int newFirst = first;
+            while (newFirst < last && getDate(newFirst).compareTo(cutOff) < 0) {
+                ++newFirst;
+            }
+            if (newFirst > first) {
+                first = newFirst;
+                final AbsoluteDate firstDate = getDate(first);
+                trim(positionsVelocities, firstDate, pvInterpolationNumber);
+                trim(quaternions, firstDate, aInterpolationNumber);
+            }
+
+            extend(end);
+            return true;
+
+        }
+
+        /** Extend the transforms sample and publish a new snapshot.
+         * @param end new end of the time span
+         */
+        private void extend(final AbsoluteDate end) {
+
+            // the samples that depended on the last previous ephemeris entries are recomputed
+            final int            kStart   = FastMath.max(first, stable);
+            final int            newCount = (int) FastMath.ceil(end.durationFrom(origin) / tStep);
+            final AbsoluteDate[] newDates = new AbsoluteDate[newCount - kStart];
+            for (int k = kStart; k < newCount; ++k) {
+                newDates[k - kStart] = getDate(k);
+            }
+            final double[] newB2I  = new double[newDates.length * SAMPLE_SIZE];
+            final double[] newSc2I = new double[newDates.length * SAMPLE_SIZE];
+            computeSamples(inertialFrame, bodyFrame, newDates,
+                           needed(positionsVelocities, newDates[0], pvInterpolationNumber), pvInterpolationNumber, pvFilter,
+                           needed(quaternions, newDates[0], aInterpolationNumber), aInterpolationNumber, aFilter,
+                           newSc2I, newB2I);
+
+            // samples whose interpolation involves the last entries will be recomputed by next append
+            final double threshold = FastMath.min(threshold(positionsVelocities, pvInterpolationNumber).durationFrom(origin),
+                                                  threshold(quaternions, aInterpolationNumber).durationFrom(origin));
+            final int newStable = FastMath.max(kStart,
+                                               FastMath.min(newCount - 1, (int) FastMath.floor(threshold / tStep)));
+
+            // the packed buffers are only written beyond the parts already published
+            ensureCapacity(newCount);
+            for (int k = FastMath.max(count, first); k < newCount; ++k) {
+                packDate(newDates[k - kStart], reference, dates, k - base);
+            }
+            System.arraycopy(newB2I,  0, bodyToInertial, (kStart - base) * SAMPLE_SIZE, (newStable - kStart) * SAMPLE_SIZE);
+            System.arraycopy(newSc2I, 0, scToInertial,   (kStart - base) * SAMPLE_SIZE, (newStable - kStart) * SAMPLE_SIZE);
+            tailBodyToInertial = newB2I;
+            tailScToInertial   = newSc2I;
+            tailBase           = kStart;
+            stable             = newStable;
+            count              = newCount;
+
+            // publish the new snapshot
+            final int from = first - base;
+            final int tail = FastMath.max(first, stable);
+            snapshot = new SpacecraftToObservedBody(inertialFrame, bodyFrame, getDate(first), end, tStep, overshootTolerance,
+                                                    reference,
+                                                    slice(dates, 2 * from, 2 * (count - first)),
+                                                    slice(bodyToInertial, from * SAMPLE_SIZE, (tail - first) * SAMPLE_SIZE),
+                                                    slice(scToInertial,   from * SAMPLE_SIZE, (tail - first) * SAMPLE_SIZE),
+                                                    slice(tailBodyToInertial, (tail - tailBase) * SAMPLE_SIZE, (count - tail) * SAMPLE_SIZE),
+                                                    slice(tailScToInertial,   (tail - tailBase) * SAMPLE_SIZE, (count - tail) * SAMPLE_SIZE));
+
+        }
+
+        /** Ensure the packed buffers can hold samples up to some index.
+         * <p>
+         * When the buffers are too small, new buffers are allocated and only the retained
+         * part is copied, so published snapshots keep using the former buffers, which are
+         * never written again.
+         * </p>
+         * @param newCount index on the regular time grid after the last sample to hold
+         */
+        private void ensureCapacity(final int newCount) {
+            if (newCount - base > dates.length / 2) {
+                final int      capacity = FastMath.max(INITIAL_CAPACITY, 2 * (newCount - first));
+                final double[] newDates = new double[2 * capacity];
+                final double[] newB2I   = new double[SAMPLE_SIZE * capacity];
+                final double[] newSc2I  = new double[SAMPLE_SIZE * capacity];
+                final int      from     = first - base;
+                System.arraycopy(dates, 2 * from, newDates, 0, 2 * FastMath.max(0, count - first));
+                System.arraycopy(bodyToInertial, SAMPLE_SIZE * from, newB2I,  0, SAMPLE_SIZE * FastMath.max(0, stable - first));
+                System.arraycopy(scToInertial,   SAMPLE_SIZE * from, newSc2I, 0, SAMPLE_SIZE * FastMath.max(0, stable - first));
+                dates          = newDates;
+                bodyToInertial = newB2I;
+                scToInertial   = newSc2I;
+                base           = first;
+            }
+        }
+
+        /** Get the date of a sample.
+         * @param k index of the sample on the regular time grid
+         * @return date of the sample
+         */
+        private AbsoluteDate getDate(final int k) {
+            return origin.shiftedBy(k * tStep);
+        }
+
+        /** Get the end of the time span covered by both ephemerides.
+         * @return end of the time span covered by both ephemerides
+         */
+        private AbsoluteDate end() {
+            final AbsoluteDate pvEnd = positionsVelocities.get(positionsVelocities.size() - 1).getDate();
+            final AbsoluteDate qEnd  = quaternions.get(quaternions.size() - 1).getDate();
+            return pvEnd.compareTo(qEnd) <= 0 ? pvEnd : qEnd;
+        }
+
+    }
+
+    /** Create a buffer sharing part of an array.
+     * @param array array to share
+     * @param offset offset of the first shared element
+     * @param length number of shared elements
+     * @return buffer whose first element is the element at {@code offset} in the array
+     */
+    private static DoubleBuffer slice(final double[] array, final int offset, final int length) {
+        return DoubleBuffer.wrap(array, offset, length).slice();
+    }
+
+    /** Get the ephemeris entries needed to interpolate from a date onward.
+     * @param ephemeris ephemeris
+     * @param date first date to interpolate
+     * @param interpolationNumber number of points used for interpolation
+     * @param <T> type of the entries
+     * @return view of the needed entries, at the end of the ephemeris
+     */
+    private static <T extends TimeStamped> List<T> needed(final List<T> ephemeris, final AbsoluteDate date,
+                                                          final int interpolationNumber) {
+        int index = ephemeris.size() - 1;
+        while (index > 0 && ephemeris.get(index).getDate().compareTo(date) > 0) {
+            --index;
+        }
+        return ephemeris.subList(FastMath.max(0, index - interpolationNumber), ephemeris.size());
+    }
+
+    /** Get the date after which samples depend on the last ephemeris entries.
+     * @param ephemeris ephemeris
+     * @param interpolationNumber number of points used for interpolation
+     * @return date after which samples depend on the last ephemeris entries
+     */
+    private static AbsoluteDate threshold(final List<? extends TimeStamped> ephemeris,
+                                          final int interpolationNumber) {
+        return ephemeris.get(FastMath.max(0, ephemeris.size() - interpolationNumber)).getDate();
+    }
+
+    /** Merge a batch at the end of an ephemeris.
+     * @param ephemeris ephemeris to extend
+     * @param batch new entries
+     * @param <T> type of the entries
+     */
+    private static <T extends TimeStamped> void merge(final List<T> ephemeris, final List<T> batch) {
+        for (final T entry : batch) {
+            if (entry.getDate().compareTo(ephemeris.get(ephemeris.size() - 1).getDate()) > 0) {
+                ephemeris.add(entry);
+            }
+        }
+    }
+
+    /** Drop the ephemeris entries that are not needed anymore.
+     * @param ephemeris ephemeris to trim
+     * @param first date of the first retained sample
+     * @param interpolationNumber number of points used for interpolation
+     */
+    private static void trim(final List<? extends TimeStamped> ephemeris, final AbsoluteDate first,
+                             final int interpolationNumber) {
+        int index = 0;
+        while (index < ephemeris.size() && ephemeris.get(index).getDate().compareTo(first) < 0) {
+            ++index;
+        }
+        final int drop = FastMath.max(0, index - interpolationNumber);
+        if (drop > 0) {
+            ephemeris.subList(0, drop).clear();
+        }
+    }
+
+}
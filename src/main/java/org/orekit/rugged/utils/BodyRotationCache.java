@@ -0,0 +1,201 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.hipparchus.util.FastMath;
+import org.orekit.frames.Frame;
+import org.orekit.time.AbsoluteDate;
+
+/** Cache for observed body rotation transforms, shared between several transforms interpolators.
+ * <p>
+ * Transforms from observed body frame to inertial frame depend only on the frames and on the
+ * dates, not on the spacecraft. When several {@link SpacecraftToObservedBody transforms
+ * interpolators} are built over the same time grid, for example for several satellites of a
+ * constellation or several instruments on the same satellite, sharing one instance of this
+ * class allows to compute these transforms, which involve Earth orientation parameters and
+ * precession/nutation models, only once.
+ * </p>
+ * <p>
+ * Entries are keyed by the inertial frame, the body frame (both compared by identity, which is
+ * sufficient for frames provided by Orekit {@link org.orekit.frames.FramesFactory FramesFactory})
+ * and the time grid (first date, step and number of samples). At most a fixed number of entries
+ * are kept, the least recently used ones being evicted first.
+ * </p>
+ * <p>
+ * This class is thread-safe. If several threads request the same missing entry, it is computed
+ * only once, the other threads waiting for the result.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class BodyRotationCache {
+
+    /** Cached entries, least recently used first. */
+    private final Map<Key, Entry> entries;
+
+    /** Simple constructor.
+     * @param maxEntries maximum number of entries kept in the cache
+     */
+    public BodyRotationCache(final int maxEntries) {
+        final int capacity = FastMath.max(1, maxEntries);
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+            /** Serializable UID. */
+            private static final long serialVersionUID = 20221023L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+
+        };
+    }
+
+    /** Get the number of entries currently in the cache.
+     * @return number of entries currently in the cache
+     */
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Remove all entries from the cache.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /** Get the packed transforms from body frame to inertial frame for a time grid, computing them if needed.
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param firstDate date of the first sample
+     * @param tStep step between samples
+     * @param n number of samples
+     * @param computer computer for the packed transforms, called only if they are not cached
+     * @return packed transforms (must not be modified by caller)
+     */
+    double[] getBodyToInertial(final Frame inertialFrame, final Frame bodyFrame,
+                               final AbsoluteDate firstDate, final double tStep, final int n,
+                               final Supplier<double[]> computer) {
+
+        final Key key = new Key(inertialFrame, bodyFrame, firstDate, tStep, n);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+
+        // the computation itself is performed outside of the global lock,
+        // so different entries can be computed concurrently
+        return entry.get(computer);
+
+    }
+
+    /** Key for cache entries. */
+    private static class Key {
+
+        /** Inertial frame. */
+        private final Frame inertialFrame;
+
+        /** Body frame. */
+        private final Frame bodyFrame;
+
+        /** Date of the first sample. */
+        private final AbsoluteDate firstDate;
+
+        /** Step between samples. */
+        private final double tStep;
+
+        /** Number of samples. */
+        private final int n;
+
+        /** Simple constructor.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param firstDate date of the first sample
+         * @param tStep step between samples
+         * @param n number of samples
+         */
+        Key(final Frame inertialFrame, final Frame bodyFrame,
+            final AbsoluteDate firstDate, final double tStep, final int n) {
+            this.inertialFrame = inertialFrame;
+            this.bodyFrame     = bodyFrame;
+            this.firstDate     = firstDate;
+            this.tStep         = tStep;
+            this.n             = n;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (other instanceof Key) {
+                final Key key = (Key) other;
+                return inertialFrame == key.inertialFrame &&
+                       bodyFrame     == key.bodyFrame &&
+                       firstDate.equals(key.firstDate) &&
+                       Double.doubleToLongBits(tStep) == Double.doubleToLongBits(key.tStep) &&
+                       n == key.n;
+            }
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * (31 * System.identityHashCode(inertialFrame) +
+                                     System.identityHashCode(bodyFrame)) +
+                               firstDate.hashCode()) +
+                         Double.hashCode(tStep)) +
+                   n;
+        }
+
+    }
+
+    /** Cache entry, computed at most once. */
+    private static class Entry {
+
+        /** Packed transforms (null until computed). */
+        private double[] data;
+
+        /** Get the packed transforms, computing them if needed.
+         * @param computer computer for the packed transforms
+         * @return packed transforms
+         */
+        synchronized double[] get(final Supplier<double[]> computer) {
+            if (data == null) {
+                data = computer.get();
+            }
+            return data;
+        }
+
+    }
+
+}
@@ -16,12 +16,16 @@
  */
 package org.orekit.rugged.utils;
 
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Line;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
 import org.hipparchus.util.MathArrays;
+import org.hipparchus.util.MathUtils;
+import org.hipparchus.util.SinCos;
 import org.orekit.bodies.GeodeticPoint;
 import org.orekit.bodies.OneAxisEllipsoid;
+import org.orekit.errors.OrekitException;
 import org.orekit.frames.Frame;
 import org.orekit.rugged.errors.DumpManager;
 import org.orekit.rugged.errors.RuggedException;
@@ -39,6 +43,12 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
     /** Convergence threshold for {@link #pointAtAltitude(Vector3D, Vector3D, double)}. */
     private static final double ALTITUDE_CONVERGENCE = 1.0e-3;
 
+    /** Maximum number of iterations for batch altitude crossings. */
+    private static final int MAX_ALTITUDE_ITERATIONS = 100;
+
+    /** Threshold for polar and equatorial points detection in geodetic conversion. */
+    private static final double ANGULAR_THRESHOLD = 1.0e-4;
+
     /** Equatorial radius power 2. */
     private final double a2;
 
@@ -83,6 +93,31 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
      */
     public Vector3D pointAtLatitude(final Vector3D position, final Vector3D los,
                                     final double latitude, final Vector3D closeReference) {
+        final Vector3D point = pointAtLatitudeOrNull(position, los, latitude, closeReference);
+        if (point == null) {
+            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_LATITUDE,
+                                      FastMath.toDegrees(latitude));
+        }
+        return point;
+    }
+
+    /** Get point at some latitude along a pixel line of sight, without triggering an exception.
+     * <p>
+     * This method is similar to {@link #pointAtLatitude(Vector3D, Vector3D, double, Vector3D)},
+     * but it returns null when the line of sight does not cross the latitude, which is an
+     * ordinary condition in intersection algorithms loops.
+     * </p>
+     * @param position cell position (in body frame) (m)
+     * @param los pixel line-of-sight, not necessarily normalized (in body frame)
+     * @param latitude latitude with respect to ellipsoid (rad)
+     * @param closeReference reference point used to select the closest solution
+     * when there are two points at the desired latitude along the line, it should
+     * be close to los surface intersection (m)
+     * @return point at latitude (m), or null if line of sight never crosses latitude
+     * @since 3.1
+     */
+    public Vector3D pointAtLatitudeOrNull(final Vector3D position, final Vector3D los,
+                                          final double latitude, final Vector3D closeReference) {
 
         DumpManager.dumpEllipsoid(this);
 
@@ -117,8 +152,7 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
 
         // find the two intersections along the line
         if (b * b < a * c) {
-            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_LATITUDE,
-                                      FastMath.toDegrees(latitude));
+            return null;
         }
         final double s  = FastMath.sqrt(MathArrays.linearCombination(b, b, -a, c));
         final double k1 = (b > 0) ? -(s + b) / a : c / (s - b);
@@ -146,8 +180,7 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
             } else {
                 // both solutions are in the wrong nappe,
                 // there are no solutions
-                throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_LATITUDE,
-                                          FastMath.toDegrees(latitude));
+                return null;
             }
         }
 
@@ -163,6 +196,27 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
      * @return point at longitude (m)
      */
     public Vector3D pointAtLongitude(final Vector3D position, final Vector3D los, final double longitude) {
+        final Vector3D point = pointAtLongitudeOrNull(position, los, longitude);
+        if (point == null) {
+            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_LONGITUDE,
+                                      FastMath.toDegrees(longitude));
+        }
+        return point;
+    }
+
+    /** Get point at some longitude along a pixel line of sight, without triggering an exception.
+     * <p>
+     * This method is similar to {@link #pointAtLongitude(Vector3D, Vector3D, double)},
+     * but it returns null when the line of sight does not cross the longitude, which is an
+     * ordinary condition in intersection algorithms loops.
+     * </p>
+     * @param position cell position (in body frame) (m)
+     * @param los pixel line-of-sight, not necessarily normalized (in body frame)
+     * @param longitude longitude with respect to ellipsoid (rad)
+     * @return point at longitude (m), or null if line of sight never crosses longitude
+     * @since 3.1
+     */
+    public Vector3D pointAtLongitudeOrNull(final Vector3D position, final Vector3D los, final double longitude) {
 
         DumpManager.dumpEllipsoid(this);
 
@@ -170,8 +224,7 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
         final Vector3D normal = new Vector3D(-FastMath.sin(longitude), FastMath.cos(longitude), 0);
         final double d = Vector3D.dotProduct(los, normal);
         if (FastMath.abs(d) < 1.0e-12) {
-            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_LONGITUDE,
-                                      FastMath.toDegrees(longitude));
+            return null;
         }
 
         // compute point
@@ -188,13 +241,35 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
      */
     public NormalizedGeodeticPoint pointOnGround(final Vector3D position, final Vector3D los,
                                                  final double centralLongitude) {
+        final NormalizedGeodeticPoint gp = pointOnGroundOrNull(position, los, centralLongitude);
+        if (gp == null) {
+            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_DOES_NOT_REACH_GROUND);
+        }
+        return gp;
+    }
+
+    /** Get point on ground along a pixel line of sight, without triggering an exception.
+     * <p>
+     * This method is similar to {@link #pointOnGround(Vector3D, Vector3D, double)}, but
+     * it returns null when the line of sight does not reach ground, which is an ordinary
+     * condition for example for limb views.
+     * </p>
+     * @param position cell position (in body frame) (m)
+     * @param los pixel line-of-sight, not necessarily normalized (in body frame)
+     * @param centralLongitude reference longitude lc such that the point longitude will
+     * be normalized between lc-π and lc+π (rad)
+     * @return point on ground, or null if line of sight does not reach ground
+     * @since 3.1
+     */
+    public NormalizedGeodeticPoint pointOnGroundOrNull(final Vector3D position, final Vector3D los,
+                                                       final double centralLongitude) {
 
         DumpManager.dumpEllipsoid(this);
         final GeodeticPoint gp =
                 getIntersectionPoint(new Line(position, new Vector3D(1, position, 1e6, los), 1.0e-12),
                         position, getBodyFrame(), null);
         if (gp == null) {
-            throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_DOES_NOT_REACH_GROUND);
+            return null;
         }
         return new NormalizedGeodeticPoint(gp.getLatitude(), gp.getLongitude(), gp.getAltitude(),
                 centralLongitude);
@@ -248,6 +323,352 @@ public class ExtendedEllipsoid extends OneAxisEllipsoid {
         throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_ALTITUDE, altitude);
     }
 
+    /** Get points at some altitude along several pixels lines of sight.
+     * <p>
+     * This method is a batch version of {@link #pointAtAltitude(Vector3D, Vector3D, double)}
+     * followed by a conversion to geodetic coordinates. It is intended for large numbers
+     * of lines of sight, as for example all pixels of many lines in quick-look products.
+     * Lines of sight and results are stored as structures of arrays of primitive doubles,
+     * and the core loops are simple arithmetic loops that the JIT compiler can vectorize.
+     * </p>
+     * <p>
+     * When several points at the desired altitude exist along a line, the one closest
+     * to the line start position is selected, as in the single point methods.
+     * Lines that never cross the desired altitude do not trigger an exception, their
+     * results are set to {@code Double.NaN} instead.
+     * </p>
+     * @param px abscissae of lines start positions (in body frame) (m)
+     * @param py ordinates of lines start positions (in body frame) (m)
+     * @param pz heights of lines start positions (in body frame) (m)
+     * @param lx abscissae of lines of sight, not necessarily normalized (in body frame)
+     * @param ly ordinates of lines of sight, not necessarily normalized (in body frame)
+     * @param lz heights of lines of sight, not necessarily normalized (in body frame)
+     * @param altitude altitude with respect to ellipsoid (m)
+     * @param latitude placeholder for points latitudes (rad), must have the same length as px
+     * @param longitude placeholder for points longitudes between -π and +π (rad), must have
+     * the same length as px
+     * @param pointAltitude placeholder for points altitudes (m), must have the same length as px
+     * @see #pointAtAltitude(Vector3D, Vector3D, double)
+     * @see #pointOnGround(Vector3D, Vector3D, double)
+     * @since 3.1
+     */
+    public void pointsAtAltitude(final double[] px, final double[] py, final double[] pz,
+                                 final double[] lx, final double[] ly, final double[] lz,
+                                 final double altitude,
+                                 final double[] latitude, final double[] longitude, final double[] pointAltitude) {
+
+        DumpManager.dumpEllipsoid(this);
+
+        final int n = px.length;
+        checkLength(n, py);
+        checkLength(n, pz);
+        checkLength(n, lx);
+        checkLength(n, ly);
+        checkLength(n, lz);
+        checkLength(n, latitude);
+        checkLength(n, longitude);
+        checkLength(n, pointAltitude);
+
+        // first guess: intersection with the ellipsoid inflated by the desired altitude,
+        // which is exact for zero altitude and close to the solution otherwise
+        final double ra    = getEquatorialRadius() + altitude;
+        final double rb    = getEquatorialRadius() * (1.0 - getFlattening()) + altitude;
+        final double invA2 = 1.0 / (ra * ra);
+        final double invB2 = 1.0 / (rb * rb);
+        final double[] k = new double[n];
+        for (int i = 0; i < n; ++i) {
+            final double qa = (lx[i] * lx[i] + ly[i] * ly[i]) * invA2 + lz[i] * lz[i] * invB2;
+            final double qb = (px[i] * lx[i] + py[i] * ly[i]) * invA2 + pz[i] * lz[i] * invB2;
+            final double qc = (px[i] * px[i] + py[i] * py[i]) * invA2 + pz[i] * pz[i] * invB2 - 1.0;
+
+            // square root of a negative discriminant is NaN, which flags lines
+            // that never cross the inflated ellipsoid
+            final double s  = FastMath.sqrt(qb * qb - qa * qc);
+
+            // stable computation of both roots, selecting the closest one to start position
+            final double q  = -(qb + FastMath.copySign(s, qb));
+            final double k1 = q / qa;
+            final double k2 = qc / q;
+            k[i] = FastMath.abs(k1) <= FastMath.abs(k2) ? k1 : k2;
+        }
+
+        final double[] x = new double[n];
+        final double[] y = new double[n];
+        final double[] z = new double[n];
+        for (int iter = 0; iter < MAX_ALTITUDE_ITERATIONS; ++iter) {
+
+            // current points along the lines
+            for (int i = 0; i < n; ++i) {
+                x[i] = px[i] + k[i] * lx[i];
+                y[i] = py[i] + k[i] * ly[i];
+                z[i] = pz[i] + k[i] * lz[i];
+            }
+            convertToGeodetic(x, y, z, latitude, longitude, pointAltitude);
+
+            // improve the offsets using linear ratio between
+            // altitude variation and displacement along lines-of-sight
+            boolean converged = true;
+            for (int i = 0; i < n; ++i) {
+                final double deltaH = altitude - pointAltitude[i];
+                if (FastMath.abs(deltaH) > ALTITUDE_CONVERGENCE) {
+                    final double cosLat = FastMath.cos(latitude[i]);
+                    final double dot    = cosLat * FastMath.cos(longitude[i]) * lx[i] +
+                                          cosLat * FastMath.sin(longitude[i]) * ly[i] +
+                                          FastMath.sin(latitude[i]) * lz[i];
+                    k[i]     += deltaH / dot;
+                    converged = false;
+                }
+            }
+
+            if (converged) {
+                // NaN deltaH (i.e. lines not crossing altitude) never prevent convergence
+                return;
+            }
+
+        }
+
+        // this should never happen
+        throw new RuggedException(RuggedMessages.LINE_OF_SIGHT_NEVER_CROSSES_ALTITUDE, altitude);
+
+    }
+
+    /** Convert several Cartesian points to geodetic coordinates.
+     * <p>
+     * This method is a batch version of {@link #transform(Vector3D, Frame, AbsoluteDate)},
+     * for points already expressed in body frame. It uses the same algorithm and provides
+     * the same accuracy, but works on structures of arrays of primitive doubles and does
+     * not allocate any object.
+     * </p>
+     * <p>
+     * Points with NaN coordinates lead to NaN results.
+     * </p>
+     * @param x abscissae of points (in body frame) (m)
+     * @param y ordinates of points (in body frame) (m)
+     * @param z heights of points (in body frame) (m)
+     * @param latitude placeholder for latitudes (rad), must have the same length as x
+     * @param longitude placeholder for longitudes between -π and +π (rad), must have the same length as x
+     * @param altitude placeholder for altitudes (m), must have the same length as x
+     * @see #geodeticToCartesian(double[], double[], double[], double[], double[], double[])
+     * @since 3.1
+     */
+    public void cartesianToGeodetic(final double[] x, final double[] y, final double[] z,
+                                    final double[] latitude, final double[] longitude, final double[] altitude) {
+        DumpManager.dumpEllipsoid(this);
+        final int n = x.length;
+        checkLength(n, y);
+        checkLength(n, z);
+        checkLength(n, latitude);
+        checkLength(n, longitude);
+        checkLength(n, altitude);
+        convertToGeodetic(x, y, z, latitude, longitude, altitude);
+    }
+
+    /** Convert several Cartesian points to geodetic coordinates.
+     * <p>
+     * This method is a batch version of {@link #transform(Vector3D, Frame, AbsoluteDate, double)},
+     * for points already expressed in body frame.
+     * </p>
+     * @param x abscissae of points (in body frame) (m)
+     * @param y ordinates of points (in body frame) (m)
+     * @param z heights of points (in body frame) (m)
+     * @param centralLongitude reference longitude lc such that the points longitudes will
+     * be normalized between lc-π and lc+π (rad)
+     * @param latitude placeholder for latitudes (rad), must have the same length as x
+     * @param longitude placeholder for longitudes between lc-π and lc+π (rad), must have the same length as x
+     * @param altitude placeholder for altitudes (m), must have the same length as x
+     * @see #cartesianToGeodetic(double[], double[], double[], double[], double[], double[])
+     * @since 3.1
+     */
+    public void cartesianToGeodetic(final double[] x, final double[] y, final double[] z,
+                                    final double centralLongitude,
+                                    final double[] latitude, final double[] longitude, final double[] altitude) {
+        cartesianToGeodetic(x, y, z, latitude, longitude, altitude);
+        for (int i = 0; i < longitude.length; ++i) {
+            longitude[i] = MathUtils.normalizeAngle(longitude[i], centralLongitude);
+        }
+    }
+
+    /** Convert several geodetic points to Cartesian coordinates.
+     * <p>
+     * This method is a batch version of {@link #transform(GeodeticPoint)}. It uses
+     * the same formulas, but works on structures of arrays of primitive doubles and
+     * does not allocate any object. Latitudes are expected to be already
+     * normalized between -π/2 and +π/2.
+     * </p>
+     * @param latitude latitudes (rad)
+     * @param longitude longitudes (rad)
+     * @param altitude altitudes (m)
+     * @param x placeholder for abscissae of points (in body frame) (m),
+     * must have the same length as latitude
+     * @param y placeholder for ordinates of points (in body frame) (m),
+     * must have the same length as latitude
+     * @param z placeholder for heights of points (in body frame) (m),
+     * must have the same length as latitude
+     * @see #cartesianToGeodetic(double[], double[], double[], double[], double[], double[])
+     * @since 3.1
+     */
+    public void geodeticToCartesian(final double[] latitude, final double[] longitude, final double[] altitude,
+                                    final double[] x, final double[] y, final double[] z) {
+
+        DumpManager.dumpEllipsoid(this);
+        final int n = latitude.length;
+        checkLength(n, longitude);
+        checkLength(n, altitude);
+        checkLength(n, x);
+        checkLength(n, y);
+        checkLength(n, z);
+
+        final double ae = getEquatorialRadius();
+        final double f  = getFlattening();
+        final double e2 = f * (2.0 - f);
+        final double g  = 1.0 - f;
+        final double g2 = g * g;
+
+        for (int i = 0; i < n; ++i) {
+            final SinCos scLambda = FastMath.sinCos(longitude[i]);
+            final SinCos scPhi    = FastMath.sinCos(latitude[i]);
+            final double sPhi     = scPhi.sin();
+            final double nu       = ae / FastMath.sqrt(1.0 - e2 * sPhi * sPhi);
+            final double r        = (nu + altitude[i]) * scPhi.cos();
+            x[i] = r * scLambda.cos();
+            y[i] = r * scLambda.sin();
+            z[i] = (g2 * nu + altitude[i]) * sPhi;
+        }
+
+    }
+
+    /** Convert Cartesian points to geodetic coordinates, without any checks.
+     * <p>
+     * This method uses the same algorithm as {@link #transform(Vector3D, Frame, AbsoluteDate)}
+     * (i.e. Toshio Fukushima's method with special handling of points close to axes),
+     * but works on primitive arrays without allocating any object.
+     * </p>
+     * @param x abscissae of points (in body frame) (m)
+     * @param y ordinates of points (in body frame) (m)
+     * @param z heights of points (in body frame) (m)
+     * @param latitude placeholder for latitudes (rad)
+     * @param longitude placeholder for longitudes between -π and +π (rad)
+     * @param altitude placeholder for altitudes (m)
+     */
+    private void convertToGeodetic(final double[] x, final double[] y, final double[] z,
+                                   final double[] latitude, final double[] longitude, final double[] altitude) {
+
+        final double ae  = getEquatorialRadius();
+        final double f   = getFlattening();
+        final double e2  = f * (2.0 - f);
+        final double g   = 1.0 - f;
+        final double g2  = g * g;
+        final double ae2 = ae * ae;
+        final double bp  = ae * g;
+        final double ap2 = bp * bp;
+
+        for (int i = 0; i < x.length; ++i) {
+
+            final double r2 = x[i] * x[i] + y[i] * y[i];
+            final double r  = FastMath.sqrt(r2);
+            final double zi = z[i];
+            longitude[i] = FastMath.atan2(y[i], x[i]);
+
+            if (Double.isNaN(r + zi)) {
+                latitude[i] = Double.NaN;
+                altitude[i] = Double.NaN;
+            } else if (r <= ANGULAR_THRESHOLD * FastMath.abs(zi)) {
+                // the point is almost on the polar axis, approximate the ellipsoid with
+                // the osculating sphere whose center is at evolute cusp along polar axis
+                final double osculatingRadius = ae2 / bp;
+                final double evoluteCuspZ     = FastMath.copySign(ae * e2 / g, -zi);
+                final double deltaZ           = zi - evoluteCuspZ;
+                // we use π/2 - atan(r/Δz) instead of atan(Δz/r) for accuracy purposes, as r is much smaller than Δz
+                latitude[i] = FastMath.copySign(0.5 * FastMath.PI - FastMath.atan(r / FastMath.abs(deltaZ)), deltaZ);
+                altitude[i] = FastMath.hypot(deltaZ, r) - osculatingRadius;
+            } else if (FastMath.abs(zi) <= ANGULAR_THRESHOLD * r) {
+                // the point is almost on the major axis
+                final double osculatingRadius = ap2 / ae;
+                final double evoluteCuspR     = ae * e2;
+                final double deltaR           = r - evoluteCuspR;
+                if (deltaR >= 0) {
+                    // the point is outside of the ellipse evolute, approximate the ellipse
+                    // with the osculating circle whose center is at evolute cusp along major axis
+                    latitude[i] = (deltaR == 0) ? 0.0 : FastMath.atan(zi / deltaR);
+                    altitude[i] = FastMath.hypot(deltaR, zi) - osculatingRadius;
+                } else {
+                    // the point is on the part of the major axis within ellipse evolute
+                    // we can compute the closest ellipse point analytically
+                    final double rClose = r / e2;
+                    final double zClose = FastMath.copySign(g * FastMath.sqrt(ae2 - rClose * rClose), zi);
+                    latitude[i] = FastMath.atan((zClose - zi) / (g2 * (r - rClose)));
+                    altitude[i] = -FastMath.hypot(r - rClose, zi - zClose);
+                }
+            } else {
+                // use Toshio Fukushima method, with several iterations
+                final double epsPhi = 1.0e-15;
+                final double epsH   = 1.0e-14 * FastMath.max(ae, FastMath.sqrt(r2 + zi * zi));
+                final double c      = ae * e2;
+                final double absZ   = FastMath.abs(zi);
+                final double zc     = g * absZ;
+                double sn  = absZ;
+                double sn2 = sn * sn;
+                double cn  = g * r;
+                double cn2 = cn * cn;
+                double an2 = cn2 + sn2;
+                double an  = FastMath.sqrt(an2);
+                double bn  = 0;
+                double phi = Double.POSITIVE_INFINITY;
+                double h   = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < 10; ++j) { // this usually converges in 2 iterations
+                    final double oldSn  = sn;
+                    final double oldCn  = cn;
+                    final double oldPhi = phi;
+                    final double oldH   = h;
+                    final double an3    = an2 * an;
+                    final double csncn  = c * sn * cn;
+                    bn = 1.5 * csncn * ((r * sn - zc * cn) * an - csncn);
+                    sn = (zc * an3 + c * sn2 * sn) * an3 - bn * sn;
+                    cn = (r  * an3 - c * cn2 * cn) * an3 - bn * cn;
+                    if (sn * oldSn < 0 || cn < 0) {
+                        // the Halley iteration went too far, we restrict it and iterate again
+                        while (sn * oldSn < 0 || cn < 0) {
+                            sn = (sn + oldSn) / 2;
+                            cn = (cn + oldCn) / 2;
+                        }
+                    } else {
+                        // rescale components to avoid overflow when several iterations are used
+                        final int exp = (FastMath.getExponent(sn) + FastMath.getExponent(cn)) / 2;
+                        sn  = FastMath.scalb(sn, -exp);
+                        cn  = FastMath.scalb(cn, -exp);
+                        sn2 = sn * sn;
+                        cn2 = cn * cn;
+                        an2 = cn2 + sn2;
+                        an  = FastMath.sqrt(an2);
+                        final double cc = g * cn;
+                        h = (r * cc + absZ * sn - ae * g * an) / FastMath.sqrt(an2 - e2 * cn2);
+                        if (FastMath.abs(oldH - h) < epsH) {
+                            phi = FastMath.copySign(FastMath.atan(sn / cc), zi);
+                            if (FastMath.abs(oldPhi - phi) < epsPhi) {
+                                break;
+                            }
+                        }
+                    }
+                }
+                // as in GeodeticPoint normalization, non-converged latitudes (deep inside the ellipsoid) become NaN
+                latitude[i] = Double.isInfinite(phi) ? Double.NaN : phi;
+                altitude[i] = h;
+            }
+
+        }
+
+    }
+
+    /** Check array length.
+     * @param expected expected length
+     * @param array array to check
+     */
+    private static void checkLength(final int expected, final double[] array) {
+        if (array.length != expected) {
+            throw new OrekitException(LocalizedCoreFormats.DIMENSIONS_MISMATCH, array.length, expected);
+        }
+    }
+
     /** Convert a line-of-sight from Cartesian to topocentric.
      * @param point geodetic point on the line-of-sight
      * @param los line-of-sight, not necessarily normalized (in body frame and Cartesian coordinates)
@@ -0,0 +1,406 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.hipparchus.util.FastMath;
+import org.orekit.frames.FactoryManagedFrame;
+import org.orekit.frames.Frame;
+import org.orekit.frames.FramesFactory;
+import org.orekit.frames.Predefined;
+import org.orekit.frames.Transform;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.rugged.utils.SpacecraftToObservedBody.TransformId;
+import org.orekit.time.AbsoluteDate;
+
+/** Codec for storing {@link SpacecraftToObservedBody transforms interpolators}.
+ * <p>
+ * This class handles the three storage forms of interpolators: the compact versioned
+ * binary format, the Java serialization form, and the legacy Java serialization form
+ * from Rugged 3.0, which can only be read. The interpolators only expose their packed
+ * samples to this class.
+ * </p>
+ * <p>
+ * The binary format is a small header followed by the packed samples, all
+ * numbers being stored in little-endian order:
+ * </p>
+ * <ul>
+ *   <li>magic number (8 bytes {@code RUGGED-I}), format version (int)
+ *       and number of samples n (int),</li>
+ *   <li>inertial and body frames {@link Predefined predefined} keys,
+ *       each as a length (int) followed by UTF-8 bytes,</li>
+ *   <li>padding to 8 bytes alignment,</li>
+ *   <li>reference date in whole seconds since {@link AbsoluteDate#JAVA_EPOCH Java epoch},
+ *       min and max dates (whole seconds and fractional part since reference),
+ *       time step and overshoot tolerance (7 doubles),</li>
+ *   <li>packed sample dates (2n doubles),</li>
+ *   <li>packed transforms from body frame to inertial frame (19n doubles),</li>
+ *   <li>packed transforms from spacecraft frame to inertial frame (19n doubles).</li>
+ * </ul>
+ * <p>
+ * Only frames managed by {@link FramesFactory} can be written in binary format.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+final class InterpolatorCodec {
+
+    /** Serialized fields of the Rugged 3.0 format. */
+    static final ObjectStreamField[] LEGACY_FIELDS = {
+        new ObjectStreamField("inertialFrame",      Frame.class),
+        new ObjectStreamField("bodyFrame",          Frame.class),
+        new ObjectStreamField("minDate",            AbsoluteDate.class),
+        new ObjectStreamField("maxDate",            AbsoluteDate.class),
+        new ObjectStreamField("tStep",              double.class),
+        new ObjectStreamField("overshootTolerance", double.class),
+        new ObjectStreamField("bodyToInertial",     List.class),
+        new ObjectStreamField("inertialToBody",     List.class),
+        new ObjectStreamField("scToInertial",       List.class)
+    };
+
+    /** Magic number at the start of binary format. */
+    private static final byte[] BINARY_MAGIC = "RUGGED-I".getBytes(StandardCharsets.US_ASCII);
+
+    /** Current version of binary format. */
+    private static final int BINARY_VERSION = 1;
+
+    /** Size of the chunks used for writing binary format. */
+    private static final int BINARY_CHUNK_SIZE = 8192;
+
+    /** Number of primitive doubles for each transform in the sample. */
+    private static final int SAMPLE_SIZE = SpacecraftToObservedBody.SAMPLE_SIZE;
+
+    /** Private constructor for utility class.
+     */
+    private InterpolatorCodec() {
+        // nothing to do
+    }
+
+    /** Write an interpolator in binary format.
+     * @param interpolator interpolator to write
+     * @param out stream where to write the interpolator (caller opened it and remains responsible for closing it)
+     * @exception IOException if interpolator cannot be written
+     */
+    static void writeBinary(final SpacecraftToObservedBody interpolator, final OutputStream out) throws IOException {
+
+        final AbsoluteDate reference   = interpolator.getReference();
+        final DoubleBuffer sampleDates = interpolator.getPackedDates();
+        final byte[]       inertialKey = getFrameKey(interpolator.getInertialFrame()).getBytes(StandardCharsets.UTF_8);
+        final byte[]       bodyKey     = getFrameKey(interpolator.getBodyFrame()).getBytes(StandardCharsets.UTF_8);
+        final int          n           = sampleDates.limit() / 2;
+        final int          headerSize  = alignedHeaderSize(inertialKey.length, bodyKey.length);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(FastMath.max(BINARY_CHUNK_SIZE, headerSize + 7 * Double.BYTES)).
+                                  order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(n);
+        buffer.putInt(inertialKey.length).put(inertialKey);
+        buffer.putInt(bodyKey.length).put(bodyKey);
+        while (buffer.position() < headerSize) {
+            buffer.put((byte) 0);
+        }
+        final double referenceSeconds = reference.durationFrom(AbsoluteDate.JAVA_EPOCH);
+        final double[] packed = new double[4];
+        SpacecraftToObservedBody.packDate(interpolator.getMinDate(), reference, packed, 0);
+        SpacecraftToObservedBody.packDate(interpolator.getMaxDate(), reference, packed, 1);
+        buffer.putDouble(referenceSeconds);
+        for (final double d : packed) {
+            buffer.putDouble(d);
+        }
+        buffer.putDouble(interpolator.getTStep()).putDouble(interpolator.getOvershootTolerance());
+
+        final WritableByteChannel channel = Channels.newChannel(out);
+        for (int i = 0; i < sampleDates.limit(); ++i) {
+            if (buffer.remaining() < Double.BYTES) {
+                flush(buffer, channel);
+            }
+            buffer.putDouble(sampleDates.get(i));
+        }
+        final double[] sample = new double[SAMPLE_SIZE];
+        for (final TransformId id : new TransformId[] {TransformId.BODY_TO_INERTIAL, TransformId.SC_TO_INERTIAL}) {
+            for (int i = 0; i < n; ++i) {
+                interpolator.getPackedTransform(id, i, sample, 0);
+                for (final double d : sample) {
+                    if (buffer.remaining() < Double.BYTES) {
+                        flush(buffer, channel);
+                    }
+                    buffer.putDouble(d);
+                }
+            }
+        }
+        flush(buffer, channel);
+
+    }
+
+    /** Read an interpolator written in binary format.
+     * <p>
+     * The buffer position and order are not changed by this method. The samples
+     * are not copied, they are read from the buffer when needed.
+     * </p>
+     * @param buffer buffer containing the interpolator, starting at its current position
+     * @return interpolator read from the buffer
+     */
+    static SpacecraftToObservedBody readBinary(final ByteBuffer buffer) {
+        try {
+            final ByteBuffer header = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+            final byte[] magic = new byte[BINARY_MAGIC.length];
+            header.get(magic);
+            for (int i = 0; i < magic.length; ++i) {
+                if (magic[i] != BINARY_MAGIC[i]) {
+                    throw new RuggedException(RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+                }
+            }
+            final int version = header.getInt();
+            if (version != BINARY_VERSION) {
+                throw new RuggedException(RuggedMessages.UNSUPPORTED_INTERPOLATOR_DUMP_VERSION,
+                                          version, BINARY_VERSION);
+            }
+            final int n = header.getInt();
+
+            final byte[] inertialKey = new byte[header.getInt()];
+            header.get(inertialKey);
+            final byte[] bodyKey = new byte[header.getInt()];
+            header.get(bodyKey);
+            ((Buffer) header).position(alignedHeaderSize(inertialKey.length, bodyKey.length));
+            final Frame inertialFrame =
+                            FramesFactory.getFrame(Predefined.valueOf(new String(inertialKey, StandardCharsets.UTF_8)));
+            final Frame bodyFrame =
+                            FramesFactory.getFrame(Predefined.valueOf(new String(bodyKey, StandardCharsets.UTF_8)));
+
+            final AbsoluteDate reference = AbsoluteDate.JAVA_EPOCH.shiftedBy(header.getDouble());
+            final DoubleBuffer packed    = header.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            final AbsoluteDate minDate   = SpacecraftToObservedBody.unpackDate(packed, reference, 0);
+            final AbsoluteDate maxDate   = SpacecraftToObservedBody.unpackDate(packed, reference, 1);
+            final double       tStep     = packed.get(4);
+            final double       tolerance = packed.get(5);
+
+            // views on the packed samples, without copying them
+            final int datesStart = 6;
+            final int b2iStart   = datesStart + 2 * n;
+            final int sc2iStart  = b2iStart + SAMPLE_SIZE * n;
+            final int end        = sc2iStart + SAMPLE_SIZE * n;
+            if (n <= 0 || packed.limit() < end) {
+                throw new RuggedException(RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+            }
+            return new SpacecraftToObservedBody(inertialFrame, bodyFrame, minDate, maxDate, tStep, tolerance, reference,
+                                                view(packed, datesStart, b2iStart),
+                                                view(packed, b2iStart, sc2iStart),
+                                                view(packed, sc2iStart, end));
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new RuggedException(e, RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+        }
+    }
+
+    /** Create the object to serialize in place of an interpolator.
+     * <p>
+     * In lazy mode, this triggers computation of all segments.
+     * </p>
+     * @param interpolator interpolator to serialize
+     * @return data transfer object that will be serialized
+     */
+    static Serializable toDataTransferObject(final SpacecraftToObservedBody interpolator) {
+        return new DataTransferObject(interpolator.getInertialFrame(), interpolator.getBodyFrame(),
+                                      interpolator.getMinDate(), interpolator.getMaxDate(),
+                                      interpolator.getTStep(), interpolator.getOvershootTolerance(),
+                                      interpolator.getReference(), toArray(interpolator.getPackedDates()),
+                                      toArray(interpolator, TransformId.BODY_TO_INERTIAL),
+                                      toArray(interpolator, TransformId.SC_TO_INERTIAL));
+    }
+
+    /** Rebuild an interpolator from fields serialized in Rugged 3.0 format.
+     * @param fields serialized fields, as described by {@link #LEGACY_FIELDS}
+     * @return interpolator rebuilt from the legacy serialized form
+     * @exception IOException if fields cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    static SpacecraftToObservedBody fromLegacyFields(final ObjectInputStream.GetField fields) throws IOException {
+        return new SpacecraftToObservedBody((Frame) fields.get(LEGACY_FIELDS[0].getName(), null),
+                                            (Frame) fields.get(LEGACY_FIELDS[1].getName(), null),
+                                            (AbsoluteDate) fields.get(LEGACY_FIELDS[2].getName(), null),
+                                            (AbsoluteDate) fields.get(LEGACY_FIELDS[3].getName(), null),
+                                            fields.get(LEGACY_FIELDS[4].getName(), Double.NaN),
+                                            fields.get(LEGACY_FIELDS[5].getName(), Double.NaN),
+                                            (List<Transform>) fields.get(LEGACY_FIELDS[6].getName(), null),
+                                            (List<Transform>) fields.get(LEGACY_FIELDS[8].getName(), null));
+    }
+
+    /** Get a view on a part of a buffer.
+     * @param buffer buffer to view
+     * @param start start index of the view (inclusive)
+     * @param end end index of the view (exclusive)
+     * @return view on the part of the buffer
+     */
+    private static DoubleBuffer view(final DoubleBuffer buffer, final int start, final int end) {
+        final DoubleBuffer duplicate = buffer.duplicate();
+        ((Buffer) duplicate).limit(end).position(start);
+        return duplicate.slice();
+    }
+
+    /** Get the size of binary format header, including alignment padding.
+     * @param inertialKeyLength length of the inertial frame key
+     * @param bodyKeyLength length of the body frame key
+     * @return size of the header, up to the first double
+     */
+    private static int alignedHeaderSize(final int inertialKeyLength, final int bodyKeyLength) {
+        final int size = BINARY_MAGIC.length + 4 * Integer.BYTES + inertialKeyLength + bodyKeyLength;
+        return ((size + Double.BYTES - 1) / Double.BYTES) * Double.BYTES;
+    }
+
+    /** Get the predefined key of a frame.
+     * @param frame frame to identify
+     * @return predefined key of the frame
+     */
+    private static String getFrameKey(final Frame frame) {
+        if (frame instanceof FactoryManagedFrame) {
+            return ((FactoryManagedFrame) frame).getFactoryKey().name();
+        } else {
+            throw new RuggedException(RuggedMessages.UNSUPPORTED_INTERPOLATOR_DUMP_FRAME, frame.getName());
+        }
+    }
+
+    /** Flush a buffer to a channel.
+     * @param buffer buffer to flush (will be cleared for writing again)
+     * @param channel channel where to write the buffer content
+     * @exception IOException if buffer cannot be written
+     */
+    private static void flush(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+        // the cast to Buffer ensures compatibility with Java 8 runtime
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    /** Copy a buffer into an array.
+     * @param buffer buffer to copy
+     * @return array containing the buffer elements
+     */
+    private static double[] toArray(final DoubleBuffer buffer) {
+        final double[] array = new double[buffer.limit()];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = buffer.get(i);
+        }
+        return array;
+    }
+
+    /** Copy a complete packed transforms sample into an array.
+     * @param interpolator interpolator holding the transforms sample
+     * @param id identifier of the transforms sample
+     * @return array containing the packed transforms sample
+     */
+    private static double[] toArray(final SpacecraftToObservedBody interpolator, final TransformId id) {
+        final int      n     = interpolator.getSamplesNumber();
+        final double[] array = new double[n * SAMPLE_SIZE];
+        for (int i = 0; i < n; ++i) {
+            interpolator.getPackedTransform(id, i, array, i * SAMPLE_SIZE);
+        }
+        return array;
+    }
+
+    /** Internal class used only for serialization. */
+    private static class DataTransferObject implements Serializable {
+
+        /** Serializable UID. */
+        private static final long serialVersionUID = 20221021L;
+
+        /** Inertial frame. */
+        private final Frame inertialFrame;
+
+        /** Body frame. */
+        private final Frame bodyFrame;
+
+        /** Start of search time span. */
+        private final AbsoluteDate minDate;
+
+        /** End of search time span. */
+        private final AbsoluteDate maxDate;
+
+        /** Step to use for inertial frame to body frame transforms cache computations. */
+        private final double tStep;
+
+        /** Tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting. */
+        private final double overshootTolerance;
+
+        /** Reference date for the transforms sample. */
+        private final AbsoluteDate reference;
+
+        /** Packed sample dates. */
+        private final double[] sampleDates;
+
+        /** Packed transforms sample from observed body frame to inertial frame. */
+        private final double[] bodyToInertial;
+
+        /** Packed transforms sample from spacecraft frame to inertial frame. */
+        private final double[] scToInertial;
+
+        /** Simple constructor.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param minDate start of search time span
+         * @param maxDate end of search time span
+         * @param tStep step to use for inertial frame to body frame transforms cache computations
+         * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+         * @param reference reference date for the transforms sample
+         * @param sampleDates packed sample dates
+         * @param bodyToInertial packed transforms sample from observed body frame to inertial frame
+         * @param scToInertial packed transforms sample from spacecraft frame to inertial frame
+         */
+        DataTransferObject(final Frame inertialFrame, final Frame bodyFrame,
+                           final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                           final double overshootTolerance, final AbsoluteDate reference,
+                           final double[] sampleDates, final double[] bodyToInertial, final double[] scToInertial) {
+            this.inertialFrame      = inertialFrame;
+            this.bodyFrame          = bodyFrame;
+            this.minDate            = minDate;
+            this.maxDate            = maxDate;
+            this.tStep              = tStep;
+            this.overshootTolerance = overshootTolerance;
+            this.reference          = reference;
+            this.sampleDates        = sampleDates;
+            this.bodyToInertial     = bodyToInertial;
+            this.scToInertial       = scToInertial;
+        }
+
+        /** Replace the deserialized data transfer object with a {@link SpacecraftToObservedBody}.
+         * @return replacement {@link SpacecraftToObservedBody}
+         */
+        private Object readResolve() {
+            return new SpacecraftToObservedBody(inertialFrame, bodyFrame, minDate, maxDate, tStep, overshootTolerance,
+                                                reference, DoubleBuffer.wrap(sampleDates),
+                                                DoubleBuffer.wrap(bodyToInertial), DoubleBuffer.wrap(scToInertial));
+        }
+
+    }
+
+}
@@ -0,0 +1,359 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hipparchus.util.FastMath;
+import org.orekit.frames.Transform;
+import org.orekit.rugged.errors.DumpManager;
+import org.orekit.time.AbsoluteDate;
+
+/** Transforms interpolator memoizing the transforms at the last few dates used in each thread.
+ * <p>
+ * Direct location of a full sensor line, inverse location (which evaluates the mean plane
+ * crossing at the same line dates again and again as the search converges) and LOS distance
+ * computations all request the transforms at the same dates many times. Each request involves
+ * a sample lookup, a shift of the sample transform and possibly an inversion or a composition.
+ * This decorator keeps, for each thread, the transforms computed at the last few dates, keyed
+ * by exact date (line numbers being converted to dates by the deterministic sensor datation,
+ * this also covers lines), so repeated requests are served without any computation.
+ * </p>
+ * <p>
+ * Each entry holds all the transforms requested at its date: spacecraft to inertial, inertial
+ * to body, body to inertial and the {@link #getScToBody(AbsoluteDate) composed} spacecraft to
+ * body transform, each one being computed only when first requested. The hit rate can be
+ * monitored with {@link #getHits()}, {@link #getMisses()} and {@link #getHitRate()}.
+ * </p>
+ * <p>
+ * The memo is bypassed when {@link DumpManager dumping} is active in the current thread,
+ * so dumps contain all the samples needed for replay. If the underlying interpolator is
+ * {@link AppendableSpacecraftToObservedBody appendable}, the memo of each thread is flushed
+ * when it detects the time span has been extended.
+ * </p>
+ * @author Luc Maisonobe
+ * @since 3.1
+ */
+public class MemoizedSpacecraftToObservedBody extends SpacecraftToObservedBody {
+
+    /** Serializable UID. */
+    private static final long serialVersionUID = 20221025L;
+
+    /** Underlying interpolator. */
+    private final SpacecraftToObservedBody underlying;
+
+    /** Number of dates memoized in each thread. */
+    private final int size;
+
+    /** Memo for each thread. */
+    private final transient ThreadLocal<Memo> memo;
+
+    /** Number of requests served from the memo. */
+    private final transient LongAdder hits;
+
+    /** Number of requests that needed a computation. */
+    private final transient LongAdder misses;
+
+    /** Simple constructor.
+     * @param underlying underlying interpolator
+     * @param size number of dates memoized in each thread
+     */
+    public MemoizedSpacecraftToObservedBody(final SpacecraftToObservedBody underlying, final int size) {
+        super(underlying, underlying.getInterpolationNumber());
+        this.underlying = underlying;
+        this.size       = FastMath.max(1, size);
+        this.memo       = ThreadLocal.withInitial(() -> new Memo(this.size));
+        this.hits       = new LongAdder();
+        this.misses     = new LongAdder();
+    }
+
+    /** Get the underlying interpolator.
+     * @return underlying interpolator
+     */
+    public SpacecraftToObservedBody getUnderlying() {
+        return underlying;
+    }
+
+    /** Get the number of dates memoized in each thread.
+     * @return number of dates memoized in each thread
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /** Get the number of requests served from the memo.
+     * @return number of requests served from the memo
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Get the number of requests that needed a computation.
+     * @return number of requests that needed a computation
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Get the ratio of requests served from the memo.
+     * @return ratio of requests served from the memo (0 if no requests have been made)
+     */
+    public double getHitRate() {
+        final long h     = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0 ? 0.0 : ((double) h) / total;
+    }
+
+    /** Reset the hits and misses counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /** {@inheritDoc}
+     * <p>
+     * The returned instance is memoized too, with the same number of dates per thread.
+     * </p>
+     */
+    @Override
+    public SpacecraftToObservedBody withInterpolationNumber(final int number) {
+        return new MemoizedSpacecraftToObservedBody(underlying.withInterpolationNumber(number), size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getInterpolationNumber() {
+        return underlying.getInterpolationNumber();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeBinary(final OutputStream out) throws IOException {
+        underlying.writeBinary(out);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AbsoluteDate getMinDate() {
+        return underlying.getMinDate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AbsoluteDate getMaxDate() {
+        return underlying.getMaxDate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSamplesNumber() {
+        return underlying.getSamplesNumber();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getScToInertial(final AbsoluteDate date) {
+        if (DumpManager.isActive()) {
+            return underlying.getScToInertial(date);
+        }
+        final Entry entry = getEntry(date);
+        if (entry.scToInertial == null) {
+            misses.increment();
+            entry.scToInertial = underlying.getScToInertial(date);
+        } else {
+            hits.increment();
+        }
+        return entry.scToInertial;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getInertialToBody(final AbsoluteDate date) {
+        if (DumpManager.isActive()) {
+            return underlying.getInertialToBody(date);
+        }
+        final Entry entry = getEntry(date);
+        if (entry.inertialToBody == null) {
+            misses.increment();
+            entry.inertialToBody = underlying.getInertialToBody(date);
+        } else {
+            hits.increment();
+        }
+        return entry.inertialToBody;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getBodyToInertial(final AbsoluteDate date) {
+        if (DumpManager.isActive()) {
+            return underlying.getBodyToInertial(date);
+        }
+        final Entry entry = getEntry(date);
+        if (entry.bodyToInertial == null) {
+            misses.increment();
+            entry.bodyToInertial = underlying.getBodyToInertial(date);
+        } else {
+            hits.increment();
+        }
+        return entry.bodyToInertial;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Transform getScToBody(final AbsoluteDate date) {
+        if (DumpManager.isActive()) {
+            return underlying.getScToBody(date);
+        }
+        final Entry entry = getEntry(date);
+        if (entry.scToBody == null) {
+            // the intermediate transforms are memoized too
+            entry.scToBody = new Transform(date, getScToInertial(date), getInertialToBody(date));
+        } else {
+            hits.increment();
+        }
+        return entry.scToBody;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transformPosition(final TransformId id, final AbsoluteDate date,
+                                  final double x, final double y, final double z,
+                                  final double[] result) {
+        underlying.transformPosition(id, date, x, y, z, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void transformVector(final TransformId id, final AbsoluteDate date,
+                                final double x, final double y, final double z,
+                                final double[] result) {
+        underlying.transformVector(id, date, x, y, z, result);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isInRange(final AbsoluteDate date) {
+        return underlying.isInRange(date);
+    }
+
+    /** Replace the instance with a data transfer object for serialization.
+     * <p>
+     * Only the underlying interpolator is serialized, without memoization.
+     * </p>
+     * @return data transfer object that will be serialized
+     */
+    @Override
+    Object writeReplace() {
+        return underlying.writeReplace();
+    }
+
+    /** Get the memo entry for a date, creating it if needed.
+     * @param date date of the transforms
+     * @return memo entry (transforms not yet computed are null)
+     */
+    private Entry getEntry(final AbsoluteDate date) {
+        return memo.get().getEntry(date, underlying.getMaxDate());
+    }
+
+    /** Per-thread memo. */
+    private static class Memo {
+
+        /** Entries. */
+        private final Entry[] entries;
+
+        /** End of the underlying time span when the entries were computed. */
+        private AbsoluteDate span;
+
+        /** Index of the next entry to replace. */
+        private int next;
+
+        /** Simple constructor.
+         * @param size number of entries
+         */
+        Memo(final int size) {
+            this.entries = new Entry[size];
+            for (int i = 0; i < size; ++i) {
+                entries[i] = new Entry();
+            }
+        }
+
+        /** Get the entry for a date, recycling the oldest entry if needed.
+         * @param date date of the transforms
+         * @param maxDate current end of the underlying time span
+         * @return entry for the date
+         */
+        Entry getEntry(final AbsoluteDate date, final AbsoluteDate maxDate) {
+
+            if (maxDate != span) {
+                // the underlying interpolator has changed, flush everything
+                for (final Entry entry : entries) {
+                    entry.reset(null);
+                }
+                span = maxDate;
+            }
+
+            for (final Entry entry : entries) {
+                if (entry.date == date || date.equals(entry.date)) {
+                    return entry;
+                }
+            }
+
+            // recycle the oldest entry
+            final Entry entry = entries[next];
+            entry.reset(date);
+            next = (next + 1) % entries.length;
+            return entry;
+
+        }
+
+    }
+
+    /** Memoized transforms at one date. */
+    private static class Entry {
+
+        /** Date of the transforms. */
+        private AbsoluteDate date;
+
+        /** Transform from spacecraft to inertial frame. */
+        private Transform scToInertial;
+
+        /** Transform from inertial frame to observed body frame. */
+        private Transform inertialToBody;
+
+        /** Transform from observed body frame to inertial frame. */
+        private Transform bodyToInertial;
+
+        /** Composed transform from spacecraft to observed body frame. */
+        private Transform scToBody;
+
+        /** Reset the entry.
+         * @param newDate new date of the transforms
+         */
+        void reset(final AbsoluteDate newDate) {
+            date           = newDate;
+            scToInertial   = null;
+            inertialToBody = null;
+            bodyToInertial = null;
+            scToBody       = null;
+        }
+
+    }
+
+}
@@ -16,34 +16,126 @@
  */
 package org.orekit.rugged.utils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
 
+import org.hipparchus.geometry.euclidean.threed.Rotation;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
+import org.hipparchus.util.SinCos;
 import org.orekit.frames.Frame;
+import org.orekit.frames.FramesFactory;
 import org.orekit.frames.Transform;
 import org.orekit.rugged.errors.DumpManager;
 import org.orekit.rugged.errors.RuggedException;
 import org.orekit.rugged.errors.RuggedMessages;
 import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.AngularCoordinates;
 import org.orekit.utils.AngularDerivativesFilter;
 import org.orekit.utils.CartesianDerivativesFilter;
 import org.orekit.utils.ImmutableTimeStampedCache;
+import org.orekit.utils.PVCoordinates;
 import org.orekit.utils.TimeStampedAngularCoordinates;
 import org.orekit.utils.TimeStampedCache;
 import org.orekit.utils.TimeStampedPVCoordinates;
 
 /** Provider for observation transforms.
+ * <p>
+ * The transforms sample is stored as a compact structure of arrays of primitive
+ * doubles: for each sample, translation, velocity, acceleration, rotation quaternion,
+ * rotation rate and rotation acceleration. Transforms from inertial frame to observed
+ * body frame are not stored, they are derived on the fly from the transforms from
+ * observed body frame to inertial frame. In addition to the methods returning
+ * {@link Transform} instances, allocation-free methods like {@link
+ * #transformPosition(TransformId, AbsoluteDate, double, double, double, double[])}
+ * apply the shifted transforms directly to positions or vectors.
+ * </p>
+ * <p>
+ * In addition to Java serialization, instances can be stored in a compact versioned
+ * {@link #writeBinary(OutputStream) binary format} and loaded back by {@link
+ * #readBinary(ByteBuffer)}. When the buffer is a memory-mapped file, loading is lazy:
+ * only the header is parsed and the samples are read from the file when used.
+ * </p>
+ * <p>
+ * In {@link #SpacecraftToObservedBody(Frame, Frame, AbsoluteDate, AbsoluteDate, double, double,
+ * List, int, CartesianDerivativesFilter, List, int, AngularDerivativesFilter, int, int) lazy mode},
+ * transforms are not computed at construction, they are computed by fixed-size segments
+ * of the sample, on first access, and kept in a bounded cache.
+ * </p>
+ * <p>
+ * With the {@link #SpacecraftToObservedBody(Frame, Frame, AbsoluteDate, AbsoluteDate, double, double,
+ * double, double, double, List, int, CartesianDerivativesFilter, List, int, AngularDerivativesFilter)
+ * adaptive constructor}, samples are not evenly spaced: the time step is reduced only where
+ * needed to meet an error bound, and samples are looked up by binary search.
+ * </p>
+ * <p>
+ * By default, transforms at any date are computed by shifting the closest sample,
+ * using its first and second time derivatives. With {@link #withInterpolationNumber(int)
+ * higher order interpolation}, they are computed by Hermite interpolation between several
+ * neighboring samples instead, which allows much larger time steps for the same accuracy.
+ * </p>
  * @author Luc Maisonobe
  * @author Guylaine Prat
  */
 public class SpacecraftToObservedBody implements Serializable {
 
-    /** Serializable UID. */
+    /** Number of primitive doubles for each transform in the sample. */
+    static final int SAMPLE_SIZE = 19;
+
+    /** Serializable UID.
+     * <p>
+     * This is the identifier of the Rugged 3.0 serialized form. Since 3.1 instances are
+     * always written as a data transfer object, so this identifier and the
+     * {@link #serialPersistentFields} below are used only to read interpolators
+     * stored by Rugged 3.0.
+     * </p>
+     */
     private static final long serialVersionUID = 20140909L;
 
+    /** Serialized fields of the Rugged 3.0 format.
+     * @since 3.1
+     */
+    private static final ObjectStreamField[] serialPersistentFields = InterpolatorCodec.LEGACY_FIELDS;
+
+    /** Offset of translation in sample. */
+    private static final int TRANSLATION = 0;
+
+    /** Offset of velocity in sample. */
+    private static final int VELOCITY = 3;
+
+    /** Offset of acceleration in sample. */
+    private static final int ACCELERATION = 6;
+
+    /** Offset of rotation quaternion in sample (scalar part first). */
+    private static final int ROTATION = 9;
+
+    /** Offset of rotation rate in sample. */
+    private static final int ROTATION_RATE = 13;
+
+    /** Offset of rotation acceleration in sample. */
+    private static final int ROTATION_ACCELERATION = 16;
+
+    /** Maximum number of samples for which rotation rates are used in interpolation.
+     * <p>
+     * The rotation rates of the samples come from the local interpolation of the
+     * attitude ephemeris, higher order interpolation would follow their noise.
+     * </p>
+     * @since 3.1
+     */
+    private static final int MAX_RATES_INTERPOLATION_NUMBER = 3;
+
     /** Inertial frame. */
     private final Frame inertialFrame;
 
@@ -62,14 +154,46 @@ public class SpacecraftToObservedBody implements Serializable {
     /** Tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting. */
     private final double overshootTolerance;
 
-    /** Transforms sample from observed body frame to inertial frame. */
-    private final List<Transform> bodyToInertial;
+    /** Reference date for the transforms sample (exactly on a second, at or before first sample). */
+    private final AbsoluteDate reference;
+
+    /** Lowest supported date offset with respect to reference, including overshoot tolerance.
+     * @since 3.1
+     */
+    private final transient double lowOffset;
+
+    /** Highest supported date offset with respect to reference, including overshoot tolerance.
+     * @since 3.1
+     */
+    private final transient double highOffset;
+
+    /** Packed sample dates (whole seconds since reference and fractional part of second). */
+    private final transient DoubleBuffer sampleDates;
+
+    /** Transforms sample, in eager mode (null in lazy mode). */
+    private final transient Segment eagerSegment;
+
+    /** Transforms sample for the last samples, when they are stored apart (null otherwise).
+     * @since 3.1
+     */
+    private final transient Segment tailSegment;
+
+    /** Provider for transforms sample segments, in lazy mode (null in eager mode). */
+    private final transient LazySegments lazySegments;
+
+    /** Last segment used, in lazy mode. */
+    private transient volatile Segment lastSegment;
 
-    /** Transforms sample from inertial frame to observed body frame. */
-    private final List<Transform> inertialToBody;
+    /** Indicator for evenly spaced samples. */
+    private final transient boolean uniform;
 
-    /** Transforms sample from spacecraft frame to inertial frame. */
-    private final List<Transform> scToInertial;
+    /** Number of neighboring samples used for interpolation (1 for shifting the closest sample). */
+    private final transient int interpolationNumber;
+
+    /** Instance rebuilt from a Rugged 3.0 serialized form (null for regular instances).
+     * @since 3.1
+     */
+    private transient SpacecraftToObservedBody legacy;
 
     /** Simple constructor.
      * @param inertialFrame inertial frame
@@ -93,31 +217,172 @@ public class SpacecraftToObservedBody implements Serializable {
                                     final CartesianDerivativesFilter pvFilter,
                                     final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
                                     final AngularDerivativesFilter aFilter) {
+        this(inertialFrame, bodyFrame, minDate, maxDate, tStep, overshootTolerance,
+             positionsVelocities, pvInterpolationNumber, pvFilter,
+             quaternions, aInterpolationNumber, aFilter, null);
+    }
+
+    /** Simple constructor with parallel computation of the transforms sample.
+     * <p>
+     * When a pool is provided, the transforms sample is split in chunks that are computed
+     * in parallel, then assembled in chronological order. The sample dates are the same as
+     * in sequential computation, so the results are the same, up to the ordering of internal
+     * caches of the frames (which may lead to differences at numerical noise level). The frames
+     * and their transform providers must be thread-safe, which is the case for all frames
+     * provided by Orekit {@link org.orekit.frames.FramesFactory FramesFactory}.
+     * </p>
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @param pool pool to use for parallel computation of the transforms sample
+     * (if null, the sample is computed sequentially in the calling thread)
+     * @since 3.1
+     */
+    public SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                    final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                                    final double overshootTolerance,
+                                    final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                                    final CartesianDerivativesFilter pvFilter,
+                                    final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                                    final AngularDerivativesFilter aFilter, final ForkJoinPool pool) {
+        this(inertialFrame, bodyFrame, minDate, maxDate, tStep, overshootTolerance,
+             positionsVelocities, pvInterpolationNumber, pvFilter,
+             quaternions, aInterpolationNumber, aFilter, pool, null, 0, 0);
+    }
+
+    /** Simple constructor with shared observed body rotation transforms.
+     * <p>
+     * Transforms from observed body frame to inertial frame are retrieved from the
+     * shared cache if another instance already computed them on the same time grid,
+     * otherwise they are computed and added to the cache.
+     * </p>
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @param pool pool to use for parallel computation of the transforms sample
+     * (if null, the sample is computed sequentially in the calling thread)
+     * @param bodyRotationCache shared cache for transforms from observed body frame to inertial frame
+     * (if null, these transforms are computed for this instance only)
+     * @since 3.1
+     */
+    public SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                    final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                                    final double overshootTolerance,
+                                    final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                                    final CartesianDerivativesFilter pvFilter,
+                                    final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                                    final AngularDerivativesFilter aFilter, final ForkJoinPool pool,
+                                    final BodyRotationCache bodyRotationCache) {
+        this(inertialFrame, bodyFrame, minDate, maxDate, tStep, overshootTolerance,
+             positionsVelocities, pvInterpolationNumber, pvFilter,
+             quaternions, aInterpolationNumber, aFilter, pool, bodyRotationCache, 0, 0);
+    }
+
+    /** Simple constructor with lazy computation of the transforms sample.
+     * <p>
+     * In lazy mode, the sample is split in segments of {@code segmentSize} consecutive
+     * samples. Transforms for one segment are computed only when one of its samples
+     * is first needed, and at most {@code maxSegments} segments are kept in a
+     * least recently used cache. This is intended for long time spans from which
+     * only a few dates are really used (for example the measurements dates in
+     * refining), so construction time and memory depend on the dates queried.
+     * The sample dates and transforms are the same as in eager mode, so the
+     * results are the same. The frames and their transform providers must be
+     * thread-safe if the instance is used from several threads, which is the case
+     * for all frames provided by Orekit {@link org.orekit.frames.FramesFactory FramesFactory}.
+     * </p>
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @param segmentSize number of samples in each segment (if not strictly positive,
+     * the whole sample is computed eagerly at construction)
+     * @param maxSegments maximum number of segments kept in the cache
+     * @since 3.1
+     */
+    public SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                    final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                                    final double overshootTolerance,
+                                    final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                                    final CartesianDerivativesFilter pvFilter,
+                                    final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                                    final AngularDerivativesFilter aFilter,
+                                    final int segmentSize, final int maxSegments) {
+        this(inertialFrame, bodyFrame, minDate, maxDate, tStep, overshootTolerance,
+             positionsVelocities, pvInterpolationNumber, pvFilter,
+             quaternions, aInterpolationNumber, aFilter, null, null, segmentSize, maxSegments);
+    }
+
+    /** Constructor for either eager or lazy computation of the transforms sample.
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @param pool pool to use for parallel computation of the transforms sample in eager mode
+     * (if null, the sample is computed sequentially in the calling thread)
+     * @param bodyRotationCache shared cache for transforms from observed body frame to inertial frame
+     * in eager mode (may be null)
+     * @param segmentSize number of samples in each segment in lazy mode (if not strictly positive,
+     * the whole sample is computed eagerly at construction)
+     * @param maxSegments maximum number of segments kept in the cache in lazy mode
+     */
+    private SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                     final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                                     final double overshootTolerance,
+                                     final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                                     final CartesianDerivativesFilter pvFilter,
+                                     final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                                     final AngularDerivativesFilter aFilter, final ForkJoinPool pool,
+                                     final BodyRotationCache bodyRotationCache,
+                                     final int segmentSize, final int maxSegments) {
 
         this.inertialFrame      = inertialFrame;
         this.bodyFrame          = bodyFrame;
         this.minDate            = minDate;
         this.maxDate            = maxDate;
         this.overshootTolerance = overshootTolerance;
+        this.interpolationNumber = 1;
 
         // safety checks
-        final AbsoluteDate minPVDate = positionsVelocities.get(0).getDate();
-        final AbsoluteDate maxPVDate = positionsVelocities.get(positionsVelocities.size() - 1).getDate();
-        if (minPVDate.durationFrom(minDate) > overshootTolerance) {
-            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate, minPVDate, maxPVDate);
-        }
-        if (maxDate.durationFrom(maxPVDate) > overshootTolerance) {
-            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, maxDate, minPVDate, maxPVDate);
-        }
-
-        final AbsoluteDate minQDate  = quaternions.get(0).getDate();
-        final AbsoluteDate maxQDate  = quaternions.get(quaternions.size() - 1).getDate();
-        if (minQDate.durationFrom(minDate) > overshootTolerance) {
-            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate, minQDate, maxQDate);
-        }
-        if (maxDate.durationFrom(maxQDate) > overshootTolerance) {
-            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, maxDate, minQDate, maxQDate);
-        }
+        checkCoverage(minDate, maxDate, overshootTolerance, positionsVelocities, quaternions);
 
         // set up the cache for position-velocities
         final TimeStampedCache<TimeStampedPVCoordinates> pvCache =
@@ -128,51 +393,63 @@ public class SpacecraftToObservedBody implements Serializable {
                 new ImmutableTimeStampedCache<>(aInterpolationNumber, quaternions);
 
         final int n = (int) FastMath.ceil(maxDate.durationFrom(minDate) / tStep);
-        this.tStep          = tStep;
-        this.bodyToInertial = new ArrayList<>(n);
-        this.inertialToBody = new ArrayList<>(n);
-        this.scToInertial   = new ArrayList<>(n);
-        for (AbsoluteDate date = minDate; bodyToInertial.size() < n; date = date.shiftedBy(tStep)) {
-
-            // interpolate position-velocity, allowing slight extrapolation near the boundaries
-            final AbsoluteDate pvInterpolationDate;
-            if (date.compareTo(pvCache.getEarliest().getDate()) < 0) {
-                pvInterpolationDate = pvCache.getEarliest().getDate();
-            } else if (date.compareTo(pvCache.getLatest().getDate()) > 0) {
-                pvInterpolationDate = pvCache.getLatest().getDate();
-            } else {
-                pvInterpolationDate = date;
-            }
-            final TimeStampedPVCoordinates interpolatedPV =
-                    TimeStampedPVCoordinates.interpolate(pvInterpolationDate, pvFilter,
-                            pvCache.getNeighbors(pvInterpolationDate));
-            final TimeStampedPVCoordinates pv = interpolatedPV.shiftedBy(date.durationFrom(pvInterpolationDate));
+        this.tStep = tStep;
 
-            // interpolate attitude, allowing slight extrapolation near the boundaries
-            final AbsoluteDate aInterpolationDate;
-            if (date.compareTo(aCache.getEarliest().getDate()) < 0) {
-                aInterpolationDate = aCache.getEarliest().getDate();
-            } else if (date.compareTo(aCache.getLatest().getDate()) > 0) {
-                aInterpolationDate = aCache.getLatest().getDate();
-            } else {
-                aInterpolationDate = date;
-            }
-            final TimeStampedAngularCoordinates interpolatedQuaternion =
-                    TimeStampedAngularCoordinates.interpolate(aInterpolationDate, aFilter,
-                            aCache.getNeighbors(aInterpolationDate).collect(Collectors.toList()));
-            final TimeStampedAngularCoordinates quaternion = interpolatedQuaternion.shiftedBy(date.durationFrom(aInterpolationDate));
+        // the sample dates are computed sequentially, exactly as in the historical loop,
+        // so parallel and sequential computations use the same dates
+        final AbsoluteDate[] dates = new AbsoluteDate[n];
+        AbsoluteDate date = minDate;
+        for (int i = 0; i < n; ++i) {
+            dates[i] = date;
+            date     = date.shiftedBy(tStep);
+        }
 
-            // store transform from spacecraft frame to inertial frame
-            scToInertial.add(new Transform(date,
-                    new Transform(date, quaternion.revert()),
-                    new Transform(date, pv)));
+        this.reference   = wholeSecond(minDate);
+        this.lowOffset  = minDate.durationFrom(reference) - overshootTolerance;
+        this.highOffset = maxDate.durationFrom(reference) + overshootTolerance;
+        this.uniform     = true;
+        final double[] packedDates = new double[2 * n];
+        for (int i = 0; i < n; ++i) {
+            packDate(dates[i], reference, packedDates, i);
+        }
 
-            // store transform from body frame to inertial frame
-            final Transform b2i = bodyFrame.getTransformTo(inertialFrame, date);
-            bodyToInertial.add(b2i);
-            inertialToBody.add(b2i.getInverse());
+        this.sampleDates = DoubleBuffer.wrap(packedDates);
 
+        if (segmentSize > 0) {
+            // lazy mode, transforms will be computed on first access
+            this.eagerSegment = null;
+            this.tailSegment  = null;
+            this.lazySegments = new LazySegments(inertialFrame, bodyFrame, reference, sampleDates,
+                                                 pvCache, pvFilter, aCache, aFilter,
+                                                 segmentSize, maxSegments);
+        } else {
+            final double[] sc2i = new double[n * SAMPLE_SIZE];
+            final double[] b2i;
+            if (bodyRotationCache == null) {
+                b2i = new double[n * SAMPLE_SIZE];
+                compute(new SampleComputation(inertialFrame, bodyFrame, dates,
+                                              pvCache, pvFilter, aCache, aFilter,
+                                              sc2i, b2i, 0, n),
+                        pool);
+            } else {
+                compute(new SampleComputation(inertialFrame, bodyFrame, dates,
+                                              pvCache, pvFilter, aCache, aFilter,
+                                              sc2i, null, 0, n),
+                        pool);
+                b2i = bodyRotationCache.getBodyToInertial(inertialFrame, bodyFrame, minDate, tStep, n, () -> {
+                    final double[] computed = new double[n * SAMPLE_SIZE];
+                    compute(new SampleComputation(inertialFrame, bodyFrame, dates,
+                                                  pvCache, pvFilter, aCache, aFilter,
+                                                  null, computed, 0, n),
+                            pool);
+                    return computed;
+                });
+            }
+            this.eagerSegment = new Segment(0, DoubleBuffer.wrap(b2i), DoubleBuffer.wrap(sc2i));
+            this.tailSegment  = null;
+            this.lazySegments = null;
         }
+
     }
 
     /** Simple constructor.
@@ -197,102 +474,1076 @@ public class SpacecraftToObservedBody implements Serializable {
         this.maxDate            = maxDate;
         this.tStep              = tStep;
         this.overshootTolerance = overshootTolerance;
-        this.bodyToInertial     = bodyToInertial;
-        this.scToInertial       = scToInertial;
+        this.interpolationNumber = 1;
 
-        this.inertialToBody = new ArrayList<>(bodyToInertial.size());
-        for (final Transform b2i : bodyToInertial) {
-            inertialToBody.add(b2i.getInverse());
+        final int n = bodyToInertial.size();
+        this.reference = wholeSecond(bodyToInertial.get(0).getDate());
+        this.lowOffset  = minDate.durationFrom(reference) - overshootTolerance;
+        this.highOffset = maxDate.durationFrom(reference) + overshootTolerance;
+        final double[] packedDates = new double[2 * n];
+        final double[] b2i         = new double[n * SAMPLE_SIZE];
+        final double[] sc2i        = new double[n * SAMPLE_SIZE];
+        for (int i = 0; i < n; ++i) {
+            packDate(bodyToInertial.get(i).getDate(), reference, packedDates, i);
+            pack(bodyToInertial.get(i), b2i,  i);
+            pack(scToInertial.get(i),   sc2i, i);
         }
+        this.sampleDates  = DoubleBuffer.wrap(packedDates);
+        this.uniform      = isUniform(sampleDates, tStep);
+        this.eagerSegment = new Segment(0, DoubleBuffer.wrap(b2i), DoubleBuffer.wrap(sc2i));
+        this.tailSegment  = null;
+        this.lazySegments = null;
 
     }
 
-    /** Get the inertial frame.
-     * @return inertial frame
+    /** Constructor with adaptive sampling.
+     * <p>
+     * Samples are first computed on an evenly spaced grid with {@code maxStep}, plus one
+     * last sample at {@code maxDate}. Then each interval between consecutive samples is
+     * checked at its middle: if shifting either bounding sample to the middle date differs
+     * from the rigorous transform by more than the tolerances (for either the spacecraft
+     * to inertial or the body to inertial transform), a sample is inserted at the middle
+     * and both halves are checked recursively, down to {@code minStep}. As shifting the
+     * closest sample is least accurate at the middle of the intervals, the tolerances
+     * bound the error everywhere in the time span, while quiet parts of the acquisition
+     * use the large step and only manoeuvres or jitter use small steps.
+     * </p>
+     * <p>
+     * Samples are looked up by binary search, which is slightly slower than the direct
+     * indexing used for evenly spaced samples. Dump replay assumes evenly spaced samples,
+     * so it does not support adaptive sampling.
+     * </p>
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param maxStep maximum step between samples
+     * @param minStep minimum step between samples
+     * @param positionTolerance tolerance on translations (m)
+     * @param angleTolerance tolerance on rotations (rad)
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @since 3.1
      */
-    public Frame getInertialFrame() {
-        return inertialFrame;
-    }
+    public SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                                    final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                                    final double maxStep, final double minStep,
+                                    final double positionTolerance, final double angleTolerance,
+                                    final double overshootTolerance,
+                                    final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                                    final CartesianDerivativesFilter pvFilter,
+                                    final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                                    final AngularDerivativesFilter aFilter) {
 
-    /** Get the body frame.
-     * @return body frame
-     */
-    public Frame getBodyFrame() {
-        return bodyFrame;
-    }
+        this.inertialFrame       = inertialFrame;
+        this.bodyFrame           = bodyFrame;
+        this.minDate             = minDate;
+        this.maxDate             = maxDate;
+        this.tStep               = maxStep;
+        this.overshootTolerance  = overshootTolerance;
+        this.interpolationNumber = 1;
+
+        // safety checks
+        checkCoverage(minDate, maxDate, overshootTolerance, positionsVelocities, quaternions);
+
+        final SampleComputation computation =
+                        new SampleComputation(inertialFrame, bodyFrame, new AbsoluteDate[0],
+                                              new ImmutableTimeStampedCache<>(pvInterpolationNumber, positionsVelocities),
+                                              pvFilter,
+                                              new ImmutableTimeStampedCache<>(aInterpolationNumber, quaternions),
+                                              aFilter, null, null, 0, 0);
+
+        // coarse evenly spaced grid, with one last sample at the end of the time span
+        final int n0 = (int) FastMath.ceil(maxDate.durationFrom(minDate) / maxStep);
+        final List<Transform[]> coarse = new ArrayList<>(n0 + 1);
+        AbsoluteDate date = minDate;
+        for (int i = 0; i < n0; ++i) {
+            coarse.add(computation.computeTransforms(date));
+            date = date.shiftedBy(maxStep);
+        }
+        if (maxDate.durationFrom(coarse.get(coarse.size() - 1)[0].getDate()) > 0) {
+            coarse.add(computation.computeTransforms(maxDate));
+        }
+
+        // refine intervals where shifting samples is not accurate enough
+        final List<Transform[]> refined = new ArrayList<>(coarse.size());
+        for (int i = 0; i < coarse.size() - 1; ++i) {
+            refined.add(coarse.get(i));
+            refine(computation, coarse.get(i), coarse.get(i + 1), minStep,
+                   positionTolerance, angleTolerance, refined);
+        }
+        refined.add(coarse.get(coarse.size() - 1));
+
+        // pack the samples
+        final int n = refined.size();
+        this.reference = wholeSecond(minDate);
+        this.lowOffset  = minDate.durationFrom(reference) - overshootTolerance;
+        this.highOffset = maxDate.durationFrom(reference) + overshootTolerance;
+        final double[] packedDates = new double[2 * n];
+        final double[] b2i         = new double[n * SAMPLE_SIZE];
+        final double[] sc2i        = new double[n * SAMPLE_SIZE];
+        for (int i = 0; i < n; ++i) {
+            final Transform[] sample = refined.get(i);
+            packDate(sample[0].getDate(), reference, packedDates, i);
+            pack(sample[0], sc2i, i);
+            pack(sample[1], b2i,  i);
+        }
+        this.sampleDates  = DoubleBuffer.wrap(packedDates);
+        this.uniform      = false;
+        this.eagerSegment = new Segment(0, DoubleBuffer.wrap(b2i), DoubleBuffer.wrap(sc2i));
+        this.tailSegment  = null;
+        this.lazySegments = null;
 
-    /** Get the start of search time span.
-     * @return start of search time span
-     */
-    public AbsoluteDate getMinDate() {
-        return minDate;
     }
 
-    /** Get the end of search time span.
-     * @return end of search time span
+    /** Constructor from packed samples.
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step to use for inertial frame to body frame transforms cache computations
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * @param reference reference date for the transforms sample (exactly on a second)
+     * @param sampleDates packed sample dates
+     * @param bodyToInertial packed transforms sample from observed body frame to inertial frame
+     * @param scToInertial packed transforms sample from spacecraft frame to inertial frame
      */
-    public AbsoluteDate getMaxDate() {
-        return maxDate;
+    SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                             final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                             final double overshootTolerance, final AbsoluteDate reference,
+                             final DoubleBuffer sampleDates,
+                             final DoubleBuffer bodyToInertial, final DoubleBuffer scToInertial) {
+        this.inertialFrame      = inertialFrame;
+        this.bodyFrame          = bodyFrame;
+        this.minDate            = minDate;
+        this.maxDate            = maxDate;
+        this.tStep              = tStep;
+        this.overshootTolerance = overshootTolerance;
+        this.interpolationNumber = 1;
+        this.reference          = reference;
+        this.lowOffset          = minDate.durationFrom(reference) - overshootTolerance;
+        this.highOffset         = maxDate.durationFrom(reference) + overshootTolerance;
+        this.sampleDates        = sampleDates;
+        this.uniform            = isUniform(sampleDates, tStep);
+        this.eagerSegment       = new Segment(0, bodyToInertial, scToInertial);
+        this.tailSegment        = null;
+        this.lazySegments       = null;
     }
 
-    /** Get the step to use for inertial frame to body frame transforms cache computations.
-     * @return step to use for inertial frame to body frame transforms cache computations
+    /** Constructor from evenly spaced packed samples, the last ones being stored apart.
+     * <p>
+     * The buffers are shared, not copied, so they must not be modified afterwards.
+     * </p>
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param tStep step between samples
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * @param reference reference date for the transforms sample (exactly on a second)
+     * @param sampleDates packed dates of all samples
+     * @param bodyToInertial packed transforms from observed body frame to inertial frame, for the first samples
+     * @param scToInertial packed transforms from spacecraft frame to inertial frame, for the first samples
+     * @param tailBodyToInertial packed transforms from observed body frame to inertial frame, for the last samples
+     * @param tailScToInertial packed transforms from spacecraft frame to inertial frame, for the last samples
+     * @since 3.1
      */
-    public double getTStep() {
-        return tStep;
+    SpacecraftToObservedBody(final Frame inertialFrame, final Frame bodyFrame,
+                             final AbsoluteDate minDate, final AbsoluteDate maxDate, final double tStep,
+                             final double overshootTolerance, final AbsoluteDate reference,
+                             final DoubleBuffer sampleDates,
+                             final DoubleBuffer bodyToInertial, final DoubleBuffer scToInertial,
+                             final DoubleBuffer tailBodyToInertial, final DoubleBuffer tailScToInertial) {
+        this.inertialFrame       = inertialFrame;
+        this.bodyFrame           = bodyFrame;
+        this.minDate             = minDate;
+        this.maxDate             = maxDate;
+        this.tStep               = tStep;
+        this.overshootTolerance  = overshootTolerance;
+        this.interpolationNumber = 1;
+        this.reference           = reference;
+        this.lowOffset           = minDate.durationFrom(reference) - overshootTolerance;
+        this.highOffset          = maxDate.durationFrom(reference) + overshootTolerance;
+        this.sampleDates         = sampleDates;
+        this.uniform             = true;
+        this.eagerSegment        = new Segment(0, bodyToInertial, scToInertial);
+        this.tailSegment         = new Segment(eagerSegment.end, tailBodyToInertial, tailScToInertial);
+        this.lazySegments        = null;
     }
 
-    /** Get the tolerance in seconds allowed for {@link #getMinDate()} and {@link #getMaxDate()} overshooting.
-     * @return tolerance in seconds allowed for {@link #getMinDate()} and {@link #getMaxDate()} overshooting
+    /** Copy constructor sharing the transforms sample.
+     * @param original instance sharing the transforms sample
+     * @param interpolationNumber number of neighboring samples used for interpolation
      */
-    public double getOvershootTolerance() {
-        return overshootTolerance;
+    SpacecraftToObservedBody(final SpacecraftToObservedBody original, final int interpolationNumber) {
+        this.inertialFrame       = original.inertialFrame;
+        this.bodyFrame           = original.bodyFrame;
+        this.minDate             = original.minDate;
+        this.maxDate             = original.maxDate;
+        this.tStep               = original.tStep;
+        this.overshootTolerance  = original.overshootTolerance;
+        this.interpolationNumber = interpolationNumber;
+        this.reference           = original.reference;
+        this.lowOffset           = original.lowOffset;
+        this.highOffset          = original.highOffset;
+        this.sampleDates         = original.sampleDates;
+        this.uniform             = original.uniform;
+        this.eagerSegment        = original.eagerSegment;
+        this.tailSegment         = original.tailSegment;
+        this.lazySegments        = original.lazySegments;
     }
 
-    /** Get transform from spacecraft to inertial frame.
-     * @param date date of the transform
-     * @return transform from spacecraft to inertial frame
+    /** Compute a transforms sample.
+     * @param computation computation to perform
+     * @param pool pool to use for parallel computation (if null, the computation
+     * is performed sequentially in the calling thread)
      */
-    public Transform getScToInertial(final AbsoluteDate date) {
-        return interpolate(date, scToInertial);
+    private static void compute(final SampleComputation computation, final ForkJoinPool pool) {
+        if (pool == null) {
+            computation.computeSequentially();
+        } else {
+            pool.invoke(computation);
+        }
     }
 
-    /** Get transform from inertial frame to observed body frame.
-     * @param date date of the transform
-     * @return transform from inertial frame to observed body frame
+    /** Compute packed transforms samples in the calling thread.
+     * @param inertialFrame inertial frame
+     * @param bodyFrame observed body frame
+     * @param dates sample dates
+     * @param positionsVelocities satellite position and velocity
+     * @param pvInterpolationNumber number of points to use for position/velocity interpolation
+     * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+     * @param quaternions satellite quaternions
+     * @param aInterpolationNumber number of points to use for attitude interpolation
+     * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+     * @param scToInertial placeholder for packed transforms from spacecraft frame to inertial frame
+     * @param bodyToInertial placeholder for packed transforms from observed body frame to inertial frame
+     * @since 3.1
      */
-    public Transform getInertialToBody(final AbsoluteDate date) {
-        return interpolate(date, inertialToBody);
+    static void computeSamples(final Frame inertialFrame, final Frame bodyFrame, final AbsoluteDate[] dates,
+                               final List<TimeStampedPVCoordinates> positionsVelocities, final int pvInterpolationNumber,
+                               final CartesianDerivativesFilter pvFilter,
+                               final List<TimeStampedAngularCoordinates> quaternions, final int aInterpolationNumber,
+                               final AngularDerivativesFilter aFilter,
+                               final double[] scToInertial, final double[] bodyToInertial) {
+        new SampleComputation(inertialFrame, bodyFrame, dates,
+                              new ImmutableTimeStampedCache<>(pvInterpolationNumber, positionsVelocities), pvFilter,
+                              new ImmutableTimeStampedCache<>(aInterpolationNumber, quaternions), aFilter,
+                              scToInertial, bodyToInertial, 0, dates.length).computeSequentially();
     }
 
-    /** Get transform from observed body frame to inertial frame.
-     * @param date date of the transform
-     * @return transform from observed body frame to inertial frame
+    /** Check ephemerides cover a time span.
+     * @param minDate start of search time span
+     * @param maxDate end of search time span
+     * @param overshootTolerance tolerance in seconds allowed for {@code minDate} and {@code maxDate} overshooting
+     * slightly the position, velocity and quaternions ephemerides
+     * @param positionsVelocities satellite position and velocity
+     * @param quaternions satellite quaternions
      */
-    public Transform getBodyToInertial(final AbsoluteDate date) {
-        return interpolate(date, bodyToInertial);
-    }
+    static void checkCoverage(final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                              final double overshootTolerance,
+                              final List<TimeStampedPVCoordinates> positionsVelocities,
+                              final List<TimeStampedAngularCoordinates> quaternions) {
 
-    /** Interpolate transform.
+        if (positionsVelocities.isEmpty() || quaternions.isEmpty()) {
+            // an empty ephemeris covers an empty time span
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate,
+                                      AbsoluteDate.FUTURE_INFINITY, AbsoluteDate.PAST_INFINITY);
+        }
+
+        final AbsoluteDate minPVDate = positionsVelocities.get(0).getDate();
+        final AbsoluteDate maxPVDate = positionsVelocities.get(positionsVelocities.size() - 1).getDate();
+        if (minPVDate.durationFrom(minDate) > overshootTolerance) {
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate, minPVDate, maxPVDate);
+        }
+        if (maxDate.durationFrom(maxPVDate) > overshootTolerance) {
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, maxDate, minPVDate, maxPVDate);
+        }
+
+        final AbsoluteDate minQDate  = quaternions.get(0).getDate();
+        final AbsoluteDate maxQDate  = quaternions.get(quaternions.size() - 1).getDate();
+        if (minQDate.durationFrom(minDate) > overshootTolerance) {
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, minDate, minQDate, maxQDate);
+        }
+        if (maxDate.durationFrom(maxQDate) > overshootTolerance) {
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, maxDate, minQDate, maxQDate);
+        }
+    }
+
+    /** Recursively refine an interval between two samples.
+     * @param computation computation for rigorous transforms
+     * @param start transforms at interval start (spacecraft to inertial and body to inertial)
+     * @param end transforms at interval end (spacecraft to inertial and body to inertial)
+     * @param minStep minimum step between samples
+     * @param positionTolerance tolerance on translations (m)
+     * @param angleTolerance tolerance on rotations (rad)
+     * @param refined placeholder where to add the samples inserted within the interval, in chronological order
+     */
+    private static void refine(final SampleComputation computation,
+                               final Transform[] start, final Transform[] end, final double minStep,
+                               final double positionTolerance, final double angleTolerance,
+                               final List<Transform[]> refined) {
+
+        final double h = 0.5 * end[0].getDate().durationFrom(start[0].getDate());
+        if (h < minStep) {
+            // we have reached the minimum step
+            return;
+        }
+
+        final Transform[] middle = computation.computeTransforms(start[0].getDate().shiftedBy(h));
+        for (int k = 0; k < middle.length; ++k) {
+            if (!isAccurate(start[k].shiftedBy(h),  middle[k], positionTolerance, angleTolerance) ||
+                !isAccurate(end[k].shiftedBy(-h),   middle[k], positionTolerance, angleTolerance)) {
+                // shifting bounding samples is not accurate enough, we need the middle sample
+                refine(computation, start, middle, minStep, positionTolerance, angleTolerance, refined);
+                refined.add(middle);
+                refine(computation, middle, end, minStep, positionTolerance, angleTolerance, refined);
+                return;
+            }
+        }
+
+    }
+
+    /** Check if an approximate transform is accurate enough.
+     * @param approximate approximate transform
+     * @param rigorous rigorous transform
+     * @param positionTolerance tolerance on translations (m)
+     * @param angleTolerance tolerance on rotations (rad)
+     * @return true if approximate transform is within tolerances
+     */
+    private static boolean isAccurate(final Transform approximate, final Transform rigorous,
+                                      final double positionTolerance, final double angleTolerance) {
+        return Vector3D.distance(approximate.getTranslation(), rigorous.getTranslation()) <= positionTolerance &&
+               Rotation.distance(approximate.getRotation(), rigorous.getRotation()) <= angleTolerance;
+    }
+
+    /** Check if packed sample dates are evenly spaced.
+     * @param sampleDates packed sample dates
+     * @param tStep expected step between samples
+     * @return true if sample dates are evenly spaced with the expected step
+     */
+    private static boolean isUniform(final DoubleBuffer sampleDates, final double tStep) {
+        final double first = sampleDates.get(0) + sampleDates.get(1);
+        for (int i = 1; i < sampleDates.limit() / 2; ++i) {
+            final double offset = sampleDates.get(2 * i) + sampleDates.get(2 * i + 1);
+            if (FastMath.abs(offset - first - i * tStep) > 1.0e-3 * tStep) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Get a view of this instance with a different interpolation mode.
+     * <p>
+     * With one sample (the default), transforms are computed by shifting the closest
+     * sample using its first and second time derivatives, so the error grows as the
+     * cube of the time step. With more samples, transforms are computed by Hermite
+     * interpolation between the neighboring samples, on the rotation and on the motion
+     * of the frame origin, using velocities. Rotation rates are used only up to three
+     * samples: they come from the local interpolation of the attitude ephemeris and higher
+     * order interpolation would follow their noise, so with more samples only the
+     * rotations are used. The following table shows the maximum error on the ground
+     * position of a point seen 20&deg; off-nadir from a 800km altitude spacecraft on a
+     * yaw compensated nadir pointing law, over a 120s acquisition, with respect to a
+     * 0.5ms step, when the trajectory is given as 0.25s ephemerides interpolated
+     * with 8 positions-velocities and 4 quaternions:
+     * </p>
+     * <table border="1" style="background-color:#f5f5dc;">
+     * <caption>Ground error in meters vs. time step and interpolation number</caption>
+     * <tr style="background-color:#c9d5c9;"><th>step (s)</th><th>1 sample</th><th>2 samples</th>
+     * <th>3 samples</th><th>4 samples</th><th>6 samples</th></tr>
+     * <tr><td>0.1</td><td>4.1e-4</td><td>4.1e-4</td><td>4.1e-4</td><td>5.6e-4</td><td>5.6e-4</td></tr>
+     * <tr><td>0.5</td><td>5.2e-4</td><td>8.8e-4</td><td>8.8e-4</td><td>8.8e-4</td><td>8.8e-4</td></tr>
+     * <tr><td>1</td><td>6.1e-4</td><td>8.8e-4</td><td>5.4e-4</td><td>8.8e-4</td><td>8.8e-4</td></tr>
+     * <tr><td>2</td><td>9.2e-4</td><td>9.0e-4</td><td>1.1e-3</td><td>8.8e-4</td><td>8.8e-4</td></tr>
+     * <tr><td>5</td><td>1.3e-2</td><td>9.3e-4</td><td>1.5e-3</td><td>8.8e-4</td><td>8.8e-4</td></tr>
+     * <tr><td>10</td><td>1.1e-1</td><td>5.5e-3</td><td>9.8e-4</td><td>3.4e-3</td><td>8.8e-4</td></tr>
+     * <tr><td>20</td><td>8.8e-1</td><td>7.8e-2</td><td>1.1e-2</td><td>5.5e-2</td><td>9.6e-4</td></tr>
+     * </table>
+     * <p>
+     * Errors below one millimeter are dominated by the interpolation of the attitude
+     * ephemeris itself, which the reference also follows. Two samples allow a time step
+     * about 2.5 times larger than shifting at the same accuracy, three samples about 5
+     * times larger and six samples about 10 times larger. When the attitude ephemeris is
+     * interpolated linearly (with 2 quaternions), the rotation rates are piecewise
+     * constant and only interpolation with at least 4 samples improves accuracy.
+     * Interpolation uses {@link TimeStampedPVCoordinates#interpolate(AbsoluteDate,
+     * CartesianDerivativesFilter, java.util.Collection)} and {@link
+     * TimeStampedAngularCoordinates#interpolate(AbsoluteDate, AngularDerivativesFilter,
+     * java.util.Collection)} and allocates temporary objects, including in the
+     * allocation-free methods like {@link
+     * #transformPosition(TransformId, AbsoluteDate, double, double, double, double[])}.
+     * </p>
+     * <p>
+     * The returned instance shares the transforms sample with the instance, so this
+     * method is cheap. The interpolation mode is not stored when the instance is
+     * serialized or {@link #writeBinary(OutputStream) written in binary format}.
+     * </p>
+     * @param number number of neighboring samples to use for interpolation
+     * (if lower than 2, the closest sample is shifted)
+     * @return view of this instance with the specified interpolation mode
+     * @see #getInterpolationNumber()
+     * @since 3.1
+     */
+    public SpacecraftToObservedBody withInterpolationNumber(final int number) {
+        return new SpacecraftToObservedBody(this, FastMath.max(1, number));
+    }
+
+    /** Get the number of neighboring samples used for interpolation.
+     * @return number of neighboring samples used for interpolation (1 for shifting the closest sample)
+     * @see #withInterpolationNumber(int)
+     * @since 3.1
+     */
+    public int getInterpolationNumber() {
+        return interpolationNumber;
+    }
+
+    /** Write the instance in binary format.
+     * <p>
+     * The binary format is a small versioned header followed by the packed samples, all
+     * numbers being stored in little-endian order. Only frames managed by {@link
+     * FramesFactory} can be written.
+     * </p>
+     * @param out stream where to write the instance (caller opened it and remains responsible for closing it)
+     * @exception IOException if instance cannot be written
+     * @see #readBinary(ByteBuffer)
+     * @since 3.1
+     */
+    public void writeBinary(final OutputStream out) throws IOException {
+        InterpolatorCodec.writeBinary(this, out);
+    }
+
+    /** Read an instance written in binary format.
+     * <p>
+     * The buffer position and order are not changed by this method. The samples
+     * are not copied, they are read from the buffer when needed, so when the buffer
+     * is a memory-mapped file, the loading time is proportional to the number of
+     * samples actually used. The buffer content must therefore not be changed
+     * as long as the instance is used.
+     * </p>
+     * @param buffer buffer containing the instance, starting at its current position
+     * @return instance read from the buffer
+     * @see #writeBinary(OutputStream)
+     * @since 3.1
+     */
+    public static SpacecraftToObservedBody readBinary(final ByteBuffer buffer) {
+        return InterpolatorCodec.readBinary(buffer);
+    }
+
+    /** Replace the instance with a data transfer object for serialization.
+     * @return data transfer object that will be serialized
+     */
+    Object writeReplace() {
+        return InterpolatorCodec.toDataTransferObject(this);
+    }
+
+    /** Read an instance serialized in Rugged 3.0 format.
+     * <p>
+     * The stream holds the transforms samples as lists, they are packed
+     * into a new instance that {@link #readResolve()} will substitute
+     * to the deserialized one.
+     * </p>
+     * @param in input stream
+     * @exception IOException if stream cannot be read
+     * @exception ClassNotFoundException if a class in the stream cannot be found
+     * @since 3.1
+     */
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        legacy = InterpolatorCodec.fromLegacyFields(in.readFields());
+    }
+
+    /** Replace an instance read from Rugged 3.0 format.
+     * @return instance rebuilt from the legacy serialized form
+     * @since 3.1
+     */
+    private Object readResolve() {
+        return legacy;
+    }
+
+    /** Get the reference date for the packed sample dates.
+     * @return reference date (exactly on a second, at or before first sample)
+     * @since 3.1
+     */
+    AbsoluteDate getReference() {
+        return reference;
+    }
+
+    /** Get the packed sample dates.
+     * @return read-only view of the packed sample dates (whole seconds
+     * since {@link #getReference() reference} and fractional part of second)
+     * @since 3.1
+     */
+    DoubleBuffer getPackedDates() {
+        return sampleDates.asReadOnlyBuffer();
+    }
+
+    /** Copy one packed transform of the sample.
+     * <p>
+     * In lazy mode, this triggers computation of the segment containing the sample.
+     * </p>
+     * @param id identifier of the transforms sample ({@link TransformId#INERTIAL_TO_BODY}
+     * is handled as {@link TransformId#BODY_TO_INERTIAL})
+     * @param index index of the sample
+     * @param packed array where to copy the {@link #SAMPLE_SIZE} packed doubles
+     * @param offset index of the first copied double in the array
+     * @since 3.1
+     */
+    void getPackedTransform(final TransformId id, final int index, final double[] packed, final int offset) {
+        final Segment      segment = getSegment(index);
+        final DoubleBuffer data    = segment.getData(id);
+        final int          k       = (index - segment.start) * SAMPLE_SIZE;
+        for (int j = 0; j < SAMPLE_SIZE; ++j) {
+            packed[offset + j] = data.get(k + j);
+        }
+    }
+
+    /** Get the inertial frame.
+     * @return inertial frame
+     */
+    public Frame getInertialFrame() {
+        return inertialFrame;
+    }
+
+    /** Get the body frame.
+     * @return body frame
+     */
+    public Frame getBodyFrame() {
+        return bodyFrame;
+    }
+
+    /** Get the start of search time span.
+     * @return start of search time span
+     */
+    public AbsoluteDate getMinDate() {
+        return minDate;
+    }
+
+    /** Get the end of search time span.
+     * @return end of search time span
+     */
+    public AbsoluteDate getMaxDate() {
+        return maxDate;
+    }
+
+    /** Get the step to use for inertial frame to body frame transforms cache computations.
+     * @return step to use for inertial frame to body frame transforms cache computations
+     */
+    public double getTStep() {
+        return tStep;
+    }
+
+    /** Get the tolerance in seconds allowed for {@link #getMinDate()} and {@link #getMaxDate()} overshooting.
+     * @return tolerance in seconds allowed for {@link #getMinDate()} and {@link #getMaxDate()} overshooting
+     */
+    public double getOvershootTolerance() {
+        return overshootTolerance;
+    }
+
+    /** Get the number of samples.
+     * @return number of samples
+     * @since 3.1
+     */
+    public int getSamplesNumber() {
+        return sampleDates.limit() / 2;
+    }
+
+    /** Get transform from spacecraft to inertial frame.
+     * @param date date of the transform
+     * @return transform from spacecraft to inertial frame
+     */
+    public Transform getScToInertial(final AbsoluteDate date) {
+        if (interpolationNumber > 1) {
+            return interpolate(TransformId.SC_TO_INERTIAL, date);
+        }
+        final double t     = getOffset(date);
+        final int    index = getSampleIndex(t, date);
+        return shift(unpack(TransformId.SC_TO_INERTIAL, index), date);
+    }
+
+    /** Get transform from inertial frame to observed body frame.
+     * @param date date of the transform
+     * @return transform from inertial frame to observed body frame
+     */
+    public Transform getInertialToBody(final AbsoluteDate date) {
+        if (interpolationNumber > 1) {
+            return interpolate(TransformId.BODY_TO_INERTIAL, date).getInverse();
+        }
+        final double t     = getOffset(date);
+        final int    index = getSampleIndex(t, date);
+        return shift(unpack(TransformId.BODY_TO_INERTIAL, index).getInverse(), date);
+    }
+
+    /** Get transform from observed body frame to inertial frame.
+     * @param date date of the transform
+     * @return transform from observed body frame to inertial frame
+     */
+    public Transform getBodyToInertial(final AbsoluteDate date) {
+        if (interpolationNumber > 1) {
+            return interpolate(TransformId.BODY_TO_INERTIAL, date);
+        }
+        final double t     = getOffset(date);
+        final int    index = getSampleIndex(t, date);
+        return shift(unpack(TransformId.BODY_TO_INERTIAL, index), date);
+    }
+
+    /** Get composed transform from spacecraft to observed body frame.
+     * @param date date of the transform
+     * @return transform from spacecraft to observed body frame
+     * @since 3.1
+     */
+    public Transform getScToBody(final AbsoluteDate date) {
+        return new Transform(date, getScToInertial(date), getInertialToBody(date));
+    }
+
+    /** Apply a cached transform to a position, without allocating any object.
+     * <p>
+     * The transform used is the closest sample transform, shifted to the specified date,
+     * just as the transforms returned by {@link #getScToInertial(AbsoluteDate)} and
+     * {@link #getBodyToInertial(AbsoluteDate)}. For {@link TransformId#INERTIAL_TO_BODY},
+     * the exact inverse of the shifted transform from body to inertial frame is applied,
+     * which differs from {@link #getInertialToBody(AbsoluteDate)} only at the level of
+     * the shift model second order terms.
+     * </p>
+     * @param id identifier of the transform to apply
+     * @param date date of the transform
+     * @param x abscissa of the position to transform
+     * @param y ordinate of the position to transform
+     * @param z height of the position to transform
+     * @param result placeholder for the transformed position (at least 3 elements)
+     * @since 3.1
+     */
+    public void transformPosition(final TransformId id, final AbsoluteDate date,
+                                  final double x, final double y, final double z,
+                                  final double[] result) {
+        apply(id, date, true, x, y, z, result);
+    }
+
+    /** Apply a cached transform to a vector, without allocating any object.
+     * <p>
+     * Vectors are only rotated, they are not translated.
+     * </p>
+     * @param id identifier of the transform to apply
+     * @param date date of the transform
+     * @param x abscissa of the vector to transform
+     * @param y ordinate of the vector to transform
+     * @param z height of the vector to transform
+     * @param result placeholder for the transformed vector (at least 3 elements)
+     * @see #transformPosition(TransformId, AbsoluteDate, double, double, double, double[])
+     * @since 3.1
+     */
+    public void transformVector(final TransformId id, final AbsoluteDate date,
+                                final double x, final double y, final double z,
+                                final double[] result) {
+        apply(id, date, false, x, y, z, result);
+    }
+
+    /** Apply a shifted sample transform to a position or a vector.
+     * @param id identifier of the transform to apply
+     * @param date date of the transform
+     * @param isPosition if true, the transform is applied to a position, otherwise to a vector
+     * @param x abscissa of the position or vector to transform
+     * @param y ordinate of the position or vector to transform
+     * @param z height of the position or vector to transform
+     * @param result placeholder for the transformed position or vector
+     */
+    private void apply(final TransformId id, final AbsoluteDate date, final boolean isPosition,
+                       final double x, final double y, final double z, final double[] result) {
+
+        if (interpolationNumber > 1) {
+            final Transform transform = id == TransformId.INERTIAL_TO_BODY ?
+                                        interpolate(TransformId.BODY_TO_INERTIAL, date).getInverse() :
+                                        interpolate(id, date);
+            final Vector3D  v         = isPosition ?
+                                        transform.transformPosition(new Vector3D(x, y, z)) :
+                                        transform.transformVector(new Vector3D(x, y, z));
+            result[0] = v.getX();
+            result[1] = v.getY();
+            result[2] = v.getZ();
+            return;
+        }
+
+        final double       t       = getOffset(date);
+        final int          index   = getSampleIndex(t, date);
+        final double       dt      = getShift(t, index);
+        final Segment      segment = getSegment(index);
+        final DoubleBuffer data    = segment.getData(id);
+        final int          k       = (index - segment.start) * SAMPLE_SIZE;
+
+        // shifted rotation, linear contribution of rotation rate
+        // (same local model as AngularCoordinates.shiftedBy)
+        final double r0 = data.get(k + ROTATION);
+        final double r1 = data.get(k + ROTATION + 1);
+        final double r2 = data.get(k + ROTATION + 2);
+        final double r3 = data.get(k + ROTATION + 3);
+        final double wx = data.get(k + ROTATION_RATE);
+        final double wy = data.get(k + ROTATION_RATE + 1);
+        final double wz = data.get(k + ROTATION_RATE + 2);
+        final double rate = FastMath.sqrt(wx * wx + wy * wy + wz * wz);
+        double q0 = r0;
+        double q1 = r1;
+        double q2 = r2;
+        double q3 = r3;
+        if (rate != 0.0) {
+            final SinCos sc    = FastMath.sinCos(0.5 * rate * dt);
+            final double c0    = sc.cos();
+            final double coeff = sc.sin() / rate;
+            final double c1    = coeff * wx;
+            final double c2    = coeff * wy;
+            final double c3    = coeff * wz;
+            q0 = r0 * c0 - (r1 * c1 + r2 * c2 + r3 * c3);
+            q1 = r1 * c0 + r0 * c1 + (r2 * c3 - r3 * c2);
+            q2 = r2 * c0 + r0 * c2 + (r3 * c1 - r1 * c3);
+            q3 = r3 * c0 + r0 * c3 + (r1 * c2 - r2 * c1);
+        }
+
+        // shifted rotation, quadratic contribution of rotation acceleration
+        final double ax  = data.get(k + ROTATION_ACCELERATION);
+        final double ay  = data.get(k + ROTATION_ACCELERATION + 1);
+        final double az  = data.get(k + ROTATION_ACCELERATION + 2);
+        final double acc = FastMath.sqrt(ax * ax + ay * ay + az * az);
+        if (acc != 0.0) {
+            final SinCos sc    = FastMath.sinCos(0.25 * acc * dt * dt);
+            final double c0    = sc.cos();
+            final double coeff = sc.sin() / acc;
+            final double c1    = coeff * ax;
+            final double c2    = coeff * ay;
+            final double c3    = coeff * az;
+            final double l0    = q0;
+            final double l1    = q1;
+            final double l2    = q2;
+            final double l3    = q3;
+            q0 = l0 * c0 - (l1 * c1 + l2 * c2 + l3 * c3);
+            q1 = l1 * c0 + l0 * c1 + (l2 * c3 - l3 * c2);
+            q2 = l2 * c0 + l0 * c2 + (l3 * c1 - l1 * c3);
+            q3 = l3 * c0 + l0 * c3 + (l1 * c2 - l2 * c1);
+        }
+
+        // shifted translation
+        final double tx;
+        final double ty;
+        final double tz;
+        if (isPosition) {
+            final double h = 0.5 * dt * dt;
+            tx = data.get(k + TRANSLATION)     + dt * data.get(k + VELOCITY)     + h * data.get(k + ACCELERATION);
+            ty = data.get(k + TRANSLATION + 1) + dt * data.get(k + VELOCITY + 1) + h * data.get(k + ACCELERATION + 1);
+            tz = data.get(k + TRANSLATION + 2) + dt * data.get(k + VELOCITY + 2) + h * data.get(k + ACCELERATION + 2);
+        } else {
+            tx = 0.0;
+            ty = 0.0;
+            tz = 0.0;
+        }
+
+        if (id == TransformId.INERTIAL_TO_BODY) {
+            // inverse transform: rotate back, then remove translation
+            final double s  = q1 * x + q2 * y + q3 * z;
+            final double m0 = -q0;
+            result[0] = 2 * (m0 * (x * m0 - (q2 * z - q3 * y)) + s * q1) - x - tx;
+            result[1] = 2 * (m0 * (y * m0 - (q3 * x - q1 * z)) + s * q2) - y - ty;
+            result[2] = 2 * (m0 * (z * m0 - (q1 * y - q2 * x)) + s * q3) - z - tz;
+        } else {
+            // direct transform: translate, then rotate
+            final double ux = x + tx;
+            final double uy = y + ty;
+            final double uz = z + tz;
+            final double s  = q1 * ux + q2 * uy + q3 * uz;
+            result[0] = 2 * (q0 * (ux * q0 - (q2 * uz - q3 * uy)) + s * q1) - ux;
+            result[1] = 2 * (q0 * (uy * q0 - (q3 * ux - q1 * uz)) + s * q2) - uy;
+            result[2] = 2 * (q0 * (uz * q0 - (q1 * uy - q2 * ux)) + s * q3) - uz;
+        }
+
+    }
+
+    /** Shift a sample transform to a date.
+     * @param close sample transform
+     * @param date date of the transform
+     * @return shifted transform
+     */
+    private Transform shift(final Transform close, final AbsoluteDate date) {
+        return close.shiftedBy(date.durationFrom(close.getDate()));
+    }
+
+    /** Get the offset of a date with respect to reference.
+     * <p>
+     * This is the only date arithmetic performed when a transform is requested,
+     * all other computations use this primitive offset.
+     * </p>
+     * @param date date to convert
+     * @return offset of the date with respect to reference
+     */
+    private double getOffset(final AbsoluteDate date) {
+        return date.durationFrom(reference);
+    }
+
+    /** Check a date offset is in the supported range.
+     * @param t offset of the date with respect to reference
+     * @param date date corresponding to the offset (used only for error messages)
+     */
+    private void checkRange(final double t, final AbsoluteDate date) {
+        if (t < lowOffset || t > highOffset) {
+            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, date, minDate, maxDate);
+        }
+    }
+
+    /** Get the time shift between a sample and a date offset.
+     * @param t offset of the date with respect to reference
+     * @param index index of the sample
+     * @return time shift to apply to the sample to reach the date
+     */
+    private double getShift(final double t, final int index) {
+        return (t - sampleDates.get(2 * index)) - sampleDates.get(2 * index + 1);
+    }
+
+    /** Get the index of the sample closest to a date.
+     * @param t offset of the date with respect to reference
+     * @param date date corresponding to the offset (used only for error messages)
+     * @return index of the closest sample
+     */
+    private int getSampleIndex(final double t, final AbsoluteDate date) {
+
+        // check date range
+        checkRange(t, date);
+
+        final int index;
+        if (uniform) {
+            final double s = (t - getOffset(0)) / tStep;
+            index = FastMath.max(0, FastMath.min(sampleDates.limit() / 2 - 1, (int) FastMath.rint(s)));
+        } else {
+            index = searchClosest(t);
+        }
+
+        dumpSample(index);
+
+        return index;
+
+    }
+
+    /** Interpolate a transform between neighboring samples.
+     * @param id identifier of the transforms sample ({@link TransformId#INERTIAL_TO_BODY}
+     * is handled as {@link TransformId#BODY_TO_INERTIAL})
      * @param date date of the transform
-     * @param list transforms list to interpolate from
      * @return interpolated transform
      */
-    private Transform interpolate(final AbsoluteDate date, final List<Transform> list) {
+    private Transform interpolate(final TransformId id, final AbsoluteDate date) {
 
         // check date range
-        if (!isInRange(date)) {
-            throw new RuggedException(RuggedMessages.OUT_OF_TIME_RANGE, date, minDate, maxDate);
+        final double t = getOffset(date);
+        checkRange(t, date);
+
+        // select the neighboring samples, centered around the date as much as possible
+        final int n      = sampleDates.limit() / 2;
+        final int number = FastMath.min(interpolationNumber, n);
+        final int center;
+        if (uniform) {
+            final double s = (t - getOffset(0)) / tStep;
+            center = (number % 2 == 1) ?
+                     (int) FastMath.rint(s) - number / 2 :
+                     (int) FastMath.floor(s) - (number / 2 - 1);
+        } else {
+            final int    closest = searchClosest(t);
+            center = (number % 2 == 1) ?
+                     closest - number / 2 :
+                     (getOffset(closest) > t ? closest - 1 : closest) - (number / 2 - 1);
         }
+        final int start  = FastMath.max(0, FastMath.min(n - number, center));
 
-        final double    s     = date.durationFrom(list.get(0).getDate()) / tStep;
-        final int       index = FastMath.max(0, FastMath.min(list.size() - 1, (int) FastMath.rint(s)));
+        // the translation of the samples is expressed in their source frame, so it
+        // rotates with them; we interpolate separately the rotation and the motion of
+        // the source frame origin in the target frame, which are both smooth
+        final List<TimeStampedPVCoordinates>      origins   = new ArrayList<>(number);
+        final List<TimeStampedAngularCoordinates> rotations = new ArrayList<>(number);
+        for (int i = start; i < start + number; ++i) {
+            dumpSample(i);
+            final Transform sample = unpack(id, i);
+            origins.add(new TimeStampedPVCoordinates(sample.getDate(),
+                                                     sample.transformPVCoordinates(PVCoordinates.ZERO)));
+            rotations.add(new TimeStampedAngularCoordinates(sample.getDate(), sample.getRotation(),
+                                                            sample.getRotationRate(),
+                                                            sample.getRotationAcceleration()));
+        }
 
-        DumpManager.dumpTransform(this, index, bodyToInertial.get(index), scToInertial.get(index));
+        final TimeStampedPVCoordinates      origin   =
+                        TimeStampedPVCoordinates.interpolate(date, CartesianDerivativesFilter.USE_PV, origins);
+        final TimeStampedAngularCoordinates rotation =
+                        TimeStampedAngularCoordinates.interpolate(date,
+                                                                  number > MAX_RATES_INTERPOLATION_NUMBER ?
+                                                                  AngularDerivativesFilter.USE_R :
+                                                                  AngularDerivativesFilter.USE_RR,
+                                                                  rotations);
+        return new Transform(date, new Transform(date, rotation), new Transform(date, origin));
 
-        final Transform close = list.get(index);
-        return close.shiftedBy(date.durationFrom(close.getDate()));
+    }
+
+    /** Search the sample closest to a date, for unevenly spaced samples.
+     * @param t date offset with respect to reference
+     * @return index of the closest sample
+     */
+    private int searchClosest(final double t) {
+
+        // binary search for the last sample at or before t
+        int low  = 0;
+        int high = sampleDates.limit() / 2 - 1;
+        if (t <= getOffset(low)) {
+            return low;
+        }
+        if (t >= getOffset(high)) {
+            return high;
+        }
+        while (high - low > 1) {
+            final int middle = (low + high) >>> 1;
+            if (getOffset(middle) <= t) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        // select the closest of the two bracketing samples
+        return (t - getOffset(low) <= getOffset(high) - t) ? low : high;
+
+    }
+
+    /** Get the offset of a sample date with respect to reference.
+     * @param index index of the sample
+     * @return offset of the sample date with respect to reference
+     */
+    private double getOffset(final int index) {
+        return sampleDates.get(2 * index) + sampleDates.get(2 * index + 1);
+    }
+
+    /** Dump a sample if dump is active.
+     * @param index index of the sample
+     */
+    private void dumpSample(final int index) {
+        if (DumpManager.isActive()) {
+            DumpManager.dumpTransform(this, index,
+                                      unpack(TransformId.BODY_TO_INERTIAL, index),
+                                      unpack(TransformId.SC_TO_INERTIAL, index));
+        }
+    }
+
+    /** Get the segment containing a sample.
+     * @param index index of the sample
+     * @return segment containing the sample
+     */
+    private Segment getSegment(final int index) {
+
+        if (lazySegments == null) {
+            return tailSegment != null && index >= tailSegment.start ? tailSegment : eagerSegment;
+        }
+
+        final Segment last = lastSegment;
+        if (last != null && last.contains(index)) {
+            return last;
+        }
 
+        final Segment segment = lazySegments.getSegment(index);
+        lastSegment = segment;
+        return segment;
+
+    }
+
+    /** Get a date exactly on a whole second, at or before a specified date.
+     * @param date date to consider
+     * @return date exactly on a whole second, at or before {@code date}
+     */
+    static AbsoluteDate wholeSecond(final AbsoluteDate date) {
+        return AbsoluteDate.JAVA_EPOCH.shiftedBy(FastMath.floor(date.durationFrom(AbsoluteDate.JAVA_EPOCH)));
+    }
+
+    /** Pack a date.
+     * <p>
+     * The date is split in whole seconds since reference and fractional
+     * part of second, so it can be rebuilt exactly from the two primitive doubles.
+     * </p>
+     * @param date date to pack
+     * @param reference reference date (exactly on a second)
+     * @param data array where to pack the date
+     * @param index index of the date in the array
+     */
+    static void packDate(final AbsoluteDate date, final AbsoluteDate reference,
+                         final double[] data, final int index) {
+        final double seconds = FastMath.floor(date.durationFrom(reference));
+        data[2 * index]     = seconds;
+        data[2 * index + 1] = date.durationFrom(reference.shiftedBy(seconds));
+    }
+
+    /** Rebuild a packed date.
+     * @param data buffer where the date is packed
+     * @param reference reference date (exactly on a second)
+     * @param index index of the date in the buffer
+     * @return rebuilt date
+     */
+    static AbsoluteDate unpackDate(final DoubleBuffer data, final AbsoluteDate reference, final int index) {
+        return reference.shiftedBy(data.get(2 * index)).shiftedBy(data.get(2 * index + 1));
+    }
+
+    /** Pack a transform in a sample array.
+     * @param transform transform to pack
+     * @param data sample array
+     * @param index index of the transform in the sample
+     */
+    private static void pack(final Transform transform, final double[] data, final int index) {
+        final int k = index * SAMPLE_SIZE;
+        store(transform.getTranslation(),          data, k + TRANSLATION);
+        store(transform.getVelocity(),             data, k + VELOCITY);
+        store(transform.getAcceleration(),         data, k + ACCELERATION);
+        final Rotation rotation = transform.getRotation();
+        data[k + ROTATION]     = rotation.getQ0();
+        data[k + ROTATION + 1] = rotation.getQ1();
+        data[k + ROTATION + 2] = rotation.getQ2();
+        data[k + ROTATION + 3] = rotation.getQ3();
+        store(transform.getRotationRate(),         data, k + ROTATION_RATE);
+        store(transform.getRotationAcceleration(), data, k + ROTATION_ACCELERATION);
+    }
+
+    /** Store a vector in a sample array.
+     * @param v vector to store
+     * @param data sample array
+     * @param k offset of the vector in the array
+     */
+    private static void store(final Vector3D v, final double[] data, final int k) {
+        data[k]     = v.getX();
+        data[k + 1] = v.getY();
+        data[k + 2] = v.getZ();
+    }
+
+    /** Rebuild a sample transform.
+     * @param id identifier of the transforms sample ({@link TransformId#INERTIAL_TO_BODY}
+     * is handled as {@link TransformId#BODY_TO_INERTIAL})
+     * @param index index of the transform in the sample
+     * @return sample transform
+     */
+    private Transform unpack(final TransformId id, final int index) {
+        final Segment      segment = getSegment(index);
+        final DoubleBuffer data    = segment.getData(id);
+        final int          k       = (index - segment.start) * SAMPLE_SIZE;
+        final AbsoluteDate date = unpackDate(sampleDates, reference, index);
+        final PVCoordinates cartesian =
+                        new PVCoordinates(load(data, k + TRANSLATION),
+                                          load(data, k + VELOCITY),
+                                          load(data, k + ACCELERATION));
+        final AngularCoordinates angular =
+                        new AngularCoordinates(new Rotation(data.get(k + ROTATION),     data.get(k + ROTATION + 1),
+                                                            data.get(k + ROTATION + 2), data.get(k + ROTATION + 3),
+                                                            false),
+                                               load(data, k + ROTATION_RATE),
+                                               load(data, k + ROTATION_ACCELERATION));
+        return new Transform(date, new Transform(date, cartesian), new Transform(date, angular));
+    }
+
+    /** Load a vector from a sample buffer.
+     * @param data sample buffer
+     * @param k offset of the vector in the buffer
+     * @return loaded vector
+     */
+    private static Vector3D load(final DoubleBuffer data, final int k) {
+        return new Vector3D(data.get(k), data.get(k + 1), data.get(k + 2));
     }
 
     /** Check if a date is in the supported range.
@@ -300,8 +1551,360 @@ public class SpacecraftToObservedBody implements Serializable {
      * @return true if date is in the supported range
      */
     public boolean isInRange(final AbsoluteDate date) {
-        return minDate.durationFrom(date) <= overshootTolerance &&
-               date.durationFrom(maxDate) <= overshootTolerance;
+        final double t = getOffset(date);
+        return t >= lowOffset && t <= highOffset;
+    }
+
+    /** Fork-join task computing a chunk of the transforms sample.
+     * @since 3.1
+     */
+    private static class SampleComputation extends RecursiveAction {
+
+        /** Serializable UID. */
+        private static final long serialVersionUID = 20221019L;
+
+        /** Number of samples below which the chunk is not split anymore. */
+        private static final int CHUNK_SIZE = 256;
+
+        /** Inertial frame. */
+        private final transient Frame inertialFrame;
+
+        /** Body frame. */
+        private final transient Frame bodyFrame;
+
+        /** Sample dates. */
+        private final transient AbsoluteDate[] dates;
+
+        /** Cache for position-velocities. */
+        private final transient TimeStampedCache<TimeStampedPVCoordinates> pvCache;
+
+        /** Filter for derivatives from the sample to use in position/velocity interpolation. */
+        private final transient CartesianDerivativesFilter pvFilter;
+
+        /** Cache for attitudes. */
+        private final transient TimeStampedCache<TimeStampedAngularCoordinates> aCache;
+
+        /** Filter for derivatives from the sample to use in attitude interpolation. */
+        private final transient AngularDerivativesFilter aFilter;
+
+        /** Placeholder for packed transforms from spacecraft frame to inertial frame. */
+        private final transient double[] scToInertial;
+
+        /** Placeholder for packed transforms from observed body frame to inertial frame. */
+        private final transient double[] bodyToInertial;
+
+        /** Start index of the chunk (inclusive). */
+        private final int start;
+
+        /** End index of the chunk (exclusive). */
+        private final int end;
+
+        /** Simple constructor.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param dates sample dates
+         * @param pvCache cache for position-velocities
+         * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+         * @param aCache cache for attitudes
+         * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+         * @param scToInertial placeholder for packed transforms from spacecraft frame to inertial frame
+         * (if null, these transforms are not computed)
+         * @param bodyToInertial placeholder for packed transforms from observed body frame to inertial frame
+         * (if null, these transforms are not computed)
+         * @param start start index of the chunk (inclusive)
+         * @param end end index of the chunk (exclusive)
+         */
+        SampleComputation(final Frame inertialFrame, final Frame bodyFrame, final AbsoluteDate[] dates,
+                          final TimeStampedCache<TimeStampedPVCoordinates> pvCache,
+                          final CartesianDerivativesFilter pvFilter,
+                          final TimeStampedCache<TimeStampedAngularCoordinates> aCache,
+                          final AngularDerivativesFilter aFilter,
+                          final double[] scToInertial, final double[] bodyToInertial,
+                          final int start, final int end) {
+            this.inertialFrame  = inertialFrame;
+            this.bodyFrame      = bodyFrame;
+            this.dates          = dates;
+            this.pvCache        = pvCache;
+            this.pvFilter       = pvFilter;
+            this.aCache         = aCache;
+            this.aFilter        = aFilter;
+            this.scToInertial   = scToInertial;
+            this.bodyToInertial = bodyToInertial;
+            this.start          = start;
+            this.end            = end;
+        }
+
+        /** Create a task for a sub-chunk.
+         * @param subStart start index of the sub-chunk (inclusive)
+         * @param subEnd end index of the sub-chunk (exclusive)
+         * @return task for the sub-chunk
+         */
+        private SampleComputation subChunk(final int subStart, final int subEnd) {
+            return new SampleComputation(inertialFrame, bodyFrame, dates,
+                                         pvCache, pvFilter, aCache, aFilter,
+                                         scToInertial, bodyToInertial,
+                                         subStart, subEnd);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void compute() {
+            if (end - start <= CHUNK_SIZE) {
+                computeSequentially();
+            } else {
+                final int middle = (start + end) >>> 1;
+                invokeAll(subChunk(start, middle), subChunk(middle, end));
+            }
+        }
+
+        /** Compute the chunk in the calling thread.
+         */
+        void computeSequentially() {
+            for (int i = start; i < end; ++i) {
+                if (scToInertial != null) {
+                    pack(computeScToInertial(dates[i]), scToInertial, i);
+                }
+                if (bodyToInertial != null) {
+                    pack(bodyFrame.getTransformTo(inertialFrame, dates[i]), bodyToInertial, i);
+                }
+            }
+        }
+
+        /** Compute the rigorous transforms at one date.
+         * @param date date of the transforms
+         * @return transforms from spacecraft frame to inertial frame
+         * and from body frame to inertial frame, in this order
+         */
+        Transform[] computeTransforms(final AbsoluteDate date) {
+            return new Transform[] {
+                computeScToInertial(date), bodyFrame.getTransformTo(inertialFrame, date)
+            };
+        }
+
+        /** Compute the rigorous transform from spacecraft frame to inertial frame at one date.
+         * @param date date of the transform
+         * @return transform from spacecraft frame to inertial frame
+         */
+        private Transform computeScToInertial(final AbsoluteDate date) {
+
+            // interpolate position-velocity, allowing slight extrapolation near the boundaries
+            final AbsoluteDate pvInterpolationDate;
+            if (date.compareTo(pvCache.getEarliest().getDate()) < 0) {
+                pvInterpolationDate = pvCache.getEarliest().getDate();
+            } else if (date.compareTo(pvCache.getLatest().getDate()) > 0) {
+                pvInterpolationDate = pvCache.getLatest().getDate();
+            } else {
+                pvInterpolationDate = date;
+            }
+            final TimeStampedPVCoordinates interpolatedPV =
+                    TimeStampedPVCoordinates.interpolate(pvInterpolationDate, pvFilter,
+                            pvCache.getNeighbors(pvInterpolationDate));
+            final TimeStampedPVCoordinates pv = interpolatedPV.shiftedBy(date.durationFrom(pvInterpolationDate));
+
+            // interpolate attitude, allowing slight extrapolation near the boundaries
+            final AbsoluteDate aInterpolationDate;
+            if (date.compareTo(aCache.getEarliest().getDate()) < 0) {
+                aInterpolationDate = aCache.getEarliest().getDate();
+            } else if (date.compareTo(aCache.getLatest().getDate()) > 0) {
+                aInterpolationDate = aCache.getLatest().getDate();
+            } else {
+                aInterpolationDate = date;
+            }
+            final TimeStampedAngularCoordinates interpolatedQuaternion =
+                    TimeStampedAngularCoordinates.interpolate(aInterpolationDate, aFilter,
+                            aCache.getNeighbors(aInterpolationDate).collect(Collectors.toList()));
+            final TimeStampedAngularCoordinates quaternion = interpolatedQuaternion.shiftedBy(date.durationFrom(aInterpolationDate));
+
+            return new Transform(date, new Transform(date, quaternion.revert()), new Transform(date, pv));
+
+        }
+
+    }
+
+    /** Segment of the packed transforms sample. */
+    private static class Segment {
+
+        /** Index of the first sample in the segment. */
+        private final int start;
+
+        /** Index after the last sample in the segment. */
+        private final int end;
+
+        /** Packed transforms from observed body frame to inertial frame. */
+        private final DoubleBuffer bodyToInertial;
+
+        /** Packed transforms from spacecraft frame to inertial frame. */
+        private final DoubleBuffer scToInertial;
+
+        /** Simple constructor.
+         * @param start index of the first sample in the segment
+         * @param bodyToInertial packed transforms from observed body frame to inertial frame
+         * @param scToInertial packed transforms from spacecraft frame to inertial frame
+         */
+        Segment(final int start, final DoubleBuffer bodyToInertial, final DoubleBuffer scToInertial) {
+            this.start          = start;
+            this.end            = start + bodyToInertial.limit() / SAMPLE_SIZE;
+            this.bodyToInertial = bodyToInertial;
+            this.scToInertial   = scToInertial;
+        }
+
+        /** Check if a sample belongs to the segment.
+         * @param index index of the sample
+         * @return true if the sample belongs to the segment
+         */
+        boolean contains(final int index) {
+            return index >= start && index < end;
+        }
+
+        /** Get the packed transforms.
+         * @param id identifier of the transforms ({@link TransformId#INERTIAL_TO_BODY}
+         * is handled as {@link TransformId#BODY_TO_INERTIAL})
+         * @return packed transforms
+         */
+        DoubleBuffer getData(final TransformId id) {
+            return id == TransformId.SC_TO_INERTIAL ? scToInertial : bodyToInertial;
+        }
+
+    }
+
+    /** Provider for lazily computed segments of the transforms sample.
+     * <p>
+     * Segments are computed outside of any lock, so several threads may compute
+     * the same segment concurrently, but only one result is kept, and as the
+     * computation is deterministic, all threads see the same transforms.
+     * </p>
+     */
+    private static class LazySegments {
+
+        /** Inertial frame. */
+        private final Frame inertialFrame;
+
+        /** Body frame. */
+        private final Frame bodyFrame;
+
+        /** Reference date for the transforms sample. */
+        private final AbsoluteDate reference;
+
+        /** Packed sample dates. */
+        private final DoubleBuffer sampleDates;
+
+        /** Cache for position-velocities. */
+        private final TimeStampedCache<TimeStampedPVCoordinates> pvCache;
+
+        /** Filter for derivatives from the sample to use in position/velocity interpolation. */
+        private final CartesianDerivativesFilter pvFilter;
+
+        /** Cache for attitudes. */
+        private final TimeStampedCache<TimeStampedAngularCoordinates> aCache;
+
+        /** Filter for derivatives from the sample to use in attitude interpolation. */
+        private final AngularDerivativesFilter aFilter;
+
+        /** Number of samples in each segment. */
+        private final int segmentSize;
+
+        /** Computed segments, least recently used first. */
+        private final Map<Integer, Segment> segments;
+
+        /** Simple constructor.
+         * @param inertialFrame inertial frame
+         * @param bodyFrame observed body frame
+         * @param reference reference date for the transforms sample
+         * @param sampleDates packed sample dates
+         * @param pvCache cache for position-velocities
+         * @param pvFilter filter for derivatives from the sample to use in position/velocity interpolation
+         * @param aCache cache for attitudes
+         * @param aFilter filter for derivatives from the sample to use in attitude interpolation
+         * @param segmentSize number of samples in each segment
+         * @param maxSegments maximum number of segments kept in the cache
+         */
+        LazySegments(final Frame inertialFrame, final Frame bodyFrame,
+                     final AbsoluteDate reference, final DoubleBuffer sampleDates,
+                     final TimeStampedCache<TimeStampedPVCoordinates> pvCache,
+                     final CartesianDerivativesFilter pvFilter,
+                     final TimeStampedCache<TimeStampedAngularCoordinates> aCache,
+                     final AngularDerivativesFilter aFilter,
+                     final int segmentSize, final int maxSegments) {
+            this.inertialFrame = inertialFrame;
+            this.bodyFrame     = bodyFrame;
+            this.reference     = reference;
+            this.sampleDates   = sampleDates;
+            this.pvCache       = pvCache;
+            this.pvFilter      = pvFilter;
+            this.aCache        = aCache;
+            this.aFilter       = aFilter;
+            this.segmentSize   = segmentSize;
+            final int capacity = FastMath.max(1, maxSegments);
+            this.segments      = new LinkedHashMap<Integer, Segment>(16, 0.75f, true) {
+
+                /** Serializable UID. */
+                private static final long serialVersionUID = 20221022L;
+
+                /** {@inheritDoc} */
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Integer, Segment> eldest) {
+                    return size() > capacity;
+                }
+
+            };
+        }
+
+        /** Get the segment containing a sample, computing it if needed.
+         * @param index index of the sample
+         * @return segment containing the sample
+         */
+        Segment getSegment(final int index) {
+
+            final Integer key = index / segmentSize;
+            synchronized (segments) {
+                final Segment cached = segments.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            // compute the segment outside of the lock
+            final int start = key * segmentSize;
+            final int size  = FastMath.min(segmentSize, sampleDates.limit() / 2 - start);
+            final AbsoluteDate[] dates = new AbsoluteDate[size];
+            for (int i = 0; i < size; ++i) {
+                dates[i] = unpackDate(sampleDates, reference, start + i);
+            }
+            final double[] sc2i = new double[size * SAMPLE_SIZE];
+            final double[] b2i  = new double[size * SAMPLE_SIZE];
+            new SampleComputation(inertialFrame, bodyFrame, dates,
+                                  pvCache, pvFilter, aCache, aFilter,
+                                  sc2i, b2i, 0, size).computeSequentially();
+            final Segment computed = new Segment(start, DoubleBuffer.wrap(b2i), DoubleBuffer.wrap(sc2i));
+
+            synchronized (segments) {
+                final Segment existing = segments.get(key);
+                if (existing != null) {
+                    // another thread computed the same segment concurrently
+                    return existing;
+                }
+                segments.put(key, computed);
+                return computed;
+            }
+
+        }
+
+    }
+
+    /** Identifiers for the transforms available from the cache.
+     * @since 3.1
+     */
+    public enum TransformId {
+
+        /** Transform from spacecraft frame to inertial frame. */
+        SC_TO_INERTIAL,
+
+        /** Transform from observed body frame to inertial frame. */
+        BODY_TO_INERTIAL,
+
+        /** Transform from inertial frame to observed body frame. */
+        INERTIAL_TO_BODY;
+
     }
 
 }
@@ -23,12 +23,15 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StreamCorruptedException;
 import java.lang.reflect.Field;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.hipparchus.geometry.euclidean.threed.Rotation;
 import org.hipparchus.geometry.euclidean.threed.RotationConvention;
@@ -68,6 +71,7 @@ import org.orekit.rugged.errors.RuggedMessages;
 import org.orekit.rugged.linesensor.LineDatation;
 import org.orekit.rugged.linesensor.LineSensor;
 import org.orekit.rugged.linesensor.LinearLineDatation;
+import org.orekit.rugged.linesensor.SensorPixel;
 import org.orekit.rugged.los.LOSBuilder;
 import org.orekit.rugged.los.TimeDependentLOS;
 import org.orekit.rugged.raster.RandomLandscapeUpdater;
@@ -76,7 +80,10 @@ import org.orekit.rugged.raster.VolcanicConeElevationUpdater;
 import org.orekit.rugged.refraction.AtmosphericRefraction;
 import org.orekit.rugged.refraction.ConstantRefractionLayer;
 import org.orekit.rugged.refraction.MultiLayerModel;
+import org.orekit.rugged.utils.BodyRotationCache;
 import org.orekit.rugged.utils.ExtendedEllipsoid;
+import org.orekit.rugged.utils.MemoizedSpacecraftToObservedBody;
+import org.orekit.rugged.utils.SpacecraftToObservedBody;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.time.TimeScale;
 import org.orekit.time.TimeScalesFactory;
@@ -504,8 +511,8 @@ public class RuggedBuilderTest {
 
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         original.storeInterpolator(bos);
-        Assert.assertTrue(bos.size() > 100000);
-        Assert.assertTrue(bos.size() < 200000);
+        Assert.assertTrue(bos.size() >  80000);
+        Assert.assertTrue(bos.size() < 100000);
 
         GeodeticPoint[] gpOriginal = original.build().directLocation("line", 100);
 
@@ -525,6 +532,768 @@ public class RuggedBuilderTest {
 
     }
 
+    @Test
+    public void testRugged30InterpolatorDump()
+        throws URISyntaxException, IOException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+
+        // this interpolator was stored by Rugged 3.0, using its Java serialization format
+        RuggedBuilder builder = new RuggedBuilder().
+                setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF);
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("interpolators/rugged-3.0-interpolator.ser")) {
+            builder.setTrajectoryAndTimeSpan(is);
+        }
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T00:16:40.000", TimeScalesFactory.getUTC());
+        Assert.assertEquals(0.0, builder.getMinDate().durationFrom(minDate), 0.0);
+        Assert.assertEquals(0.5, builder.getMaxDate().durationFrom(minDate), 0.0);
+        Assert.assertEquals(0.01, builder.getTStep(), 0.0);
+        Assert.assertEquals(5.0, builder.getOvershootTolerance(), 0.0);
+
+        // reference values computed by Rugged 3.0 from the same stored interpolator
+        Rugged rugged = builder.build();
+        AbsoluteDate date = minDate.shiftedBy(0.237);
+        Transform scToBody = new Transform(date, rugged.getScToInertial(date), rugged.getInertialToBody(date));
+        Assert.assertEquals(0.0,
+                            Vector3D.distance(new Vector3D(-18041.5929236495, 6052.2068020301, -7180218.072505039),
+                                              scToBody.getTranslation()),
+                            1.0e-6);
+        Assert.assertEquals(0.0,
+                            Rotation.distance(new Rotation(-0.9447349760751602, 0.13375961435544698,
+                                                           0.2350931664336403, -0.18524414604503153, false),
+                                              scToBody.getRotation()),
+                            1.0e-12);
+
+    }
+
+    @Test
+    public void testBinaryInterpolatorDump()
+        throws URISyntaxException, IOException {
+
+        int dimension = 200;
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate crossing = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        Vector3D position = new Vector3D(1.5, 0, -0.2);
+        TimeDependentLOS los = createLOSPerfectLine(new Rotation(Vector3D.PLUS_I,
+                                                                 FastMath.toRadians(50.0),
+                                                                 RotationConvention.VECTOR_OPERATOR).applyTo(Vector3D.PLUS_K),
+                                                    Vector3D.PLUS_I, FastMath.toRadians(1.0), dimension);
+        LineDatation lineDatation = new LinearLineDatation(crossing, dimension / 2, 1.0 / 1.5e-3);
+        LineSensor lineSensor = new LineSensor("line", lineDatation, position, los);
+        AbsoluteDate minDate = lineSensor.getDate(0);
+        AbsoluteDate maxDate = lineSensor.getDate(dimension);
+
+        TileUpdater updater =
+                new RandomLandscapeUpdater(0.0, 9000.0, 0.5, 0x84186d1344722b8fl,
+                                           FastMath.toRadians(1.0), 257);
+
+        RuggedBuilder original = new RuggedBuilder().
+                                setDigitalElevationModel(updater, 8).
+                                setAlgorithm(AlgorithmId.DUVENHAGE).
+                                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                                setTrajectory(InertialFrameId.EME2000,
+                                              orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                              8, CartesianDerivativesFilter.USE_PV,
+                                              orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                              2, AngularDerivativesFilter.USE_R).
+                                addLineSensor(lineSensor);
+
+        // the binary format is smaller than Java serialization
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        original.storeInterpolator(serialized);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        original.storeBinaryInterpolator(bos);
+        final int n = (int) FastMath.ceil(maxDate.durationFrom(minDate) / 0.001);
+        Assert.assertEquals(64 + 8 * (7 + 40 * n), bos.size());
+        Assert.assertTrue(bos.size() < serialized.size());
+
+        GeodeticPoint[] gpOriginal = original.build().directLocation("line", 100);
+
+        // reload from an in-memory buffer
+        RuggedBuilder fromBuffer = new RuggedBuilder().
+                setDigitalElevationModel(updater, 8).
+                setAlgorithm(AlgorithmId.DUVENHAGE).
+                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                setTrajectoryAndTimeSpan(ByteBuffer.wrap(bos.toByteArray())).
+                addLineSensor(lineSensor);
+        Assert.assertEquals(0.0, fromBuffer.getMinDate().durationFrom(minDate), 0.0);
+        Assert.assertEquals(0.0, fromBuffer.getMaxDate().durationFrom(maxDate), 0.0);
+        Assert.assertEquals(0.001, fromBuffer.getTStep(), 0.0);
+        Assert.assertEquals(5.0, fromBuffer.getOvershootTolerance(), 0.0);
+        checkSameLocations(earth, gpOriginal, fromBuffer.build().directLocation("line", 100));
+
+        // reload from a memory-mapped file
+        File file = tempFolder.newFile();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            bos.writeTo(fos);
+        }
+        RuggedBuilder fromFile = new RuggedBuilder().
+                setDigitalElevationModel(updater, 8).
+                setAlgorithm(AlgorithmId.DUVENHAGE).
+                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                setTrajectoryAndTimeSpan(file).
+                addLineSensor(lineSensor);
+        Rugged rugged = fromFile.build();
+        checkSameLocations(earth, gpOriginal, rugged.directLocation("line", 100));
+
+        // Java serialization of an instance loaded from binary format
+        ByteArrayOutputStream reserialized = new ByteArrayOutputStream();
+        fromFile.storeInterpolator(reserialized);
+        RuggedBuilder fromSerialization = new RuggedBuilder().
+                setDigitalElevationModel(updater, 8).
+                setAlgorithm(AlgorithmId.DUVENHAGE).
+                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                setTrajectoryAndTimeSpan(new ByteArrayInputStream(reserialized.toByteArray())).
+                addLineSensor(lineSensor);
+        checkSameLocations(earth, gpOriginal, fromSerialization.build().directLocation("line", 100));
+
+    }
+
+    @Test
+    public void testBinaryInterpolatorErrors()
+        throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(1.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+        List<TimeStampedAngularCoordinates> q =
+                        orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new RuggedBuilder().
+        setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+        setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+        setTimeSpan(minDate, maxDate, 0.01, 5.0).
+        setTrajectory(InertialFrameId.EME2000, pv, 8, CartesianDerivativesFilter.USE_PV,
+                      q, 2, AngularDerivativesFilter.USE_R).
+        storeBinaryInterpolator(bos);
+        final byte[] valid = bos.toByteArray();
+
+        // wrong magic number
+        final byte[] wrongMagic = valid.clone();
+        wrongMagic[0] = 'X';
+        checkBinaryError(wrongMagic, RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+
+        // unsupported version
+        final byte[] wrongVersion = valid.clone();
+        wrongVersion[8] = 2;
+        checkBinaryError(wrongVersion, RuggedMessages.UNSUPPORTED_INTERPOLATOR_DUMP_VERSION);
+
+        // truncated data
+        checkBinaryError(Arrays.copyOf(valid, valid.length - 8), RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+        checkBinaryError(Arrays.copyOf(valid, 20), RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+
+        // Java serialization data is not binary format
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        new RuggedBuilder().
+        setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+        setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+        setTrajectoryAndTimeSpan(ByteBuffer.wrap(valid)).
+        storeInterpolator(serialized);
+        checkBinaryError(serialized.toByteArray(), RuggedMessages.NOT_INTERPOLATOR_DUMP_DATA);
+
+        // frames that are not predefined cannot be stored
+        final Frame custom = new Frame(FramesFactory.getEME2000(), Transform.IDENTITY, "custom", true);
+        try {
+            new RuggedBuilder().
+            setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+            setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+            setTimeSpan(minDate, maxDate, 0.01, 5.0).
+            setTrajectory(custom, pv, 8, CartesianDerivativesFilter.USE_PV,
+                          q, 2, AngularDerivativesFilter.USE_R).
+            storeBinaryInterpolator(new ByteArrayOutputStream());
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.UNSUPPORTED_INTERPOLATOR_DUMP_FRAME, re.getSpecifier());
+            Assert.assertEquals("custom", re.getParts()[0]);
+        }
+
+    }
+
+    private void checkBinaryError(final byte[] data, final RuggedMessages expected) {
+        try {
+            new RuggedBuilder().setTrajectoryAndTimeSpan(ByteBuffer.wrap(data));
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(expected, re.getSpecifier());
+        }
+    }
+
+    private void checkSameLocations(final BodyShape earth,
+                                    final GeodeticPoint[] expected, final GeodeticPoint[] actual) {
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            Assert.assertEquals(0.0,
+                                Vector3D.distance(earth.transform(expected[i]), earth.transform(actual[i])),
+                                0.0);
+        }
+    }
+
+    @Test
+    public void testParallelInterpolator()
+        throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(10.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+        List<TimeStampedAngularCoordinates> q =
+                        orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+
+        RuggedBuilder sequential = new RuggedBuilder().
+                                   setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                                   setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                   setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                                   setTrajectory(InertialFrameId.EME2000,
+                                                 pv, 8, CartesianDerivativesFilter.USE_PV,
+                                                 q, 2, AngularDerivativesFilter.USE_R);
+        Assert.assertNull(sequential.getTransformsPool());
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RuggedBuilder parallel = new RuggedBuilder().
+                                     setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                                     setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                     setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                                     setTrajectory(InertialFrameId.EME2000,
+                                                   pv, 8, CartesianDerivativesFilter.USE_PV,
+                                                   q, 2, AngularDerivativesFilter.USE_R).
+                                     setTransformsPool(pool);
+            Assert.assertSame(pool, parallel.getTransformsPool());
+
+            Rugged ruggedSequential = sequential.build();
+            Rugged ruggedParallel   = parallel.build();
+            for (double dt = 0; dt < 10.0; dt += 0.0137) {
+                final AbsoluteDate date = minDate.shiftedBy(dt);
+                checkSameTransform(ruggedSequential.getScToInertial(date),
+                                   ruggedParallel.getScToInertial(date), 0.0);
+                checkSameTransform(ruggedSequential.getBodyToInertial(date),
+                                   ruggedParallel.getBodyToInertial(date), 1.0e-15);
+                checkSameTransform(ruggedSequential.getInertialToBody(date),
+                                   ruggedParallel.getInertialToBody(date), 1.0e-15);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testLazyInterpolator()
+        throws URISyntaxException, IOException, InterruptedException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(10.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+        List<TimeStampedAngularCoordinates> q =
+                        orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+
+        RuggedBuilder eager = new RuggedBuilder().
+                              setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                              setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                              setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                              setTrajectory(InertialFrameId.EME2000,
+                                            pv, 8, CartesianDerivativesFilter.USE_PV,
+                                            q, 2, AngularDerivativesFilter.USE_R);
+        Assert.assertEquals(0, eager.getLazySegmentSize());
+
+        RuggedBuilder lazy = new RuggedBuilder().
+                             setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                             setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                             setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                             setTrajectory(InertialFrameId.EME2000,
+                                           pv, 8, CartesianDerivativesFilter.USE_PV,
+                                           q, 2, AngularDerivativesFilter.USE_R).
+                             setLazyTransforms(250, 3);
+        Assert.assertEquals(250, lazy.getLazySegmentSize());
+        Assert.assertEquals(3,   lazy.getLazyMaxSegments());
+
+        final Rugged ruggedEager = eager.build();
+        final Rugged ruggedLazy  = lazy.build();
+
+        // several threads querying scattered dates, with a cache smaller than the sample
+        final Thread[]  threads = new Thread[4];
+        final boolean[] failed  = new boolean[threads.length];
+        for (int t = 0; t < threads.length; ++t) {
+            final int threadIndex = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (double dt = 0.003 * threadIndex; dt < 10.0; dt += 0.0137) {
+                        final AbsoluteDate date = minDate.shiftedBy(dt);
+                        checkSameTransform(ruggedEager.getScToInertial(date),
+                                           ruggedLazy.getScToInertial(date), 0.0);
+                        checkSameTransform(ruggedEager.getBodyToInertial(date),
+                                           ruggedLazy.getBodyToInertial(date), 0.0);
+                        checkSameTransform(ruggedEager.getInertialToBody(date),
+                                           ruggedLazy.getInertialToBody(date), 0.0);
+                        final AbsoluteDate back = minDate.shiftedBy(10.0 - dt);
+                        checkSameTransform(ruggedEager.getScToInertial(back),
+                                           ruggedLazy.getScToInertial(back), 0.0);
+                    }
+                } catch (AssertionError ae) {
+                    failed[threadIndex] = true;
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        for (final boolean f : failed) {
+            Assert.assertFalse(f);
+        }
+
+        // storing a lazy interpolator computes all the missing segments
+        final ByteArrayOutputStream eagerBinary = new ByteArrayOutputStream();
+        ruggedEager.getScToBody().writeBinary(eagerBinary);
+        final ByteArrayOutputStream lazyBinary = new ByteArrayOutputStream();
+        ruggedLazy.getScToBody().writeBinary(lazyBinary);
+        Assert.assertArrayEquals(eagerBinary.toByteArray(), lazyBinary.toByteArray());
+
+        final ByteArrayOutputStream eagerSerialized = new ByteArrayOutputStream();
+        eager.storeInterpolator(eagerSerialized);
+        final ByteArrayOutputStream lazySerialized = new ByteArrayOutputStream();
+        lazy.storeInterpolator(lazySerialized);
+        Assert.assertArrayEquals(eagerSerialized.toByteArray(), lazySerialized.toByteArray());
+
+    }
+
+    @Test
+    public void testIncompatibleTransformsSettings() throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(10.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+        List<TimeStampedAngularCoordinates> q =
+                        orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25);
+
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            checkIncompatibleSettings(builder(minDate, maxDate, pv, q).
+                                      setLazyTransforms(250, 3).
+                                      setAdaptiveTransforms(0.001, 1.0e-3, 1.0e-8),
+                                      "RuggedBuilder.setAdaptiveTransforms()", "RuggedBuilder.setLazyTransforms()");
+            checkIncompatibleSettings(builder(minDate, maxDate, pv, q).
+                                      setLazyTransforms(250, 3).
+                                      setTransformsPool(pool),
+                                      "RuggedBuilder.setLazyTransforms()", "RuggedBuilder.setTransformsPool()");
+            checkIncompatibleSettings(builder(minDate, maxDate, pv, q).
+                                      setAdaptiveTransforms(0.001, 1.0e-3, 1.0e-8).
+                                      setBodyRotationCache(new BodyRotationCache(4)),
+                                      "RuggedBuilder.setAdaptiveTransforms()", "RuggedBuilder.setBodyRotationCache()");
+
+            // resetting one of the conflicting settings allows building
+            Assert.assertNotNull(builder(minDate, maxDate, pv, q).
+                                 setLazyTransforms(250, 3).
+                                 setTransformsPool(pool).
+                                 setTransformsPool(null).
+                                 build());
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+    private RuggedBuilder builder(final AbsoluteDate minDate, final AbsoluteDate maxDate,
+                                  final List<TimeStampedPVCoordinates> pv,
+                                  final List<TimeStampedAngularCoordinates> q) {
+        return new RuggedBuilder().
+               setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+               setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+               setTimeSpan(minDate, maxDate, 0.001, 5.0).
+               setTrajectory(InertialFrameId.EME2000,
+                             pv, 8, CartesianDerivativesFilter.USE_PV,
+                             q, 2, AngularDerivativesFilter.USE_R);
+    }
+
+    private void checkIncompatibleSettings(final RuggedBuilder builder, final String setting1, final String setting2) {
+        try {
+            builder.build();
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.INCOMPATIBLE_TRANSFORMS_SETTINGS, re.getSpecifier());
+            Assert.assertEquals(setting1, re.getParts()[0]);
+            Assert.assertEquals(setting2, re.getParts()[1]);
+        }
+    }
+
+    @Test
+    public void testInterpolatedTransforms()
+        throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(30.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-20.0), maxDate.shiftedBy(+20.0), 0.25);
+        List<TimeStampedAngularCoordinates> q =
+                        orbitToQ(orbit, earth, minDate.shiftedBy(-20.0), maxDate.shiftedBy(+20.0), 0.25);
+
+        final SpacecraftToObservedBody reference =
+                        new RuggedBuilder().
+                        setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                        setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                        setTimeSpan(minDate, maxDate, 0.01, 5.0).
+                        setTrajectory(InertialFrameId.EME2000,
+                                      pv, 8, CartesianDerivativesFilter.USE_PV,
+                                      q, 4, AngularDerivativesFilter.USE_R).
+                        build().getScToBody();
+
+        RuggedBuilder builder = new RuggedBuilder().
+                                setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                setTimeSpan(minDate, maxDate, 5.0, 5.0).
+                                setTrajectory(InertialFrameId.EME2000,
+                                              pv, 8, CartesianDerivativesFilter.USE_PV,
+                                              q, 4, AngularDerivativesFilter.USE_R);
+        Assert.assertEquals(1, builder.getTransformsInterpolationNumber());
+        final SpacecraftToObservedBody shifted = builder.build().getScToBody();
+        Assert.assertEquals(1, shifted.getInterpolationNumber());
+        final SpacecraftToObservedBody interpolated =
+                        builder.setTransformsInterpolationNumber(2).build().getScToBody();
+        Assert.assertEquals(2, builder.getTransformsInterpolationNumber());
+        Assert.assertEquals(2, interpolated.getInterpolationNumber());
+        final SpacecraftToObservedBody interpolated6 =
+                        builder.setTransformsInterpolationNumber(6).build().getScToBody();
+
+        // interpolation between samples is much more accurate than shifting the closest sample
+        final double[] result = new double[3];
+        double maxShiftedError       = 0;
+        double maxInterpolatedError  = 0;
+        double maxInterpolated6Error = 0;
+        double maxPositionError     = 0;
+        for (double dt = 0; dt <= 30.0; dt += 0.0173) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            maxShiftedError      = FastMath.max(maxShiftedError,      groundError(reference, shifted, date));
+            maxInterpolatedError = FastMath.max(maxInterpolatedError, groundError(reference, interpolated, date));
+            maxInterpolated6Error = FastMath.max(maxInterpolated6Error, groundError(reference, interpolated6, date));
+            for (final SpacecraftToObservedBody.TransformId id : SpacecraftToObservedBody.TransformId.values()) {
+                final Transform transform;
+                switch (id) {
+                    case SC_TO_INERTIAL :
+                        transform = interpolated.getScToInertial(date);
+                        break;
+                    case BODY_TO_INERTIAL :
+                        transform = interpolated.getBodyToInertial(date);
+                        break;
+                    default :
+                        transform = interpolated.getInertialToBody(date);
+                }
+                interpolated.transformPosition(id, date, 1.0e6, 2.0e6, 6.0e6, result);
+                maxPositionError = FastMath.max(maxPositionError,
+                                                Vector3D.distance(transform.transformPosition(new Vector3D(1.0e6, 2.0e6, 6.0e6)),
+                                                                  new Vector3D(result)));
+            }
+        }
+        Assert.assertTrue(maxShiftedError > 0.01);
+        Assert.assertTrue(maxInterpolatedError < 0.003);
+
+        // more samples do not follow the noise of the samples rotation rates
+        Assert.assertTrue(maxInterpolated6Error < 0.001);
+        Assert.assertEquals(0.0, maxPositionError, 1.0e-15);
+
+    }
+
+    @Test
+    public void testAdaptiveTransforms()
+        throws URISyntaxException, IOException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(30.0);
+        List<TimeStampedPVCoordinates> pv =
+                        orbitToPV(orbit, earth, minDate.shiftedBy(-5.0), maxDate.shiftedBy(+5.0), 0.25);
+
+        // attitude with some jitter in the middle of the acquisition
+        List<TimeStampedAngularCoordinates> q = new ArrayList<>();
+        for (final TimeStampedAngularCoordinates tac :
+             orbitToQ(orbit, earth, minDate.shiftedBy(-5.0), maxDate.shiftedBy(+5.0), 0.05)) {
+            final double dt = tac.getDate().durationFrom(minDate);
+            final double jitter = (dt < 12.0 || dt > 15.0) ? 0.0 : 2.0e-5 * FastMath.sin(4 * FastMath.PI * dt);
+            q.add(new TimeStampedAngularCoordinates(tac.getDate(),
+                                                    new Rotation(Vector3D.PLUS_I, jitter, RotationConvention.VECTOR_OPERATOR).
+                                                    applyTo(tac.getRotation()),
+                                                    Vector3D.ZERO, Vector3D.ZERO));
+        }
+
+        final SpacecraftToObservedBody reference =
+                        new SpacecraftToObservedBody(FramesFactory.getEME2000(), earth.getBodyFrame(),
+                                                     minDate, maxDate, 0.001, 5.0,
+                                                     pv, 8, CartesianDerivativesFilter.USE_PV,
+                                                     q, 4, AngularDerivativesFilter.USE_R, null);
+
+        RuggedBuilder builder = new RuggedBuilder().
+                                setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                setTimeSpan(minDate, maxDate, 1.0, 5.0).
+                                setTrajectory(InertialFrameId.EME2000,
+                                              pv, 8, CartesianDerivativesFilter.USE_PV,
+                                              q, 4, AngularDerivativesFilter.USE_R).
+                                setAdaptiveTransforms(0.001, 1.0e-3, 1.0e-8);
+        Assert.assertEquals(0.001,  builder.getAdaptiveMinStep(),           1.0e-15);
+        Assert.assertEquals(1.0e-3, builder.getAdaptivePositionTolerance(), 1.0e-15);
+        Assert.assertEquals(1.0e-8, builder.getAdaptiveAngleTolerance(),    1.0e-15);
+        final SpacecraftToObservedBody adaptive = builder.build().getScToBody();
+        final SpacecraftToObservedBody uniform  =
+                        new SpacecraftToObservedBody(FramesFactory.getEME2000(), earth.getBodyFrame(),
+                                                     minDate, maxDate, 0.01, 5.0,
+                                                     pv, 8, CartesianDerivativesFilter.USE_PV,
+                                                     q, 4, AngularDerivativesFilter.USE_R, null);
+
+        // samples are concentrated where attitude jitters
+        double maxUniformError  = 0;
+        double maxAdaptiveError = 0;
+        for (double dt = 0; dt <= 30.0; dt += 0.00731) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            final Transform    ref  = reference.getScToInertial(date);
+            maxUniformError  = FastMath.max(maxUniformError,
+                                            Rotation.distance(ref.getRotation(),
+                                                              uniform.getScToInertial(date).getRotation()));
+            maxAdaptiveError = FastMath.max(maxAdaptiveError,
+                                            Rotation.distance(ref.getRotation(),
+                                                              adaptive.getScToInertial(date).getRotation()));
+        }
+        Assert.assertTrue(adaptive.getSamplesNumber() < uniform.getSamplesNumber());
+        Assert.assertTrue(maxUniformError > 1.0e-7);
+        Assert.assertEquals(0.0, maxAdaptiveError, 2.0e-8);
+
+        // non-uniform samples are preserved when stored and loaded back
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        adaptive.writeBinary(bos);
+        final SpacecraftToObservedBody loaded = SpacecraftToObservedBody.readBinary(ByteBuffer.wrap(bos.toByteArray()));
+        Assert.assertEquals(adaptive.getSamplesNumber(), loaded.getSamplesNumber());
+        final SpacecraftToObservedBody interpolated  = adaptive.withInterpolationNumber(2);
+        final SpacecraftToObservedBody interpolated2 = loaded.withInterpolationNumber(2);
+        for (double dt = 0; dt <= 30.0; dt += 0.0731) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            checkSameTransform(adaptive.getScToInertial(date),       loaded.getScToInertial(date),       0.0);
+            checkSameTransform(adaptive.getInertialToBody(date),     loaded.getInertialToBody(date),     0.0);
+            checkSameTransform(interpolated.getScToInertial(date),   interpolated2.getScToInertial(date), 0.0);
+            Assert.assertEquals(0.0,
+                                Rotation.distance(reference.getScToInertial(date).getRotation(),
+                                                  interpolated.getScToInertial(date).getRotation()),
+                                2.0e-8);
+        }
+
+    }
+
+    private double groundError(final SpacecraftToObservedBody expected, final SpacecraftToObservedBody actual,
+                               final AbsoluteDate date) {
+        final Transform e = new Transform(date, expected.getScToInertial(date), expected.getInertialToBody(date));
+        final Transform a = new Transform(date, actual.getScToInertial(date), actual.getInertialToBody(date));
+        return Vector3D.distance(e.transformPosition(Vector3D.ZERO), a.transformPosition(Vector3D.ZERO)) +
+               800000.0 * Rotation.distance(e.getRotation(), a.getRotation());
+    }
+
+    @Test
+    public void testPackedTransforms()
+        throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        AbsoluteDate maxDate = minDate.shiftedBy(10.0);
+        SpacecraftToObservedBody scToBody =
+                        new RuggedBuilder().
+                        setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                        setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                        setTimeSpan(minDate, maxDate, 0.01, 5.0).
+                        setTrajectory(InertialFrameId.EME2000,
+                                      orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                      8, CartesianDerivativesFilter.USE_PVA,
+                                      orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                      2, AngularDerivativesFilter.USE_RR).
+                        build().getScToBody();
+
+        // rebuilding from the transforms sample gives exactly the same transforms
+        final List<Transform> b2i = new ArrayList<>();
+        final List<Transform> s2i = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            b2i.add(scToBody.getBodyToInertial(minDate.shiftedBy(0.01 * i)));
+            s2i.add(scToBody.getScToInertial(minDate.shiftedBy(0.01 * i)));
+        }
+        SpacecraftToObservedBody rebuilt =
+                        new SpacecraftToObservedBody(scToBody.getInertialFrame(), scToBody.getBodyFrame(),
+                                                     minDate, maxDate, 0.01, 5.0, b2i, s2i);
+        for (int i = 0; i < 1000; ++i) {
+            final AbsoluteDate date = b2i.get(i).getDate();
+            checkSameTransform(b2i.get(i), rebuilt.getBodyToInertial(date), 0.0);
+            checkSameTransform(s2i.get(i), rebuilt.getScToInertial(date), 0.0);
+            checkSameTransform(b2i.get(i).getInverse(), rebuilt.getInertialToBody(date), 0.0);
+        }
+
+        // allocation-free accessors are consistent with transforms
+        final Vector3D p = new Vector3D(-1234.5, 6789.0, 7000000.0);
+        final Vector3D v = new Vector3D(0.3, -0.4, 0.5);
+        final double[] result = new double[3];
+        double maxPositionError = 0;
+        double maxVectorError   = 0;
+        for (double dt = -0.5; dt < 10.5; dt += 0.00137) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            for (final SpacecraftToObservedBody.TransformId id : SpacecraftToObservedBody.TransformId.values()) {
+                final Transform transform;
+                switch (id) {
+                    case SC_TO_INERTIAL :
+                        transform = scToBody.getScToInertial(date);
+                        break;
+                    case BODY_TO_INERTIAL :
+                        transform = scToBody.getBodyToInertial(date);
+                        break;
+                    default :
+                        transform = scToBody.getInertialToBody(date);
+                }
+                scToBody.transformPosition(id, date, p.getX(), p.getY(), p.getZ(), result);
+                maxPositionError = FastMath.max(maxPositionError,
+                                                Vector3D.distance(transform.transformPosition(p), new Vector3D(result)));
+                scToBody.transformVector(id, date, v.getX(), v.getY(), v.getZ(), result);
+                maxVectorError   = FastMath.max(maxVectorError,
+                                                Vector3D.distance(transform.transformVector(v), new Vector3D(result)));
+            }
+        }
+        Assert.assertEquals(0.0, maxPositionError, 1.0e-8);
+        Assert.assertEquals(0.0, maxVectorError,   1.0e-15);
+
+        try {
+            scToBody.transformPosition(SpacecraftToObservedBody.TransformId.SC_TO_INERTIAL,
+                                       minDate.shiftedBy(-10.0), 0.0, 0.0, 0.0, result);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.OUT_OF_TIME_RANGE, re.getSpecifier());
+        }
+
+    }
+
+    private void checkSameTransform(final Transform expected, final Transform actual, final double tolerance) {
+        Assert.assertEquals(0.0,
+                            Vector3D.distance(expected.getTranslation(), actual.getTranslation()),
+                            tolerance * expected.getTranslation().getNorm());
+        Assert.assertEquals(0.0,
+                            Rotation.distance(expected.getRotation(), actual.getRotation()),
+                            tolerance);
+    }
+
+    @Test
+    public void testTransformsMemo()
+        throws URISyntaxException {
+
+        int dimension = 200;
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape  earth = createEarth();
+        final Orbit      orbit = createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        AbsoluteDate crossing = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        Vector3D position = new Vector3D(1.5, 0, -0.2);
+        TimeDependentLOS los = createLOSPerfectLine(new Rotation(Vector3D.PLUS_I,
+                                                                 FastMath.toRadians(50.0),
+                                                                 RotationConvention.VECTOR_OPERATOR).applyTo(Vector3D.PLUS_K),
+                                                    Vector3D.PLUS_I, FastMath.toRadians(1.0), dimension);
+        LineDatation lineDatation = new LinearLineDatation(crossing, dimension / 2, 1.0 / 1.5e-3);
+        LineSensor lineSensor = new LineSensor("line", lineDatation, position, los);
+        AbsoluteDate minDate = lineSensor.getDate(0);
+        AbsoluteDate maxDate = lineSensor.getDate(dimension);
+
+        RuggedBuilder builder = new RuggedBuilder().
+                                setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                                setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                                setTimeSpan(minDate, maxDate, 0.001, 5.0).
+                                setTrajectory(InertialFrameId.EME2000,
+                                              orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                              8, CartesianDerivativesFilter.USE_PV,
+                                              orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), maxDate.shiftedBy(+1.0), 0.25),
+                                              2, AngularDerivativesFilter.USE_R).
+                                addLineSensor(lineSensor);
+        Assert.assertEquals(0, builder.getTransformsMemoSize());
+        final Rugged plain = builder.build();
+        Assert.assertFalse(plain.getScToBody() instanceof MemoizedSpacecraftToObservedBody);
+        final Rugged memoized = builder.setTransformsMemoSize(4).build();
+        Assert.assertEquals(4, builder.getTransformsMemoSize());
+        final MemoizedSpacecraftToObservedBody memo = (MemoizedSpacecraftToObservedBody) memoized.getScToBody();
+        Assert.assertEquals(4, memo.getSize());
+        Assert.assertEquals(0.0, memo.getHitRate(), 0.0);
+
+        // memoization does not change results
+        final GeodeticPoint[] gpPlain    = plain.directLocation("line", 100);
+        final GeodeticPoint[] gpMemoized = memoized.directLocation("line", 100);
+        for (int i = 0; i < gpPlain.length; i += 10) {
+            Assert.assertEquals(0.0, Vector3D.distance(earth.transform(gpPlain[i]), earth.transform(gpMemoized[i])), 0.0);
+            final SensorPixel spPlain    = plain.inverseLocation("line", gpPlain[i], 0, dimension);
+            final SensorPixel spMemoized = memoized.inverseLocation("line", gpPlain[i], 0, dimension);
+            Assert.assertEquals(spPlain.getLineNumber(),  spMemoized.getLineNumber(),  0.0);
+            Assert.assertEquals(spPlain.getPixelNumber(), spMemoized.getPixelNumber(), 0.0);
+        }
+
+        // pixel by pixel direct location requests the transforms at the same line date again and again
+        memo.resetStatistics();
+        Assert.assertEquals(0, memo.getHits());
+        Assert.assertEquals(0, memo.getMisses());
+        for (int line = 20; line < dimension; line += 40) {
+            final AbsoluteDate date = lineSensor.getDate(line);
+            for (int i = 0; i < dimension; ++i) {
+                final GeodeticPoint p = plain.directLocation(date, position, lineSensor.getLOS(date, i));
+                final GeodeticPoint m = memoized.directLocation(date, position, lineSensor.getLOS(date, i));
+                Assert.assertEquals(0.0, Vector3D.distance(earth.transform(p), earth.transform(m)), 0.0);
+            }
+        }
+        // line 100 was already memoized by the first direct location
+        Assert.assertEquals(8,    memo.getMisses());
+        Assert.assertEquals(1992, memo.getHits());
+        Assert.assertEquals(0.996, memo.getHitRate(), 1.0e-15);
+
+        // composed transforms are memoized too
+        final Transform composed = memo.getScToBody(lineSensor.getDate(30));
+        Assert.assertSame(composed, memo.getScToBody(lineSensor.getDate(30)));
+        checkSameTransform(plain.getScToBody().getScToBody(lineSensor.getDate(30)), composed, 0.0);
+        Assert.assertEquals(10,   memo.getMisses());
+        Assert.assertEquals(1993, memo.getHits());
+
+        memo.resetStatistics();
+        Assert.assertEquals(0.0, memo.getHitRate(), 0.0);
+
+    }
+
     @Test
     public void testInterpolatorCannotDump()
         throws URISyntaxException, IOException {
@@ -618,8 +1387,8 @@ public class RuggedBuilderTest {
 
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         original.storeInterpolator(bos);
-        Assert.assertTrue(bos.size() > 100000);
-        Assert.assertTrue(bos.size() < 200000);
+        Assert.assertTrue(bos.size() >  80000);
+        Assert.assertTrue(bos.size() < 100000);
 
         for (BodyRotatingFrameId bId : Arrays.asList(BodyRotatingFrameId.GTOD,
                                                      BodyRotatingFrameId.ITRF_EQUINOX)) {
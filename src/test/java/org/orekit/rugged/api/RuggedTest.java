@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 import org.hipparchus.analysis.differentiation.DSFactory;
 import org.hipparchus.analysis.differentiation.FiniteDifferencesDifferentiator;
@@ -72,6 +73,7 @@ import org.orekit.rugged.intersection.IntersectionAlgorithm;
 import org.orekit.rugged.linesensor.LineDatation;
 import org.orekit.rugged.linesensor.LineSensor;
 import org.orekit.rugged.linesensor.LinearLineDatation;
+import org.orekit.rugged.linesensor.SensorMeanPlaneCrossing;
 import org.orekit.rugged.linesensor.SensorPixel;
 import org.orekit.rugged.los.FixedRotation;
 import org.orekit.rugged.los.LOSBuilder;
@@ -1529,7 +1531,8 @@ public class RuggedTest {
                     rugged.getClass().getDeclaredMethod("computeInverseLocOnGridWithoutAtmosphere",
                                                         GeodeticPoint[][].class,
                                                         Integer.TYPE, Integer.TYPE,
-                                                        LineSensor.class, Integer.TYPE, Integer.TYPE);
+                                                        LineSensor.class, SensorMeanPlaneCrossing.class,
+                                                        Integer.TYPE, Integer.TYPE, ForkJoinPool.class);
             computeWithoutAtmosphere.setAccessible(true);
             final int nbPixelGrid = 2; 
             final int nbLineGrid = 2;
@@ -1540,7 +1543,8 @@ public class RuggedTest {
                 }
             }
              
-            SensorPixel[][] spNull = (SensorPixel[][]) computeWithoutAtmosphere.invoke(rugged, groundGridWithAtmosphere, nbPixelGrid, nbLineGrid, lineSensor, minLine, maxLine);
+            SensorPixel[][] spNull = (SensorPixel[][]) computeWithoutAtmosphere.invoke(rugged, groundGridWithAtmosphere, nbPixelGrid, nbLineGrid, lineSensor,
+                                                                                null, minLine, maxLine, null);
             for (int i = 0; i < nbPixelGrid; i++) {
                 for (int j = 0; j < nbLineGrid; j++) {
                     assertNull(spNull[i][j]);
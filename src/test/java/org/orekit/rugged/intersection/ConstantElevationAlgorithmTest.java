@@ -100,6 +100,63 @@ public class ConstantElevationAlgorithmTest {
         Assert.assertEquals(elevation0, 0.0, 1.e-15);
     }
     
+    @Test
+    public void testBatchIntersection() {
+        final Vector3D position = state.getPVCoordinates().getPosition();
+        final Vector3D los      = new Vector3D(-0.626242839, 0.0124194184, -0.7795291301);
+        final Vector3D across   = Vector3D.crossProduct(los, position).normalize();
+        final int n = 201;
+        final double[] px = new double[n];
+        final double[] py = new double[n];
+        final double[] pz = new double[n];
+        final double[] lx = new double[n];
+        final double[] ly = new double[n];
+        final double[] lz = new double[n];
+        for (int i = 0; i < n; ++i) {
+            final Vector3D l = new Vector3D(1, los, 0.002 * (i - n / 2), across);
+            px[i] = position.getX();
+            py[i] = position.getY();
+            pz[i] = position.getZ();
+            lx[i] = l.getX();
+            ly[i] = l.getY();
+            lz[i] = l.getZ();
+        }
+
+        // last line of sight is perpendicular to position, it misses Earth
+        lx[n - 1] = across.getX();
+        ly[n - 1] = across.getY();
+        lz[n - 1] = across.getZ();
+
+        final double[] latitude  = new double[n];
+        final double[] longitude = new double[n];
+        final double[] altitude  = new double[n];
+
+        final ConstantElevationAlgorithm constantElevation = new ConstantElevationAlgorithm(150.0);
+        constantElevation.intersection(earth, px, py, pz, lx, ly, lz, latitude, longitude, altitude);
+        for (int i = 0; i < n - 1; ++i) {
+            final NormalizedGeodeticPoint gp =
+                            constantElevation.intersection(earth, position, new Vector3D(lx[i], ly[i], lz[i]));
+            Assert.assertEquals(gp.getLatitude(),  latitude[i],  1.0e-9);
+            Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-9);
+            Assert.assertEquals(150.0,             altitude[i],  1.0e-3);
+        }
+        Assert.assertTrue(Double.isNaN(latitude[n - 1]));
+        Assert.assertTrue(Double.isNaN(longitude[n - 1]));
+        Assert.assertTrue(Double.isNaN(altitude[n - 1]));
+
+        final IgnoreDEMAlgorithm ignore = new IgnoreDEMAlgorithm();
+        ignore.intersection(earth, px, py, pz, lx, ly, lz, latitude, longitude, altitude);
+        for (int i = 0; i < n - 1; ++i) {
+            final NormalizedGeodeticPoint gp =
+                            ignore.intersection(earth, position, new Vector3D(lx[i], ly[i], lz[i]));
+            Assert.assertEquals(gp.getLatitude(),  latitude[i],  1.0e-12);
+            Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-12);
+            Assert.assertEquals(0.0,               altitude[i],  1.0e-6);
+        }
+        Assert.assertTrue(Double.isNaN(latitude[n - 1]));
+
+    }
+
     @Test
     public void testAlgorithmId() {
         IntersectionAlgorithm constantElevation = new ConstantElevationAlgorithm(0.0);
@@ -17,6 +17,7 @@
 package org.orekit.rugged.intersection.duvenhage;
 
 
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.util.FastMath;
 
@@ -36,6 +37,7 @@ import org.orekit.rugged.errors.RuggedMessages;
 import org.orekit.rugged.intersection.AbstractAlgorithmTest;
 import org.orekit.rugged.intersection.IntersectionAlgorithm;
 import org.orekit.rugged.raster.CheckedPatternElevationUpdater;
+import org.orekit.rugged.raster.RandomLandscapeUpdater;
 import org.orekit.rugged.raster.Tile;
 import org.orekit.rugged.raster.TileUpdater;
 import org.orekit.rugged.raster.UpdatableTile;
@@ -84,6 +86,68 @@ public class DuvenhageAlgorithmTest extends AbstractAlgorithmTest {
         }
     }
 
+    @Test
+    public void testBatchIntersectionFailureCodes() {
+        setUpMayonVolcanoContext();
+        final DuvenhageAlgorithm algorithm = new DuvenhageAlgorithm(updater, 8, false);
+        final Vector3D position = state.getPVCoordinates(earth.getBodyFrame()).getPosition();
+        final Vector3D nadir    = position.negate();
+        final Vector3D across   = Vector3D.crossProduct(position, state.getPVCoordinates(earth.getBodyFrame()).getVelocity());
+        final Vector3D[] positions = new Vector3D[] {
+            position, position,
+            new Vector3D(7.551889113912788E9, -3.173692685491814E10, 1.5727517321541348E9),
+            position
+        };
+        final Vector3D[] directions = new Vector3D[] {
+            nadir, new Vector3D(1.0, nadir, 0.02, across.normalize().scalarMultiply(nadir.getNorm())),
+            new Vector3D(0.010401349221417867, -0.17836068905951286, 0.9839101973923178),
+            across
+        };
+        final int n = positions.length;
+        final double[] px = new double[n];
+        final double[] py = new double[n];
+        final double[] pz = new double[n];
+        final double[] lx = new double[n];
+        final double[] ly = new double[n];
+        final double[] lz = new double[n];
+        for (int i = 0; i < n; ++i) {
+            px[i] = positions[i].getX();
+            py[i] = positions[i].getY();
+            pz[i] = positions[i].getZ();
+            lx[i] = directions[i].getX();
+            ly[i] = directions[i].getY();
+            lz[i] = directions[i].getZ();
+        }
+        final double[] latitude  = new double[n];
+        final double[] longitude = new double[n];
+        final double[] altitude  = new double[n];
+        final RuggedMessages[] failures = new RuggedMessages[n];
+        algorithm.intersection(earth, px, py, pz, lx, ly, lz, latitude, longitude, altitude, failures);
+
+        for (int i = 0; i < 2; ++i) {
+            Assert.assertNull(failures[i]);
+            final NormalizedGeodeticPoint gp = algorithm.intersection(earth, positions[i], directions[i]);
+            Assert.assertEquals(gp.getLatitude(),  latitude[i],  1.0e-15);
+            Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-15);
+            Assert.assertEquals(gp.getAltitude(),  altitude[i],  1.0e-9);
+        }
+        for (int i = 2; i < n; ++i) {
+            Assert.assertEquals(RuggedMessages.LINE_OF_SIGHT_DOES_NOT_REACH_GROUND, failures[i]);
+            Assert.assertTrue(Double.isNaN(latitude[i]));
+            Assert.assertTrue(Double.isNaN(longitude[i]));
+            Assert.assertTrue(Double.isNaN(altitude[i]));
+        }
+
+        try {
+            algorithm.intersection(earth, px, py, pz, lx, ly, lz, latitude, longitude, altitude,
+                                   new RuggedMessages[n - 1]);
+            Assert.fail("an exception should have been thrown");
+        } catch (OrekitException oe) {
+            Assert.assertEquals(LocalizedCoreFormats.DIMENSIONS_MISMATCH, oe.getSpecifier());
+        }
+
+    }
+
     @Test
     public void testInconsistentTileUpdater() {
         final int n = 1201;
@@ -126,6 +190,24 @@ public class DuvenhageAlgorithmTest extends AbstractAlgorithmTest {
         Assert.assertEquals(1164.35, gp.getAltitude(), 0.02);
     }
 
+    @Test
+    public void testUnnormalizedLOSLeavingTileSide() {
+        // this line-of-sight leaves a tile exactly at its West side, and the
+        // forward step to the next tile must not depend on line-of-sight norm
+        updater = new RandomLandscapeUpdater(0.0, 9000.0, 0.5, 0xf0a401650191f9f6l, FastMath.toRadians(0.125), 65);
+        final IntersectionAlgorithm algorithm = createAlgorithm(updater, 8);
+        final Vector3D position = earth.transform(new GeodeticPoint(FastMath.toRadians(43.2), FastMath.toRadians(4.4), 800000.0));
+        final Vector3D ground   = earth.transform(new GeodeticPoint(FastMath.toRadians(43.2 - 0.42), FastMath.toRadians(3.0), 0.0));
+        final Vector3D los      = ground.subtract(position);
+        final NormalizedGeodeticPoint raw =
+                        algorithm.refineIntersection(earth, position, los, algorithm.intersection(earth, position, los));
+        final NormalizedGeodeticPoint normalized =
+                        algorithm.refineIntersection(earth, position, los.normalize(),
+                                                     algorithm.intersection(earth, position, los.normalize()));
+        checkIntersection(position, los.normalize(), raw);
+        Assert.assertEquals(0.0, Vector3D.distance(earth.transform(raw), earth.transform(normalized)), 1.0e-6);
+    }
+
     @Test
     public void testParallelLOS() {
         double size       = 0.125;
@@ -19,10 +19,17 @@ package org.orekit.rugged.linesensor;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.hipparchus.analysis.UnivariateMatrixFunction;
 import org.hipparchus.analysis.differentiation.DSFactory;
+import org.hipparchus.analysis.differentiation.Derivative;
 import org.hipparchus.analysis.differentiation.DerivativeStructure;
 import org.hipparchus.analysis.differentiation.FiniteDifferencesDifferentiator;
 import org.hipparchus.analysis.differentiation.UnivariateDifferentiableMatrixFunction;
@@ -40,6 +47,7 @@ import org.junit.Test;
 import org.orekit.rugged.los.FixedRotation;
 import org.orekit.rugged.los.LOSBuilder;
 import org.orekit.rugged.los.TimeDependentLOS;
+import org.orekit.rugged.los.TimeIndependentLOSTransform;
 import org.orekit.rugged.utils.DerivativeGenerator;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.utils.ParameterDriver;
@@ -224,6 +232,103 @@ public class FixedRotationTest {
 
     }
 
+    @Test
+    public void testLazyComputation() {
+
+        // count the directions actually transformed
+        final FixedRotation rotation = new FixedRotation("r", Vector3D.PLUS_K, 0.03);
+        final AtomicInteger count    = new AtomicInteger();
+        final TimeIndependentLOSTransform counting = new TimeIndependentLOSTransform() {
+            @Override
+            public Vector3D transformLOS(final int i, final Vector3D los) {
+                count.incrementAndGet();
+                return rotation.transformLOS(i, los);
+            }
+            @Override
+            public <T extends Derivative<T>> FieldVector3D<T> transformLOS(final int i, final FieldVector3D<T> los,
+                                                                           final DerivativeGenerator<T> generator) {
+                return rotation.transformLOS(i, los, generator);
+            }
+            @Override
+            public Stream<ParameterDriver> getParametersDrivers() {
+                return rotation.getParametersDrivers();
+            }
+        };
+
+        // only the requested pixels are computed, and only once
+        final TimeDependentLOS lazy = new LOSBuilder(raw).addTransform(counting).build();
+        for (int k = 0; k < 3; ++k) {
+            lazy.getLOS(7, null);
+            lazy.getLOS(12, null);
+        }
+        Assert.assertEquals(2, count.get());
+
+        // after a parameter change, pixels are recomputed lazily again
+        rotation.getParametersDrivers().findFirst().get().setValue(0.05);
+        final Rotation r = new Rotation(Vector3D.PLUS_K, 0.05, RotationConvention.VECTOR_OPERATOR);
+        Assert.assertEquals(0.0, Vector3D.distance(r.applyTo(raw.get(7)), lazy.getLOS(7, null)), 2.0e-15);
+        Assert.assertEquals(3, count.get());
+
+        // eager precomputation computes all pixels at once
+        count.set(0);
+        new LOSBuilder(raw).addTransform(counting).setParallelPrecomputation(true).build();
+        Assert.assertEquals(raw.size(), count.get());
+
+    }
+
+    @Test
+    public void testParallelPrecomputation() throws InterruptedException, ExecutionException {
+
+        final FixedRotation    r1         = new FixedRotation("r1", Vector3D.PLUS_I, 0.01);
+        final FixedRotation    r2         = new FixedRotation("r2", Vector3D.PLUS_K, 0.03);
+        final TimeDependentLOS sequential = new LOSBuilder(raw).addTransform(r1).build();
+        final TimeDependentLOS parallel   = new LOSBuilder(raw).addTransform(r2).setParallelPrecomputation(true).build();
+        final Rotation         rA         = new Rotation(Vector3D.PLUS_K, 0.03, RotationConvention.VECTOR_OPERATOR);
+        final Rotation         rB         = new Rotation(Vector3D.PLUS_K, 0.05, RotationConvention.VECTOR_OPERATOR);
+        for (int i = 0; i < raw.size(); ++i) {
+            Assert.assertEquals(0.0, Vector3D.distance(rA.applyTo(raw.get(i)), parallel.getLOS(i, null)), 2.0e-15);
+        }
+
+        // readers run while the angle is changed back and forth,
+        // they must always see directions computed with one of the angles
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            futures.add(executor.submit(() -> {
+                int mismatches = 0;
+                for (int k = 0; k < 200; ++k) {
+                    for (int i = 0; i < raw.size(); ++i) {
+                        final Vector3D los = parallel.getLOS(i, null);
+                        if (Vector3D.distance(rA.applyTo(raw.get(i)), los) > 2.0e-15 &&
+                            Vector3D.distance(rB.applyTo(raw.get(i)), los) > 2.0e-15) {
+                            ++mismatches;
+                        }
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        for (int k = 0; k < 200; ++k) {
+            r2.getParametersDrivers().findFirst().get().setValue(k % 2 == 0 ? 0.05 : 0.03);
+        }
+        for (final Future<Integer> future : futures) {
+            Assert.assertEquals(0, future.get().intValue());
+        }
+        executor.shutdown();
+
+        // once changes are over, both computation modes see the last value
+        r1.getParametersDrivers().findFirst().get().setValue(0.05);
+        r2.getParametersDrivers().findFirst().get().setValue(0.05);
+        for (int i = 0; i < raw.size(); ++i) {
+            Assert.assertEquals(0.0,
+                                Vector3D.angle(new Rotation(Vector3D.PLUS_I, 0.05, RotationConvention.VECTOR_OPERATOR).applyTo(raw.get(i)),
+                                               sequential.getLOS(i, null)),
+                                2.0e-15);
+            Assert.assertEquals(0.0, Vector3D.distance(rB.applyTo(raw.get(i)), parallel.getLOS(i, null)), 2.0e-15);
+        }
+
+    }
+
     @Before
     public void setUp() throws URISyntaxException {
 
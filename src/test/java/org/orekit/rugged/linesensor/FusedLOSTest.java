@@ -0,0 +1,256 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.linesensor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hipparchus.Field;
+import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.analysis.differentiation.Gradient;
+import org.hipparchus.analysis.differentiation.GradientField;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orekit.rugged.los.FixedRotation;
+import org.orekit.rugged.los.FixedZHomothety;
+import org.orekit.rugged.los.FusedLOS;
+import org.orekit.rugged.los.LOSBuilder;
+import org.orekit.rugged.los.LOSTransform;
+import org.orekit.rugged.los.PolynomialRotation;
+import org.orekit.rugged.los.TimeDependentLOS;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+
+public class FusedLOSTest {
+
+    private List<Vector3D> raw;
+
+    private AbsoluteDate t0;
+
+    @Test
+    public void testSameAsSequence() {
+
+        final TimeDependentLOS fused    = builder(false).build();
+        final TimeDependentLOS sequence = builder(true).build();
+        Assert.assertTrue(fused instanceof FusedLOS);
+        Assert.assertFalse(sequence instanceof FusedLOS);
+        Assert.assertEquals(sequence.getNbPixels(), fused.getNbPixels());
+
+        final double[] directions = new double[3 * fused.getNbPixels()];
+        for (double dt = -10.0; dt <= 10.0; dt += 0.731) {
+            final AbsoluteDate date = t0.shiftedBy(dt);
+            ((FusedLOS) fused).getLOS(date, directions);
+            for (int i = 0; i < raw.size(); ++i) {
+                final Vector3D expected = sequence.getLOS(i, date);
+                Assert.assertEquals(0.0, Vector3D.distance(expected, fused.getLOS(i, date)), 1.0e-15);
+                Assert.assertEquals(0.0,
+                                    Vector3D.distance(expected,
+                                                      new Vector3D(directions[3 * i], directions[3 * i + 1], directions[3 * i + 2])),
+                                    1.0e-15);
+            }
+        }
+
+    }
+
+    @Test
+    public void testParametersChange() {
+
+        final TimeDependentLOS fused    = builder(false).build();
+        final TimeDependentLOS sequence = builder(true).build();
+        final AbsoluteDate     date     = t0.shiftedBy(2.5);
+        final Vector3D         before   = fused.getLOS(42, date);
+
+        final List<ParameterDriver> fusedDrivers    = fused.getParametersDrivers().collect(Collectors.toList());
+        final List<ParameterDriver> sequenceDrivers = sequence.getParametersDrivers().collect(Collectors.toList());
+        Assert.assertEquals(7, fusedDrivers.size());
+        Assert.assertEquals(sequenceDrivers.size(), fusedDrivers.size());
+        for (int k = 0; k < fusedDrivers.size(); ++k) {
+            fusedDrivers.get(k).setValue(1.5 * fusedDrivers.get(k).getValue());
+            sequenceDrivers.get(k).setValue(1.5 * sequenceDrivers.get(k).getValue());
+        }
+
+        // the fused matrix at the same date is recomputed
+        final Vector3D after = fused.getLOS(42, date);
+        Assert.assertTrue(Vector3D.angle(before, after) > 1.0e-4);
+        Assert.assertEquals(0.0, Vector3D.distance(sequence.getLOS(42, date), after), 1.0e-15);
+
+    }
+
+    @Test
+    public void testPackedRawAndSubPixel() {
+
+        final double[] packed = new double[3 * raw.size()];
+        for (int i = 0; i < raw.size(); ++i) {
+            packed[3 * i]     = raw.get(i).getX();
+            packed[3 * i + 1] = raw.get(i).getY();
+            packed[3 * i + 2] = raw.get(i).getZ();
+        }
+        final TimeDependentLOS fromList   = builder(false).build();
+        final TimeDependentLOS fromPacked = new LOSBuilder(packed).
+                                            addTransform(new FixedRotation("fixed", Vector3D.PLUS_K, 0.02)).
+                                            addTransform(new PolynomialRotation("roll", Vector3D.PLUS_I, t0, 1.0e-3, 2.0e-4, -3.0e-5)).
+                                            addTransform(new FixedZHomothety("homothety", 1.1)).
+                                            addTransform(new PolynomialRotation("pitch", Vector3D.PLUS_J, t0, 2.0e-3, 5.0e-4)).
+                                            build();
+        final TimeDependentLOS sequence   = builder(true).build();
+        final AbsoluteDate     date       = t0.shiftedBy(1.5);
+        Assert.assertEquals(raw.size(), fromPacked.getNbPixels());
+        for (int i = 0; i < raw.size(); ++i) {
+            Assert.assertEquals(0.0, Vector3D.distance(fromList.getLOS(i, date), fromPacked.getLOS(i, date)), 0.0);
+        }
+
+        // sub-pixel lines-of-sight use a single fused matrix, and match the default interpolation
+        for (double x = -0.5; x < raw.size() + 0.5; x += 0.37) {
+            Assert.assertEquals(0.0, Vector3D.distance(sequence.getLOS(x, date), fromPacked.getLOS(x, date)), 1.0e-15);
+        }
+
+    }
+
+    @Test
+    public void testDerivativesCache() {
+
+        final TimeDependentLOS dated = builder(false).build();
+        final TimeDependentLOS fixed = new LOSBuilder(raw).
+                                       addTransform(new FixedRotation("fixed", Vector3D.PLUS_K, 0.02)).
+                                       addTransform(new FixedZHomothety("homothety", 1.1)).
+                                       build();
+        for (final TimeDependentLOS los : Arrays.asList(dated, fixed)) {
+
+            final List<ParameterDriver> drivers = los.getParametersDrivers().collect(Collectors.toList());
+            drivers.get(0).setSelected(true);
+            final DerivativeGenerator<Gradient> generator = generator(drivers);
+            final AbsoluteDate date = t0.shiftedBy(4.0);
+
+            // only time-independent lines-of-sight serve repeated requests from cache, regardless of date
+            final FieldVector3D<Gradient> first = los.getLOSDerivatives(17, date, generator);
+            Assert.assertEquals(los == fixed, first == los.getLOSDerivatives(17, date, generator));
+            Assert.assertEquals(los == fixed, first == los.getLOSDerivatives(17, date.shiftedBy(1.0), generator));
+            Assert.assertEquals(0.0, Vector3D.distance(los.getLOS(17, date), first.toVector3D()), 1.0e-15);
+
+            // a new generator or a parameter change starts afresh
+            Assert.assertNotSame(first, los.getLOSDerivatives(17, date, generator(drivers)));
+            drivers.get(0).setValue(1.1 * drivers.get(0).getValue());
+            final FieldVector3D<Gradient> second = los.getLOSDerivatives(17, date, generator);
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(0.0, Vector3D.distance(los.getLOS(17, date), second.toVector3D()), 1.0e-15);
+            Assert.assertTrue(Vector3D.distance(first.toVector3D(), second.toVector3D()) > 1.0e-6);
+
+            // derivatives follow the new selection
+            drivers.get(1).setSelected(true);
+            final FieldVector3D<Gradient> third = los.getLOSDerivatives(17, date, generator(drivers));
+            Assert.assertEquals(2, third.getX().getFreeParameters());
+            drivers.get(0).setSelected(false);
+            drivers.get(1).setSelected(false);
+
+        }
+
+    }
+
+    private DerivativeGenerator<Gradient> generator(final List<ParameterDriver> drivers) {
+        final List<ParameterDriver> selected = drivers.stream().filter(d -> d.isSelected()).collect(Collectors.toList());
+        final GradientField field = GradientField.getField(selected.size());
+        return new DerivativeGenerator<Gradient>() {
+
+            /** {@inheritDoc} */
+            @Override
+            public List<ParameterDriver> getSelected() {
+                return selected;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Gradient constant(final double value) {
+                return Gradient.constant(selected.size(), value);
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Gradient variable(final ParameterDriver driver) {
+                final int index = selected.indexOf(driver);
+                return index < 0 ? constant(driver.getValue()) : Gradient.variable(selected.size(), index, driver.getValue());
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Field<Gradient> getField() {
+                return field;
+            }
+
+        };
+    }
+
+    private LOSBuilder builder(final boolean custom) {
+        final LOSBuilder builder = new LOSBuilder(raw).
+                                   addTransform(new FixedRotation("fixed", Vector3D.PLUS_K, 0.02)).
+                                   addTransform(new PolynomialRotation("roll", Vector3D.PLUS_I, t0, 1.0e-3, 2.0e-4, -3.0e-5)).
+                                   addTransform(new FixedZHomothety("homothety", 1.1));
+        final PolynomialRotation pitch = new PolynomialRotation("pitch", Vector3D.PLUS_J, t0, 2.0e-3, 5.0e-4);
+        if (custom) {
+            // wrapping the rotation hides the fact it is a linear map
+            builder.addTransform(new LOSTransform() {
+
+                @Override
+                public Vector3D transformLOS(final int i, final Vector3D los, final AbsoluteDate date) {
+                    return pitch.transformLOS(i, los, date);
+                }
+
+                @Override
+                public <T extends Derivative<T>> FieldVector3D<T> transformLOS(final int i, final FieldVector3D<T> los,
+                                                                               final AbsoluteDate date,
+                                                                               final DerivativeGenerator<T> generator) {
+                    return pitch.transformLOS(i, los, date, generator);
+                }
+
+                @Override
+                public Stream<ParameterDriver> getParametersDrivers() {
+                    return pitch.getParametersDrivers();
+                }
+
+            });
+        } else {
+            builder.addTransform(pitch);
+        }
+        return builder;
+    }
+
+    @Before
+    public void setUp() {
+
+        final Vector3D normal    = Vector3D.PLUS_I;
+        final Vector3D fovCenter = Vector3D.PLUS_K;
+        final Vector3D cross     = Vector3D.crossProduct(normal, fovCenter);
+
+        // build lists of pixels regularly spread on a perfect plane
+        raw = new ArrayList<Vector3D>();
+        for (int i = -100; i <= 100; ++i) {
+            final double alpha = i * 0.17 / 1000;
+            raw.add(new Vector3D(FastMath.cos(alpha), fovCenter, FastMath.sin(alpha), cross));
+        }
+
+        t0 = AbsoluteDate.J2000_EPOCH.shiftedBy(1.0e5);
+
+    }
+
+}
@@ -0,0 +1,186 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.linesensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.hipparchus.Field;
+import org.hipparchus.analysis.differentiation.Gradient;
+import org.hipparchus.analysis.differentiation.GradientField;
+import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orekit.rugged.los.PolynomialLookAnglesLOS;
+import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+
+public class PolynomialLookAnglesLOSTest {
+
+    @Test
+    public void testValues() {
+
+        final PolynomialLookAnglesLOS los = create();
+        Assert.assertEquals(2, los.getNbDetectors());
+        Assert.assertEquals(250, los.getNbPixels());
+        Assert.assertEquals(10, los.getParametersDrivers().count());
+        Assert.assertEquals("camera[1].y[1]",
+                            los.getParametersDrivers().collect(Collectors.toList()).get(9).getName());
+
+        final AbsoluteDate date = AbsoluteDate.J2000_EPOCH;
+        checkPixel(los.getLOS(0, date), -0.01, 0.002);
+        checkPixel(los.getLOS(99, date), -0.01 + 99 * 1.0e-4 + 99 * 99 * 1.0e-8, 0.002 - 99 * 3.0e-6);
+        checkPixel(los.getLOS(100, date), 0.0, -0.001);
+        checkPixel(los.getLOS(249, date), 149 * 8.0e-5, -0.001 + 149 * 2.0e-6);
+
+        // sub-pixel evaluation inside a detector uses the polynomials directly
+        checkPixel(los.getLOS(42.25, date), -0.01 + 42.25 * 1.0e-4 + 42.25 * 42.25 * 1.0e-8, 0.002 - 42.25 * 3.0e-6);
+
+        // sub-pixel evaluation at detectors boundary interpolates surrounding pixels
+        final Vector3D boundary = los.getLOS(99.5, date);
+        Assert.assertEquals(0.0,
+                            Vector3D.distance(new Vector3D(0.5, los.getLOS(99, date), 0.5, los.getLOS(100, date)).normalize(),
+                                              boundary),
+                            1.0e-15);
+
+        // coefficients changes are taken into account
+        los.getParametersDrivers().findFirst().get().setValue(0.03);
+        checkPixel(los.getLOS(0, date), 0.03, 0.002);
+
+    }
+
+    @Test
+    public void testDerivatives() {
+
+        final PolynomialLookAnglesLOS los      = create();
+        final AbsoluteDate            date     = AbsoluteDate.J2000_EPOCH;
+        final List<ParameterDriver>   selected = los.getParametersDrivers().collect(Collectors.toList());
+        for (final ParameterDriver driver : selected) {
+            driver.setSelected(true);
+        }
+        final GradientField field = GradientField.getField(selected.size());
+        final DerivativeGenerator<Gradient> generator = new DerivativeGenerator<Gradient>() {
+
+            /** {@inheritDoc} */
+            @Override
+            public List<ParameterDriver> getSelected() {
+                return selected;
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Gradient constant(final double value) {
+                return Gradient.constant(selected.size(), value);
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Gradient variable(final ParameterDriver driver) {
+                return Gradient.variable(selected.size(), selected.indexOf(driver), driver.getValue());
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public Field<Gradient> getField() {
+                return field;
+            }
+
+        };
+
+        for (final int i : new int[] { 0, 37, 99, 100, 180, 249 }) {
+            final FieldVector3D<Gradient> losD = los.getLOSDerivatives(i, date, generator);
+            Assert.assertEquals(0.0, Vector3D.distance(los.getLOS(i, date), losD.toVector3D()), 1.0e-15);
+            for (int k = 0; k < selected.size(); ++k) {
+                final ParameterDriver driver = selected.get(k);
+                final double          v0     = driver.getValue();
+                final double          h      = 1.0e-9;
+                driver.setValue(v0 + h);
+                final Vector3D plus = los.getLOS(i, date);
+                driver.setValue(v0 - h);
+                final Vector3D minus = los.getLOS(i, date);
+                driver.setValue(v0);
+                final Vector3D fd = new Vector3D(0.5 / h, plus, -0.5 / h, minus);
+                final double scale = FastMath.max(1.0, fd.getNorm());
+                Assert.assertEquals(fd.getX(), losD.getX().getPartialDerivative(k), 1.0e-6 * scale);
+                Assert.assertEquals(fd.getY(), losD.getY().getPartialDerivative(k), 1.0e-6 * scale);
+                Assert.assertEquals(fd.getZ(), losD.getZ().getPartialDerivative(k), 1.0e-6 * scale);
+            }
+        }
+
+    }
+
+    @Test
+    public void testConcurrentParametersChange() throws InterruptedException, ExecutionException {
+
+        final PolynomialLookAnglesLOS los    = create();
+        final AbsoluteDate            date   = AbsoluteDate.J2000_EPOCH;
+        final ParameterDriver         driver = los.getParametersDrivers().findFirst().get();
+
+        // readers run while the constant term is changed back and forth,
+        // they must always see one of the two values
+        final ExecutorService       executor = Executors.newFixedThreadPool(4);
+        final AtomicBoolean         running  = new AtomicBoolean(true);
+        final List<Future<Integer>> futures  = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            futures.add(executor.submit(() -> {
+                int mismatches = 0;
+                while (running.get()) {
+                    final Vector3D l    = los.getLOS(0, date);
+                    final double   psiX = FastMath.atan2(l.getX(), l.getZ());
+                    if (FastMath.abs(psiX + 0.01) > 1.0e-15 && FastMath.abs(psiX - 0.03) > 1.0e-15) {
+                        ++mismatches;
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        for (int k = 0; k < 20000; ++k) {
+            driver.setValue(k % 2 == 0 ? 0.03 : -0.01);
+        }
+        running.set(false);
+        for (final Future<Integer> future : futures) {
+            Assert.assertEquals(0, future.get().intValue());
+        }
+        executor.shutdown();
+
+        // once changes are over, the last value is always used
+        driver.setValue(0.03);
+        checkPixel(los.getLOS(0, date), 0.03, 0.002);
+
+    }
+
+    private PolynomialLookAnglesLOS create() {
+        return new PolynomialLookAnglesLOS("camera", new int[] { 100, 150 },
+                                           new double[][] { { -0.01, 1.0e-4, 1.0e-8 }, { 0.0, 8.0e-5, 0.0 } },
+                                           new double[][] { { 0.002, -3.0e-6 }, { -0.001, 2.0e-6 } });
+    }
+
+    private void checkPixel(final Vector3D los, final double psiX, final double psiY) {
+        final Vector3D expected = new Vector3D(FastMath.tan(psiX), FastMath.tan(psiY), 1.0).normalize();
+        Assert.assertEquals(0.0, Vector3D.distance(expected, los), 1.0e-15);
+    }
+
+}
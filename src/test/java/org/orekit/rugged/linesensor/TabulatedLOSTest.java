@@ -0,0 +1,168 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.linesensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.rugged.los.LOSBuilder;
+import org.orekit.rugged.los.PolynomialRotation;
+import org.orekit.rugged.los.TabulatedLOS;
+import org.orekit.rugged.los.TimeDependentLOS;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.utils.ParameterDriver;
+
+public class TabulatedLOSTest {
+
+    private List<Vector3D> raw;
+
+    @Test
+    public void testAccuracy() {
+        for (final double tolerance : new double[] { 1.0e-6, 1.0e-8, 1.0e-10 }) {
+            final TimeDependentLOS exact     = builder().build();
+            final TimeDependentLOS tabulated = builder().setTabulation(t0, t0.shiftedBy(10.0), tolerance).build();
+            Assert.assertTrue(tabulated instanceof TabulatedLOS);
+            Assert.assertEquals(exact.getNbPixels(), tabulated.getNbPixels());
+            Assert.assertTrue(((TabulatedLOS) tabulated).getMaxError() <= tolerance);
+            double maxError = 0;
+            for (double dt = 0; dt <= 10.0; dt += 0.0731) {
+                final AbsoluteDate date = t0.shiftedBy(dt);
+                for (int i = 0; i < raw.size(); i += 7) {
+                    maxError = FastMath.max(maxError,
+                                            Vector3D.angle(exact.getLOS(i, date), tabulated.getLOS(i, date)));
+                }
+            }
+            Assert.assertTrue(maxError <= tolerance);
+        }
+    }
+
+    @Test
+    public void testGridSize() {
+        final TabulatedLOS coarse = (TabulatedLOS) builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-6).build();
+        final TabulatedLOS fine   = (TabulatedLOS) builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-10).build();
+        Assert.assertTrue(coarse.getIntervals() < fine.getIntervals());
+        // linear interpolation error decreases quadratically with step
+        Assert.assertTrue(fine.getIntervals() <= 128 * coarse.getIntervals());
+    }
+
+    @Test
+    public void testUnreachableTolerance() {
+        final TimeDependentLOS exact     = builder().build();
+        final TabulatedLOS     tabulated = (TabulatedLOS) builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-20).build();
+        Assert.assertEquals(0, tabulated.getIntervals());
+        Assert.assertEquals(0.0, tabulated.getMaxError(), 0.0);
+        for (double dt = 0; dt <= 10.0; dt += 0.731) {
+            final AbsoluteDate date = t0.shiftedBy(dt);
+            for (int i = 0; i < raw.size(); ++i) {
+                Assert.assertEquals(0.0, Vector3D.angle(exact.getLOS(i, date), tabulated.getLOS(i, date)), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testTableSizeLimit() {
+        // with many pixels, the number of intervals is bounded by the table size
+        for (int i = 0; raw.size() < TabulatedLOS.MAX_TABULATED_DIRECTIONS / 64; ++i) {
+            raw.add(raw.get(i));
+        }
+        final TabulatedLOS tabulated = (TabulatedLOS) builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-10).build();
+        Assert.assertEquals(0, tabulated.getIntervals());
+        final TabulatedLOS coarse = (TabulatedLOS) builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-6).build();
+        Assert.assertTrue(coarse.getIntervals() > 0);
+        Assert.assertTrue((coarse.getIntervals() + 1) * raw.size() <= TabulatedLOS.MAX_TABULATED_DIRECTIONS);
+    }
+
+    @Test
+    public void testOutsideSpan() {
+        final TimeDependentLOS exact     = builder().build();
+        final TimeDependentLOS tabulated = builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-6).build();
+        for (final double dt : new double[] { -5.0, 15.0 }) {
+            final AbsoluteDate date = t0.shiftedBy(dt);
+            for (int i = 0; i < raw.size(); ++i) {
+                Assert.assertEquals(0.0, Vector3D.angle(exact.getLOS(i, date), tabulated.getLOS(i, date)), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidSpan() {
+        for (final AbsoluteDate maxDate : new AbsoluteDate[] { t0, t0.shiftedBy(-1.0) }) {
+            try {
+                builder().setTabulation(t0, maxDate, 1.0e-6).build();
+                Assert.fail("an exception should have been thrown");
+            } catch (RuggedException re) {
+                Assert.assertEquals(RuggedMessages.INVALID_TABULATION_TIME_SPAN, re.getSpecifier());
+                Assert.assertEquals(t0,      re.getParts()[0]);
+                Assert.assertEquals(maxDate, re.getParts()[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testParametersChange() {
+        final TimeDependentLOS exact     = builder().build();
+        final TimeDependentLOS tabulated = builder().setTabulation(t0, t0.shiftedBy(10.0), 1.0e-9).build();
+        final AbsoluteDate date = t0.shiftedBy(3.3);
+        Assert.assertEquals(0.0, Vector3D.angle(exact.getLOS(17, date), tabulated.getLOS(17, date)), 1.0e-9);
+
+        // changing the drivers invalidates the table
+        final List<ParameterDriver> exactDrivers     = exact.getParametersDrivers().collect(Collectors.toList());
+        final List<ParameterDriver> tabulatedDrivers = tabulated.getParametersDrivers().collect(Collectors.toList());
+        Assert.assertEquals(exactDrivers.size(), tabulatedDrivers.size());
+        for (int k = 0; k < exactDrivers.size(); ++k) {
+            exactDrivers.get(k).setValue(2 * exactDrivers.get(k).getValue());
+            tabulatedDrivers.get(k).setValue(2 * tabulatedDrivers.get(k).getValue());
+        }
+        Assert.assertEquals(0.0, Vector3D.angle(exact.getLOS(17, date), tabulated.getLOS(17, date)), 1.0e-9);
+        Assert.assertTrue(Vector3D.angle(exact.getLOS(17, date), builder().build().getLOS(17, date)) > 1.0e-4);
+    }
+
+    private LOSBuilder builder() {
+        return new LOSBuilder(raw).
+               addTransform(new PolynomialRotation("roll", Vector3D.PLUS_I, t0, 1.0e-3, 2.0e-4, -3.0e-5)).
+               addTransform(new PolynomialRotation("pitch", Vector3D.PLUS_J, t0, 2.0e-3, 5.0e-4));
+    }
+
+    @Before
+    public void setUp() {
+
+        final Vector3D normal    = Vector3D.PLUS_I;
+        final Vector3D fovCenter = Vector3D.PLUS_K;
+        final Vector3D cross     = Vector3D.crossProduct(normal, fovCenter);
+
+        // build lists of pixels regularly spread on a perfect plane
+        raw = new ArrayList<Vector3D>();
+        for (int i = -100; i <= 100; ++i) {
+            final double alpha = i * 0.17 / 1000;
+            raw.add(new Vector3D(FastMath.cos(alpha), fovCenter, FastMath.sin(alpha), cross));
+        }
+
+        t0 = AbsoluteDate.J2000_EPOCH.shiftedBy(1.0e5);
+
+    }
+
+    private AbsoluteDate t0;
+
+}
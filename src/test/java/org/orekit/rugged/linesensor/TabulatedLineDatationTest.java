@@ -0,0 +1,117 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.linesensor;
+
+import org.hipparchus.exception.LocalizedCoreFormats;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.time.AbsoluteDate;
+
+public class TabulatedLineDatationTest {
+
+    @Test
+    public void testSameAsLinear() {
+        final AbsoluteDate          t0        = AbsoluteDate.J2000_EPOCH.shiftedBy(3600.0);
+        final LinearLineDatation    linear    = new LinearLineDatation(t0, 100.0, 1.0 / 1.5e-3);
+        final TabulatedLineDatation tabulated =
+                        new TabulatedLineDatation(new double[] { 0.0, 2000.0 },
+                                                  new AbsoluteDate[] { linear.getDate(0.0), linear.getDate(2000.0) });
+        for (double line = -500.0; line < 2500.0; line += 17.3) {
+            Assert.assertEquals(0.0, tabulated.getDate(line).durationFrom(linear.getDate(line)), 1.0e-12);
+            Assert.assertEquals(line, tabulated.getLine(linear.getDate(line)), 1.0e-8);
+            Assert.assertEquals(linear.getRate(line), tabulated.getRate(line), 1.0e-9);
+        }
+    }
+
+    @Test
+    public void testJumpAndDrift() {
+
+        // 1000 lines at 1 ms, a 0.5 s gap, then 1000 lines with drifting line time
+        final double[]       lines = new double[] { 0.0, 999.0, 1000.0, 1500.0, 1999.0 };
+        final AbsoluteDate   t0    = AbsoluteDate.J2000_EPOCH;
+        final AbsoluteDate[] dates = new AbsoluteDate[] {
+            t0, t0.shiftedBy(0.999), t0.shiftedBy(1.5), t0.shiftedBy(2.0), t0.shiftedBy(2.4)
+        };
+        final TabulatedLineDatation datation = new TabulatedLineDatation(lines, dates);
+
+        // tabulated points are reproduced exactly
+        for (int i = 0; i < lines.length; ++i) {
+            Assert.assertEquals(0.0, datation.getDate(lines[i]).durationFrom(dates[i]), 1.0e-15);
+            Assert.assertEquals(lines[i], datation.getLine(dates[i]), 1.0e-12);
+        }
+
+        // rate is the slope of each interval
+        Assert.assertEquals(1000.0, datation.getRate(500.0), 1.0e-9);
+        Assert.assertEquals(1.0 / 0.501, datation.getRate(999.5), 1.0e-9);
+        Assert.assertEquals(1000.0, datation.getRate(1250.0), 1.0e-9);
+        Assert.assertEquals(499.0 / 0.4, datation.getRate(1750.0), 1.0e-9);
+
+        // round trip and consistency between rate and finite differences
+        for (double line = -10.0; line < 2010.0; line += 0.73) {
+            final AbsoluteDate date = datation.getDate(line);
+            Assert.assertEquals(line, datation.getLine(date), 1.0e-9);
+            final double h = 1.0e-3;
+            if (sameInterval(lines, line - h, line + h)) {
+                final double fd = 2 * h / datation.getDate(line + h).durationFrom(datation.getDate(line - h));
+                Assert.assertEquals(fd, datation.getRate(line), 1.0e-6 * fd);
+            }
+        }
+
+    }
+
+    @Test
+    public void testErrors() {
+        final AbsoluteDate t0 = AbsoluteDate.J2000_EPOCH;
+        try {
+            new TabulatedLineDatation(new double[] { 0.0, 1.0 }, new AbsoluteDate[] { t0 });
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.DIMENSIONS_MISMATCH, re.getSpecifier());
+        }
+        try {
+            new TabulatedLineDatation(new double[] { 0.0 }, new AbsoluteDate[] { t0 });
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.INSUFFICIENT_DIMENSION, re.getSpecifier());
+        }
+        try {
+            new TabulatedLineDatation(new double[] { 0.0, 1.0, 1.0 },
+                                      new AbsoluteDate[] { t0, t0.shiftedBy(1.0), t0.shiftedBy(2.0) });
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.NOT_STRICTLY_INCREASING_SEQUENCE, re.getSpecifier());
+        }
+        try {
+            new TabulatedLineDatation(new double[] { 0.0, 1.0, 2.0 },
+                                      new AbsoluteDate[] { t0, t0.shiftedBy(1.0), t0.shiftedBy(0.5) });
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.NOT_STRICTLY_INCREASING_SEQUENCE, re.getSpecifier());
+        }
+    }
+
+    private boolean sameInterval(final double[] lines, final double a, final double b) {
+        for (final double line : lines) {
+            if (a < line && line <= b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,271 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.raster;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+import org.hipparchus.geometry.euclidean.threed.Line;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.hipparchus.util.MathUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orekit.bodies.GeodeticPoint;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.frames.FramesFactory;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.rugged.intersection.IntersectionAlgorithm;
+import org.orekit.rugged.intersection.duvenhage.DuvenhageAlgorithm;
+import org.orekit.rugged.utils.ExtendedEllipsoid;
+import org.orekit.rugged.utils.NormalizedGeodeticPoint;
+import org.orekit.utils.Constants;
+import org.orekit.utils.IERSConventions;
+
+public class MosaicTileUpdaterTest {
+
+    @Test
+    public void testMosaicGeometry() {
+        final double size = FastMath.toRadians(1.0);
+        final int[] calls = new int[1];
+        final TileUpdater source = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        final TileUpdater counting = (latitude, longitude, tile) -> {
+            ++calls[0];
+            source.updateTile(latitude, longitude, tile);
+        };
+        MosaicTileUpdater mosaic = new MosaicTileUpdater(counting, 3, 3);
+        Assert.assertEquals(3, mosaic.getLatitudeTiles());
+        Assert.assertEquals(3, mosaic.getLongitudeTiles());
+
+        SimpleTile tile = new SimpleTileFactory().createTile();
+        mosaic.updateTile(0.3 * size, 0.6 * size, tile);
+        tile.tileUpdateCompleted();
+        Assert.assertEquals(9, calls[0]);
+        Assert.assertEquals(-size, tile.getMinimumLatitude(),  1.0e-15);
+        Assert.assertEquals(-size, tile.getMinimumLongitude(), 1.0e-15);
+        Assert.assertEquals( 31,   tile.getLatitudeRows());
+        Assert.assertEquals( 31,   tile.getLongitudeColumns());
+        checkElevations(source, tile);
+
+        // moving to the North neighbor reuses six source tiles
+        tile = new SimpleTileFactory().createTile();
+        mosaic.updateTile(1.3 * size, 0.6 * size, tile);
+        Assert.assertEquals(12, calls[0]);
+        Assert.assertEquals(0.0, tile.getMinimumLatitude(), 1.0e-15);
+        checkElevations(source, tile);
+
+    }
+
+    @Test
+    public void testClippedAtPole() {
+        final double size = FastMath.toRadians(1.0);
+        final TileUpdater source = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        SimpleTile tile = new SimpleTileFactory().createTile();
+        new MosaicTileUpdater(source, 5, 3).updateTile(FastMath.toRadians(88.5), 0.5 * size, tile);
+        Assert.assertEquals(FastMath.toRadians(86.0), tile.getMinimumLatitude(), 1.0e-15);
+        Assert.assertEquals(41, tile.getLatitudeRows());
+        Assert.assertEquals(31, tile.getLongitudeColumns());
+        checkElevations(source, tile);
+    }
+
+    @Test
+    public void testLongitudeWrapping() {
+        final double size = FastMath.toRadians(1.0);
+        final TileUpdater raw = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        final TileUpdater normalizing =
+                        (latitude, longitude, tile) -> raw.updateTile(latitude, MathUtils.normalizeAngle(longitude, 0.0), tile);
+        SimpleTile tile = new SimpleTileFactory().createTile();
+        new MosaicTileUpdater(normalizing, 3, 3).updateTile(0.5 * size, FastMath.toRadians(179.5), tile);
+        tile.tileUpdateCompleted();
+        Assert.assertEquals(FastMath.toRadians(178.0), tile.getMinimumLongitude(), 1.0e-14);
+        Assert.assertEquals(31, tile.getLongitudeColumns());
+        Assert.assertEquals(Tile.Location.HAS_INTERPOLATION_NEIGHBORS,
+                            tile.getLocation(0.5 * size, FastMath.toRadians(180.5)));
+        SimpleTile reference = new SimpleTileFactory().createTile();
+        raw.updateTile(0.5 * size, FastMath.toRadians(-179.5), reference);
+        for (int k = 0; k < 10; ++k) {
+            final double latitude  = FastMath.toRadians(0.05 + 0.1 * k);
+            final double longitude = FastMath.toRadians(-179.95 + 0.1 * k);
+            Assert.assertEquals(reference.interpolateElevation(latitude, longitude),
+                                tile.interpolateElevation(latitude, longitude + MathUtils.TWO_PI),
+                                1.0e-10);
+        }
+    }
+
+    @Test
+    public void testInconsistentNeighbors() {
+        final double size = FastMath.toRadians(1.0);
+        final TileUpdater regular = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        final TileUpdater finer   = new CheckedPatternElevationUpdater(size, 21, 10.0, 100.0);
+        final TileUpdater source  = (latitude, longitude, tile) -> {
+            if (latitude > size) {
+                finer.updateTile(latitude, longitude, tile);
+            } else {
+                regular.updateTile(latitude, longitude, tile);
+            }
+        };
+        SimpleTile tile = new SimpleTileFactory().createTile();
+        new MosaicTileUpdater(source, 3, 3).updateTile(0.5 * size, 0.5 * size, tile);
+        tile.tileUpdateCompleted();
+
+        // the northern row is dropped, the remaining sub-mosaic is kept
+        Assert.assertEquals(-size, tile.getMinimumLatitude(),  1.0e-15);
+        Assert.assertEquals(-size, tile.getMinimumLongitude(), 1.0e-15);
+        Assert.assertEquals(21,    tile.getLatitudeRows());
+        Assert.assertEquals(31,    tile.getLongitudeColumns());
+        checkElevations(regular, tile);
+
+    }
+
+    @Test
+    public void testMissingNeighbors() {
+        final double size  = FastMath.toRadians(1.0);
+        final double limit = FastMath.toRadians(60.0);
+        final TileUpdater regular = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        final int[] failures = new int[1];
+        final TileUpdater source  = (latitude, longitude, tile) -> {
+            if (latitude > limit) {
+                // no data beyond the North edge of the Digital Elevation Model coverage
+                ++failures[0];
+                throw new RuggedException(RuggedMessages.NO_DEM_DATA,
+                                          FastMath.toDegrees(latitude), FastMath.toDegrees(longitude));
+            }
+            regular.updateTile(latitude, longitude, tile);
+        };
+        final MosaicTileUpdater mosaic = new MosaicTileUpdater(source, 3, 5);
+
+        // at the edge of coverage, the mosaic is reduced to the available tiles
+        SimpleTile tile = new SimpleTileFactory().createTile();
+        mosaic.updateTile(limit - 0.5 * size, 0.5 * size, tile);
+        tile.tileUpdateCompleted();
+        Assert.assertEquals(5, failures[0]);
+        Assert.assertEquals(limit - 2 * size, tile.getMinimumLatitude(),  1.0e-15);
+        Assert.assertEquals(-2 * size,        tile.getMinimumLongitude(), 1.0e-15);
+        Assert.assertEquals(21,               tile.getLatitudeRows());
+        Assert.assertEquals(51,               tile.getLongitudeColumns());
+
+        // points close to the edge work with the source tiles and with the mosaic
+        final IntersectionAlgorithm direct    = new DuvenhageAlgorithm(source, 8, false);
+        final IntersectionAlgorithm mosaicked = new DuvenhageAlgorithm(mosaic, 8, false);
+        for (int k = 0; k < 20; ++k) {
+            final double latitude  = limit - (0.01 + 0.1 * k) * size;
+            final double longitude = (-1.95 + 0.2 * k) * size;
+            Assert.assertEquals(direct.getElevation(latitude, longitude),
+                                mosaicked.getElevation(latitude, longitude),
+                                1.0e-10);
+        }
+
+        // beyond coverage, the failure for the central tile is still reported
+        try {
+            mosaic.updateTile(limit + 0.5 * size, 0.5 * size, new SimpleTileFactory().createTile());
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.NO_DEM_DATA, re.getSpecifier());
+        }
+
+    }
+
+    @Test
+    public void testInconsistentSourceUpdater() {
+        final double size = FastMath.toRadians(1.0);
+        final TileUpdater regular = new CheckedPatternElevationUpdater(size, 11, 10.0, 100.0);
+        final TileUpdater shifted = (latitude, longitude, tile) -> regular.updateTile(latitude + size, longitude, tile);
+        try {
+            new MosaicTileUpdater(shifted, 3, 3).updateTile(0.5 * size, 0.5 * size, new SimpleTileFactory().createTile());
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.TILE_WITHOUT_REQUIRED_NEIGHBORS_SELECTED,
+                                re.getSpecifier());
+        }
+    }
+
+    @Test
+    public void testSameIntersections() {
+
+        final TileUpdater source = new RandomLandscapeUpdater(0.0, 9000.0, 0.5, 0xf0a401650191f9f6l,
+                                                              FastMath.toRadians(0.125), 65);
+        final IntersectionAlgorithm direct = new DuvenhageAlgorithm(source, 8, false);
+        final IntersectionAlgorithm mosaic = new DuvenhageAlgorithm(new MosaicTileUpdater(source, 5, 5), 8, false);
+
+        final GeodeticPoint nadir    = new GeodeticPoint(FastMath.toRadians(43.2), FastMath.toRadians(4.4), 800000.0);
+        final Vector3D      position = ellipsoid.transform(nadir);
+        for (int k = 0; k < 20; ++k) {
+            final double offset = FastMath.toRadians(-2.0 + 0.2 * k);
+            final Vector3D ground = ellipsoid.transform(new GeodeticPoint(nadir.getLatitude() + 0.3 * offset,
+                                                                          nadir.getLongitude() + offset,
+                                                                          0.0));
+            final Vector3D los = ground.subtract(position);
+            final NormalizedGeodeticPoint gpDirect =
+                            direct.refineIntersection(ellipsoid, position, los, direct.intersection(ellipsoid, position, los));
+            final NormalizedGeodeticPoint gpMosaic =
+                            mosaic.refineIntersection(ellipsoid, position, los, mosaic.intersection(ellipsoid, position, los));
+
+            // both intersections must be on the line and on the Digital Elevation Model
+            checkOnLineAndDEM(direct, position, ground, gpDirect);
+            checkOnLineAndDEM(direct, position, ground, gpMosaic);
+
+            // so the super-tiles intersection is the same as the source tiles intersection
+            Assert.assertEquals(0.0,
+                                Vector3D.distance(ellipsoid.transform(gpDirect), ellipsoid.transform(gpMosaic)),
+                                1.0e-6);
+
+        }
+
+    }
+
+    private void checkOnLineAndDEM(final IntersectionAlgorithm algorithm,
+                                   final Vector3D position, final Vector3D ground,
+                                   final NormalizedGeodeticPoint gp) {
+        Assert.assertEquals(0.0,
+                            new Line(position, ground, 1.0e-12).distance(ellipsoid.transform(gp)),
+                            1.0e-4);
+        Assert.assertEquals(algorithm.getElevation(gp.getLatitude(), gp.getLongitude()),
+                            gp.getAltitude(), 1.0e-6);
+    }
+
+    private void checkElevations(final TileUpdater source, final SimpleTile tile) {
+        for (int i = 0; i < tile.getLatitudeRows(); ++i) {
+            final double latitude = tile.getLatitudeAtIndex(i);
+            for (int j = 0; j < tile.getLongitudeColumns(); ++j) {
+                final double longitude = tile.getLongitudeAtIndex(j);
+                // select a source tile in which the cell is not on the North or East edge
+                final double shift = 0.01 * tile.getLatitudeStep();
+                SimpleTile reference = new SimpleTileFactory().createTile();
+                source.updateTile(latitude + shift, longitude + shift, reference);
+                Assert.assertEquals(reference.getElevationAtIndices(reference.getFloorLatitudeIndex(latitude + shift),
+                                                                    reference.getFloorLongitudeIndex(longitude + shift)),
+                                    tile.getElevationAtIndices(i, j),
+                                    1.0e-10);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        ellipsoid = new ExtendedEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
+                                          Constants.WGS84_EARTH_FLATTENING,
+                                          FramesFactory.getITRF(IERSConventions.IERS_2010, true));
+    }
+
+    private ExtendedEllipsoid ellipsoid;
+
+}
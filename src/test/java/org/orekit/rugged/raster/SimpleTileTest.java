@@ -191,6 +191,10 @@ public class SimpleTileTest {
         Assert.assertEquals(127.125, tile.interpolateElevation( 1.0625,  0.5),    1.0e-10);
         Assert.assertEquals(124.875, tile.interpolateElevation( 0.5,    -0.0625), 1.0e-10);
         Assert.assertEquals(154.125, tile.interpolateElevation( 0.5,     1.0625), 1.0e-10);
+        Assert.assertEquals(151.875, tile.interpolateElevationOrNaN(-0.0625,  0.5),    1.0e-10);
+        Assert.assertEquals(127.125, tile.interpolateElevationOrNaN( 1.0625,  0.5),    1.0e-10);
+        Assert.assertEquals(124.875, tile.interpolateElevationOrNaN( 0.5,    -0.0625), 1.0e-10);
+        Assert.assertEquals(154.125, tile.interpolateElevationOrNaN( 0.5,     1.0625), 1.0e-10);
     }
 
     @Test
@@ -428,6 +432,7 @@ public class SimpleTileTest {
     }
 
     private void checkOutOfBound(double latitude, double longitude, Tile tile) {
+        Assert.assertTrue(Double.isNaN(tile.interpolateElevationOrNaN(latitude, longitude)));
         try {
             tile.interpolateElevation(latitude, longitude);
         } catch (RuggedException re) {
@@ -16,6 +16,13 @@
  */
 package org.orekit.rugged.raster;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.hipparchus.random.RandomGenerator;
 import org.hipparchus.random.Well19937a;
 import org.hipparchus.util.FastMath;
@@ -91,6 +98,40 @@ public class TilesCacheTest {
 
     }
 
+    @Test
+    public void testConcurrentLookup() throws InterruptedException, ExecutionException {
+        CountingFactory factory = new CountingFactory();
+        final TilesCache<SimpleTile> cache = new TilesCache<SimpleTile>(factory,
+                new CheckedPatternElevationUpdater(FastMath.toRadians(1.0), 11, 10.0, 20.0), 12);
+
+        // several threads share the cache, using the same 12 tiles
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            final long seed = 0x2d4ba6e3c4f7b8a1l + t;
+            futures.add(executor.submit(() -> {
+                final RandomGenerator generator = new Well19937a(seed);
+                int mismatches = 0;
+                for (int i = 0; i < 20000; ++i) {
+                    final double lat = FastMath.toRadians(3.0 * generator.nextDouble());
+                    final double lon = FastMath.toRadians(4.0 * generator.nextDouble());
+                    if (cache.getTile(lat, lon).getLocation(lat, lon) != Tile.Location.HAS_INTERPOLATION_NEIGHBORS) {
+                        ++mismatches;
+                    }
+                }
+                return mismatches;
+            }));
+        }
+        for (final Future<Integer> future : futures) {
+            Assert.assertEquals(0, future.get().intValue());
+        }
+        executor.shutdown();
+
+        // each tile has been loaded only once
+        Assert.assertEquals(12, factory.getCount());
+
+    }
+
     @Test
     public void testExactEnd() {
         CountingFactory factory = new CountingFactory();
@@ -0,0 +1,158 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.refraction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hipparchus.geometry.euclidean.threed.Rotation;
+import org.hipparchus.geometry.euclidean.threed.RotationConvention;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.rugged.intersection.AbstractAlgorithmTest;
+import org.orekit.rugged.intersection.IntersectionAlgorithm;
+import org.orekit.rugged.intersection.duvenhage.DuvenhageAlgorithm;
+import org.orekit.rugged.raster.TileUpdater;
+import org.orekit.rugged.utils.NormalizedGeodeticPoint;
+
+/** Common tests for the models approximating {@link MultiLayerModel}. */
+public abstract class AbstractMultiLayerModelTest extends AbstractAlgorithmTest {
+
+    /** Satellite position above Mayon volcano. */
+    protected static final Vector3D MAYON_POSITION = new Vector3D(-3787079.6453602533, 5856784.405679551, 1655869.0582939098);
+
+    /** Create a model with the built-in layers.
+     * @return model with the built-in layers
+     */
+    protected abstract AtmosphericRefraction createModel();
+
+    /** Create a model with specified layers.
+     * @param refractionLayers refraction layers
+     * @return model with the specified layers
+     */
+    protected abstract AtmosphericRefraction createModel(List<ConstantRefractionLayer> refractionLayers);
+
+    @Test
+    public void testNoOpRefraction() {
+
+        setUpMayonVolcanoContext();
+        final IntersectionAlgorithm   algorithm       = createAlgorithm(updater, 8);
+        final Vector3D                los             = los(MAYON_POSITION, FastMath.toRadians(50.0), 0.0);
+        final NormalizedGeodeticPoint rawIntersection = rawIntersection(algorithm, MAYON_POSITION, los);
+
+        // a test with indices all set to 1.0 - correction must be zero
+        final int numberOfLayers = 16;
+        List<ConstantRefractionLayer> refractionLayers = new ArrayList<ConstantRefractionLayer>(numberOfLayers);
+        for(int i = numberOfLayers - 1; i >= 0; i--) {
+            refractionLayers.add(new ConstantRefractionLayer(i * 1.0e4, 1.0));
+        }
+        final AtmosphericRefraction   model                 = createModel(refractionLayers);
+        final NormalizedGeodeticPoint correctedIntersection = model.applyCorrection(MAYON_POSITION, los, rawIntersection, algorithm);
+        final double distance = Vector3D.distance(earth.transform(rawIntersection), earth.transform(correctedIntersection));
+        Assert.assertEquals(0.0, distance, 1.7e-9);
+
+    }
+
+    @Test
+    public void testMissingLayers() {
+
+        setUpMayonVolcanoContext();
+        final IntersectionAlgorithm   algorithm       = createAlgorithm(updater, 8);
+        final Vector3D                los             = los(MAYON_POSITION, FastMath.toRadians(50.0), 0.0);
+        final NormalizedGeodeticPoint rawIntersection = rawIntersection(algorithm, MAYON_POSITION, los);
+        final double h = rawIntersection.getAltitude();
+
+        final AtmosphericRefraction model =
+                        createModel(Collections.singletonList(new ConstantRefractionLayer(h + 100.0, 1.5)));
+        try {
+            model.applyCorrection(MAYON_POSITION, los, rawIntersection, algorithm);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.NO_LAYER_DATA, re.getSpecifier());
+            Assert.assertEquals(h,         ((Double) re.getParts()[0]).doubleValue(), 1.0e-6);
+            Assert.assertEquals(h + 100.0, ((Double) re.getParts()[1]).doubleValue(), 1.0e-6);
+        }
+
+    }
+
+    /** Compare the model with built-in layers to the reference {@link MultiLayerModel}.
+     * <p>
+     * Lines-of-sight are scanned from nadir up to 50 degrees off-nadir, in two azimuths.
+     * </p>
+     * @param position satellite position
+     * @param relativeTolerance tolerance on the difference between models,
+     * relative to the correction itself (or to 1m for small corrections)
+     * @return maximum difference between models (m)
+     */
+    protected double checkSameAsMultiLayerModel(final Vector3D position, final double relativeTolerance) {
+
+        final IntersectionAlgorithm algorithm = createAlgorithm(updater, 8);
+        final MultiLayerModel       reference = new MultiLayerModel(earth);
+        final AtmosphericRefraction model     = createModel();
+
+        double maxError = 0;
+        for (double alpha = 0; alpha < FastMath.toRadians(50.0); alpha += 0.01) {
+            for (final Vector3D los : new Vector3D[] { los(position, alpha, 0.0), los(position, alpha, 1.0) }) {
+                final NormalizedGeodeticPoint rawIntersection = rawIntersection(algorithm, position, los);
+                final Vector3D raw      = earth.transform(rawIntersection);
+                final Vector3D expected = earth.transform(reference.applyCorrection(position, los, rawIntersection, algorithm));
+                final Vector3D modelGP  = earth.transform(model.applyCorrection(position, los, rawIntersection, algorithm));
+                final double   error    = Vector3D.distance(expected, modelGP);
+                maxError = FastMath.max(maxError, error);
+
+                // the difference between models is negligible with respect to the correction itself
+                Assert.assertTrue(error <= relativeTolerance * FastMath.max(1.0, Vector3D.distance(raw, expected)));
+            }
+        }
+        return maxError;
+
+    }
+
+    /** Compute raw intersection, without refraction.
+     * @param algorithm intersection algorithm
+     * @param position satellite position
+     * @param los line-of-sight
+     * @return raw intersection
+     */
+    protected NormalizedGeodeticPoint rawIntersection(final IntersectionAlgorithm algorithm,
+                                                      final Vector3D position, final Vector3D los) {
+        return algorithm.refineIntersection(earth, position, los, algorithm.intersection(earth, position, los));
+    }
+
+    /** Build a line-of-sight.
+     * @param position satellite position
+     * @param angleFromNadir angle from nadir
+     * @param azimuth azimuth of the tilt axis around nadir
+     * @return line-of-sight
+     */
+    protected Vector3D los(final Vector3D position, final double angleFromNadir, final double azimuth) {
+        final Vector3D nadir = earth.transform(position, earth.getBodyFrame(), null).getNadir();
+        final Vector3D axis  = new Rotation(nadir, azimuth, RotationConvention.VECTOR_OPERATOR).applyTo(nadir.orthogonal());
+        return new Rotation(axis, angleFromNadir, RotationConvention.VECTOR_OPERATOR).applyTo(nadir);
+    }
+
+    @Override
+    protected IntersectionAlgorithm createAlgorithm(TileUpdater updater, int maxCachedTiles) {
+        return new DuvenhageAlgorithm(updater, maxCachedTiles, false);
+    }
+
+}
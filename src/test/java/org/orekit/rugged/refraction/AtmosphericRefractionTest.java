@@ -5,14 +5,20 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import org.hipparchus.analysis.differentiation.Derivative;
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.FieldVector3D;
 import org.hipparchus.geometry.euclidean.threed.Rotation;
 import org.hipparchus.geometry.euclidean.threed.RotationConvention;
@@ -46,6 +52,7 @@ import org.orekit.rugged.los.TimeDependentLOS;
 import org.orekit.rugged.raster.RandomLandscapeUpdater;
 import org.orekit.rugged.raster.TileUpdater;
 import org.orekit.rugged.utils.DerivativeGenerator;
+import org.orekit.rugged.utils.ExtendedEllipsoid;
 import org.orekit.rugged.utils.GeodeticUtilities;
 import org.orekit.time.AbsoluteDate;
 import org.orekit.time.TimeScalesFactory;
@@ -158,6 +165,170 @@ public class AtmosphericRefractionTest {
 
     }
 
+    @Test
+    public void testMultipleContexts() throws URISyntaxException  {
+
+        String sensorName = "line";
+        RuggedBuilder builder = initRuggedForAtmosphericTests(4000, sensorName);
+        AtmosphericRefraction atmosphericRefraction = new MultiLayerModel(builder.build().getEllipsoid());
+        builder.setRefractionCorrection(atmosphericRefraction);
+        Rugged rugged = builder.build();
+
+        double chosenLine = 200.;
+        GeodeticPoint[] gp = rugged.directLocation(sensorName, chosenLine);
+
+        // alternate inverse locations between two lines windows
+        for (int i = 0; i < gp.length; i += 500) {
+            SensorPixel sp1 = rugged.inverseLocation(sensorName, gp[i], 0, 400);
+            SensorPixel sp2 = rugged.inverseLocation(sensorName, gp[i], 100, 500);
+            assertEquals(i, sp1.getPixelNumber(), 1.0e-3);
+            assertEquals(chosenLine, sp1.getLineNumber(), 1.0e-2);
+            assertEquals(sp1.getPixelNumber(), sp2.getPixelNumber(), 1.0e-3);
+            assertEquals(sp1.getLineNumber(), sp2.getLineNumber(), 1.0e-2);
+        }
+
+        // the grids for both contexts have been cached and reused
+        AtmosphericCorrectionGrid grid1 = atmosphericRefraction.getCorrectionGrid(sensorName, 0, 400);
+        AtmosphericCorrectionGrid grid2 = atmosphericRefraction.getCorrectionGrid(sensorName, 100, 500);
+        Assert.assertNotNull(grid1);
+        Assert.assertNotNull(grid2);
+        Assert.assertNull(atmosphericRefraction.getCorrectionGrid("otherSensor", 0, 400));
+        Assert.assertEquals(sensorName, grid1.getSensorName());
+        Assert.assertEquals(100, grid2.getMinLine());
+        Assert.assertEquals(500, grid2.getMaxLine());
+        rugged.inverseLocation(sensorName, gp[0], 0, 400);
+        Assert.assertSame(grid1, atmosphericRefraction.getCorrectionGrid(sensorName, 0, 400));
+        Assert.assertSame(grid2.getBifPixel(), atmosphericRefraction.getBifPixel());
+
+        // reducing the cache evicts the least recently used grid
+        atmosphericRefraction.setMaxCachedGrids(1);
+        Assert.assertSame(grid1, atmosphericRefraction.getCorrectionGrid(sensorName, 0, 400));
+        Assert.assertNull(atmosphericRefraction.getCorrectionGrid(sensorName, 100, 500));
+        try {
+            atmosphericRefraction.setMaxCachedGrids(0);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.NUMBER_TOO_SMALL, re.getSpecifier());
+        }
+
+        // changing the grid steps invalidates the cache
+        atmosphericRefraction.setGridSteps(50, 50);
+        Assert.assertNull(atmosphericRefraction.getCorrectionGrid(sensorName, 0, 400));
+        Assert.assertNull(atmosphericRefraction.getBifPixel());
+
+    }
+
+    @Test
+    public void testParallelGridAndStorage() throws URISyntaxException  {
+
+        String sensorName = "line";
+        RuggedBuilder builder = initRuggedForAtmosphericTests(4000, sensorName);
+        final ExtendedEllipsoid ellipsoid = builder.build().getEllipsoid();
+
+        // reference grid, computed sequentially
+        AtmosphericRefraction sequentialModel = new MultiLayerModel(ellipsoid);
+        Assert.assertNull(sequentialModel.getGridComputationPool());
+        Rugged sequentialRugged = builder.setRefractionCorrection(sequentialModel).build();
+        AtmosphericCorrectionGrid sequentialGrid = sequentialRugged.getAtmosphericCorrectionGrid(sensorName, 0, 400);
+        Assert.assertSame(sequentialGrid, sequentialModel.getCorrectionGrid(sensorName, 0, 400));
+
+        // same grid, computed in parallel
+        AtmosphericRefraction parallelModel = new MultiLayerModel(ellipsoid);
+        parallelModel.setGridComputationPool(ForkJoinPool.commonPool());
+        Assert.assertSame(ForkJoinPool.commonPool(), parallelModel.getGridComputationPool());
+        Rugged parallelRugged = builder.setRefractionCorrection(parallelModel).build();
+        AtmosphericCorrectionGrid parallelGrid = parallelRugged.getAtmosphericCorrectionGrid(sensorName, 0, 400);
+        checkSameGrid(sequentialGrid, parallelGrid, 1.0e-8);
+
+        // the refraction flag of the model is not used for computing the grid
+        Assert.assertTrue(parallelModel.mustBeComputed());
+
+        // round trip through storage
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        sequentialGrid.store(bos);
+        AtmosphericCorrectionGrid loaded = AtmosphericCorrectionGrid.load(new ByteArrayInputStream(bos.toByteArray()));
+        Assert.assertEquals(sensorName, loaded.getSensorName());
+        Assert.assertEquals(0,          loaded.getMinLine());
+        Assert.assertEquals(400,        loaded.getMaxLine());
+        Assert.assertEquals(100,        loaded.getPixelStep());
+        Assert.assertEquals(100,        loaded.getLineStep());
+        Assert.assertEquals(sequentialModel.getModelConfiguration(), loaded.getModelConfiguration());
+        checkSameGrid(sequentialGrid, loaded, 0.0);
+
+        // a loaded grid cannot be used with different grid steps
+        AtmosphericRefraction otherSteps = new MultiLayerModel(ellipsoid);
+        otherSteps.setGridSteps(50, 100);
+        try {
+            otherSteps.addCorrectionGrid(loaded);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.INCOMPATIBLE_CORRECTION_GRID, re.getSpecifier());
+            Assert.assertEquals(100, ((Integer) re.getParts()[0]).intValue());
+            Assert.assertEquals(50,  ((Integer) re.getParts()[3]).intValue());
+        }
+
+        // a loaded grid cannot be used with a different refraction model or different layers
+        final List<ConstantRefractionLayer> otherLayers = new ArrayList<>(MultiLayerModel.defaultLayers());
+        otherLayers.set(0, new ConstantRefractionLayer(otherLayers.get(0).getLowestAltitude(),
+                                                    otherLayers.get(0).getRefractiveIndex() + 1.0e-6));
+        for (final AtmosphericRefraction otherModel : new AtmosphericRefraction[] {
+            new MultiLayerModel(ellipsoid, otherLayers),
+            new FastMultiLayerModel(ellipsoid)
+        }) {
+            try {
+                otherModel.addCorrectionGrid(loaded);
+                Assert.fail("an exception should have been thrown");
+            } catch (RuggedException re) {
+                Assert.assertEquals(RuggedMessages.INCOMPATIBLE_CORRECTION_GRID, re.getSpecifier());
+                Assert.assertEquals(otherModel.getModelConfiguration(), re.getParts()[5]);
+            }
+            Assert.assertNull(otherModel.getCorrectionGrid(sensorName, 0, 400));
+        }
+        Assert.assertEquals(new MultiLayerModel(ellipsoid, MultiLayerModel.defaultLayers()).getModelConfiguration(),
+                            loaded.getModelConfiguration());
+
+        // a loaded grid is used as is, without any recomputation
+        AtmosphericRefraction loadedModel = new MultiLayerModel(ellipsoid);
+        loadedModel.addCorrectionGrid(loaded);
+        Rugged loadedRugged = builder.setRefractionCorrection(loadedModel).build();
+        GeodeticPoint[] gp = sequentialRugged.directLocation(sensorName, 200.0);
+        for (int i = 0; i < gp.length; i += 500) {
+            SensorPixel expected = sequentialRugged.inverseLocation(sensorName, gp[i], 0, 400);
+            SensorPixel sp      = loadedRugged.inverseLocation(sensorName, gp[i], 0, 400);
+            assertEquals(expected.getPixelNumber(), sp.getPixelNumber(), 1.0e-10);
+            assertEquals(expected.getLineNumber(),  sp.getLineNumber(),  1.0e-10);
+        }
+        Assert.assertSame(loaded, loadedRugged.getAtmosphericCorrectionGrid(sensorName, 0, 400));
+
+        // no grid without refraction model
+        Assert.assertNull(builder.setRefractionCorrection(null).build().getAtmosphericCorrectionGrid(sensorName, 0, 400));
+
+        // loading something that is not a grid
+        bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject("not a grid");
+        } catch (IOException ioe) {
+            Assert.fail(ioe.getLocalizedMessage());
+        }
+        try {
+            AtmosphericCorrectionGrid.load(new ByteArrayInputStream(bos.toByteArray()));
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.NOT_CORRECTION_GRID_DUMP_DATA, re.getSpecifier());
+        }
+
+    }
+
+    private void checkSameGrid(final AtmosphericCorrectionGrid expected, final AtmosphericCorrectionGrid grid,
+                               final double tolerance) {
+        for (double pixel = 0; pixel < 4000; pixel += 97.5) {
+            for (double line = 0; line < 400; line += 9.75) {
+                assertEquals(expected.getBifPixel().value(pixel, line), grid.getBifPixel().value(pixel, line), tolerance);
+                assertEquals(expected.getBifLine().value(pixel, line),  grid.getBifLine().value(pixel, line),  tolerance);
+            }
+        }
+    }
+
     private RuggedBuilder initRuggedForAtmosphericTests(final int dimension, final String sensorName) throws URISyntaxException {
         
         String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
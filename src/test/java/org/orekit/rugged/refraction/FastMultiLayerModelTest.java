@@ -0,0 +1,42 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.refraction;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastMultiLayerModelTest extends AbstractMultiLayerModelTest {
+
+    @Test
+    public void testSameAsMultiLayerModel() {
+        setUpMayonVolcanoContext();
+        Assert.assertTrue(checkSameAsMultiLayerModel(MAYON_POSITION, 1.0e-5) < 2.0e-4);
+    }
+
+    @Override
+    protected AtmosphericRefraction createModel() {
+        return new FastMultiLayerModel(earth);
+    }
+
+    @Override
+    protected AtmosphericRefraction createModel(final List<ConstantRefractionLayer> refractionLayers) {
+        return new FastMultiLayerModel(earth, refractionLayers);
+    }
+
+}
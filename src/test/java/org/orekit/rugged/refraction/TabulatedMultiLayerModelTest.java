@@ -0,0 +1,81 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.refraction;
+
+import java.util.List;
+
+import org.hipparchus.exception.LocalizedCoreFormats;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.intersection.IntersectionAlgorithm;
+import org.orekit.rugged.utils.NormalizedGeodeticPoint;
+
+public class TabulatedMultiLayerModelTest extends AbstractMultiLayerModelTest {
+
+    @Test
+    public void testSameAsMultiLayerModel() {
+        setUpMayonVolcanoContext();
+        Assert.assertTrue(checkSameAsMultiLayerModel(MAYON_POSITION, 5.0e-4) < 5.0e-3);
+    }
+
+    @Test
+    public void testSameAsMultiLayerModelHighLatitude() {
+        // the rays are traced on the ellipsoid mean sphere, check accuracy
+        // far from Mayon volcano latitude, where local curvature differs
+        setUpCliffsOfMoherContext();
+        final Vector3D position = state.getPVCoordinates(earth.getBodyFrame()).getPosition();
+        Assert.assertTrue(checkSameAsMultiLayerModel(position, 5.0e-4) < 5.0e-3);
+    }
+
+    @Test
+    public void testOutOfTable() {
+
+        setUpMayonVolcanoContext();
+        final IntersectionAlgorithm   algorithm       = createAlgorithm(updater, 8);
+        final Vector3D                los             = los(MAYON_POSITION, FastMath.toRadians(50.0), 0.0);
+        final NormalizedGeodeticPoint rawIntersection = rawIntersection(algorithm, MAYON_POSITION, los);
+
+        final TabulatedMultiLayerModel model =
+                        new TabulatedMultiLayerModel(earth, MultiLayerModel.defaultLayers(),
+                                                     FastMath.toRadians(30.0), FastMath.toRadians(1.0),
+                                                     5000.0, 500.0);
+        try {
+            model.applyCorrection(MAYON_POSITION, los, rawIntersection, algorithm);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(LocalizedCoreFormats.OUT_OF_RANGE_SIMPLE, re.getSpecifier());
+            Assert.assertEquals(30.0, ((Double) re.getParts()[2]).doubleValue(), 1.0e-10);
+        }
+
+    }
+
+    @Override
+    protected AtmosphericRefraction createModel() {
+        return new TabulatedMultiLayerModel(earth);
+    }
+
+    @Override
+    protected AtmosphericRefraction createModel(final List<ConstantRefractionLayer> refractionLayers) {
+        return new TabulatedMultiLayerModel(earth, refractionLayers,
+                                            FastMath.toRadians(60.0), FastMath.toRadians(1.0),
+                                            5000.0, 500.0);
+    }
+
+}
@@ -104,6 +104,24 @@ public class AbsoluteDateForVectorisationTest {
 	    Assert.assertEquals(datesDurations[1], date2.durationFrom(date1), 1e-5);
 	    Assert.assertEquals(datesDurations[2], date3.durationFrom(date2), 1e-5);
 
+    }
+
+	@Test
+    public void testOffsetsRoundTrip() {
+
+		AbsoluteDate reference = new AbsoluteDate();
+		AbsoluteDate date1 = reference.shiftedBy(-12.5);
+		AbsoluteDate date2 = reference.shiftedBy(0.001);
+		AbsoluteDate date3 = reference.shiftedBy(3600.25);
+	    AbsoluteDateArrayHandling datesForVect = new AbsoluteDateArrayHandling(new AbsoluteDate[] {date1, date2, date3});
+	    double[] offsets = datesForVect.durationFrom(reference);
+	    Assert.assertArrayEquals(new double[] {-12.5, 0.001, 3600.25}, offsets, 1e-12);
+	    AbsoluteDate[] rebuilt = AbsoluteDateArrayHandling.fromOffsets(reference, offsets).getDates();
+	    Assert.assertEquals(3, rebuilt.length);
+	    Assert.assertEquals(0.0, rebuilt[0].durationFrom(date1), 1e-12);
+	    Assert.assertEquals(0.0, rebuilt[1].durationFrom(date2), 1e-12);
+	    Assert.assertEquals(0.0, rebuilt[2].durationFrom(date3), 1e-12);
+
     }
 
 	@Test
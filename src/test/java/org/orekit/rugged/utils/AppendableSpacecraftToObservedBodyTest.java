@@ -0,0 +1,291 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hipparchus.geometry.euclidean.threed.Rotation;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orekit.bodies.BodyShape;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.frames.Frame;
+import org.orekit.frames.FramesFactory;
+import org.orekit.frames.Transform;
+import org.orekit.orbits.Orbit;
+import org.orekit.rugged.TestUtils;
+import org.orekit.rugged.api.AlgorithmId;
+import org.orekit.rugged.api.BodyRotatingFrameId;
+import org.orekit.rugged.api.EllipsoidId;
+import org.orekit.rugged.api.Rugged;
+import org.orekit.rugged.api.RuggedBuilder;
+import org.orekit.rugged.errors.RuggedException;
+import org.orekit.rugged.errors.RuggedMessages;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import org.orekit.utils.AngularDerivativesFilter;
+import org.orekit.utils.CartesianDerivativesFilter;
+import org.orekit.utils.Constants;
+import org.orekit.utils.TimeStampedAngularCoordinates;
+import org.orekit.utils.TimeStampedPVCoordinates;
+
+public class AppendableSpacecraftToObservedBodyTest {
+
+    @Test
+    public void testSameAsOneShot() {
+
+        final AppendableSpacecraftToObservedBody appendable = create(Double.POSITIVE_INFINITY);
+        Assert.assertEquals(0.0, appendable.getMaxDate().durationFrom(minDate.shiftedBy(10.0)), 1.0e-12);
+        Assert.assertFalse(appendable.isInRange(minDate.shiftedBy(16.0)));
+
+        // batches of 5 seconds, overlapping the already ingested ephemerides by one second
+        for (double t = 10.0; t < 30.0; t += 5.0) {
+            Assert.assertTrue(appendable.append(pvBetween(t - 1.0, t + 5.0), qBetween(t - 1.0, t + 5.0)));
+            Assert.assertEquals(0.0, appendable.getMaxDate().durationFrom(minDate.shiftedBy(t + 5.0)), 1.0e-12);
+        }
+        Assert.assertEquals(3000, appendable.getSamplesNumber());
+
+        final SpacecraftToObservedBody oneShot =
+                        new SpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                     minDate, minDate.shiftedBy(30.0), 0.01, 5.0,
+                                                     pvBetween(-1.0, 30.0), 8, CartesianDerivativesFilter.USE_PV,
+                                                     qBetween(-1.0, 30.0), 2, AngularDerivativesFilter.USE_R);
+        for (double dt = 0; dt < 30.0; dt += 0.0137) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            checkClose(oneShot.getScToInertial(date),   appendable.getScToInertial(date));
+            checkClose(oneShot.getBodyToInertial(date), appendable.getBodyToInertial(date));
+        }
+
+    }
+
+    @Test
+    public void testPartialBatches() {
+        final AppendableSpacecraftToObservedBody appendable = create(Double.POSITIVE_INFINITY);
+
+        // attitude lags behind position/velocity
+        Assert.assertFalse(appendable.append(pvBetween(10.0, 20.0), qBetween(10.0, 10.0)));
+        Assert.assertEquals(0.0, appendable.getMaxDate().durationFrom(minDate.shiftedBy(10.0)), 1.0e-12);
+        Assert.assertTrue(appendable.append(pvBetween(10.0, 10.0), qBetween(10.0, 15.0)));
+        Assert.assertEquals(0.0, appendable.getMaxDate().durationFrom(minDate.shiftedBy(15.0)), 1.0e-12);
+
+        // already ingested entries are ignored
+        Assert.assertFalse(appendable.append(pvBetween(0.0, 20.0), qBetween(0.0, 15.0)));
+    }
+
+    @Test
+    public void testRetention() {
+
+        final AppendableSpacecraftToObservedBody appendable = create(8.0);
+        Assert.assertEquals(8.0, appendable.getRetention(), 0.0);
+        final SpacecraftToObservedBody frozen = appendable.getSnapshot();
+        for (double t = 10.0; t < 30.0; t += 5.0) {
+            appendable.append(pvBetween(t, t + 5.0), qBetween(t, t + 5.0));
+        }
+
+        Assert.assertEquals(0.0, appendable.getMinDate().durationFrom(minDate.shiftedBy(22.0)), 1.0e-12);
+        Assert.assertEquals(800, appendable.getSamplesNumber());
+        Assert.assertFalse(appendable.isInRange(minDate.shiftedBy(10.0)));
+        try {
+            appendable.getScToInertial(minDate.shiftedBy(10.0));
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.OUT_OF_TIME_RANGE, re.getSpecifier());
+        }
+
+        // the snapshot taken before appending is not affected
+        Assert.assertEquals(0.0, frozen.getMinDate().durationFrom(minDate), 1.0e-12);
+        Assert.assertEquals(0.0, frozen.getMaxDate().durationFrom(minDate.shiftedBy(10.0)), 1.0e-12);
+        Assert.assertNotNull(frozen.getScToInertial(minDate.shiftedBy(5.0)));
+
+    }
+
+    @Test
+    public void testRuggedFollowsAppends() {
+
+        final AppendableSpacecraftToObservedBody appendable = create(Double.POSITIVE_INFINITY);
+        final Rugged rugged = new RuggedBuilder().
+                              setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                              setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                              setTrajectoryAndTimeSpan(appendable).
+                              build();
+        Assert.assertFalse(rugged.isInRange(minDate.shiftedBy(20.0)));
+
+        appendable.append(pvBetween(10.0, 25.0), qBetween(10.0, 25.0));
+        Assert.assertTrue(rugged.isInRange(minDate.shiftedBy(20.0)));
+        Assert.assertEquals(0.0, rugged.getMaxDate().durationFrom(minDate.shiftedBy(25.0)), 1.0e-12);
+
+    }
+
+    @Test
+    public void testSnapshotsUnaffectedByAppends() {
+
+        // small batches, so the last samples of each snapshot are recomputed
+        // and the packed buffers grow several times
+        final AppendableSpacecraftToObservedBody appendable = create(Double.POSITIVE_INFINITY);
+        final SpacecraftToObservedBody initial = appendable.getSnapshot();
+        final List<Transform> before = new ArrayList<>();
+        for (double dt = 0; dt < 10.0; dt += 0.0137) {
+            before.add(initial.getScToInertial(minDate.shiftedBy(dt)));
+        }
+        for (double t = 10.0; t < 30.0; t += 0.5) {
+            Assert.assertTrue(appendable.append(pvBetween(t, t + 0.5), qBetween(t, t + 0.5)));
+        }
+        Assert.assertEquals(3000, appendable.getSamplesNumber());
+
+        int i = 0;
+        for (double dt = 0; dt < 10.0; dt += 0.0137) {
+            final Transform transform = initial.getScToInertial(minDate.shiftedBy(dt));
+            Assert.assertEquals(0.0, Vector3D.distance(before.get(i).getTranslation(), transform.getTranslation()), 0.0);
+            Assert.assertEquals(0.0, Rotation.distance(before.get(i).getRotation(), transform.getRotation()), 0.0);
+            ++i;
+        }
+
+    }
+
+    @Test
+    public void testInterpolationFollowsAppends() {
+
+        final AppendableSpacecraftToObservedBody appendable   = create(Double.POSITIVE_INFINITY);
+        final AppendableSpacecraftToObservedBody interpolated = appendable.withInterpolationNumber(4);
+        Assert.assertEquals(1, appendable.getInterpolationNumber());
+        Assert.assertEquals(4, interpolated.getInterpolationNumber());
+        Assert.assertSame(interpolated, interpolated.withInterpolationNumber(4));
+        Assert.assertEquals(4, interpolated.getSnapshot().getInterpolationNumber());
+
+        // appending to either view extends both
+        Assert.assertTrue(interpolated.append(pvBetween(10.0, 20.0), qBetween(10.0, 20.0)));
+        Assert.assertTrue(appendable.append(pvBetween(20.0, 30.0), qBetween(20.0, 30.0)));
+        Assert.assertEquals(0.0, interpolated.getMaxDate().durationFrom(minDate.shiftedBy(30.0)), 1.0e-12);
+
+        final SpacecraftToObservedBody oneShot =
+                        new SpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                     minDate, minDate.shiftedBy(30.0), 0.01, 5.0,
+                                                     pvBetween(-1.0, 30.0), 8, CartesianDerivativesFilter.USE_PV,
+                                                     qBetween(-1.0, 30.0), 2, AngularDerivativesFilter.USE_R).
+                        withInterpolationNumber(4);
+        for (double dt = 0; dt < 30.0; dt += 0.0137) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            checkClose(oneShot.getScToInertial(date),   interpolated.getScToInertial(date));
+            checkClose(oneShot.getBodyToInertial(date), interpolated.getBodyToInertial(date));
+        }
+
+        // Rugged instances using interpolation also follow appends
+        final Rugged rugged = new RuggedBuilder().
+                              setAlgorithm(AlgorithmId.IGNORE_DEM_USE_ELLIPSOID).
+                              setEllipsoid(EllipsoidId.WGS84, BodyRotatingFrameId.ITRF).
+                              setTrajectoryAndTimeSpan(create(Double.POSITIVE_INFINITY)).
+                              setTransformsInterpolationNumber(2).
+                              build();
+        Assert.assertEquals(2, rugged.getScToBody().getInterpolationNumber());
+        Assert.assertFalse(rugged.isInRange(minDate.shiftedBy(20.0)));
+        ((AppendableSpacecraftToObservedBody) rugged.getScToBody()).append(pvBetween(10.0, 25.0), qBetween(10.0, 25.0));
+        Assert.assertTrue(rugged.isInRange(minDate.shiftedBy(20.0)));
+
+    }
+
+    @Test
+    public void testInvalidInitialEphemerides() {
+
+        // ephemerides ending exactly at minDate
+        try {
+            new AppendableSpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                   minDate, 0.01, 5.0, Double.POSITIVE_INFINITY,
+                                                   pvBetween(-1.0, 10.0), 8, CartesianDerivativesFilter.USE_PV,
+                                                   qBetween(-1.0, 0.0), 2, AngularDerivativesFilter.USE_R);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.OUT_OF_TIME_RANGE, re.getSpecifier());
+            Assert.assertEquals(0.0, ((AbsoluteDate) re.getParts()[2]).durationFrom(minDate), 1.0e-12);
+        }
+
+        // ephemerides starting too late
+        try {
+            new AppendableSpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                   minDate, 0.01, 0.5, Double.POSITIVE_INFINITY,
+                                                   pvBetween(1.0, 10.0), 8, CartesianDerivativesFilter.USE_PV,
+                                                   qBetween(-1.0, 10.0), 2, AngularDerivativesFilter.USE_R);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.OUT_OF_TIME_RANGE, re.getSpecifier());
+            Assert.assertEquals(minDate, re.getParts()[0]);
+        }
+
+        // empty ephemerides
+        try {
+            new AppendableSpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                   minDate, 0.01, 5.0, Double.POSITIVE_INFINITY,
+                                                   new ArrayList<>(), 8, CartesianDerivativesFilter.USE_PV,
+                                                   qBetween(-1.0, 10.0), 2, AngularDerivativesFilter.USE_R);
+            Assert.fail("an exception should have been thrown");
+        } catch (RuggedException re) {
+            Assert.assertEquals(RuggedMessages.OUT_OF_TIME_RANGE, re.getSpecifier());
+        }
+
+    }
+
+    private AppendableSpacecraftToObservedBody create(final double retention) {
+        return new AppendableSpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                                      minDate, 0.01, 5.0, retention,
+                                                      pvBetween(-1.0, 10.0), 8, CartesianDerivativesFilter.USE_PV,
+                                                      qBetween(-1.0, 10.0), 2, AngularDerivativesFilter.USE_R);
+    }
+
+    private List<TimeStampedPVCoordinates> pvBetween(final double start, final double end) {
+        return pv.stream().
+               filter(c -> c.getDate().durationFrom(minDate) >= start && c.getDate().durationFrom(minDate) <= end).
+               collect(Collectors.toList());
+    }
+
+    private List<TimeStampedAngularCoordinates> qBetween(final double start, final double end) {
+        return q.stream().
+               filter(c -> c.getDate().durationFrom(minDate) >= start && c.getDate().durationFrom(minDate) <= end).
+               collect(Collectors.toList());
+    }
+
+    private void checkClose(final Transform expected, final Transform actual) {
+        Assert.assertEquals(0.0, Vector3D.distance(expected.getTranslation(), actual.getTranslation()), 1.0e-6);
+        Assert.assertEquals(0.0, Rotation.distance(expected.getRotation(), actual.getRotation()), 1.0e-13);
+    }
+
+    @Before
+    public void setUp() throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape earth = TestUtils.createEarth();
+        final Orbit     orbit = TestUtils.createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        minDate   = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        pv        = TestUtils.orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), minDate.shiftedBy(31.0), 0.25);
+        q         = TestUtils.orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), minDate.shiftedBy(31.0), 0.25);
+        bodyFrame = earth.getBodyFrame();
+
+    }
+
+    private AbsoluteDate                        minDate;
+    private List<TimeStampedPVCoordinates>      pv;
+    private List<TimeStampedAngularCoordinates> q;
+    private Frame                               bodyFrame;
+
+}
@@ -0,0 +1,171 @@
+/* Copyright 2013-2022 CS GROUP
+ * Licensed to CS GROUP (CS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * CS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.orekit.rugged.utils;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hipparchus.CalculusFieldElement;
+import org.hipparchus.geometry.euclidean.threed.Rotation;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orekit.bodies.BodyShape;
+import org.orekit.data.DataContext;
+import org.orekit.data.DirectoryCrawler;
+import org.orekit.frames.FieldTransform;
+import org.orekit.frames.Frame;
+import org.orekit.frames.FramesFactory;
+import org.orekit.frames.Transform;
+import org.orekit.frames.TransformProvider;
+import org.orekit.orbits.Orbit;
+import org.orekit.rugged.TestUtils;
+import org.orekit.time.AbsoluteDate;
+import org.orekit.time.FieldAbsoluteDate;
+import org.orekit.time.TimeScalesFactory;
+import org.orekit.utils.AngularDerivativesFilter;
+import org.orekit.utils.CartesianDerivativesFilter;
+import org.orekit.utils.Constants;
+import org.orekit.utils.TimeStampedAngularCoordinates;
+import org.orekit.utils.TimeStampedPVCoordinates;
+
+public class BodyRotationCacheTest {
+
+    @Test
+    public void testSharedAcrossInstances() {
+
+        final BodyRotationCache cache = new BodyRotationCache(4);
+        Assert.assertEquals(0, cache.getEntries());
+
+        final SpacecraftToObservedBody first  = build(minDate, 0.01, cache);
+        final int calls = counter.get();
+        Assert.assertEquals(1000, calls);
+        Assert.assertEquals(1, cache.getEntries());
+
+        // a second spacecraft on the same time grid does not recompute body rotation
+        final SpacecraftToObservedBody second = build(minDate, 0.01, cache);
+        Assert.assertEquals(calls, counter.get());
+        Assert.assertEquals(1, cache.getEntries());
+
+        // results are the same as without sharing
+        final SpacecraftToObservedBody alone = build(minDate, 0.01, null);
+        Assert.assertEquals(2 * calls, counter.get());
+        for (double dt = 0; dt < 10.0; dt += 0.0137) {
+            final AbsoluteDate date = minDate.shiftedBy(dt);
+            checkSame(alone.getBodyToInertial(date), first.getBodyToInertial(date));
+            checkSame(alone.getBodyToInertial(date), second.getBodyToInertial(date));
+            checkSame(alone.getScToInertial(date),   second.getScToInertial(date));
+        }
+
+        // a different time grid is a different entry
+        build(minDate, 0.02, cache);
+        Assert.assertEquals(5 * calls / 2, counter.get());
+        Assert.assertEquals(2, cache.getEntries());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getEntries());
+
+    }
+
+    @Test
+    public void testEviction() {
+        final BodyRotationCache cache = new BodyRotationCache(2);
+        build(minDate, 0.01, cache);
+        build(minDate, 0.02, cache);
+        build(minDate, 0.01, cache);
+        Assert.assertEquals(1500, counter.get());
+        build(minDate, 0.04, cache);
+        Assert.assertEquals(2, cache.getEntries());
+
+        // the 0.02 grid was the least recently used one, it has been evicted
+        build(minDate, 0.01, cache);
+        Assert.assertEquals(1750, counter.get());
+        build(minDate, 0.02, cache);
+        Assert.assertEquals(2250, counter.get());
+    }
+
+    @Test
+    public void testConcurrentBuilds() throws InterruptedException {
+        final BodyRotationCache cache = new BodyRotationCache(4);
+        final Thread[] threads = new Thread[6];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> build(minDate, 0.01, cache));
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1000, counter.get());
+        Assert.assertEquals(1, cache.getEntries());
+    }
+
+    private SpacecraftToObservedBody build(final AbsoluteDate start, final double step, final BodyRotationCache cache) {
+        return new SpacecraftToObservedBody(FramesFactory.getEME2000(), bodyFrame,
+                                            start, start.shiftedBy(10.0), step, 5.0,
+                                            pv, 8, CartesianDerivativesFilter.USE_PV,
+                                            q, 2, AngularDerivativesFilter.USE_R,
+                                            null, cache);
+    }
+
+    private void checkSame(final Transform expected, final Transform actual) {
+        Assert.assertEquals(0.0, Vector3D.distance(expected.getTranslation(), actual.getTranslation()), 0.0);
+        Assert.assertEquals(0.0, Rotation.distance(expected.getRotation(), actual.getRotation()), 0.0);
+    }
+
+    @Before
+    public void setUp() throws URISyntaxException {
+
+        String path = getClass().getClassLoader().getResource("orekit-data").toURI().getPath();
+        DataContext.getDefault().getDataProvidersManager().addProvider(new DirectoryCrawler(new File(path)));
+        final BodyShape earth = TestUtils.createEarth();
+        final Orbit     orbit = TestUtils.createOrbit(Constants.EIGEN5C_EARTH_MU);
+
+        minDate = new AbsoluteDate("2012-01-01T12:30:00.000", TimeScalesFactory.getUTC());
+        pv      = TestUtils.orbitToPV(orbit, earth, minDate.shiftedBy(-1.0), minDate.shiftedBy(11.0), 0.25);
+        q       = TestUtils.orbitToQ(orbit, earth, minDate.shiftedBy(-1.0), minDate.shiftedBy(11.0), 0.25);
+
+        // body frame counting the transforms computations
+        counter   = new AtomicInteger();
+        bodyFrame = new Frame(earth.getBodyFrame(), new TransformProvider() {
+
+            private static final long serialVersionUID = 20221023L;
+
+            @Override
+            public Transform getTransform(final AbsoluteDate date) {
+                counter.incrementAndGet();
+                return Transform.IDENTITY;
+            }
+
+            @Override
+            public <T extends CalculusFieldElement<T>> FieldTransform<T> getTransform(final FieldAbsoluteDate<T> date) {
+                return FieldTransform.getIdentity(date.getField());
+            }
+
+        }, "counting body frame");
+
+    }
+
+    private AbsoluteDate                        minDate;
+    private List<TimeStampedPVCoordinates>      pv;
+    private List<TimeStampedAngularCoordinates> q;
+    private AtomicInteger                       counter;
+    private Frame                               bodyFrame;
+
+}
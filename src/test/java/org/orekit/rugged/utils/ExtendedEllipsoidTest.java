@@ -19,9 +19,13 @@ package org.orekit.rugged.utils;
 import java.io.File;
 import java.net.URISyntaxException;
 
+import org.hipparchus.exception.LocalizedCoreFormats;
 import org.hipparchus.geometry.euclidean.threed.Line;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.random.RandomGenerator;
+import org.hipparchus.random.Well19937a;
 import org.hipparchus.util.FastMath;
+import org.hipparchus.util.MathUtils;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -61,6 +65,7 @@ public class ExtendedEllipsoidTest {
         Vector3D parallelToLongitudePlane = new Vector3D(FastMath.cos(longitude),
                                                          FastMath.sin(longitude),
                                                          -2.4);
+        Assert.assertNull(ellipsoid.pointAtLongitudeOrNull(p, parallelToLongitudePlane, longitude));
         try {
             ellipsoid.pointAtLongitude(p, parallelToLongitudePlane, longitude);
             Assert.fail("an error should have been triggered");
@@ -160,6 +165,7 @@ public class ExtendedEllipsoidTest {
         Vector3D d = new Vector3D(1.0, 2.0, 3.0);
         double latitude = -1.4;
 
+        Assert.assertNull(ellipsoid.pointAtLatitudeOrNull(p, d, latitude, p));
         try {
             ellipsoid.pointAtLatitude(p, d, latitude, p);
             Assert.fail("an error should have been triggered");
@@ -177,6 +183,7 @@ public class ExtendedEllipsoidTest {
         Vector3D d = new Vector3D(1.0, 2.0, 0.1);
         double latitude = 0.5;
 
+        Assert.assertNull(ellipsoid.pointAtLatitudeOrNull(p, d, latitude, p));
         try {
             ellipsoid.pointAtLatitude(p, d, latitude, p);
             Assert.fail("an error should have been triggered");
@@ -281,6 +288,165 @@ public class ExtendedEllipsoidTest {
 
     }
 
+    @Test
+    public void testPointsAtAltitude() {
+
+        final RandomGenerator random = new Well19937a(0x2b9ae8f3d1c5a74el);
+        final int n = 1000;
+        final double[] px = new double[n];
+        final double[] py = new double[n];
+        final double[] pz = new double[n];
+        final double[] lx = new double[n];
+        final double[] ly = new double[n];
+        final double[] lz = new double[n];
+        for (int i = 0; i < n; ++i) {
+            // spacecraft at 800km altitude, looking roughly towards nadir
+            final GeodeticPoint sc = new GeodeticPoint(FastMath.PI * (random.nextDouble() - 0.5),
+                                                       2 * FastMath.PI * (random.nextDouble() - 0.5),
+                                                       800000.0);
+            final Vector3D p = ellipsoid.transform(sc);
+            final Vector3D l = new Vector3D(-1, sc.getZenith(),
+                                            0.4 * (random.nextDouble() - 0.5), sc.getEast(),
+                                            0.4 * (random.nextDouble() - 0.5), sc.getNorth());
+            px[i] = p.getX();
+            py[i] = p.getY();
+            pz[i] = p.getZ();
+            lx[i] = l.getX();
+            ly[i] = l.getY();
+            lz[i] = l.getZ();
+        }
+
+        final double[] latitude  = new double[n];
+        final double[] longitude = new double[n];
+        final double[] altitude  = new double[n];
+        for (final double h : new double[] { -400.0, 0.0, 1500.0, 8000.0 }) {
+            ellipsoid.pointsAtAltitude(px, py, pz, lx, ly, lz, h, latitude, longitude, altitude);
+            for (int i = 0; i < n; ++i) {
+                final Vector3D      p  = new Vector3D(px[i], py[i], pz[i]);
+                final Vector3D      l  = new Vector3D(lx[i], ly[i], lz[i]);
+                final GeodeticPoint gp = ellipsoid.transform(ellipsoid.pointAtAltitude(p, l, h),
+                                                             ellipsoid.getBodyFrame(), null);
+                Assert.assertEquals(gp.getLatitude(),  latitude[i],  1.0e-9);
+                Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-9);
+                Assert.assertEquals(h,                 altitude[i],  1.0e-3);
+            }
+        }
+
+    }
+
+    @Test
+    public void testPointsAtAltitudeDimensionMismatch() {
+        try {
+            ellipsoid.pointsAtAltitude(new double[2], new double[2], new double[2],
+                                       new double[2], new double[3], new double[2],
+                                       0.0, new double[2], new double[2], new double[2]);
+            Assert.fail("an exception should have been thrown");
+        } catch (OrekitException oe) {
+            Assert.assertEquals(LocalizedCoreFormats.DIMENSIONS_MISMATCH, oe.getSpecifier());
+        }
+    }
+
+    @Test
+    public void testCartesianToGeodetic() {
+        RandomGenerator random = new Well19937a(0x2c5e1b8f4d3a7061l);
+        int n = 2000;
+        double[] x = new double[n + 4];
+        double[] y = new double[n + 4];
+        double[] z = new double[n + 4];
+        for (int i = 0; i < n; ++i) {
+            // mix of points near surface, far away, deep inside and close to axes
+            double r   = (i % 4 == 0) ? 1.0e3 + 5.0e4 * random.nextDouble() : 6.0e6 + 4.0e7 * random.nextDouble();
+            double lat = (i % 5 == 0) ? FastMath.copySign(0.5 * FastMath.PI - 1.0e-9 * random.nextDouble(),
+                                                          random.nextDouble() - 0.5)
+                                      : FastMath.PI * (random.nextDouble() - 0.5);
+            double lon = 2 * FastMath.PI * (random.nextDouble() - 0.5);
+            x[i] = r * FastMath.cos(lat) * FastMath.cos(lon);
+            y[i] = r * FastMath.cos(lat) * FastMath.sin(lon);
+            z[i] = r * FastMath.sin(lat);
+        }
+        // special points: center, pole, equator, undefined
+        x[n]     = 0.0; y[n]     = 0.0; z[n]     = 0.0;
+        x[n + 1] = 0.0; y[n + 1] = 0.0; z[n + 1] = 6.4e6;
+        x[n + 2] = 0.0; y[n + 2] = 7.0e6; z[n + 2] = 0.0;
+        x[n + 3] = Double.NaN; y[n + 3] = 0.0; z[n + 3] = 0.0;
+
+        double[] latitude  = new double[x.length];
+        double[] longitude = new double[x.length];
+        double[] altitude  = new double[x.length];
+        ellipsoid.cartesianToGeodetic(x, y, z, latitude, longitude, altitude);
+        for (int i = 0; i < x.length - 1; ++i) {
+            GeodeticPoint gp = ellipsoid.transform(new Vector3D(x[i], y[i], z[i]), ellipsoid.getBodyFrame(), null);
+            Assert.assertEquals(gp.getLatitude(),  latitude[i],  1.0e-14);
+            Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-14);
+            Assert.assertEquals(gp.getAltitude(),  altitude[i],  1.0e-8);
+        }
+        Assert.assertTrue(Double.isNaN(latitude[n + 3]));
+        Assert.assertTrue(Double.isNaN(longitude[n + 3]));
+        Assert.assertTrue(Double.isNaN(altitude[n + 3]));
+
+        // normalized longitudes
+        ellipsoid.cartesianToGeodetic(x, y, z, 3.0, latitude, longitude, altitude);
+        for (int i = 0; i < n; ++i) {
+            GeodeticPoint gp = ellipsoid.transform(new Vector3D(x[i], y[i], z[i]), ellipsoid.getBodyFrame(), null, 3.0);
+            Assert.assertEquals(gp.getLongitude(), longitude[i], 1.0e-14);
+            Assert.assertTrue(longitude[i] >= 3.0 - FastMath.PI);
+            Assert.assertTrue(longitude[i] <= 3.0 + FastMath.PI);
+        }
+
+    }
+
+    @Test
+    public void testGeodeticToCartesian() {
+        RandomGenerator random = new Well19937a(0x72f1c6be10a3d95bl);
+        int n = 2000;
+        double[] latitude  = new double[n];
+        double[] longitude = new double[n];
+        double[] altitude  = new double[n];
+        for (int i = 0; i < n; ++i) {
+            latitude[i]  = FastMath.PI * (random.nextDouble() - 0.5);
+            longitude[i] = 4 * FastMath.PI * (random.nextDouble() - 0.5);
+            altitude[i]  = -1.0e4 + 1.0e6 * random.nextDouble();
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        ellipsoid.geodeticToCartesian(latitude, longitude, altitude, x, y, z);
+        for (int i = 0; i < n; ++i) {
+            Vector3D p = ellipsoid.transform(new GeodeticPoint(latitude[i], longitude[i], altitude[i]));
+            Assert.assertEquals(0.0, Vector3D.distance(p, new Vector3D(x[i], y[i], z[i])), 1.0e-8);
+        }
+
+        // round trip
+        double[] latitude2  = new double[n];
+        double[] longitude2 = new double[n];
+        double[] altitude2  = new double[n];
+        ellipsoid.cartesianToGeodetic(x, y, z, 0.0, latitude2, longitude2, altitude2);
+        for (int i = 0; i < n; ++i) {
+            Assert.assertEquals(latitude[i], latitude2[i], 1.0e-14);
+            Assert.assertEquals(MathUtils.normalizeAngle(longitude[i], 0.0), longitude2[i], 1.0e-14);
+            Assert.assertEquals(altitude[i], altitude2[i], 1.0e-8);
+        }
+
+    }
+
+    @Test
+    public void testGeodeticConversionsDimensionMismatch() {
+        try {
+            ellipsoid.cartesianToGeodetic(new double[2], new double[2], new double[2],
+                                          new double[2], new double[1], new double[2]);
+            Assert.fail("an exception should have been thrown");
+        } catch (OrekitException oe) {
+            Assert.assertEquals(LocalizedCoreFormats.DIMENSIONS_MISMATCH, oe.getSpecifier());
+        }
+        try {
+            ellipsoid.geodeticToCartesian(new double[2], new double[2], new double[2],
+                                          new double[2], new double[2], new double[4]);
+            Assert.fail("an exception should have been thrown");
+        } catch (OrekitException oe) {
+            Assert.assertEquals(LocalizedCoreFormats.DIMENSIONS_MISMATCH, oe.getSpecifier());
+        }
+    }
+
     @Before
     public void setUp() {
         try {